@@ -0,0 +1,12 @@
+package com.splitzy.splitzy.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs. Each job is individually gated by its own property.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,41 @@
+package com.splitzy.splitzy.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the pg_trgm extension and trigram GIN indexes on users.name / users.email so the
+ * ILIKE '%term%' user search is index-backed. Hibernate's ddl-auto cannot express these.
+ *
+ * Failures (e.g. no permission to create the extension) are only logged: search still works,
+ * it just scans the table.
+ */
+@Component
+@Profile("postgres")
+public class UserSearchIndexInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndexInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserSearchIndexInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_name_trgm ON users USING gin (name gin_trgm_ops)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_users_email_trgm ON users USING gin (email gin_trgm_ops)");
+            logger.info("User search trigram indexes are in place");
+        } catch (Exception e) {
+            logger.warn("Could not create user search trigram indexes, search will scan users: {}", e.getMessage());
+        }
+    }
+}
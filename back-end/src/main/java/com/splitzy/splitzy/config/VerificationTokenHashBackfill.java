@@ -0,0 +1,75 @@
+package com.splitzy.splitzy.config;
+
+import com.splitzy.splitzy.util.TokenHashes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashes the raw verification tokens stored before users.verification_token_hash existed and
+ * clears them, in id-ordered batches. UserSql no longer maps the raw column, so nothing writes it
+ * again; the column itself is left in place for instances still running the previous version,
+ * and whatever they write is cleaned up by the next startup.
+ *
+ * Failures are only logged: rows left unhashed keep their raw token until the next run, and
+ * their tokens don't resolve in the meantime.
+ */
+@Component
+@Profile("postgres")
+public class VerificationTokenHashBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationTokenHashBackfill.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VerificationTokenHashBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            Boolean hasRawColumn = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                "WHERE table_name = 'users' AND column_name = 'verification_token')", Boolean.class);
+            if (!Boolean.TRUE.equals(hasRawColumn)) {
+                return;
+            }
+
+            String afterId = "";
+            int hashed = 0;
+            while (true) {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, verification_token FROM users " +
+                    "WHERE verification_token IS NOT NULL AND id > ? ORDER BY id LIMIT ?", afterId, BATCH_SIZE);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                List<Object[]> updates = rows.stream()
+                    .map(row -> new Object[] {
+                        TokenHashes.sha256((String) row.get("verification_token")), row.get("id"), row.get("verification_token")})
+                    .toList();
+                // Compare the token too, so a row rewritten meanwhile is left for the next run
+                jdbcTemplate.batchUpdate(
+                    "UPDATE users SET verification_token_hash = ?, verification_token = NULL " +
+                    "WHERE id = ? AND verification_token = ?", updates);
+                hashed += rows.size();
+                afterId = (String) rows.get(rows.size() - 1).get("id");
+            }
+            if (hashed > 0) {
+                logger.info("Hashed and cleared {} stored verification tokens", hashed);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not backfill verification token hashes: {}", e.getMessage());
+        }
+    }
+}
@@ -1,26 +1,36 @@
 package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.dto.analytics.*;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.analytics.AnalyticsService;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Profile;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST Controller for Analytics API endpoints.
  * Provides comprehensive analytics data for the dashboard.
+ *
+ * User-scoped endpoints return a strong ETag derived from the user's analytics data version,
+ * so polling clients get 304 Not Modified until an expense involving them changes, or their
+ * friends, groups or the names of people they share expenses with do.
  */
 @RestController
 @RequestMapping("/analytics")
-@Profile("postgres")
 public class AnalyticsController {
 
     @Autowired
@@ -29,6 +39,11 @@ public class AnalyticsController {
     @Autowired
     private UserDao userDao;
 
+    @Autowired(required = false)
+    private AnalyticsVersionService analyticsVersionService;
+
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
     /**
      * Get dashboard summary with all key metrics.
      * This is the primary endpoint for the main dashboard view.
@@ -41,9 +56,11 @@ public class AnalyticsController {
             @RequestParam(required = false) String groupId,
             @RequestParam(required = false) String friendId,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String settledFilter) {
+            @RequestParam(required = false) String settledFilter,
+            WebRequest request) {
 
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "summary", startDate, endDate, groupId, friendId, category, settledFilter);
 
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withDateRange(startDate, endDate)
@@ -52,8 +69,7 @@ public class AnalyticsController {
             .withCategory(category)
             .withSettled(settledFilter);
 
-        DashboardSummary summary = analyticsService.getDashboardSummary(userId, filter);
-        return ResponseEntity.ok(summary);
+        return conditional(request, etag, () -> analyticsService.getDashboardSummary(userId, filter));
     }
 
     /**
@@ -70,9 +86,12 @@ public class AnalyticsController {
             @RequestParam(required = false) String friendId,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String settledFilter,
-            @RequestParam(defaultValue = "false") boolean includeComparison) {
+            @RequestParam(defaultValue = "false") boolean includeComparison,
+            WebRequest request) {
 
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "trends", startDate, endDate, granularity,
+            groupId, friendId, category, settledFilter, includeComparison);
 
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withDateRange(startDate, endDate)
@@ -91,8 +110,7 @@ public class AnalyticsController {
             );
         }
 
-        TrendData trends = analyticsService.getSpendingTrends(userId, filter);
-        return ResponseEntity.ok(trends);
+        return conditional(request, etag, () -> analyticsService.getSpendingTrends(userId, filter));
     }
 
     /**
@@ -103,16 +121,19 @@ public class AnalyticsController {
             Authentication auth,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
-            @RequestParam(required = false) String groupId) {
+            @RequestParam(required = false) String groupId,
+            @RequestParam(defaultValue = "false") boolean approx,
+            WebRequest request) {
         
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "categories", startDate, endDate, groupId, approx);
         
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withDateRange(startDate, endDate)
-            .withGroup(groupId);
+            .withGroup(groupId)
+            .withApproximate(approx);
         
-        CategoryAnalytics analytics = analyticsService.getCategoryAnalytics(userId, filter);
-        return ResponseEntity.ok(analytics);
+        return conditional(request, etag, () -> analyticsService.getCategoryAnalytics(userId, filter));
     }
 
     /**
@@ -124,8 +145,10 @@ public class AnalyticsController {
             @RequestParam(required = false) String groupId,
             @RequestParam(required = false) String friendId,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String settledFilter) {
+            @RequestParam(required = false) String settledFilter,
+            WebRequest request) {
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "balances", groupId, friendId, category, settledFilter);
 
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withGroup(groupId)
@@ -133,8 +156,7 @@ public class AnalyticsController {
             .withCategory(category)
             .withSettled(settledFilter);
 
-        BalanceAnalytics analytics = analyticsService.getBalanceAnalytics(userId, filter);
-        return ResponseEntity.ok(analytics);
+        return conditional(request, etag, () -> analyticsService.getBalanceAnalytics(userId, filter));
     }
 
     /**
@@ -145,16 +167,17 @@ public class AnalyticsController {
             Authentication auth,
             @PathVariable String friendId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            WebRequest request) {
         
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "friends", friendId, startDate, endDate);
         
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withDateRange(startDate, endDate)
             .withFriend(friendId);
         
-        FriendAnalytics analytics = analyticsService.getFriendAnalytics(userId, friendId, filter);
-        return ResponseEntity.ok(analytics);
+        return conditional(request, etag, () -> analyticsService.getFriendAnalytics(userId, friendId, filter));
     }
 
     /**
@@ -165,13 +188,15 @@ public class AnalyticsController {
             Authentication auth,
             @PathVariable String groupId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean approx) {
         
         String userId = getUserId(auth);
         
         AnalyticsFilter filter = AnalyticsFilter.builder()
             .withDateRange(startDate, endDate)
-            .withGroup(groupId);
+            .withGroup(groupId)
+            .withApproximate(approx);
         
         GroupAnalytics analytics = analyticsService.getGroupAnalytics(userId, groupId, filter);
         return ResponseEntity.ok(analytics);
@@ -181,34 +206,39 @@ public class AnalyticsController {
      * Get quick stats for dashboard widgets.
      */
     @GetMapping("/quick-stats")
-    public ResponseEntity<Map<String, Object>> getQuickStats(Authentication auth) {
+    public ResponseEntity<Map<String, Object>> getQuickStats(Authentication auth, WebRequest request) {
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "quick-stats");
         
-        AnalyticsFilter filter = new AnalyticsFilter();
-        DashboardSummary summary = analyticsService.getDashboardSummary(userId, filter);
-        
-        // Return just the essential quick stats
-        return ResponseEntity.ok(Map.of(
-            "balance", summary.getBalance(),
-            "quickStats", summary.getQuickStats(),
-            "topCategories", summary.getTopCategories()
-        ));
+        return conditional(request, etag, () -> {
+            AnalyticsFilter filter = new AnalyticsFilter();
+            DashboardSummary summary = analyticsService.getDashboardSummary(userId, filter);
+            
+            // Return just the essential quick stats
+            return Map.of(
+                "balance", summary.getBalance(),
+                "quickStats", summary.getQuickStats(),
+                "topCategories", summary.getTopCategories()
+            );
+        });
     }
 
     /**
      * Get pending actions/settlements.
      */
     @GetMapping("/pending-actions")
-    public ResponseEntity<?> getPendingActions(Authentication auth) {
+    public ResponseEntity<?> getPendingActions(Authentication auth, WebRequest request) {
         String userId = getUserId(auth);
+        String etag = analyticsETag(userId, "pending-actions");
         
-        AnalyticsFilter filter = new AnalyticsFilter();
-        DashboardSummary summary = analyticsService.getDashboardSummary(userId, filter);
-        
-        return ResponseEntity.ok(Map.of(
-            "pendingActions", summary.getPendingActions(),
-            "settlements", summary.getSettlements()
-        ));
+        return conditional(request, etag, () -> {
+            DashboardSummary summary = analyticsService.getPendingActionsSummary(userId);
+            
+            return Map.of(
+                "pendingActions", summary.getPendingActions(),
+                "settlements", summary.getSettlements()
+            );
+        });
     }
 
     // ==========================================
@@ -219,6 +249,10 @@ public class AnalyticsController {
         if (auth == null || auth.getName() == null) {
             throw new IllegalStateException("Authentication required");
         }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         // auth.getName() returns the email from JWT subject
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email)
@@ -226,6 +260,40 @@ public class AnalyticsController {
         return user.getId();
     }
 
+    /**
+     * Strong ETag over the user's data version, the endpoint, its parameters and today's date
+     * (default date ranges are relative to today). Null when no version is available.
+     */
+    private String analyticsETag(String userId, String endpoint, Object... params) {
+        if (analyticsVersionService == null) {
+            return null;
+        }
+        String version = analyticsVersionService.currentVersion(userId);
+        if (version == null) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(userId).append('|').append(version)
+            .append('|').append(endpoint).append('|').append(LocalDate.now());
+        for (Object param : params) {
+            key.append('|').append(param);
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Answer If-None-Match with 304 before computing anything; otherwise compute the body
+     * and tag it. Without an ETag the body is always computed.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<T> body) {
+        if (etag == null) {
+            return ResponseEntity.ok(body.get());
+        }
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body.get());
+    }
+
     private AnalyticsFilter.TimeGranularity parseGranularity(String granularity) {
         try {
             return AnalyticsFilter.TimeGranularity.valueOf(granularity.toUpperCase());
@@ -140,7 +140,7 @@ public class AuthController {
 
 
             // Save the user temporarily in Redis with an expiration of 24 hours
-            redisCacheService.save(user.getEmail(), tempUser, 24 * 60 * 60);
+            redisCacheService.savePendingSignup(tempUser, 24 * 60 * 60);
 
             // Send a verification email
             emailService.sendVerificationEmail(user.getEmail(), verificationToken);
@@ -161,17 +161,7 @@ public class AuthController {
         String safeRedirect = getSafeRedirectUrl(redirectTo);
 
         try {
-            RedisUser tempUser = null;
-            String userKey = null;
-            for (String key : redisCacheService.getAllKeys()) {
-                RedisUser redisUser = redisCacheService.getRedisUser(key);
-
-                if (redisUser != null && redisUser.getVerificationToken().equals(token)) {
-                    tempUser = redisUser;
-                    userKey = key;
-                    break;
-                }
-            }
+            RedisUser tempUser = redisCacheService.findPendingSignupByToken(token);
 
             if (tempUser == null) {
                 logger.warn("Verification failed: invalid or expired token");
@@ -189,9 +179,7 @@ public class AuthController {
 
             logger.info("User verified successfully: {}", user.getEmail());
 
-            if (userKey != null) {
-                redisCacheService.delete(userKey);
-            }
+            redisCacheService.deletePendingSignup(tempUser);
 
             response.sendRedirect(safeRedirect + "?message=RegisteredSuccessfully");
         } catch (Exception e) {
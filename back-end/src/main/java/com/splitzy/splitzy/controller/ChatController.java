@@ -2,6 +2,7 @@ package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.entity.ChatMessageSql;
 import com.splitzy.splitzy.entity.ChatThreadSql;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.ChatService;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
@@ -13,7 +14,6 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/chat")
@@ -28,9 +28,7 @@ public class ChatController {
     @GetMapping("/threads")
     public List<Map<String, Object>> getThreads(Authentication auth) {
         String userId = getUserId(auth);
-        return chatService.getThreadsForUser(userId).stream()
-                .map(t -> chatService.toThreadSummary(t, userId))
-                .collect(Collectors.toList());
+        return chatService.getThreadSummaries(userId);
     }
 
     // Create or get P2P thread with a friend
@@ -57,14 +55,16 @@ public class ChatController {
         }
     }
 
-    // Fetch messages
+    // Fetch messages, newest first; before/after take a message id and page from it
     @GetMapping("/messages/{threadId}")
     public List<ChatMessageSql> getMessages(Authentication auth,
                                             @PathVariable String threadId,
                                             @RequestParam(defaultValue = "0") int page,
-                                            @RequestParam(defaultValue = "50") int size) {
+                                            @RequestParam(defaultValue = "50") int size,
+                                            @RequestParam(required = false) String before,
+                                            @RequestParam(required = false) String after) {
         String userId = getUserId(auth);
-        return chatService.getMessages(threadId, userId, page, size);
+        return chatService.getMessages(threadId, userId, page, size, before, after);
     }
 
     // Post a message (with optional reply)
@@ -126,6 +126,10 @@ public class ChatController {
     }
 
     private String getUserId(Authentication auth) {
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email).orElseThrow();
         return user.getId();
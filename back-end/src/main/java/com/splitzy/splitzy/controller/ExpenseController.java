@@ -4,6 +4,7 @@ import com.splitzy.splitzy.dto.CreateExpenseRequest;
 import com.splitzy.splitzy.dto.SettleExpenseRequest;
 import com.splitzy.splitzy.exception.ResourceNotFoundException;
 import com.splitzy.splitzy.model.Expense;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.ExpenseService;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
@@ -178,6 +179,10 @@ public class ExpenseController {
         if (auth == null || auth.getName() == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
         }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
@@ -1,6 +1,7 @@
 package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.dto.GroupDTO;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.GroupService;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
@@ -45,6 +46,10 @@ public class GroupController {
         if (auth == null || auth.getName() == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
         }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
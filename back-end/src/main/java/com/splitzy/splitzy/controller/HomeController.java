@@ -2,6 +2,7 @@ package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.dto.FriendDTO;
 import com.splitzy.splitzy.model.FriendRequest;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.FriendService;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
@@ -69,6 +70,10 @@ public class HomeController {
         if (auth == null || auth.getName() == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
         }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
@@ -0,0 +1,73 @@
+package com.splitzy.splitzy.controller;
+
+import com.splitzy.splitzy.exception.ResourceNotFoundException;
+import com.splitzy.splitzy.security.AuthenticatedUser;
+import com.splitzy.splitzy.service.dao.UserDao;
+import com.splitzy.splitzy.service.dao.UserDto;
+import com.splitzy.splitzy.service.ledger.LedgerService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+
+/**
+ * Point-in-time balances from the ledger journal (Postgres only).
+ */
+@RestController
+@RequestMapping("/ledger")
+@Profile("postgres")
+public class LedgerController {
+
+    private final LedgerService ledgerService;
+    private final UserDao userDao;
+
+    public LedgerController(LedgerService ledgerService, UserDao userDao) {
+        this.ledgerService = ledgerService;
+        this.userDao = userDao;
+    }
+
+    /**
+     * Balances as of the end of the given day (today when omitted). Negative means the
+     * caller owed the counterparty. With counterpartyId, only that pair is returned.
+     */
+    @GetMapping("/balances")
+    public ResponseEntity<Map<String, Object>> getBalancesAsOf(
+            Authentication auth,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf,
+            @RequestParam(required = false) String counterpartyId) {
+
+        String userId = getUserId(auth);
+        LocalDate day = asOf != null ? asOf : LocalDate.now();
+        LocalDateTime endOfDay = day.atTime(LocalTime.MAX);
+
+        Map<String, Double> balances = counterpartyId != null && !counterpartyId.isEmpty()
+            ? Map.of(counterpartyId, ledgerService.balanceAsOf(userId, counterpartyId, endOfDay))
+            : ledgerService.balancesAsOf(userId, endOfDay);
+
+        return ResponseEntity.ok(Map.of(
+            "asOf", day.toString(),
+            "balances", balances
+        ));
+    }
+
+    private String getUserId(Authentication auth) {
+        if (auth == null || auth.getName() == null) {
+            throw new IllegalStateException("Authentication required");
+        }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
+        // auth.getName() returns the email from JWT subject
+        String email = auth.getName();
+        UserDto user = userDao.findByEmail(email)
+                .orElseThrow(() -> new ResourceNotFoundException("User", email));
+        return user.getId();
+    }
+}
@@ -2,7 +2,10 @@ package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.dto.ChangePasswordRequest;
 import com.splitzy.splitzy.dto.UpdateProfileRequest;
+import com.splitzy.splitzy.security.PrincipalCache;
 import com.splitzy.splitzy.service.CustomUserDetailsService;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
+import com.splitzy.splitzy.service.dao.GroupDao;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,7 +16,9 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/profile")
@@ -28,6 +33,15 @@ public class ProfileController {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private GroupDao groupDao;
+
+    @Autowired(required = false)
+    private AnalyticsVersionService analyticsVersionService;
+
     @GetMapping
     public ResponseEntity<?> getProfile(Authentication auth) {
         String email = auth.getName();
@@ -53,14 +67,16 @@ public class ProfileController {
         }
 
         // If email change, ensure not taken
-        if (req.getEmail() != null && !req.getEmail().equalsIgnoreCase(user.getEmail())) {
+        boolean emailChanged = req.getEmail() != null && !req.getEmail().equalsIgnoreCase(user.getEmail());
+        if (emailChanged) {
             if (userDao.existsByEmail(req.getEmail())) {
                 return ResponseEntity.status(HttpStatus.CONFLICT).body("Email already in use");
             }
             user.setEmail(req.getEmail());
         }
 
-        if (req.getName() != null && !req.getName().isBlank()) {
+        boolean nameChanged = req.getName() != null && !req.getName().isBlank() && !req.getName().equals(user.getName());
+        if (nameChanged) {
             user.setName(req.getName());
         }
         if (req.getAvatarUrl() != null) {
@@ -68,13 +84,20 @@ public class ProfileController {
         }
 
         userDao.save(user);
+        if (emailChanged) {
+            // Tokens are issued for the old email and must stop resolving to this user
+            principalCache.evictUser(user.getId());
+        }
+        if (nameChanged && analyticsVersionService != null) {
+            analyticsVersionService.bumpUsers(seenBy(user));
+        }
         return ResponseEntity.ok("Profile updated");
     }
 
     @PostMapping("/password")
     public ResponseEntity<?> changePassword(Authentication auth, @RequestBody ChangePasswordRequest req) {
         String email = auth.getName();
-        UserDto user = userDao.findByEmail(email).orElse(null);
+        UserDto user = userDao.findByEmailWithCredentials(email).orElse(null);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
         }
@@ -95,5 +118,15 @@ public class ProfileController {
         userDao.save(user);
         return ResponseEntity.ok("Password updated");
     }
-}
 
+    // Everyone whose dashboard can show the user's name: friends and fellow group members
+    private Set<String> seenBy(UserDto user) {
+        Set<String> userIds = new HashSet<>(user.getFriendIds());
+        userIds.add(user.getId());
+        groupDao.findByCreatorIdOrMemberId(user.getId()).forEach(group -> {
+            userIds.add(group.getCreatorId());
+            group.getFriends().forEach(member -> userIds.add(member.getId()));
+        });
+        return userIds;
+    }
+}
@@ -1,8 +1,10 @@
 package com.splitzy.splitzy.controller;
 
 import com.splitzy.splitzy.model.User;
+import com.splitzy.splitzy.security.AuthenticatedUser;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
+import com.splitzy.splitzy.service.search.UserPrefixIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,38 +26,44 @@ public class SearchController {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private UserPrefixIndex userPrefixIndex;
+
+    private static final int MAX_SEARCH_RESULTS = 50;
+
     @GetMapping("/user")
     public List<User> searchUsers(Authentication auth,
                                   @RequestParam("q") String query,
-                                  @RequestParam("userId") String currentUserId) {
+                                  @RequestParam("userId") String currentUserId,
+                                  @RequestParam(value = "limit", defaultValue = "20") int limit) {
         assertOwnership(auth, currentUserId);
 
         // Only proceed if query has >= 3 chars, to reduce load
         if (query.length() < 3) {
             return List.of();
         }
-
-        // Build a case-insensitive regex with escaped user input to prevent ReDoS
-        String regex = "(?i).*" + Pattern.quote(query) + ".*";
-
-        // Query the DB by name or email via DAO
-        List<UserDto> byName = userDao.findByNameRegex(regex);
-        List<UserDto> byEmail = userDao.findByEmailRegex(regex);
-
-        // Combine results, removing duplicates by id
-        Map<String, UserDto> resultMap = new LinkedHashMap<>();
-        for (UserDto u : byName) {
-            resultMap.put(u.getId(), u);
-        }
-        for (UserDto u : byEmail) {
-            resultMap.put(u.getId(), u);
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+
+        // Served from the in-memory prefix index once it is built (token prefix matches, see
+        // UserPrefixIndex), otherwise one ranked, limited query by name or email (matches anywhere);
+        // one extra row in case it is the caller
+        List<UserDto> matches;
+        if (userPrefixIndex.isReady()) {
+            List<String> ids = userPrefixIndex.suggest(query, pageSize + 1).stream()
+                    .map(UserPrefixIndex.Entry::id)
+                    .collect(Collectors.toList());
+            Map<String, UserDto> byId = userDao.findAllById(ids).stream()
+                    .collect(Collectors.toMap(UserDto::getId, u -> u, (a, b) -> a));
+            matches = ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+        } else {
+            matches = userDao.searchByNameOrEmail(query, pageSize + 1);
         }
 
         // **Always exclude the user themself** from results
-        resultMap.remove(currentUserId);
-
         // Convert DTOs to safe User models (no password/token leakage)
-        return resultMap.values().stream()
+        return matches.stream()
+                .filter(u -> !u.getId().equals(currentUserId))
+                .limit(pageSize)
                 .map(this::toSafeUser)
                 .collect(Collectors.toList());
     }
@@ -107,6 +115,10 @@ public class SearchController {
         if (auth == null || auth.getName() == null) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
         }
+        String userId = AuthenticatedUser.idOf(auth);
+        if (userId != null) {
+            return userId;
+        }
         String email = auth.getName();
         UserDto user = userDao.findByEmail(email)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
@@ -26,6 +26,9 @@ public class AnalyticsFilter {
     private LocalDate comparisonStartDate;
     private LocalDate comparisonEndDate;
     
+    // Answer from sketches instead of scanning expenses
+    private boolean approximate = false;
+    
     // Pagination for detailed lists
     private int page = 0;
     private int size = 20;
@@ -85,6 +88,11 @@ public class AnalyticsFilter {
         return this;
     }
     
+    public AnalyticsFilter withApproximate(boolean approximate) {
+        this.approximate = approximate;
+        return this;
+    }
+    
     public AnalyticsFilter withPagination(int page, int size) {
         this.page = page;
         this.size = size;
@@ -122,6 +130,9 @@ public class AnalyticsFilter {
     public LocalDate getComparisonEndDate() { return comparisonEndDate; }
     public void setComparisonEndDate(LocalDate comparisonEndDate) { this.comparisonEndDate = comparisonEndDate; }
     
+    public boolean isApproximate() { return approximate; }
+    public void setApproximate(boolean approximate) { this.approximate = approximate; }
+    
     public int getPage() { return page; }
     public void setPage(int page) { this.page = page; }
     
@@ -0,0 +1,51 @@
+package com.splitzy.splitzy.dto.analytics;
+
+/**
+ * Sketch-backed statistics returned in approximate analytics mode.
+ * Percentiles come from a t-digest and distinct counts from HyperLogLog,
+ * so they carry a small relative error (typically well under 1-2%).
+ *
+ * count and total are exact. Deleted expenses cannot be taken out of the sketches, so
+ * min/max, the percentiles and distinctParticipants may still include up to removedCount
+ * deleted expenses.
+ */
+public class ApproximateStats {
+
+    private long count;
+    private double total;
+    private long distinctParticipants;
+    private double minAmount;
+    private double maxAmount;
+    private double median;
+    private double p90;
+    private double p99;
+    private long removedCount;
+
+    // Getters and Setters
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+
+    public double getTotal() { return total; }
+    public void setTotal(double total) { this.total = total; }
+
+    public long getDistinctParticipants() { return distinctParticipants; }
+    public void setDistinctParticipants(long distinctParticipants) { this.distinctParticipants = distinctParticipants; }
+
+    public double getMinAmount() { return minAmount; }
+    public void setMinAmount(double minAmount) { this.minAmount = minAmount; }
+
+    public double getMaxAmount() { return maxAmount; }
+    public void setMaxAmount(double maxAmount) { this.maxAmount = maxAmount; }
+
+    public double getMedian() { return median; }
+    public void setMedian(double median) { this.median = median; }
+
+    public double getP90() { return p90; }
+    public void setP90(double p90) { this.p90 = p90; }
+
+    public double getP99() { return p99; }
+    public void setP99(double p99) { this.p99 = p99; }
+
+    public long getRemovedCount() { return removedCount; }
+    public void setRemovedCount(long removedCount) { this.removedCount = removedCount; }
+}
@@ -32,6 +32,9 @@ public class CategoryAnalytics {
         // Top expenses in this category
         private List<DashboardSummary.ExpenseSnapshot> topExpenses;
         
+        // Sketch-backed stats, only set when approx=true
+        private ApproximateStats approximate;
+        
         // Getters and Setters
         public String getCategory() { return category; }
         public void setCategory(String category) { this.category = category; }
@@ -71,6 +74,9 @@ public class CategoryAnalytics {
         
         public List<DashboardSummary.ExpenseSnapshot> getTopExpenses() { return topExpenses; }
         public void setTopExpenses(List<DashboardSummary.ExpenseSnapshot> topExpenses) { this.topExpenses = topExpenses; }
+        
+        public ApproximateStats getApproximate() { return approximate; }
+        public void setApproximate(ApproximateStats approximate) { this.approximate = approximate; }
     }
     
     public static class CategorySummary {
@@ -15,6 +15,7 @@ public class GroupAnalytics {
     private List<TrendData.TrendPoint> spendingTrend = new ArrayList<>();
     private List<DashboardSummary.CategoryBreakdown> categoryBreakdown = new ArrayList<>();
     private List<DashboardSummary.ExpenseSnapshot> recentExpenses = new ArrayList<>();
+    private ApproximateStats approximate;   // Only set when approx=true
     
     public static class GroupProfile {
         private String groupId;
@@ -152,5 +153,7 @@ public class GroupAnalytics {
     
     public List<DashboardSummary.ExpenseSnapshot> getRecentExpenses() { return recentExpenses; }
     public void setRecentExpenses(List<DashboardSummary.ExpenseSnapshot> recentExpenses) { this.recentExpenses = recentExpenses; }
+    
+    public ApproximateStats getApproximate() { return approximate; }
+    public void setApproximate(ApproximateStats approximate) { this.approximate = approximate; }
 }
-
@@ -10,7 +10,9 @@ import org.hibernate.annotations.GenericGenerator;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages",
+       indexes = @Index(name = "idx_chat_messages_thread_created",
+                        columnList = "thread_id, created_at, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,7 +29,7 @@ public class ChatMessageSql {
     @Column(length = 36)
     private String id;
 
-    @Column(length = 36, nullable = false)
+    @Column(name = "thread_id", length = 36, nullable = false)
     private String threadId;
 
     @Column(length = 36, nullable = false)
@@ -61,6 +63,7 @@ public class ChatMessageSql {
     private String replyToContent;
 
     @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    @Column(name = "created_at")
     private LocalDateTime createdAt;
 }
 
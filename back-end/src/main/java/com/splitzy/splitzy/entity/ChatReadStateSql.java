@@ -9,7 +9,9 @@ import org.hibernate.annotations.GenericGenerator;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_read_state")
+@Table(name = "chat_read_state",
+       indexes = @Index(name = "idx_chat_read_state_user_thread",
+                        columnList = "user_id, thread_id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,10 +23,10 @@ public class ChatReadStateSql {
     @Column(length = 36)
     private String id;
 
-    @Column(length = 36, nullable = false)
+    @Column(name = "thread_id", length = 36, nullable = false)
     private String threadId;
 
-    @Column(length = 36, nullable = false)
+    @Column(name = "user_id", length = 36, nullable = false)
     private String userId;
 
     private LocalDateTime lastReadAt;
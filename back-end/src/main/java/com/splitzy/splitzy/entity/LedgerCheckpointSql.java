@@ -0,0 +1,44 @@
+package com.splitzy.splitzy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running balance between a user and a counterparty up to and including ledger entry lastEntryId.
+ * As-of queries start from the latest checkpoint before the requested time.
+ */
+@Entity
+@Table(name = "ledger_checkpoints",
+       indexes = @Index(name = "idx_ledger_checkpoints_user_counterparty",
+                        columnList = "user_id, counterparty_id, last_entry_id"))
+@Data
+@NoArgsConstructor
+public class LedgerCheckpointSql {
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId;
+
+    @Column(name = "counterparty_id", length = 36, nullable = false)
+    private String counterpartyId;
+
+    @Column(name = "last_entry_id", nullable = false)
+    private Long lastEntryId;
+
+    // occurredAt of the last covered entry
+    @Column(nullable = false)
+    private LocalDateTime asOf;
+
+    private double balance;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,44 @@
+package com.splitzy.splitzy.entity;
+
+import com.splitzy.splitzy.model.LedgerEntryType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One append-only balance movement between a user and a counterparty.
+ * Amounts are deltas from the user's point of view (negative when the user now owes more).
+ * Rows are never updated; the id is a sequence so entries have a total order.
+ */
+@Entity
+@Table(name = "ledger_entries",
+       indexes = @Index(name = "idx_ledger_entries_user_counterparty",
+                        columnList = "user_id, counterparty_id, id"))
+@Data
+@NoArgsConstructor
+public class LedgerEntrySql {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId;
+
+    @Column(name = "counterparty_id", length = 36, nullable = false)
+    private String counterpartyId;
+
+    @Column(length = 36)
+    private String expenseId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private LedgerEntryType type;
+
+    private double amount;
+
+    @Column(nullable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,55 @@
+package com.splitzy.splitzy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDateTime;
+
+/**
+ * A rendered monthly statement waiting for (or done with) delivery.
+ */
+@Entity
+@Table(name = "monthly_statements",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_monthly_statements_user_period",
+           columnNames = {"user_id", "period"}))
+@Data
+@NoArgsConstructor
+public class MonthlyStatementSql {
+
+    public enum Status {
+        QUEUED,
+        SENT,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId;
+
+    // yyyy-MM
+    @Column(name = "period", length = 7, nullable = false)
+    private String period;
+
+    private String email;
+
+    private double spending;
+    private double income;
+    private int expenseCount;
+
+    @Column(columnDefinition = "TEXT")
+    private String html;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Status status = Status.QUEUED;
+
+    private LocalDateTime createdAt;
+}
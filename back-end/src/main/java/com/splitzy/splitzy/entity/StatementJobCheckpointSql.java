@@ -0,0 +1,35 @@
+package com.splitzy.splitzy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the statement job for one period, so an interrupted run resumes after the
+ * last fully processed chunk instead of starting over.
+ */
+@Entity
+@Table(name = "statement_job_checkpoints")
+@Data
+@NoArgsConstructor
+public class StatementJobCheckpointSql {
+
+    // yyyy-MM
+    @Id
+    @Column(length = 7)
+    private String period;
+
+    // Users are processed in id order; everything up to this id is done
+    @Column(length = 36)
+    private String lastUserId;
+
+    private long processedUsers;
+    private long queuedStatements;
+
+    private boolean completed;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+}
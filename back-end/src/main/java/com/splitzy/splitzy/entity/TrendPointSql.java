@@ -0,0 +1,60 @@
+package com.splitzy.splitzy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persisted spending trend for one user, granularity and period.
+ * Rows are marked dirty when an expense in the period changes and recomputed lazily on read.
+ */
+@Entity
+@Table(name = "trend_points",
+       uniqueConstraints = @UniqueConstraint(
+           name = "uk_trend_points_user_granularity_period",
+           columnNames = {"user_id", "granularity", "period_key"}))
+@Data
+@NoArgsConstructor
+public class TrendPointSql {
+
+    @Id
+    @GeneratedValue(generator = "uuid2")
+    @GenericGenerator(name = "uuid2", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId;
+
+    @Column(name = "granularity", length = 16, nullable = false)
+    private String granularity;
+
+    @Column(name = "period_key", length = 16, nullable = false)
+    private String periodKey;
+
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+
+    private double spending;
+    private double income;
+    private int expenseCount;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "trend_point_categories", joinColumns = @JoinColumn(name = "trend_point_id"))
+    @MapKeyColumn(name = "category")
+    @Column(name = "amount")
+    private Map<String, Double> categoryAmounts = new HashMap<>();
+
+    private boolean dirty;
+
+    @Version
+    private long version;
+
+    private LocalDateTime updatedAt;
+}
@@ -5,7 +5,10 @@ import jakarta.persistence.ElementCollection;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import com.splitzy.splitzy.util.TokenHashes;
 import org.hibernate.annotations.GenericGenerator;
 
 import java.util.HashSet;
@@ -16,7 +19,8 @@ import java.util.Set;
  * Uses String UUID ids to keep service/controller signatures unchanged.
  */
 @Entity
-@Table(name = "users")
+@Table(name = "users",
+       indexes = @Index(name = "uk_users_verification_token_hash", columnList = "verification_token_hash", unique = true))
 public class UserSql {
 
     @Id
@@ -29,7 +33,16 @@ public class UserSql {
     @Column(unique = true, nullable = false)
     private String email;
     private String password;
+
+    // Only held in memory to derive the hash; the raw token is never persisted
+    // (VerificationTokenHashBackfill hashes and clears rows written before this)
+    @Transient
     private String verificationToken;
+
+    // SHA-256 of verificationToken, kept in sync by its setter; token lookups go through this index
+    @Column(name = "verification_token_hash", length = 64)
+    private String verificationTokenHash;
+
     private boolean verified;
     private String avatarUrl;
 
@@ -77,6 +90,18 @@ public class UserSql {
 
     public void setVerificationToken(String verificationToken) {
         this.verificationToken = verificationToken;
+        this.verificationTokenHash = verificationToken != null ? TokenHashes.sha256(verificationToken) : null;
+    }
+
+    public String getVerificationTokenHash() {
+        return verificationTokenHash;
+    }
+
+    /**
+     * Carry a stored hash over to an entity rebuilt without its raw token.
+     */
+    public void setVerificationTokenHash(String verificationTokenHash) {
+        this.verificationTokenHash = verificationTokenHash;
     }
 
     public boolean isVerified() {
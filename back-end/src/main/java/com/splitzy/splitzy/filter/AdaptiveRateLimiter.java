@@ -0,0 +1,208 @@
+package com.splitzy.splitzy.filter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load-aware capacities for expensive rate limit policies.
+ *
+ * Every interval the server load is sampled from three signals, each relative to its threshold:
+ * p99 latency of rate-limited requests, database connection pool saturation (Hikari or the
+ * Mongo driver pool, whichever is present) and scheduling lag of a probe thread, which rises
+ * with GC pauses and CPU starvation. The worst of them drives an {@link AimdController}, whose
+ * factor scales the capacity of the controlled policies: halved (by default) under overload,
+ * restored step by step once every signal is comfortably below its threshold.
+ *
+ * Off unless ratelimit.adaptive.enabled=true.
+ */
+@Component
+public class AdaptiveRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+
+    private static final long PROBE_PERIOD_MS = 100;
+
+    @Value("${ratelimit.adaptive.enabled:false}")
+    private boolean enabled;
+
+    // Policy names; a trailing * matches a name prefix
+    @Value("${ratelimit.adaptive.policies:analytics*,search,expense-list}")
+    private List<String> controlledPolicies;
+
+    @Value("${ratelimit.adaptive.interval-ms:5000}")
+    private long intervalMs;
+
+    @Value("${ratelimit.adaptive.p99-threshold-ms:1500}")
+    private double p99ThresholdMs;
+
+    @Value("${ratelimit.adaptive.pool-usage-threshold:0.9}")
+    private double poolUsageThreshold;
+
+    @Value("${ratelimit.adaptive.pool-pending-threshold:2}")
+    private double poolPendingThreshold;
+
+    @Value("${ratelimit.adaptive.lag-threshold-ms:200}")
+    private double lagThresholdMs;
+
+    // Healthy once every signal is below this fraction of its threshold
+    @Value("${ratelimit.adaptive.recover-ratio:0.6}")
+    private double recoverRatio;
+
+    @Value("${ratelimit.adaptive.decrease:0.5}")
+    private double decrease;
+
+    @Value("${ratelimit.adaptive.increase:0.1}")
+    private double increase;
+
+    @Value("${ratelimit.adaptive.min-factor:0.2}")
+    private double minFactor;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    private AimdController controller;
+    private Timer latency;
+    private ScheduledExecutorService lagProbe;
+
+    public AdaptiveRateLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        controller = new AimdController(decrease, increase, minFactor);
+        latency = Timer.builder("ratelimit.adaptive.latency")
+            .description("Latency of rate-limited requests, input of the adaptive limiter")
+            .publishPercentiles(0.99)
+            .distributionStatisticExpiry(Duration.ofMillis(intervalMs))
+            .distributionStatisticBufferLength(2)
+            .register(meterRegistry);
+        Gauge.builder("ratelimit.adaptive.factor", controller, AimdController::factor)
+            .description("Current capacity factor of the adaptive rate limit policies")
+            .register(meterRegistry);
+        if (enabled) {
+            startLagProbe();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (lagProbe != null) {
+            lagProbe.shutdownNow();
+        }
+    }
+
+    public double factor() {
+        return controller.factor();
+    }
+
+    /**
+     * The policy with its capacity scaled to the current load, or the policy itself when it is
+     * not controlled or the server is healthy.
+     */
+    RateLimitFilter.Policy adjust(RateLimitFilter.Policy policy) {
+        if (!enabled || controller.factor() >= 1.0 || !controls(policy.name())) {
+            return policy;
+        }
+        int capacity = controller.scale(policy.capacity());
+        return new RateLimitFilter.Policy(policy.prefix(), capacity, policy.window(), policy.name(),
+            Math.min(policy.lease(), capacity));
+    }
+
+    void recordLatency(long nanos) {
+        if (enabled) {
+            latency.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.adaptive.interval-ms:5000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        double latencyLoad = p99Ms() / p99ThresholdMs;
+        double poolLoad = poolLoad();
+        double lagLoad = maxLagNanos.getAndSet(0) / 1_000_000.0 / lagThresholdMs;
+        double load = Math.max(latencyLoad, Math.max(poolLoad, lagLoad));
+
+        double before = controller.factor();
+        double after = controller.update(AimdController.classify(load, recoverRatio));
+        if (after != before) {
+            logger.info("Adaptive rate limit factor {} -> {} (latency {}, pool {}, lag {} of threshold)",
+                String.format("%.2f", before), String.format("%.2f", after),
+                String.format("%.2f", latencyLoad), String.format("%.2f", poolLoad), String.format("%.2f", lagLoad));
+        }
+    }
+
+    // ===========================================
+    // SIGNALS
+    // ===========================================
+
+    private double p99Ms() {
+        for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+            if (value.percentile() == 0.99) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Worst of pool usage and waiting threads relative to their thresholds; 0 when no pool metrics exist.
+     */
+    private double poolLoad() {
+        double active = sum("hikaricp.connections.active") + sum("mongodb.driver.pool.checkedout");
+        double max = sum("hikaricp.connections.max") + sum("mongodb.driver.pool.size");
+        double pending = sum("hikaricp.connections.pending") + sum("mongodb.driver.pool.waitqueuesize");
+        double usage = max > 0 ? active / max : 0;
+        return Math.max(usage / poolUsageThreshold, pending / poolPendingThreshold);
+    }
+
+    private double sum(String gauge) {
+        return meterRegistry.find(gauge).gauges().stream()
+            .mapToDouble(Gauge::value)
+            .filter(v -> !Double.isNaN(v))
+            .sum();
+    }
+
+    private void startLagProbe() {
+        lagProbe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ratelimit-lag-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicLong expected = new AtomicLong(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROBE_PERIOD_MS));
+        lagProbe.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            long lag = Math.max(0, now - expected.get());
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+            expected.set(now + TimeUnit.MILLISECONDS.toNanos(PROBE_PERIOD_MS));
+        }, PROBE_PERIOD_MS, PROBE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean controls(String policyName) {
+        for (String pattern : controlledPolicies) {
+            String p = pattern.trim();
+            if (p.endsWith("*") ? policyName.startsWith(p.substring(0, p.length() - 1)) : policyName.equals(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,63 @@
+package com.splitzy.splitzy.filter;
+
+/**
+ * Additive-increase / multiplicative-decrease controller for a capacity factor in [minFactor, 1].
+ *
+ * Each tick reports the server load: when overloaded the factor is multiplied by decrease,
+ * when healthy it grows by increase, and in between it holds, so the limit does not oscillate
+ * around a single threshold.
+ */
+final class AimdController {
+
+    enum Load { OVERLOADED, NORMAL, HEALTHY }
+
+    private final double decrease;
+    private final double increase;
+    private final double minFactor;
+
+    private volatile double factor = 1.0;
+
+    AimdController(double decrease, double increase, double minFactor) {
+        if (decrease <= 0 || decrease >= 1 || increase <= 0 || minFactor <= 0 || minFactor > 1) {
+            throw new IllegalArgumentException("Invalid AIMD parameters: decrease=" + decrease
+                + " increase=" + increase + " minFactor=" + minFactor);
+        }
+        this.decrease = decrease;
+        this.increase = increase;
+        this.minFactor = minFactor;
+    }
+
+    /**
+     * Load from the worst signal relative to its threshold (1.0 = at threshold): overloaded at or
+     * above 1, healthy at or below recoverRatio.
+     */
+    static Load classify(double load, double recoverRatio) {
+        if (load >= 1.0) return Load.OVERLOADED;
+        if (load <= recoverRatio) return Load.HEALTHY;
+        return Load.NORMAL;
+    }
+
+    double factor() {
+        return factor;
+    }
+
+    /**
+     * Apply one tick and return the new factor.
+     */
+    double update(Load load) {
+        double next = switch (load) {
+            case OVERLOADED -> Math.max(minFactor, factor * decrease);
+            case HEALTHY -> Math.min(1.0, factor + increase);
+            case NORMAL -> factor;
+        };
+        factor = next;
+        return next;
+    }
+
+    /**
+     * Capacity scaled by the current factor, never below one request per window.
+     */
+    int scale(int capacity) {
+        return Math.max(1, (int) Math.floor(capacity * factor));
+    }
+}
@@ -1,6 +1,11 @@
 package com.splitzy.splitzy.filter;
 
+import com.splitzy.splitzy.security.AuthenticatedUser;
+import com.splitzy.splitzy.security.PrincipalCache;
+import com.splitzy.splitzy.service.dao.UserDao;
+import com.splitzy.splitzy.service.dao.UserDto;
 import com.splitzy.splitzy.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.io.IOException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -8,10 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -27,7 +29,10 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private UserDao userDao;
+
+    @Autowired
+    private PrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain chain)
@@ -35,19 +40,16 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         String authHeader = request.getHeader("Authorization");
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
                 String jwt = authHeader.substring(7);
-                String username = jwtUtil.extractUsername(jwt);
-
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                    if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                        UsernamePasswordAuthenticationToken authentication =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                        SecurityContextHolder.getContext().setAuthentication(authentication);
-                    }
+                AuthenticatedUser user = principalCache.get(jwt);
+                if (user == null) {
+                    user = resolve(jwt);
+                }
+                if (user != null) {
+                    SecurityContextHolder.getContext().setAuthentication(new AuthenticatedUser.Token(user));
                 }
             } catch (Exception e) {
                 logger.warn("JWT authentication failed: {}", e.getMessage());
@@ -56,4 +58,23 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         }
         chain.doFilter(request, response);
     }
+
+    /**
+     * Verify the token and look its subject up; the result is cached until the token expires.
+     */
+    private AuthenticatedUser resolve(String jwt) {
+        Claims claims = jwtUtil.parseClaims(jwt);
+        String email = claims.getSubject();
+        if (email == null || claims.getExpiration() == null) {
+            return null;
+        }
+        UserDto dto = userDao.findByEmail(email).orElse(null);
+        if (dto == null) {
+            logger.warn("JWT subject {} does not match any user", email);
+            return null;
+        }
+        AuthenticatedUser user = new AuthenticatedUser(dto.getId(), dto.getEmail());
+        principalCache.put(jwt, user, claims.getExpiration().getTime());
+        return user;
+    }
 }
@@ -0,0 +1,43 @@
+package com.splitzy.splitzy.filter;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/ratelimit: totals, local lease statistics and per-policy counters of the rate limiter,
+ * for sizing limits against real traffic. The same numbers are exported as ratelimit.* meters.
+ */
+@Component
+@Endpoint(id = "ratelimit")
+public class RateLimitEndpoint {
+
+    private final RateLimitFilter rateLimitFilter;
+    private final AdaptiveRateLimiter adaptiveRateLimiter;
+
+    public RateLimitEndpoint(RateLimitFilter rateLimitFilter, AdaptiveRateLimiter adaptiveRateLimiter) {
+        this.rateLimitFilter = rateLimitFilter;
+        this.adaptiveRateLimiter = adaptiveRateLimiter;
+    }
+
+    @ReadOperation
+    public Map<String, Object> rateLimits() {
+        RateLimitFilter.RateLimitMetrics metrics = rateLimitFilter.getMetrics();
+        Map<String, Object> leases = new LinkedHashMap<>();
+        leases.put("localChecks", metrics.localChecks());
+        leases.put("redisChecks", metrics.redisChecks());
+        leases.put("leasedTokens", metrics.leasedTokens());
+        leases.put("expiredLeaseTokens", metrics.expiredLeaseTokens());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("totalRequests", metrics.totalRequests());
+        result.put("rateLimitedRequests", metrics.rateLimitedRequests());
+        result.put("leases", leases);
+        result.put("adaptiveFactor", adaptiveRateLimiter.factor());
+        result.put("policies", rateLimitFilter.getPolicyStats());
+        return result;
+    }
+}
@@ -1,33 +1,53 @@
 package com.splitzy.splitzy.filter;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Production-ready Redis-backed adaptive rate limiter.
  * 
  * Features:
- * - Per-path policies with regex matching
+ * - Per-path policies matched by a prefix trie, optionally loaded from a hot-reloaded file
  * - Per-user and per-IP rate limiting
- * - Graceful degradation when Redis is unavailable
- * - Request metrics collection for monitoring
+ * - Token buckets checked atomically by a Lua script (one Redis round trip per request)
+ * - Local token leases for high-volume policies, so most requests never reach Redis
+ * - Load-aware capacities for expensive policies (see AdaptiveRateLimiter)
+ * - Graceful degradation when Redis is unavailable (circuit breaker, node-local buckets)
+ * - Per-policy Micrometer metrics (ratelimit.*) and the /actuator/ratelimit endpoint
  * - Retry-After header support
  */
 @Component
@@ -36,67 +56,170 @@ public class RateLimitFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
     
     // Skip rate limiting for health checks and static resources
-    private static final Set<String> SKIP_PATHS = Set.of(
+    private static final List<String> SKIP_PATHS = List.of(
         "/actuator/health", "/actuator/info", "/favicon.ico", "/static/"
     );
 
-    private final List<Policy> policies = new ArrayList<>();
+    // Sent as EVALSHA; Spring falls back to EVAL when the script is not cached on the server
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET =
+        RedisScript.of(new ClassPathResource("redis/token_bucket.lua"), List.class);
+
     private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveRateLimiter adaptive;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    // Optional JSON policy file replacing the built-in policies; re-read when it changes
+    @Value("${ratelimit.policies-file:}")
+    private String policiesFile;
+
+    @Value("${ratelimit.policy-cache.size:10000}")
+    private long policyCacheSize;
+
+    private volatile RateLimitPolicyMatcher matcher;
+    private volatile long policiesFileModified;
+
+    @Value("${ratelimit.local-lease.enabled:true}")
+    private boolean localLeasesEnabled;
+
+    // Upper bound on how long leased tokens stay usable on this node
+    @Value("${ratelimit.local-lease.ttl-ms:1000}")
+    private long leaseTtlMs;
+
+    // Tokens reserved from the Redis bucket, by bucket key
+    private final Cache<String, Lease> leases = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterAccess(Duration.ofMinutes(5))
+        .build();
+
+    // Buckets enforced on this node while Redis is unavailable, by bucket key
+    private final Cache<String, LocalBucket> fallbackBuckets = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterAccess(Duration.ofMinutes(10))
+        .build();
     
     // Metrics for monitoring
     private final AtomicLong totalRequests = new AtomicLong(0);
     private final AtomicLong rateLimitedRequests = new AtomicLong(0);
     private final ConcurrentHashMap<String, AtomicLong> pathMetrics = new ConcurrentHashMap<>();
+    private final LongAdder localChecks = new LongAdder();
+    private final LongAdder redisChecks = new LongAdder();
+    private final LongAdder leasedTokens = new LongAdder();
+    private final LongAdder expiredLeaseTokens = new LongAdder();
+    private final ConcurrentHashMap<String, PolicyMeters> policyMeters = new ConcurrentHashMap<>();
 
-    public RateLimitFilter(StringRedisTemplate redis) {
+    public RateLimitFilter(StringRedisTemplate redis, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           AdaptiveRateLimiter adaptive, RedisCircuitBreaker circuitBreaker) {
         this.redis = redis;
-        initializePolicies();
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.adaptive = adaptive;
+        this.circuitBreaker = circuitBreaker;
+        FunctionCounter.builder("ratelimit.checks", localChecks, LongAdder::sum)
+            .description("Rate limit checks answered from a local lease")
+            .tag("source", "local")
+            .register(meterRegistry);
+        FunctionCounter.builder("ratelimit.checks", redisChecks, LongAdder::sum)
+            .description("Rate limit checks sent to Redis")
+            .tag("source", "redis")
+            .register(meterRegistry);
+        FunctionCounter.builder("ratelimit.lease.tokens", leasedTokens, LongAdder::sum)
+            .description("Tokens reserved from Redis into local leases")
+            .tag("state", "leased")
+            .register(meterRegistry);
+        FunctionCounter.builder("ratelimit.lease.tokens", expiredLeaseTokens, LongAdder::sum)
+            .description("Leased tokens that expired unused")
+            .tag("state", "expired")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void initPolicies() {
+        matcher = new RateLimitPolicyMatcher(SKIP_PATHS, defaultPolicies(), policyCacheSize);
+        reloadPolicies();
+    }
+
+    /**
+     * Re-read the policy file if it changed since the last load. An unreadable or invalid
+     * file is logged and the policies in force stay as they are.
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.policies-reload-ms:30000}",
+               initialDelayString = "${ratelimit.policies-reload-ms:30000}")
+    public void reloadPolicies() {
+        if (policiesFile == null || policiesFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(policiesFile);
+        try {
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == policiesFileModified) {
+                return;
+            }
+            List<PolicyDefinition> definitions = objectMapper.readValue(path.toFile(), new TypeReference<>() {});
+            List<Policy> loaded = definitions.stream().map(PolicyDefinition::toPolicy).toList();
+            matcher = new RateLimitPolicyMatcher(SKIP_PATHS, loaded, policyCacheSize);
+            policiesFileModified = modified;
+            logger.info("Loaded {} rate limit policies from {}", loaded.size(), path);
+        } catch (Exception e) {
+            logger.warn("Failed to load rate limit policies from {}: {}", path, e.getMessage());
+        }
     }
     
-    private void initializePolicies() {
+    /**
+     * Built-in policies, used unless ratelimit.policies-file points to a policy file.
+     * Prefixes are matched in order, first match wins; the last policy must be the catch-all.
+     */
+    static List<Policy> defaultPolicies() {
+        List<Policy> policies = new ArrayList<>();
+        // The optional last argument is the local lease size: how many tokens a node reserves from
+        // Redis at a time. Strict and expensive policies keep the default of 1 (every check hits Redis).
+
         // Auth endpoints: strict limits to prevent brute force attacks
-        policies.add(new Policy(Pattern.compile("^/auth/login"), 10, Duration.ofMinutes(1), "login"));
-        policies.add(new Policy(Pattern.compile("^/auth/signup"), 5, Duration.ofMinutes(5), "signup"));
-        policies.add(new Policy(Pattern.compile("^/auth/verify-email"), 10, Duration.ofMinutes(5), "verify"));
-        policies.add(new Policy(Pattern.compile("^/auth/forgot-password"), 5, Duration.ofMinutes(10), "forgot-pwd"));
-        policies.add(new Policy(Pattern.compile("^/auth/refresh"), 20, Duration.ofMinutes(1), "refresh"));
+        policies.add(new Policy("/auth/login", 10, Duration.ofMinutes(1), "login"));
+        policies.add(new Policy("/auth/signup", 5, Duration.ofMinutes(5), "signup"));
+        policies.add(new Policy("/auth/verify-email", 10, Duration.ofMinutes(5), "verify"));
+        policies.add(new Policy("/auth/forgot-password", 5, Duration.ofMinutes(10), "forgot-pwd"));
+        policies.add(new Policy("/auth/refresh", 20, Duration.ofMinutes(1), "refresh"));
         
         // Search endpoints: moderate limits
-        policies.add(new Policy(Pattern.compile("^/search/.*"), 40, Duration.ofMinutes(1), "search"));
+        policies.add(new Policy("/search/", 40, Duration.ofMinutes(1), "search"));
         
         // Core expense operations - balanced for UX
-        policies.add(new Policy(Pattern.compile("^/home/expenses/user-expenses"), 60, Duration.ofMinutes(1), "expense-list"));
-        policies.add(new Policy(Pattern.compile("^/expenses/create"), 30, Duration.ofMinutes(1), "expense-create"));
-        policies.add(new Policy(Pattern.compile("^/expenses/settle"), 30, Duration.ofMinutes(1), "expense-settle"));
-        policies.add(new Policy(Pattern.compile("^/expenses.*"), 50, Duration.ofMinutes(1), "expenses"));
+        policies.add(new Policy("/home/expenses/user-expenses", 60, Duration.ofMinutes(1), "expense-list"));
+        policies.add(new Policy("/expenses/create", 30, Duration.ofMinutes(1), "expense-create"));
+        policies.add(new Policy("/expenses/settle", 30, Duration.ofMinutes(1), "expense-settle"));
+        policies.add(new Policy("/expenses", 50, Duration.ofMinutes(1), "expenses", 5));
         
         // Friends/groups - moderate, cacheable on frontend
-        policies.add(new Policy(Pattern.compile("^/home/friends/request"), 20, Duration.ofMinutes(1), "friend-request"));
-        policies.add(new Policy(Pattern.compile("^/home/friends.*"), 40, Duration.ofMinutes(1), "friends"));
-        policies.add(new Policy(Pattern.compile("^/groups/create"), 10, Duration.ofMinutes(1), "group-create"));
-        policies.add(new Policy(Pattern.compile("^/groups.*"), 40, Duration.ofMinutes(1), "groups"));
+        policies.add(new Policy("/home/friends/request", 20, Duration.ofMinutes(1), "friend-request"));
+        policies.add(new Policy("/home/friends", 40, Duration.ofMinutes(1), "friends", 4));
+        policies.add(new Policy("/groups/create", 10, Duration.ofMinutes(1), "group-create"));
+        policies.add(new Policy("/groups", 40, Duration.ofMinutes(1), "groups", 4));
         
         // Chat endpoints: higher limits for real-time messaging
-        policies.add(new Policy(Pattern.compile("^/chat/messages.*"), 100, Duration.ofMinutes(1), "chat-messages"));
-        policies.add(new Policy(Pattern.compile("^/chat/threads.*"), 40, Duration.ofMinutes(1), "chat-threads"));
-        policies.add(new Policy(Pattern.compile("^/chat/read.*"), 100, Duration.ofMinutes(1), "chat-read"));
+        policies.add(new Policy("/chat/messages", 100, Duration.ofMinutes(1), "chat-messages", 10));
+        policies.add(new Policy("/chat/threads", 40, Duration.ofMinutes(1), "chat-threads"));
+        policies.add(new Policy("/chat/read", 100, Duration.ofMinutes(1), "chat-read", 10));
         
         // Notifications: higher for polling
-        policies.add(new Policy(Pattern.compile("^/notifications/unread-count"), 120, Duration.ofMinutes(1), "notif-count"));
-        policies.add(new Policy(Pattern.compile("^/notifications.*"), 60, Duration.ofMinutes(1), "notifications"));
+        policies.add(new Policy("/notifications/unread-count", 120, Duration.ofMinutes(1), "notif-count", 10));
+        policies.add(new Policy("/notifications", 60, Duration.ofMinutes(1), "notifications", 5));
         
         // Profile: low frequency
-        policies.add(new Policy(Pattern.compile("^/profile/update"), 10, Duration.ofMinutes(1), "profile-update"));
-        policies.add(new Policy(Pattern.compile("^/profile.*"), 30, Duration.ofMinutes(1), "profile"));
+        policies.add(new Policy("/profile/update", 10, Duration.ofMinutes(1), "profile-update"));
+        policies.add(new Policy("/profile", 30, Duration.ofMinutes(1), "profile", 3));
         
         // Analytics: computationally expensive, encourage frontend caching
-        policies.add(new Policy(Pattern.compile("^/analytics/summary.*"), 30, Duration.ofMinutes(1), "analytics-summary"));
-        policies.add(new Policy(Pattern.compile("^/analytics/trends.*"), 30, Duration.ofMinutes(1), "analytics-trends"));
-        policies.add(new Policy(Pattern.compile("^/analytics/balances.*"), 30, Duration.ofMinutes(1), "analytics-balances"));
-        policies.add(new Policy(Pattern.compile("^/analytics.*"), 50, Duration.ofMinutes(1), "analytics"));
+        policies.add(new Policy("/analytics/summary", 30, Duration.ofMinutes(1), "analytics-summary"));
+        policies.add(new Policy("/analytics/trends", 30, Duration.ofMinutes(1), "analytics-trends"));
+        policies.add(new Policy("/analytics/balances", 30, Duration.ofMinutes(1), "analytics-balances"));
+        policies.add(new Policy("/analytics", 50, Duration.ofMinutes(1), "analytics"));
         
         // Default fallback (must be last)
-        policies.add(new Policy(Pattern.compile(".*"), 100, Duration.ofMinutes(1), "default"));
+        policies.add(new Policy("", 100, Duration.ofMinutes(1), "default", 10));
+        return policies;
     }
 
     @Override
@@ -106,18 +229,20 @@ public class RateLimitFilter extends OncePerRequestFilter {
         String uri = request.getRequestURI();
         
         // Skip rate limiting for certain paths
-        if (shouldSkip(uri)) {
+        Policy policy = matcher.match(uri);
+        if (policy == null) {
             filterChain.doFilter(request, response);
             return;
         }
+        // Expensive policies shrink while the server is overloaded
+        policy = adaptive.adjust(policy);
         
         totalRequests.incrementAndGet();
 
         String clientIp = extractClientIp(request);
         String userKey = extractUserKey(request);
 
-        Policy policy = selectPolicy(uri);
-        String bucketKey = "rl:" + policy.name + "|" + userKey + "|" + clientIp;
+        String bucketKey = "rl:tb:" + policy.name + "|" + userKey + "|" + clientIp;
         
         // Track metrics
         pathMetrics.computeIfAbsent(policy.name, k -> new AtomicLong(0)).incrementAndGet();
@@ -126,9 +251,12 @@ public class RateLimitFilter extends OncePerRequestFilter {
         
         // Add rate limit headers for transparency
         response.setHeader("X-RateLimit-Limit", String.valueOf(policy.capacity));
-        response.setHeader("X-RateLimit-Remaining", String.valueOf(Math.max(0, policy.capacity - result.count)));
+        response.setHeader("X-RateLimit-Remaining", String.valueOf(result.remaining));
         response.setHeader("X-RateLimit-Reset", String.valueOf(result.resetTime));
         
+        PolicyMeters meters = meters(policy);
+        (result.allowed ? meters.allowed : meters.limited).increment();
+
         if (!result.allowed) {
             rateLimitedRequests.incrementAndGet();
             response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
@@ -138,59 +266,225 @@ public class RateLimitFilter extends OncePerRequestFilter {
                 "{\"error\":\"Rate limit exceeded\",\"retryAfter\":%d,\"message\":\"Please wait %d seconds before retrying.\"}",
                 result.retryAfter, result.retryAfter
             ));
-            logger.warn("Rate limit exceeded: policy={} user={} ip={} count={}", 
-                policy.name, userKey, clientIp, result.count);
+            logger.warn("Rate limit exceeded: policy={} user={} ip={} remaining={}",
+                policy.name, userKey, clientIp, result.remaining);
             return;
         }
 
-        filterChain.doFilter(request, response);
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            adaptive.recordLatency(System.nanoTime() - start);
+        }
     }
     
-    private boolean shouldSkip(String uri) {
-        return SKIP_PATHS.stream().anyMatch(uri::startsWith);
+    private RateLimitResult checkRateLimit(String key, Policy policy) {
+        if (localLeasesEnabled && policy.lease > 1) {
+            return checkWithLease(key, policy);
+        }
+        Reservation reservation = reserve(key, policy, 1, false);
+        return new RateLimitResult(reservation.granted > 0, reservation.remaining,
+            reservation.resetTime(), reservation.retryAfter());
     }
 
-    private RateLimitResult checkRateLimit(String key, Policy policy) {
-        try {
-            Long count = redis.opsForValue().increment(key);
-            if (count == null) {
-                // Redis unavailable, fail open
-                return new RateLimitResult(true, 0, 0, 0);
+    /**
+     * Serve the request from this node's lease for the bucket, reserving a new chunk of up to
+     * policy.lease tokens from Redis when it is used up or expired. A denial is remembered until
+     * its retry time, so rejected clients do not reach Redis either.
+     *
+     * Leases trade accuracy for Redis load: tokens leased by one node cannot be used by another,
+     * and tokens left when a lease expires are lost (counted in expiredLeaseTokens), so a client
+     * can be limited slightly before it has used its full capacity, never after.
+     */
+    private RateLimitResult checkWithLease(String key, Policy policy) {
+        Lease lease = leases.get(key, k -> new Lease());
+        RateLimitResult local = lease.tryTake(System.currentTimeMillis());
+        if (local != null) {
+            localChecks.increment();
+            return local;
+        }
+        synchronized (lease) {
+            // Another thread may have renewed the lease while this one waited
+            long now = System.currentTimeMillis();
+            local = lease.tryTake(now);
+            if (local != null) {
+                localChecks.increment();
+                return local;
             }
-            
-            // Set TTL on first hit
-            if (count == 1) {
-                redis.expire(key, policy.window);
+            expiredLeaseTokens.add(lease.tokens.getAndSet(0));
+
+            Reservation reservation = reserve(key, policy, policy.lease, true);
+            if (reservation.granted == 0) {
+                lease.deny(now + reservation.retryMs, reservation.remaining, reservation.resetTime(), reservation.retryAfter());
+                return new RateLimitResult(false, reservation.remaining, reservation.resetTime(), reservation.retryAfter());
             }
-            
-            // Get TTL for reset time calculation
-            Long ttl = redis.getExpire(key);
-            if (ttl == null || ttl < 0) {
-                redis.expire(key, policy.window);
-                ttl = policy.window.getSeconds();
+            leasedTokens.add(reservation.granted);
+            // One token is for this request, the rest stay on this node
+            lease.renew(reservation.granted - 1, now + Math.min(leaseTtlMs, policy.window.toMillis()),
+                reservation.remaining, reservation.resetTime());
+            return new RateLimitResult(true, reservation.remaining + reservation.granted - 1, reservation.resetTime(), 0);
+        }
+    }
+
+    /**
+     * Take up to requested tokens from the Redis bucket (exactly requested unless partial). The
+     * bucket holds policy.capacity tokens and refills continuously over policy.window, so there
+     * is no burst at window boundaries. While Redis is failing or the circuit breaker is open,
+     * the same bucket is kept on this node instead.
+     */
+    private Reservation reserve(String key, Policy policy, int requested, boolean partial) {
+        PolicyMeters meters = meters(policy);
+        if (!circuitBreaker.allowRequest()) {
+            meters.failOpen.increment();
+            return reserveLocally(key, policy, requested, partial);
+        }
+        redisChecks.increment();
+        long start = System.nanoTime();
+        try {
+            List<?> reply = redis.execute(TOKEN_BUCKET, List.of(key),
+                String.valueOf(policy.capacity), String.valueOf(policy.window.toMillis()),
+                String.valueOf(requested), partial ? "1" : "0");
+            long elapsed = System.nanoTime() - start;
+            meters.redisCheck.record(elapsed, TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess(elapsed);
+            if (reply == null || reply.size() < 4) {
+                // Redis unavailable, limit locally
+                meters.failOpen.increment();
+                return reserveLocally(key, policy, requested, partial);
             }
-            
-            long resetTime = System.currentTimeMillis() / 1000 + ttl;
-            int retryAfter = (int) Math.min(ttl, 60); // Cap at 60 seconds
-            
-            boolean allowed = count <= policy.capacity;
-            return new RateLimitResult(allowed, count.intValue(), resetTime, retryAfter);
-            
+            return new Reservation(
+                ((Number) reply.get(0)).intValue(),
+                ((Number) reply.get(1)).intValue(),
+                ((Number) reply.get(2)).longValue(),
+                ((Number) reply.get(3)).longValue());
+
         } catch (Exception e) {
-            // Redis error - fail open (allow request) but log
+            // Redis error - limit locally but log
+            meters.redisCheck.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            circuitBreaker.onFailure();
+            meters.failOpen.increment();
             logger.error("Redis rate limit error for key={}: {}", key, e.getMessage());
-            return new RateLimitResult(true, 0, 0, 0);
+            return reserveLocally(key, policy, requested, partial);
         }
     }
-    
-    private record RateLimitResult(boolean allowed, int count, long resetTime, int retryAfter) {}
 
-    private Policy selectPolicy(String uri) {
-        return policies.stream()
-                .filter(p -> p.pattern.matcher(uri).find())
-                .findFirst()
-                .orElseGet(() -> policies.get(policies.size() - 1));
+    private Reservation reserveLocally(String key, Policy policy, int requested, boolean partial) {
+        return fallbackBuckets.get(key, k -> new LocalBucket(policy.capacity))
+            .reserve(policy, requested, partial, System.currentTimeMillis());
+    }
+
+    /**
+     * Node-local copy of the token bucket script, used while Redis cannot be reached. Each node
+     * enforces the full capacity on its own, so the cluster-wide limit is looser during an outage.
+     */
+    private static final class LocalBucket {
+        private double tokens;
+        private long ts;
+
+        LocalBucket(int capacity) {
+            this.tokens = capacity;
+            this.ts = System.currentTimeMillis();
+        }
+
+        synchronized Reservation reserve(Policy policy, int requested, boolean partial, long now) {
+            double rate = (double) policy.capacity / policy.window.toMillis();
+            if (now > ts) {
+                tokens = Math.min(policy.capacity, tokens + (now - ts) * rate);
+                ts = now;
+            }
+            int granted = 0;
+            if (tokens >= requested) {
+                granted = requested;
+            } else if (partial && tokens >= 1) {
+                granted = (int) Math.floor(tokens);
+            }
+            tokens -= granted;
+            long retryMs = granted == 0 ? (long) Math.ceil(((partial ? 1 : requested) - tokens) / rate) : 0;
+            return new Reservation(granted, (int) Math.floor(tokens),
+                (long) Math.ceil((policy.capacity - tokens) / rate), retryMs);
+        }
+    }
+
+    private PolicyMeters meters(Policy policy) {
+        return policyMeters.computeIfAbsent(policy.name, name -> new PolicyMeters(
+            Counter.builder("ratelimit.requests")
+                .description("Requests checked against a rate limit policy")
+                .tags("policy", name, "outcome", "allowed")
+                .register(meterRegistry),
+            Counter.builder("ratelimit.requests")
+                .description("Requests checked against a rate limit policy")
+                .tags("policy", name, "outcome", "limited")
+                .register(meterRegistry),
+            Counter.builder("ratelimit.fail_open")
+                .description("Checks answered by the local fallback bucket because Redis could not be used")
+                .tag("policy", name)
+                .register(meterRegistry),
+            Timer.builder("ratelimit.redis.check")
+                .description("Latency of the Redis token bucket script")
+                .tag("policy", name)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)));
+    }
+
+    private record PolicyMeters(Counter allowed, Counter limited, Counter failOpen, Timer redisCheck) {}
+
+    private record Reservation(int granted, int remaining, long resetMs, long retryMs) {
+        long resetTime() {
+            return (System.currentTimeMillis() + resetMs + 999) / 1000;
+        }
+
+        int retryAfter() {
+            return (int) Math.min((retryMs + 999) / 1000, 60); // Cap at 60 seconds
+        }
+    }
+
+    /**
+     * Tokens this node reserved from one Redis bucket. Taking a token is a lock-free CAS;
+     * only renewing the lease is serialized (per bucket).
+     */
+    private static final class Lease {
+        private final AtomicLong tokens = new AtomicLong();
+        private volatile long expiresAt;
+        private volatile long deniedUntil;
+        // Bucket state as of the last Redis reply, for the response headers
+        private volatile int redisRemaining;
+        private volatile long resetTime;
+        private volatile int retryAfter;
+
+        RateLimitResult tryTake(long now) {
+            if (now < deniedUntil) {
+                return new RateLimitResult(false, 0, resetTime, retryAfter);
+            }
+            if (now >= expiresAt) {
+                return null;
+            }
+            long before = tokens.getAndUpdate(t -> t > 0 ? t - 1 : t);
+            if (before <= 0) {
+                return null;
+            }
+            return new RateLimitResult(true, (int) (redisRemaining + before - 1), resetTime, 0);
+        }
+
+        void renew(long granted, long expiresAt, int redisRemaining, long resetTime) {
+            this.redisRemaining = redisRemaining;
+            this.resetTime = resetTime;
+            this.deniedUntil = 0;
+            this.expiresAt = expiresAt;
+            tokens.set(granted);
+        }
+
+        void deny(long until, int redisRemaining, long resetTime, int retryAfter) {
+            this.redisRemaining = redisRemaining;
+            this.resetTime = resetTime;
+            this.retryAfter = retryAfter;
+            this.expiresAt = 0;
+            this.deniedUntil = until;
+        }
     }
+    
+    private record RateLimitResult(boolean allowed, int remaining, long resetTime, int retryAfter) {}
 
     private String extractClientIp(HttpServletRequest request) {
         String xfwd = request.getHeader("X-Forwarded-For");
@@ -209,7 +503,26 @@ public class RateLimitFilter extends OncePerRequestFilter {
         return "anon";
     }
 
-    private record Policy(Pattern pattern, int capacity, Duration window, String name) {}
+    record Policy(String prefix, int capacity, Duration window, String name, int lease) {
+        Policy(String prefix, int capacity, Duration window, String name) {
+            this(prefix, capacity, window, name, 1);
+        }
+    }
+
+    /**
+     * One entry of the policy file, e.g.
+     * {"prefix": "/auth/login", "capacity": 10, "windowSeconds": 60, "name": "login", "lease": 1}.
+     * The file is a JSON array of these in match order, ending with a catch-all ("prefix": "").
+     */
+    record PolicyDefinition(String prefix, int capacity, long windowSeconds, String name, Integer lease) {
+        Policy toPolicy() {
+            if (prefix == null || name == null || capacity <= 0 || windowSeconds <= 0) {
+                throw new IllegalArgumentException("Invalid rate limit policy: " + this);
+            }
+            return new Policy(prefix, capacity, Duration.ofSeconds(windowSeconds), name,
+                lease != null ? Math.max(1, lease) : 1);
+        }
+    }
     
     /**
      * Get rate limit metrics for monitoring
@@ -218,14 +531,58 @@ public class RateLimitFilter extends OncePerRequestFilter {
         return new RateLimitMetrics(
             totalRequests.get(),
             rateLimitedRequests.get(),
-            new ConcurrentHashMap<>(pathMetrics)
+            new ConcurrentHashMap<>(pathMetrics),
+            localChecks.sum(),
+            redisChecks.sum(),
+            leasedTokens.sum(),
+            expiredLeaseTokens.sum()
         );
     }
     
+    /**
+     * Configuration and counters of every policy in force, in match order, for /actuator/ratelimit.
+     */
+    public List<PolicyStats> getPolicyStats() {
+        return matcher.policies().stream().map(policy -> {
+            PolicyMeters meters = policyMeters.get(policy.name);
+            if (meters == null) {
+                return new PolicyStats(policy.name, policy.prefix, policy.capacity, policy.window.getSeconds(),
+                    policy.lease, 0, 0, 0, 0, 0);
+            }
+            double p50 = 0;
+            double p99 = 0;
+            for (ValueAtPercentile value : meters.redisCheck.takeSnapshot().percentileValues()) {
+                if (value.percentile() == 0.5) p50 = value.value(TimeUnit.MILLISECONDS);
+                if (value.percentile() == 0.99) p99 = value.value(TimeUnit.MILLISECONDS);
+            }
+            return new PolicyStats(policy.name, policy.prefix, policy.capacity, policy.window.getSeconds(), policy.lease,
+                (long) meters.allowed.count(), (long) meters.limited.count(), (long) meters.failOpen.count(), p50, p99);
+        }).toList();
+    }
+
+    public record PolicyStats(
+        String name,
+        String prefix,
+        int capacity,
+        long windowSeconds,
+        int lease,
+        long allowed,
+        long limited,
+        long failOpen,
+        double redisP50Ms,
+        double redisP99Ms
+    ) {}
+
     public record RateLimitMetrics(
         long totalRequests,
         long rateLimitedRequests,
-        ConcurrentHashMap<String, AtomicLong> pathMetrics
+        ConcurrentHashMap<String, AtomicLong> pathMetrics,
+        // Checks answered from a local lease vs. sent to Redis
+        long localChecks,
+        long redisChecks,
+        // Tokens reserved from Redis, and those that expired unused (admission lost to leasing)
+        long leasedTokens,
+        long expiredLeaseTokens
     ) {}
 }
 
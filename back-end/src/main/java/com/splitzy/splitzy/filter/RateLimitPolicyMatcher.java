@@ -0,0 +1,81 @@
+package com.splitzy.splitzy.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable path-prefix trie resolving a request URI to its rate limit policy.
+ *
+ * Policies keep their first-match-wins order: each trie node remembers the earliest policy
+ * whose prefix ends there, and a lookup walks the URI once, keeping the earliest policy seen
+ * along the way. Skip prefixes rank before every policy. Resolutions are memoized in a bounded
+ * cache, so a hot URI costs one hash lookup. A reload builds a new matcher and swaps it in.
+ */
+final class RateLimitPolicyMatcher {
+
+    private static final int SKIP = -1;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final List<RateLimitFilter.Policy> policies;
+    private final Node root = new Node();
+    // Empty = skip rate limiting
+    private final Cache<String, Optional<RateLimitFilter.Policy>> resolved;
+
+    RateLimitPolicyMatcher(List<String> skipPrefixes, List<RateLimitFilter.Policy> policies, long cacheSize) {
+        if (policies.isEmpty() || !policies.get(policies.size() - 1).prefix().isEmpty()) {
+            throw new IllegalArgumentException("The last rate limit policy must be a catch-all with an empty prefix");
+        }
+        this.policies = List.copyOf(policies);
+        for (String prefix : skipPrefixes) {
+            insert(prefix, SKIP);
+        }
+        for (int i = 0; i < this.policies.size(); i++) {
+            insert(this.policies.get(i).prefix(), i);
+        }
+        this.resolved = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .build();
+    }
+
+    List<RateLimitFilter.Policy> policies() {
+        return policies;
+    }
+
+    /**
+     * The policy for the URI, or null when it is not rate limited.
+     */
+    RateLimitFilter.Policy match(String uri) {
+        return resolved.get(uri, this::resolve).orElse(null);
+    }
+
+    private Optional<RateLimitFilter.Policy> resolve(String uri) {
+        Node node = root;
+        int best = node.policy;
+        for (int i = 0; i < uri.length() && best != SKIP; i++) {
+            node = node.children.get(uri.charAt(i));
+            if (node == null) {
+                break;
+            }
+            best = Math.min(best, node.policy);
+        }
+        return best == SKIP ? Optional.empty() : Optional.of(policies.get(best));
+    }
+
+    private void insert(String prefix, int policy) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        node.policy = Math.min(node.policy, policy);
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private int policy = NONE;
+    }
+}
@@ -0,0 +1,8 @@
+package com.splitzy.splitzy.model;
+
+public enum LedgerEntryType {
+    EXPENSE_CREATED,
+    SETTLED_PARTIAL,
+    SETTLED_FULL,
+    EXPENSE_DELETED
+}
@@ -7,6 +7,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
@@ -34,6 +35,10 @@ public interface ExpenseRepository extends MongoRepository<Expense, String> {
     @Query("{ 'groupId': ?0 }")
     List<Expense> findAllByGroupId(String groupId, Sort sort);
 
+    // 5b) Group expenses with date range
+    @Query("{ 'groupId': ?0, 'date': { $gte: ?1, $lte: ?2 } }")
+    List<Expense> findAllByGroupIdAndDateRange(String groupId, LocalDate startDate, LocalDate endDate, Sort sort);
+
     // 6) Only where both the current user and friend are involved
     @Query("{ $and: [ { $or: [ {'creatorId': ?0}, {'payers.userId': ?0}, {'participants.userId': ?0} ] }, { $or: [ {'creatorId': ?1}, {'payers.userId': ?1}, {'participants.userId': ?1} ] } ] }")
     List<Expense> findAllByBothUserInvolvement(String userId, String friendId, Sort sort);
@@ -2,6 +2,7 @@ package com.splitzy.splitzy.repository;
 
 import org.springframework.context.annotation.Profile;
 import com.splitzy.splitzy.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -28,4 +29,12 @@ public interface UserRepository extends MongoRepository<User, String> {
     @Query("{ '_id': { $in: ?0 }, $or: [ { 'name': { $regex: ?1, $options: 'i' } }, { 'email': { $regex: ?1, $options: 'i' } } ] }")
     List<User> findFriendsByRegex(Set<String> friendIds, String regex);
 
+    // Name or email partial match, one page
+    @Query("{ $or: [ { 'name': { $regex: ?0, $options: 'i' } }, { 'email': { $regex: ?0, $options: 'i' } } ] }")
+    List<User> searchByNameOrEmail(String regex, Pageable pageable);
+
+    // Every user with only id, name and email loaded
+    @Query(value = "{}", fields = "{ 'name': 1, 'email': 1 }")
+    List<User> findAllSummaries();
+
 }
@@ -4,13 +4,61 @@ import com.splitzy.splitzy.entity.ChatMessageSql;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 @Profile("postgres")
 public interface ChatMessageSqlRepository extends JpaRepository<ChatMessageSql, String> {
-    List<ChatMessageSql> findByThreadIdOrderByCreatedAtDesc(String threadId, Pageable pageable);
+    // Seek pagination over idx_chat_messages_thread_created: (createdAt, id) is a total order
+    // within a thread, so pages neither skip nor repeat messages while new ones arrive.
+
+    List<ChatMessageSql> findByThreadIdOrderByCreatedAtDescIdDesc(String threadId, Pageable pageable);
+
+    /**
+     * Messages older than the cursor (createdAt, id), newest first
+     */
+    @Query("SELECT m FROM ChatMessageSql m WHERE m.threadId = :threadId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatMessageSql> findBefore(
+        @Param("threadId") String threadId,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable);
+
+    /**
+     * Messages newer than the cursor (createdAt, id), oldest first
+     */
+    @Query("SELECT m FROM ChatMessageSql m WHERE m.threadId = :threadId " +
+           "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+           "ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatMessageSql> findAfter(
+        @Param("threadId") String threadId,
+        @Param("createdAt") LocalDateTime createdAt,
+        @Param("id") String id,
+        Pageable pageable);
+
+    /**
+     * Unread messages per thread for the user: those after the user's last read, or all of them
+     * if the user never read the thread. Threads without unread messages are absent.
+     */
+    @Query("SELECT m.threadId AS threadId, COUNT(m) AS unread FROM ChatMessageSql m " +
+           "LEFT JOIN ChatReadStateSql r ON r.threadId = m.threadId AND r.userId = :userId " +
+           "WHERE m.threadId IN :threadIds AND (r.lastReadAt IS NULL OR m.createdAt > r.lastReadAt) " +
+           "GROUP BY m.threadId")
+    List<ThreadUnreadCount> countUnreadByThread(
+        @Param("userId") String userId,
+        @Param("threadIds") Collection<String> threadIds);
+
+    interface ThreadUnreadCount {
+        String getThreadId();
+        Long getUnread();
+    }
 }
 
@@ -4,15 +4,34 @@ import com.splitzy.splitzy.entity.ChatThreadSql;
 import com.splitzy.splitzy.model.ChatType;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 @Profile("postgres")
 public interface ChatThreadSqlRepository extends JpaRepository<ChatThreadSql, String> {
     List<ChatThreadSql> findByParticipantIdsContaining(String userId);
+
+    /**
+     * The user's threads with their participants fetched in the same query
+     */
+    @Query("SELECT DISTINCT t FROM ChatThreadSql t LEFT JOIN FETCH t.participantIds " +
+           "WHERE :userId MEMBER OF t.participantIds")
+    List<ChatThreadSql> findWithParticipantsByParticipantId(@Param("userId") String userId);
     List<ChatThreadSql> findByTypeAndParticipantIdsContaining(ChatType type, String userId);
     List<ChatThreadSql> findByGroupId(String groupId);
+
+    /**
+     * Move the thread's lastMessageAt forward without loading it; never moves it back
+     */
+    @Modifying
+    @Query("UPDATE ChatThreadSql t SET t.lastMessageAt = :at " +
+           "WHERE t.id = :threadId AND (t.lastMessageAt IS NULL OR t.lastMessageAt < :at)")
+    int touchLastMessageAt(@Param("threadId") String threadId, @Param("at") LocalDateTime at);
 }
 
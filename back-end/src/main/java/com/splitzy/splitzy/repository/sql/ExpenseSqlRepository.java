@@ -8,11 +8,30 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Profile("postgres")
 public interface ExpenseSqlRepository extends JpaRepository<ExpenseSql, String> {
 
+    /**
+     * Expenses the user is involved in (creator, payer or participant) dated between startDate
+     * and endDate, optionally within one group, with the user's summed share and payment.
+     * Shared by the native analytics aggregations below.
+     */
+    String INVOLVED_EXPENSES =
+        "SELECT e.id, e.date, e.category, e.total_amount, " +
+        "COALESCE((SELECT SUM(pt.share) FROM expense_participants pt " +
+        "WHERE pt.expense_id = e.id AND pt.user_id = :userId), 0) AS share, " +
+        "COALESCE((SELECT SUM(p.paid_amount) FROM expense_payers p " +
+        "WHERE p.expense_id = e.id AND p.user_id = :userId), 0) AS paid " +
+        "FROM expenses e " +
+        "WHERE e.date BETWEEN :startDate AND :endDate " +
+        "AND (CAST(:groupId AS VARCHAR) IS NULL OR e.group_id = :groupId) " +
+        "AND (e.creator_id = :userId " +
+        "OR EXISTS (SELECT 1 FROM expense_payers p WHERE p.expense_id = e.id AND p.user_id = :userId) " +
+        "OR EXISTS (SELECT 1 FROM expense_participants pt WHERE pt.expense_id = e.id AND pt.user_id = :userId))";
+
     /**
      * ALL: user is creator, payer, or participant
      */
@@ -146,5 +165,129 @@ public interface ExpenseSqlRepository extends JpaRepository<ExpenseSql, String>
            "WHERE e.creatorId = :userId OR p.userId = :userId OR pt.userId = :userId " +
            "ORDER BY e.date DESC, e.createdAt DESC")
     List<ExpenseSql> findRecentByUserInvolvement(@Param("userId") String userId);
-}
 
+    /**
+     * User's share, positive net (paid minus share) and expense count per month and category,
+     * over the expenses the user is involved in, optionally within one group
+     */
+    @Query(value = "SELECT CAST(EXTRACT(YEAR FROM i.date) AS INTEGER) AS \"periodYear\", " +
+                   "CAST(EXTRACT(MONTH FROM i.date) AS INTEGER) AS \"periodMonth\", i.category AS \"category\", " +
+                   "SUM(i.share) AS \"spending\", SUM(GREATEST(i.paid - i.share, 0)) AS \"income\", " +
+                   "COUNT(*) AS \"expenseCount\" " +
+                   "FROM (" + INVOLVED_EXPENSES + ") i " +
+                   "GROUP BY 1, 2, 3",
+           nativeQuery = true)
+    List<MonthlyCategorySpending> sumSharesByMonthAndCategory(
+        @Param("userId") String userId,
+        @Param("groupId") String groupId,
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate);
+
+    /**
+     * User's share statistics per category over the expenses the user is involved in
+     * (a share of 0 where they only created or paid), optionally within one group
+     */
+    @Query(value = "SELECT i.category AS \"category\", SUM(i.share) AS \"total\", COUNT(*) AS \"expenseCount\", " +
+                   "AVG(i.share) AS \"average\", MIN(i.share) AS \"minShare\", MAX(i.share) AS \"maxShare\" " +
+                   "FROM (" + INVOLVED_EXPENSES + ") i " +
+                   "GROUP BY i.category",
+           nativeQuery = true)
+    List<CategoryShareTotals> sumSharesByCategory(
+        @Param("userId") String userId,
+        @Param("groupId") String groupId,
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate);
+
+    /**
+     * Ids of the largest expenses per category the user is involved in, at most perCategory each
+     */
+    @Query(value = "SELECT ranked.id FROM (" +
+                   "SELECT i.id, ROW_NUMBER() OVER (PARTITION BY i.category ORDER BY i.total_amount DESC) AS rn " +
+                   "FROM (" + INVOLVED_EXPENSES + ") i " +
+                   "WHERE i.category IS NOT NULL AND i.category <> '') ranked " +
+                   "WHERE ranked.rn <= :perCategory",
+           nativeQuery = true)
+    List<String> findTopExpenseIdsPerCategory(
+        @Param("userId") String userId,
+        @Param("groupId") String groupId,
+        @Param("startDate") LocalDate startDate,
+        @Param("endDate") LocalDate endDate,
+        @Param("perCategory") int perCategory);
+
+    /**
+     * Total amount, count and latest creation time of a group's expenses
+     */
+    @Query("SELECT COALESCE(SUM(e.totalAmount), 0) AS amount, COUNT(e) AS expenseCount, MAX(e.createdAt) AS lastActivity " +
+           "FROM ExpenseSql e WHERE e.groupId = :groupId")
+    GroupSummary summarizeGroup(@Param("groupId") String groupId);
+
+    /**
+     * Amount paid per member across a group's expenses
+     */
+    @Query("SELECT p.userId AS name, SUM(p.paidAmount) AS amount, COUNT(e) AS expenseCount " +
+           "FROM ExpenseSql e JOIN e.payers p WHERE e.groupId = :groupId GROUP BY p.userId")
+    List<GroupBreakdown> sumPaidByMember(@Param("groupId") String groupId);
+
+    /**
+     * Share owed per member across a group's expenses
+     */
+    @Query("SELECT pt.userId AS name, SUM(pt.share) AS amount, COUNT(e) AS expenseCount " +
+           "FROM ExpenseSql e JOIN e.participants pt WHERE e.groupId = :groupId GROUP BY pt.userId")
+    List<GroupBreakdown> sumSharesByMember(@Param("groupId") String groupId);
+
+    /**
+     * Expenses created per member in a group
+     */
+    @Query("SELECT e.creatorId AS name, SUM(e.totalAmount) AS amount, COUNT(e) AS expenseCount " +
+           "FROM ExpenseSql e WHERE e.groupId = :groupId AND e.creatorId IS NOT NULL GROUP BY e.creatorId")
+    List<GroupBreakdown> countCreatedByMember(@Param("groupId") String groupId);
+
+    /**
+     * Total amount and count per category in a group
+     */
+    @Query("SELECT e.category AS name, SUM(e.totalAmount) AS amount, COUNT(e) AS expenseCount " +
+           "FROM ExpenseSql e WHERE e.groupId = :groupId AND e.category IS NOT NULL GROUP BY e.category")
+    List<GroupBreakdown> sumByCategoryForGroup(@Param("groupId") String groupId);
+
+    /**
+     * Projection for sumSharesByMonthAndCategory
+     */
+    interface MonthlyCategorySpending {
+        Integer getPeriodYear();
+        Integer getPeriodMonth();
+        String getCategory();
+        Double getSpending();
+        Double getIncome();
+        Long getExpenseCount();
+    }
+
+    /**
+     * Projection for sumSharesByCategory
+     */
+    interface CategoryShareTotals {
+        String getCategory();
+        Double getTotal();
+        Long getExpenseCount();
+        Double getAverage();
+        Double getMinShare();
+        Double getMaxShare();
+    }
+
+    /**
+     * Projection for summarizeGroup
+     */
+    interface GroupSummary {
+        Double getAmount();
+        Long getExpenseCount();
+        LocalDateTime getLastActivity();
+    }
+
+    /**
+     * Projection for the per-member and per-category group sums
+     */
+    interface GroupBreakdown {
+        String getName();
+        Double getAmount();
+        Long getExpenseCount();
+    }
+}
@@ -0,0 +1,30 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.LedgerCheckpointSql;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@Profile("postgres")
+public interface LedgerCheckpointSqlRepository extends JpaRepository<LedgerCheckpointSql, String> {
+
+    LedgerCheckpointSql findTopByUserIdAndCounterpartyIdOrderByLastEntryIdDesc(String userId, String counterpartyId);
+
+    LedgerCheckpointSql findTopByUserIdAndCounterpartyIdAndAsOfLessThanEqualOrderByLastEntryIdDesc(
+        String userId, String counterpartyId, LocalDateTime asOf);
+
+    /**
+     * For each counterparty, the user's latest checkpoint taken at or before asOf
+     */
+    @Query("SELECT c FROM LedgerCheckpointSql c WHERE c.userId = :userId AND c.asOf <= :asOf " +
+           "AND c.lastEntryId = (SELECT MAX(c2.lastEntryId) FROM LedgerCheckpointSql c2 " +
+           "WHERE c2.userId = c.userId AND c2.counterpartyId = c.counterpartyId AND c2.asOf <= :asOf)")
+    List<LedgerCheckpointSql> findLatestPerCounterparty(@Param("userId") String userId,
+                                                        @Param("asOf") LocalDateTime asOf);
+}
@@ -0,0 +1,84 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.LedgerEntrySql;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@Profile("postgres")
+public interface LedgerEntrySqlRepository extends JpaRepository<LedgerEntrySql, Long> {
+
+    /**
+     * Sum of a pair's entries after a given entry id, up to a point in time
+     */
+    @Query("SELECT COALESCE(SUM(l.amount), 0) FROM LedgerEntrySql l " +
+           "WHERE l.userId = :userId AND l.counterpartyId = :counterpartyId " +
+           "AND l.id > :afterId AND l.occurredAt <= :asOf")
+    double sumAfter(@Param("userId") String userId,
+                    @Param("counterpartyId") String counterpartyId,
+                    @Param("afterId") long afterId,
+                    @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * Sum of a pair's entries with afterId < id <= upToId
+     */
+    @Query("SELECT COALESCE(SUM(l.amount), 0) FROM LedgerEntrySql l " +
+           "WHERE l.userId = :userId AND l.counterpartyId = :counterpartyId " +
+           "AND l.id > :afterId AND l.id <= :upToId")
+    double sumBetween(@Param("userId") String userId,
+                      @Param("counterpartyId") String counterpartyId,
+                      @Param("afterId") long afterId,
+                      @Param("upToId") long upToId);
+
+    /**
+     * Per counterparty, the sum of the user's entries after that pair's latest checkpoint
+     * taken at or before asOf (all entries when there is none), up to asOf
+     */
+    @Query("SELECT l.counterpartyId AS counterpartyId, SUM(l.amount) AS amount FROM LedgerEntrySql l " +
+           "WHERE l.userId = :userId AND l.occurredAt <= :asOf " +
+           "AND l.id > COALESCE((SELECT MAX(c.lastEntryId) FROM LedgerCheckpointSql c " +
+           "WHERE c.userId = l.userId AND c.counterpartyId = l.counterpartyId AND c.asOf <= :asOf), 0) " +
+           "GROUP BY l.counterpartyId")
+    List<CounterpartyAmount> sumSinceCheckpoints(@Param("userId") String userId,
+                                                 @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * Pairs with at least minEntries entries recorded at or before upTo past their latest checkpoint,
+     * with the last such entry id and time
+     */
+    @Query("SELECT l.userId AS userId, l.counterpartyId AS counterpartyId, " +
+           "MAX(l.id) AS lastEntryId, MAX(l.occurredAt) AS lastOccurredAt FROM LedgerEntrySql l " +
+           "WHERE l.occurredAt <= :upTo " +
+           "AND l.id > COALESCE((SELECT MAX(c.lastEntryId) FROM LedgerCheckpointSql c " +
+           "WHERE c.userId = l.userId AND c.counterpartyId = l.counterpartyId), 0) " +
+           "GROUP BY l.userId, l.counterpartyId " +
+           "HAVING COUNT(l) >= :minEntries")
+    List<DuePair> findPairsDueForCheckpoint(@Param("upTo") LocalDateTime upTo,
+                                            @Param("minEntries") long minEntries,
+                                            Pageable pageable);
+
+    /**
+     * Projection for findPairsDueForCheckpoint
+     */
+    interface DuePair {
+        String getUserId();
+        String getCounterpartyId();
+        Long getLastEntryId();
+        LocalDateTime getLastOccurredAt();
+    }
+
+    /**
+     * Projection for sumSinceCheckpoints
+     */
+    interface CounterpartyAmount {
+        String getCounterpartyId();
+        Double getAmount();
+    }
+}
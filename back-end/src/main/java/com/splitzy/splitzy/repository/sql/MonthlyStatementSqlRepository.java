@@ -0,0 +1,25 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.MonthlyStatementSql;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Profile("postgres")
+public interface MonthlyStatementSqlRepository extends JpaRepository<MonthlyStatementSql, String> {
+
+    /**
+     * Users among the given ids that already have a statement for the period
+     */
+    @Query("SELECT s.userId FROM MonthlyStatementSql s WHERE s.period = :period AND s.userId IN :userIds")
+    List<String> findUserIdsWithStatement(@Param("period") String period,
+                                          @Param("userIds") Collection<String> userIds);
+
+    List<MonthlyStatementSql> findByPeriodAndStatus(String period, MonthlyStatementSql.Status status);
+}
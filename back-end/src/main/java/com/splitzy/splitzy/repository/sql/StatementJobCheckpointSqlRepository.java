@@ -0,0 +1,11 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.StatementJobCheckpointSql;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@Profile("postgres")
+public interface StatementJobCheckpointSqlRepository extends JpaRepository<StatementJobCheckpointSql, String> {
+}
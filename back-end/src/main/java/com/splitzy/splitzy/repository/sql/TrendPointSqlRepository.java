@@ -0,0 +1,39 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.TrendPointSql;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+@Profile("postgres")
+public interface TrendPointSqlRepository extends JpaRepository<TrendPointSql, String> {
+
+    List<TrendPointSql> findByUserIdAndGranularityAndPeriodStartBetween(
+        String userId, String granularity, LocalDate from, LocalDate to);
+
+    /**
+     * Mark the user's period as stale, inserting an empty dirty row when the period was never stored.
+     * Bumps the version so a concurrent recompute of the same row fails instead of clearing the flag,
+     * and the inserted row makes a concurrent first save of the period fail on the unique key.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO trend_points (id, user_id, granularity, period_key, period_start, period_end, " +
+                   "spending, income, expense_count, dirty, version, updated_at) " +
+                   "VALUES (:id, :userId, :granularity, :periodKey, :periodStart, :periodEnd, 0, 0, 0, true, 0, now()) " +
+                   "ON CONFLICT (user_id, granularity, period_key) " +
+                   "DO UPDATE SET dirty = true, version = trend_points.version + 1",
+           nativeQuery = true)
+    int upsertDirty(@Param("id") String id,
+                    @Param("userId") String userId,
+                    @Param("granularity") String granularity,
+                    @Param("periodKey") String periodKey,
+                    @Param("periodStart") LocalDate periodStart,
+                    @Param("periodEnd") LocalDate periodEnd);
+}
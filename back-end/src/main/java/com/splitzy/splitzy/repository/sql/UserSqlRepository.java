@@ -1,14 +1,79 @@
 package com.splitzy.splitzy.repository.sql;
 
 import com.splitzy.splitzy.entity.UserSql;
+import com.splitzy.splitzy.util.TokenHashes;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 @Profile("postgres")
 public interface UserSqlRepository extends JpaRepository<UserSql, String> {
     Optional<UserSql> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // Token lookups: tokens are stored with a SHA-256 hash column under a unique index and
+    // looked up by hashing the presented token, never by scanning or comparing raw values.
+    // Further token types (e.g. password reset) follow the same hashed-column + default-method pattern.
+
+    Optional<UserSql> findByVerificationTokenHash(String verificationTokenHash);
+
+    default Optional<UserSql> findByVerificationToken(String verificationToken) {
+        if (verificationToken == null) {
+            return Optional.empty();
+        }
+        return findByVerificationTokenHash(TokenHashes.sha256(verificationToken));
+    }
+
+    @Query("SELECT u.verificationTokenHash FROM UserSql u WHERE u.id = :id")
+    Optional<String> findVerificationTokenHashById(@Param("id") String id);
+
+    /**
+     * Users whose name or email matches the ILIKE pattern. Backed by the pg_trgm indexes.
+     */
+    @Query(value = "SELECT * FROM users u WHERE u.name ILIKE :pattern ESCAPE '\\' OR u.email ILIKE :pattern ESCAPE '\\'",
+           nativeQuery = true)
+    List<UserSql> findByNameOrEmailLike(@Param("pattern") String pattern);
+
+    /**
+     * Users whose name or email contains the term, ranked exact match, prefix match, then
+     * shorter names first. contains/prefix are ILIKE patterns built from the escaped term.
+     */
+    @Query(value = "SELECT * FROM users u " +
+                   "WHERE u.name ILIKE :contains ESCAPE '\\' OR u.email ILIKE :contains ESCAPE '\\' " +
+                   "ORDER BY CASE WHEN lower(u.name) = lower(:term) OR lower(u.email) = lower(:term) THEN 0 " +
+                   "WHEN u.name ILIKE :prefix ESCAPE '\\' OR u.email ILIKE :prefix ESCAPE '\\' THEN 1 ELSE 2 END, " +
+                   "length(u.name), u.name, u.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<UserSql> searchByNameOrEmail(@Param("term") String term,
+                                      @Param("contains") String contains,
+                                      @Param("prefix") String prefix,
+                                      @Param("limit") int limit);
+
+    /**
+     * Keyset page of user ids in id order, starting after the given id
+     */
+    @Query("SELECT u.id FROM UserSql u WHERE u.id > :afterId ORDER BY u.id")
+    List<String> findIdsAfter(@Param("afterId") String afterId, Pageable pageable);
+
+    /**
+     * Id, name and email of every user
+     */
+    @Query("SELECT u.id AS id, u.name AS name, u.email AS email FROM UserSql u")
+    List<Summary> findAllSummaries();
+
+    /**
+     * Projection for findAllSummaries
+     */
+    interface Summary {
+        String getId();
+        String getName();
+        String getEmail();
+    }
 }
 
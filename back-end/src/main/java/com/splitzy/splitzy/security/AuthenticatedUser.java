@@ -0,0 +1,51 @@
+package com.splitzy.splitzy.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.security.Principal;
+import java.util.Collections;
+
+/**
+ * Principal set by the JWT filter: the user's id and email, resolved once per token.
+ * getName() stays the email so code reading auth.getName() keeps working.
+ */
+public record AuthenticatedUser(String userId, String email) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    /**
+     * Id of the authenticated user, or null when the authentication was not created
+     * by the JWT filter (callers then resolve it from the email).
+     */
+    public static String idOf(Authentication auth) {
+        return auth != null && auth.getPrincipal() instanceof AuthenticatedUser user ? user.userId() : null;
+    }
+
+    /**
+     * Authenticated token carrying an AuthenticatedUser; no credentials are kept.
+     */
+    public static class Token extends AbstractAuthenticationToken {
+
+        private final AuthenticatedUser user;
+
+        public Token(AuthenticatedUser user) {
+            super(Collections.emptyList());
+            this.user = user;
+            setAuthenticated(true);
+        }
+
+        @Override
+        public Object getCredentials() {
+            return null;
+        }
+
+        @Override
+        public AuthenticatedUser getPrincipal() {
+            return user;
+        }
+    }
+}
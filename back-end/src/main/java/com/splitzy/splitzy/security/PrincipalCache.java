@@ -0,0 +1,108 @@
+package com.splitzy.splitzy.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.CachingUserDao;
+import com.splitzy.splitzy.util.TokenHashes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Resolved principals keyed by the SHA-256 of the bearer token, so a token seen before is
+ * authenticated without parsing it or looking the user up. The raw token is never stored.
+ *
+ * An entry lives until the token expires or for auth.principal-cache.ttl-seconds, whichever
+ * comes first, which bounds how long a deleted user or changed email keeps working.
+ * A user's entries are dropped on every instance whenever the user is written (the user
+ * invalidation channel), so an email change takes effect cluster-wide right away. The broadcast
+ * goes through the Redis circuit breaker; while it is open, other instances keep the tokens until
+ * their entries expire.
+ */
+@Component
+public class PrincipalCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalCache.class);
+
+    private final Cache<String, Entry> cache;
+    private final StringRedisTemplate redis;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public PrincipalCache(StringRedisTemplate redis,
+                          RedisMessageListenerContainer listenerContainer,
+                          RedisCircuitBreaker circuitBreaker,
+                          @Value("${auth.principal-cache.size:50000}") long size,
+                          @Value("${auth.principal-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.redis = redis;
+        this.circuitBreaker = circuitBreaker;
+        long maxTtlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        long untilExpiry = Duration.ofMillis(entry.expiresAtMillis() - System.currentTimeMillis()).toNanos();
+                        return Math.max(0, Math.min(maxTtlNanos, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(CachingUserDao.INVALIDATION_CHANNEL));
+    }
+
+    public AuthenticatedUser get(String token) {
+        Entry entry = cache.getIfPresent(TokenHashes.sha256(token));
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.user();
+    }
+
+    public void put(String token, AuthenticatedUser user, long expiresAtMillis) {
+        cache.put(TokenHashes.sha256(token), new Entry(user, expiresAtMillis));
+    }
+
+    /**
+     * Drop every cached token of a user, e.g. after an email change, here and on every other instance.
+     */
+    public void evictUser(String userId) {
+        evictLocal(userId);
+        Long receivers = circuitBreaker.execute(
+                () -> redis.convertAndSend(CachingUserDao.INVALIDATION_CHANNEL, userId), () -> null);
+        if (receivers == null) {
+            // Other instances drop the tokens when their entries expire
+            logger.warn("Failed to broadcast principal eviction for user {}", userId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evictLocal(String userId) {
+        cache.asMap().values().removeIf(entry -> entry.user().userId().equals(userId));
+    }
+
+    private record Entry(AuthenticatedUser user, long expiresAtMillis) {}
+}
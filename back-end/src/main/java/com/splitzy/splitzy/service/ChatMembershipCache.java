@@ -0,0 +1,135 @@
+package com.splitzy.splitzy.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.splitzy.splitzy.entity.ChatThreadSql;
+import com.splitzy.splitzy.repository.sql.ChatThreadSqlRepository;
+import com.splitzy.splitzy.service.dao.CachingUserDao;
+import com.splitzy.splitzy.service.dao.UserDao;
+import com.splitzy.splitzy.service.dao.UserDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Participants of chat threads with the names and emails needed to post and broadcast messages,
+ * so the message path does not reload the thread and every participant per message.
+ *
+ * Entries are dropped when a participant's user record changes (the user invalidation channel)
+ * and when a thread's membership changes (evict, broadcast to every instance). The broadcast goes
+ * through the Redis circuit breaker; while it is open, other instances catch up when their entry expires.
+ */
+@Service
+@Profile("postgres")
+public class ChatMembershipCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMembershipCache.class);
+
+    /** Channel carrying the id of every thread whose membership changed. */
+    public static final String INVALIDATION_CHANNEL = "chat:membership:invalidate";
+
+    public record Member(String id, String name, String email) {}
+
+    public record Membership(String threadId, Map<String, Member> members) {
+
+        public boolean contains(String userId) {
+            return members.containsKey(userId);
+        }
+
+        public String nameOf(String userId) {
+            Member member = members.get(userId);
+            return member != null && member.name() != null ? member.name() : "Unknown";
+        }
+
+        public Set<String> emails() {
+            Set<String> emails = new HashSet<>();
+            members.values().forEach(m -> {
+                if (m.email() != null) emails.add(m.email());
+            });
+            return emails;
+        }
+    }
+
+    private final ChatThreadSqlRepository threadRepo;
+    private final UserDao userDao;
+    private final StringRedisTemplate redis;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final Cache<String, Membership> memberships;
+
+    public ChatMembershipCache(ChatThreadSqlRepository threadRepo,
+                               UserDao userDao,
+                               StringRedisTemplate redis,
+                               RedisMessageListenerContainer listenerContainer,
+                               RedisCircuitBreaker circuitBreaker,
+                               @Value("${chat.membership-cache.size:10000}") long size,
+                               @Value("${chat.membership-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.threadRepo = threadRepo;
+        this.userDao = userDao;
+        this.redis = redis;
+        this.circuitBreaker = circuitBreaker;
+        this.memberships = Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+        listenerContainer.addMessageListener(this, new ChannelTopic(CachingUserDao.INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * Membership of the thread, loading the thread and its participants (one batch) on a miss.
+     * Empty when the thread does not exist.
+     */
+    public Optional<Membership> get(String threadId) {
+        return Optional.ofNullable(memberships.get(threadId, this::load));
+    }
+
+    /**
+     * The thread's participants changed: drop it here and on every other instance.
+     */
+    public void evict(String threadId) {
+        memberships.invalidate(threadId);
+        Long receivers = circuitBreaker.execute(() -> redis.convertAndSend(INVALIDATION_CHANNEL, threadId), () -> null);
+        if (receivers == null) {
+            // Other instances catch up when their entry expires
+            logger.warn("Failed to broadcast chat membership change for thread {}", threadId);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String id = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (INVALIDATION_CHANNEL.equals(channel)) {
+            memberships.invalidate(id);
+        } else {
+            // A user changed (name, email): forget the threads that embed them
+            memberships.asMap().values().removeIf(m -> m.contains(id));
+        }
+    }
+
+    private Membership load(String threadId) {
+        ChatThreadSql thread = threadRepo.findById(threadId).orElse(null);
+        if (thread == null) {
+            return null;
+        }
+        Map<String, Member> members = new HashMap<>();
+        for (String participantId : thread.getParticipantIds()) {
+            members.put(participantId, new Member(participantId, null, null));
+        }
+        for (UserDto user : userDao.findAllById(thread.getParticipantIds())) {
+            members.put(user.getId(), new Member(user.getId(), user.getName(), user.getEmail()));
+        }
+        return new Membership(threadId, Map.copyOf(members));
+    }
+}
@@ -10,10 +10,14 @@ import com.splitzy.splitzy.service.dao.*;
 import com.splitzy.splitzy.repository.sql.ChatMessageSqlRepository;
 import com.splitzy.splitzy.repository.sql.ChatReadStateSqlRepository;
 import com.splitzy.splitzy.repository.sql.ChatThreadSqlRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -23,6 +27,8 @@ import java.util.stream.Collectors;
 @Profile("postgres")
 public class ChatService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
+
     private final ChatThreadSqlRepository threadRepo;
     private final ChatMessageSqlRepository messageRepo;
     private final ChatReadStateSqlRepository readRepo;
@@ -32,6 +38,7 @@ public class ChatService {
     private final SocketIOServer socketIOServer;
     private final ObjectMapper objectMapper;
     private final SqsEventPublisher sqsEventPublisher;
+    private final ChatMembershipCache membershipCache;
 
     public ChatService(ChatThreadSqlRepository threadRepo,
                        ChatMessageSqlRepository messageRepo,
@@ -41,7 +48,8 @@ public class ChatService {
                        ExpenseDao expenseDao,
                        SocketIOServer socketIOServer,
                        ObjectMapper objectMapper,
-                       SqsEventPublisher sqsEventPublisher) {
+                       SqsEventPublisher sqsEventPublisher,
+                       ChatMembershipCache membershipCache) {
         this.threadRepo = threadRepo;
         this.messageRepo = messageRepo;
         this.readRepo = readRepo;
@@ -51,6 +59,7 @@ public class ChatService {
         this.socketIOServer = socketIOServer;
         this.objectMapper = objectMapper;
         this.sqsEventPublisher = sqsEventPublisher;
+        this.membershipCache = membershipCache;
     }
 
     // --- Threads ---
@@ -106,33 +115,22 @@ public class ChatService {
 
     @Transactional
     public ChatThreadSql createOrGetGroupThread(String userId, String groupId) {
-        System.out.println("[ChatService] createOrGetGroupThread called with userId=" + userId + ", groupId=" + groupId);
-        
+        logger.debug("createOrGetGroupThread userId={}, groupId={}", userId, groupId);
+
         // Verify group exists
         GroupDto group = groupDao.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found: " + groupId));
-        
-        System.out.println("[ChatService] Found group: " + group.getGroupName() + ", creatorId=" + group.getCreatorId());
-        
-        // Extract member IDs from the friends list
-        Set<String> members = new HashSet<>();
-        if (group.getFriends() != null) {
-            group.getFriends().forEach(m -> members.add(m.getId()));
-            System.out.println("[ChatService] Group has " + group.getFriends().size() + " friends/members");
-        }
-        // Always include creator
-        members.add(group.getCreatorId());
-        
-        System.out.println("[ChatService] Total members for chat: " + members.size() + ", checking if " + userId + " is a member");
-        
+        Set<String> members = groupMembers(group);
+        logger.debug("Group {} has {} members for chat", groupId, members.size());
+
         if (!members.contains(userId)) {
             throw new RuntimeException("Not a group member. User " + userId + " not in members: " + members);
         }
 
         List<ChatThreadSql> existing = threadRepo.findByGroupId(groupId);
         if (!existing.isEmpty()) {
-            System.out.println("[ChatService] Found existing thread: " + existing.get(0).getId());
-            return existing.get(0);
+            logger.debug("Found existing thread {} for group {}", existing.get(0).getId(), groupId);
+            return syncParticipants(existing.get(0), members);
         }
 
         ChatThreadSql thread = new ChatThreadSql();
@@ -141,7 +139,38 @@ public class ChatService {
         thread.setParticipantIds(members);
         thread.setLastMessageAt(LocalDateTime.now());
         ChatThreadSql saved = threadRepo.save(thread);
-        System.out.println("[ChatService] Created new group thread: " + saved.getId());
+        logger.debug("Created group thread {} for group {}", saved.getId(), groupId);
+        return saved;
+    }
+
+    /**
+     * Bring the group's chat thread, if it has one, in line with the group's members.
+     * Call after every write that changes who is in the group.
+     */
+    @Transactional
+    public void syncGroupThread(GroupDto group) {
+        Set<String> members = groupMembers(group);
+        threadRepo.findByGroupId(group.getId()).forEach(thread -> syncParticipants(thread, members));
+    }
+
+    // Creator plus the members listed in the group
+    private Set<String> groupMembers(GroupDto group) {
+        Set<String> members = new HashSet<>();
+        if (group.getFriends() != null) {
+            group.getFriends().forEach(m -> members.add(m.getId()));
+        }
+        members.add(group.getCreatorId());
+        return members;
+    }
+
+    // Members joined or left the group since the thread was last synced
+    private ChatThreadSql syncParticipants(ChatThreadSql thread, Set<String> members) {
+        if (members.equals(thread.getParticipantIds())) {
+            return thread;
+        }
+        thread.setParticipantIds(new HashSet<>(members));
+        ChatThreadSql saved = threadRepo.save(thread);
+        evictMembershipAfterCommit(saved.getId());
         return saved;
     }
 
@@ -149,6 +178,18 @@ public class ChatService {
         return threadRepo.findByParticipantIdsContaining(userId);
     }
 
+    /**
+     * Summaries of all the user's threads: one query for the threads with their participants
+     * and one aggregate for the unread counts, however many threads the user has.
+     */
+    public List<Map<String, Object>> getThreadSummaries(String userId) {
+        List<ChatThreadSql> threads = threadRepo.findWithParticipantsByParticipantId(userId);
+        Map<String, Integer> unread = unreadCounts(userId, threads);
+        return threads.stream()
+                .map(t -> toThreadSummary(t, unread.getOrDefault(t.getId(), 0)))
+                .collect(Collectors.toList());
+    }
+
     public Optional<ChatThreadSql> getThreadForUser(String threadId, String userId) {
         return threadRepo.findById(threadId)
                 .filter(t -> t.getParticipantIds().contains(userId));
@@ -162,15 +203,12 @@ public class ChatService {
 
     @Transactional
     public ChatMessageSql postMessage(String threadId, String senderId, String content, String replyToId) {
-        ChatThreadSql thread = threadRepo.findById(threadId).orElseThrow();
-        if (!thread.getParticipantIds().contains(senderId)) {
-            throw new RuntimeException("Not a participant");
-        }
+        ChatMembershipCache.Membership membership = requireMember(threadId, senderId);
 
         ChatMessageSql msg = new ChatMessageSql();
         msg.setThreadId(threadId);
         msg.setSenderId(senderId);
-        msg.setSenderName(userDao.findById(senderId).map(UserDto::getName).orElse("Unknown"));
+        msg.setSenderName(membership.nameOf(senderId));
         msg.setMessageType(ChatMessageSql.MessageType.TEXT);
         msg.setContent(content);
         msg.setCreatedAt(LocalDateTime.now());
@@ -192,20 +230,15 @@ public class ChatService {
         }
 
         ChatMessageSql saved = messageRepo.save(msg);
+        threadRepo.touchLastMessageAt(threadId, saved.getCreatedAt());
 
-        thread.setLastMessageAt(saved.getCreatedAt());
-        threadRepo.save(thread);
-
-        broadcastMessage(threadId, saved);
+        broadcastMessage(membership, saved);
         return saved;
     }
 
     @Transactional
     public ChatMessageSql shareExpense(String threadId, String senderId, String expenseId, String message) {
-        ChatThreadSql thread = threadRepo.findById(threadId).orElseThrow();
-        if (!thread.getParticipantIds().contains(senderId)) {
-            throw new RuntimeException("Not a participant");
-        }
+        ChatMembershipCache.Membership membership = requireMember(threadId, senderId);
 
         // Fetch expense and create snapshot
         ExpenseDto expense = expenseDao.findById(expenseId)
@@ -231,18 +264,16 @@ public class ChatService {
         ChatMessageSql msg = new ChatMessageSql();
         msg.setThreadId(threadId);
         msg.setSenderId(senderId);
-        msg.setSenderName(userDao.findById(senderId).map(UserDto::getName).orElse("Unknown"));
+        msg.setSenderName(membership.nameOf(senderId));
         msg.setMessageType(ChatMessageSql.MessageType.EXPENSE_SHARE);
         msg.setContent(message != null && !message.isEmpty() ? message : "Shared an expense");
         msg.setExpenseId(expenseId);
         msg.setExpenseSnapshot(expenseSnapshot);
         msg.setCreatedAt(LocalDateTime.now());
         ChatMessageSql saved = messageRepo.save(msg);
+        threadRepo.touchLastMessageAt(threadId, saved.getCreatedAt());
 
-        thread.setLastMessageAt(saved.getCreatedAt());
-        threadRepo.save(thread);
-
-        broadcastMessage(threadId, saved);
+        broadcastMessage(membership, saved);
         return saved;
     }
 
@@ -261,21 +292,45 @@ public class ChatService {
     }
 
     public List<ChatMessageSql> getMessages(String threadId, String userId, int page, int size) {
-        ChatThreadSql thread = threadRepo.findById(threadId).orElseThrow();
-        if (!thread.getParticipantIds().contains(userId)) {
-            throw new RuntimeException("Not a participant");
+        return getMessages(threadId, userId, page, size, null, null);
+    }
+
+    /**
+     * Messages of a thread, newest first. With before (or after) set to a message id, returns the
+     * size messages just older (or newer) than that message, seeking on (createdAt, id); otherwise
+     * the given offset page, kept for older clients.
+     */
+    public List<ChatMessageSql> getMessages(String threadId, String userId, int page, int size,
+                                            String before, String after) {
+        requireMember(threadId, userId);
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+        PageRequest limit = PageRequest.of(0, size);
+        if (before != null) {
+            ChatMessageSql cursor = cursorMessage(threadId, before);
+            return messageRepo.findBefore(threadId, cursor.getCreatedAt(), cursor.getId(), limit);
         }
-        PageRequest pr = PageRequest.of(page, size);
-        return messageRepo.findByThreadIdOrderByCreatedAtDesc(threadId, pr);
+        if (after != null) {
+            ChatMessageSql cursor = cursorMessage(threadId, after);
+            List<ChatMessageSql> newer = new ArrayList<>(
+                    messageRepo.findAfter(threadId, cursor.getCreatedAt(), cursor.getId(), limit));
+            Collections.reverse(newer);
+            return newer;
+        }
+        return messageRepo.findByThreadIdOrderByCreatedAtDescIdDesc(threadId, PageRequest.of(page, size));
+    }
+
+    private ChatMessageSql cursorMessage(String threadId, String messageId) {
+        return messageRepo.findById(messageId)
+                .filter(m -> threadId.equals(m.getThreadId()) && m.getCreatedAt() != null)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown cursor message: " + messageId));
     }
 
     // --- Read state ---
     @Transactional
     public void markRead(String threadId, String userId) {
-        ChatThreadSql thread = threadRepo.findById(threadId).orElseThrow();
-        if (!thread.getParticipantIds().contains(userId)) {
-            throw new RuntimeException("Not a participant");
-        }
+        requireMember(threadId, userId);
         ChatReadStateSql state = readRepo.findByThreadIdAndUserId(threadId, userId)
                 .orElseGet(ChatReadStateSql::new);
         state.setThreadId(threadId);
@@ -286,53 +341,75 @@ public class ChatService {
     }
 
     public Map<String, Object> toThreadSummary(ChatThreadSql t, String userId) {
+        return toThreadSummary(t, unreadCounts(userId, List.of(t)).getOrDefault(t.getId(), 0));
+    }
+
+    private Map<String, Object> toThreadSummary(ChatThreadSql t, int unread) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", t.getId());
         map.put("type", t.getType());
         map.put("groupId", t.getGroupId());
         map.put("participantIds", t.getParticipantIds());
         map.put("lastMessageAt", t.getLastMessageAt());
-        // unread: count messages after lastReadAt
-        LocalDateTime lastRead = readRepo.findByThreadIdAndUserId(t.getId(), userId)
-                .map(ChatReadStateSql::getLastReadAt).orElse(LocalDateTime.MIN);
-        int unread = (int) messageRepo.findByThreadIdOrderByCreatedAtDesc(t.getId(), PageRequest.of(0, 200))
-                .stream()
-                .filter(m -> m.getCreatedAt() != null && m.getCreatedAt().isAfter(lastRead))
-                .count();
         map.put("unread", unread);
         return map;
     }
 
+    // unread: messages after the user's lastReadAt, counted in the database
+    private Map<String, Integer> unreadCounts(String userId, Collection<ChatThreadSql> threads) {
+        if (threads.isEmpty()) {
+            return Map.of();
+        }
+        List<String> threadIds = threads.stream().map(ChatThreadSql::getId).toList();
+        return messageRepo.countUnreadByThread(userId, threadIds).stream()
+                .collect(Collectors.toMap(ChatMessageSqlRepository.ThreadUnreadCount::getThreadId,
+                        c -> c.getUnread().intValue()));
+    }
+
+    // Membership from the cache; the thread is only loaded on a miss
+    private ChatMembershipCache.Membership requireMember(String threadId, String userId) {
+        ChatMembershipCache.Membership membership = membershipCache.get(threadId).orElseThrow();
+        if (!membership.contains(userId)) {
+            throw new RuntimeException("Not a participant");
+        }
+        return membership;
+    }
+
+    // Evict once the new participants are committed, so no instance reloads the old ones
+    private void evictMembershipAfterCommit(String threadId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            membershipCache.evict(threadId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                membershipCache.evict(threadId);
+            }
+        });
+    }
+
     // --- Broadcasting helpers ---
-    private void broadcastMessage(String threadId, ChatMessageSql msg) {
+    private void broadcastMessage(ChatMembershipCache.Membership membership, ChatMessageSql msg) {
+        String threadId = membership.threadId();
         if (socketIOServer == null) {
-            System.out.println("[ChatService] socketIOServer is null, cannot broadcast!");
+            logger.warn("socketIOServer is null, cannot broadcast message {} to thread {}", msg.getId(), threadId);
             return;
         }
         
-        System.out.println("[ChatService] Broadcasting message to thread:" + threadId);
-        System.out.println("[ChatService] Message: id=" + msg.getId() + ", content=" + msg.getContent());
+        logger.debug("Broadcasting message {} to thread {}", msg.getId(), threadId);
         
         // Send to thread room (for users who have the chat window open) - instant delivery
-        int clientsInRoom = socketIOServer.getRoomOperations("thread:" + threadId).getClients().size();
-        System.out.println("[ChatService] Clients in thread room 'thread:" + threadId + "': " + clientsInRoom);
         socketIOServer.getRoomOperations("thread:" + threadId).sendEvent("chat:new_message", msg);
         
         // Send to ALL participants' email rooms (for notification badges and multi-device sync)
         // Previously excluded sender, but this broke multi-device scenarios where sender's 
         // other devices wouldn't get updates. Frontend should filter out self-notifications.
-        Set<String> targetEmails = new HashSet<>();
-        threadRepo.findById(threadId).ifPresent(thread -> {
-            System.out.println("[ChatService] Thread participants: " + thread.getParticipantIds());
-            for (String participantId : thread.getParticipantIds()) {
-                    userDao.findById(participantId).ifPresent(user -> {
-                        targetEmails.add(user.getEmail());
-                        int emailRoomClients = socketIOServer.getRoomOperations(user.getEmail()).getClients().size();
-                        System.out.println("[ChatService] Sending notification to " + user.getEmail() + " (clients: " + emailRoomClients + ")");
-                        socketIOServer.getRoomOperations(user.getEmail()).sendEvent("chat:notification", msg);
-                    });
-            }
-        });
+        Set<String> targetEmails = membership.emails();
+        logger.debug("Notifying {} participants of thread {}", targetEmails.size(), threadId);
+        for (String email : targetEmails) {
+            socketIOServer.getRoomOperations(email).sendEvent("chat:notification", msg);
+        }
         
         // Also publish to SQS for guaranteed delivery
         if (!targetEmails.isEmpty()) {
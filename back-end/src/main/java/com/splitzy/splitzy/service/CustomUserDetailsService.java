@@ -1,6 +1,5 @@
 package com.splitzy.splitzy.service;
 
-import com.splitzy.splitzy.model.RedisUser;
 import com.splitzy.splitzy.model.User;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
@@ -32,7 +31,7 @@ public class CustomUserDetailsService implements UserDetailsService {
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        UserDto userDto = userDao.findByEmail(username)
+        UserDto userDto = userDao.findByEmailWithCredentials(username)
                 .orElseThrow(() -> {
                     logger.error("User not found for email: {}", username);
                     return new UsernameNotFoundException("User not found");
@@ -55,13 +54,10 @@ public class CustomUserDetailsService implements UserDetailsService {
             return true;
         }
 
-        // Check Redis cache for temporary users
-        for (String key : redisCacheService.getAllKeys()) {
-            RedisUser redisUser = (RedisUser) redisCacheService.get(key);
-            if (redisUser != null && redisUser.getEmail().equals(email)) {
-                logger.info("User with email: {} exists in Redis cache", email);
-                return true;
-            }
+        // Check Redis cache for pending (unverified) signups
+        if (redisCacheService.hasPendingSignup(email)) {
+            logger.info("User with email: {} has a pending signup in Redis", email);
+            return true;
         }
 
         logger.info("No user found with email: {}", email);
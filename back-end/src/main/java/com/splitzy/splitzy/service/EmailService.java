@@ -7,10 +7,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 
+import java.util.Map;
+
 @Service
 public class EmailService {
 
@@ -375,6 +378,87 @@ public class EmailService {
             """.formatted(friendName, amount, frontendUrl, appName);
     }
 
+    /**
+     * Monthly statement body. Rendered by the statement job and stored for delivery,
+     * so it is exposed rather than sent directly.
+     */
+    public String buildMonthlyStatementTemplate(String userName, String periodLabel, double spending,
+                                                double income, int expenseCount, Map<String, Double> categoryAmounts) {
+        StringBuilder categoryRows = new StringBuilder();
+        categoryAmounts.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .forEach(e -> categoryRows.append("""
+                                                <tr>
+                                                    <td style="padding: 8px 0; color: #a0aec0; font-size: 14px;">%s</td>
+                                                    <td style="padding: 8px 0; color: #ffffff; font-size: 14px; text-align: right;">$%.2f</td>
+                                                </tr>
+                        """.formatted(HtmlUtils.htmlEscape(e.getKey()), e.getValue())));
+
+        return """
+            <!DOCTYPE html>
+            <html>
+            <head>
+                <meta charset="UTF-8">
+            </head>
+            <body style="margin: 0; padding: 0; font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; background-color: #0f0f23;">
+                <table role="presentation" style="width: 100%%; border-collapse: collapse;">
+                    <tr>
+                        <td align="center" style="padding: 40px 0;">
+                            <table role="presentation" style="width: 600px; border-collapse: collapse; background: linear-gradient(135deg, #1a1a2e 0%%, #16213e 100%%); border-radius: 16px; overflow: hidden;">
+
+                                <tr>
+                                    <td style="padding: 30px; text-align: center; background: linear-gradient(135deg, #667eea 0%%, #764ba2 100%%);">
+                                        <h1 style="margin: 0; color: #ffffff; font-size: 24px;">📊 Your %s Statement</h1>
+                                    </td>
+                                </tr>
+
+                                <tr>
+                                    <td style="padding: 40px;">
+                                        <p style="margin: 0 0 20px; color: #a0aec0; font-size: 16px;">
+                                            Hi <strong style="color: #ffffff;">%s</strong>, here is your month at a glance.
+                                        </p>
+
+                                        <table role="presentation" style="width: 100%%; border-collapse: collapse; margin-bottom: 30px;">
+                                            <tr>
+                                                <td style="padding: 8px 0; color: #a0aec0; font-size: 14px;">Your spending</td>
+                                                <td style="padding: 8px 0; color: #ef4444; font-size: 18px; font-weight: 700; text-align: right;">$%.2f</td>
+                                            </tr>
+                                            <tr>
+                                                <td style="padding: 8px 0; color: #a0aec0; font-size: 14px;">Owed to you</td>
+                                                <td style="padding: 8px 0; color: #10b981; font-size: 18px; font-weight: 700; text-align: right;">$%.2f</td>
+                                            </tr>
+                                            <tr>
+                                                <td style="padding: 8px 0; color: #a0aec0; font-size: 14px;">Expenses</td>
+                                                <td style="padding: 8px 0; color: #ffffff; font-size: 18px; font-weight: 700; text-align: right;">%d</td>
+                                            </tr>
+                                        </table>
+
+                                        <h2 style="margin: 0 0 10px; color: #ffffff; font-size: 16px;">By category</h2>
+                                        <table role="presentation" style="width: 100%%; border-collapse: collapse; margin-bottom: 30px;">
+            %s
+                                        </table>
+
+                                        <a href="%s/home" style="display: inline-block; padding: 14px 32px; background: linear-gradient(135deg, #10b981 0%%, #059669 100%%); color: #ffffff; text-decoration: none; font-size: 15px; font-weight: 600; border-radius: 8px;">
+                                            View Dashboard →
+                                        </a>
+                                    </td>
+                                </tr>
+
+                                <tr>
+                                    <td style="padding: 20px; background: rgba(0,0,0,0.2); text-align: center;">
+                                        <p style="margin: 0; color: #4a5568; font-size: 12px;">© 2024 %s</p>
+                                    </td>
+                                </tr>
+                            </table>
+                        </td>
+                    </tr>
+                </table>
+            </body>
+            </html>
+            """.formatted(HtmlUtils.htmlEscape(periodLabel), HtmlUtils.htmlEscape(userName != null ? userName : ""),
+                spending, income, expenseCount, categoryRows, frontendUrl, appName);
+    }
+
     private String buildPasswordResetTemplate(String resetLink) {
         return """
             <!DOCTYPE html>
@@ -4,13 +4,21 @@ import com.corundumstudio.socketio.SocketIOServer;
 import com.splitzy.splitzy.dto.*;
 import com.splitzy.splitzy.dto.SettleExpenseRequest;
 import com.splitzy.splitzy.model.*;
+import com.splitzy.splitzy.service.analytics.AnalyticsSketchService;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
+import com.splitzy.splitzy.service.analytics.BalanceContributions;
+import com.splitzy.splitzy.service.analytics.ExpenseColumnsService;
+import com.splitzy.splitzy.service.analytics.PendingActionsService;
+import com.splitzy.splitzy.service.analytics.TrendRollupService;
 import com.splitzy.splitzy.service.dao.ExpenseDao;
 import com.splitzy.splitzy.service.dao.ExpenseDto;
 import com.splitzy.splitzy.service.dao.UserDao;
 import com.splitzy.splitzy.service.dao.UserDto;
+import com.splitzy.splitzy.service.ledger.LedgerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,6 +29,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.splitzy.splitzy.model.SplitMethod.*;
@@ -45,6 +54,27 @@ public class ExpenseService {
     @Autowired
     private SqsEventPublisher sqsEventPublisher;
 
+    @Autowired(required = false)
+    private TrendRollupService trendRollupService;
+
+    @Autowired(required = false)
+    private AnalyticsSketchService analyticsSketchService;
+
+    @Autowired(required = false)
+    private AnalyticsVersionService analyticsVersionService;
+
+    @Autowired(required = false)
+    private PendingActionsService pendingActionsService;
+
+    @Autowired(required = false)
+    private LedgerService ledgerService;
+
+    @Autowired(required = false)
+    private ExpenseColumnsService expenseColumnsService;
+
+    @Autowired(required = false)
+    private TransactionTemplate transactionTemplate;
+
     public List<Expense> getExpensesForUser(String userId) {
         logger.debug("Fetching expenses for userId={}", userId);
         Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
@@ -222,10 +252,19 @@ public class ExpenseService {
 
         // 8) set total, save
         expenseDto.setTotalAmount(sum);
-        ExpenseDto savedDto = expenseDao.save(expenseDto);
+        ExpenseDto savedDto = inWriteTransaction(() -> {
+            ExpenseDto dto = expenseDao.save(expenseDto);
+            markTrendsDirty(dto);
+            recordLedger(LedgerEntryType.EXPENSE_CREATED, dto.getId(), BalanceContributions.none(), dto);
+            return dto;
+        });
         logger.info("Expense saved with id={}, totalAmount={}", savedDto.getId(), savedDto.getTotalAmount());
 
         Expense saved = toExpense(savedDto);
+        recordSketches(savedDto);
+        bumpAnalyticsVersion(savedDto);
+        updatePendingActions(BalanceContributions.none(), savedDto);
+        updateExpenseColumns(null, savedDto);
 
         // notifications, socket events
         sendExpenseNotification(saved, creator.getId(), creator.getName());
@@ -826,8 +865,17 @@ public class ExpenseService {
         logger.info("deleteExpense called for expenseId={}", expenseId);
         ExpenseDto expense = expenseDao.findById(expenseId)
                 .orElseThrow(() -> new RuntimeException("Expense not found: " + expenseId));
-        expenseDao.deleteById(expenseId);
+        inWriteTransaction(() -> {
+            expenseDao.deleteById(expenseId);
+            markTrendsDirty(expense);
+            recordLedger(LedgerEntryType.EXPENSE_DELETED, expenseId, BalanceContributions.of(expense), null);
+            return null;
+        });
         logger.info("Expense deleted: {}", expenseId);
+        removeSketches(expense);
+        bumpAnalyticsVersion(expense);
+        updatePendingActions(BalanceContributions.of(expense), null);
+        updateExpenseColumns(expense, null);
     }
 
     /**
@@ -844,6 +892,7 @@ public class ExpenseService {
 
         ExpenseDto expense = expenseDao.findById(expenseId)
                 .orElseThrow(() -> new RuntimeException("Expense not found: " + expenseId));
+        BalanceContributions balancesBefore = BalanceContributions.of(expense);
 
         // Find the participant and update their settled amount
         for (ExpenseDto.ParticipantDto participant : expense.getParticipants()) {
@@ -899,7 +948,14 @@ public class ExpenseService {
 
         expense.setSettled(expenseFullySettled);
         expense.setUpdatedAt(LocalDateTime.now());
-        ExpenseDto savedDto = expenseDao.save(expense);
+        LedgerEntryType ledgerType = expenseFullySettled ? LedgerEntryType.SETTLED_FULL : LedgerEntryType.SETTLED_PARTIAL;
+        ExpenseDto savedDto = inWriteTransaction(() -> {
+            ExpenseDto dto = expenseDao.save(expense);
+            recordLedger(ledgerType, expenseId, balancesBefore, dto);
+            return dto;
+        });
+        bumpAnalyticsVersion(savedDto);
+        updatePendingActions(balancesBefore, savedDto);
 
         Expense saved = toExpense(savedDto);
 
@@ -978,6 +1034,7 @@ public class ExpenseService {
         
         ExpenseDto expense = expenseDao.findById(expenseId)
                 .orElseThrow(() -> new RuntimeException("Expense not found: " + expenseId));
+        BalanceContributions balancesBefore = BalanceContributions.of(expense);
         
         // Mark all participants as fully settled
         for (ExpenseDto.ParticipantDto participant : expense.getParticipants()) {
@@ -988,12 +1045,130 @@ public class ExpenseService {
         
         expense.setSettled(true);
         expense.setUpdatedAt(LocalDateTime.now());
-        ExpenseDto savedDto = expenseDao.save(expense);
+        ExpenseDto savedDto = inWriteTransaction(() -> {
+            ExpenseDto dto = expenseDao.save(expense);
+            recordLedger(LedgerEntryType.SETTLED_FULL, expenseId, balancesBefore, dto);
+            return dto;
+        });
+        bumpAnalyticsVersion(savedDto);
+        updatePendingActions(balancesBefore, savedDto);
         
         logger.info("Expense {} fully settled", expenseId);
         return toExpense(savedDto);
     }
 
+    /**
+     * Run an expense write in one transaction with the rollups and ledger entries that must not
+     * miss it, so their failure rolls the write back and fails the request instead of leaving stale data.
+     */
+    private <T> T inWriteTransaction(Supplier<T> write) {
+        if (transactionTemplate == null) {
+            return write.get();
+        }
+        return transactionTemplate.execute(status -> write.get());
+    }
+
+    /**
+     * Flag persisted trend periods touched by this expense for recompute (Postgres only).
+     * Settlements don't change shares or payments, so only creates and deletes need this.
+     * Runs inside the write's transaction; failures propagate.
+     */
+    private void markTrendsDirty(ExpenseDto expense) {
+        if (trendRollupService == null) {
+            return;
+        }
+        trendRollupService.markDirty(expense);
+    }
+
+    /**
+     * Add a new expense to the approximate analytics sketches. Best effort: a Redis outage
+     * must not fail the expense write.
+     */
+    private void recordSketches(ExpenseDto expense) {
+        if (analyticsSketchService == null) {
+            return;
+        }
+        try {
+            analyticsSketchService.record(expense);
+        } catch (Exception e) {
+            logger.warn("Failed to record analytics sketches for expense {}: {}", expense.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Take a deleted expense out of the approximate analytics sketches. Best effort, like recording.
+     */
+    private void removeSketches(ExpenseDto expense) {
+        if (analyticsSketchService == null) {
+            return;
+        }
+        try {
+            analyticsSketchService.remove(expense);
+        } catch (Exception e) {
+            logger.warn("Failed to remove expense {} from analytics sketches: {}", expense.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidate cached analytics responses (ETags) of everyone involved in the expense.
+     * Best effort, like the sketches: the expense is already committed, so a Redis outage
+     * must not fail the request; versions that could not be bumped expire on their own.
+     */
+    private void bumpAnalyticsVersion(ExpenseDto expense) {
+        if (analyticsVersionService == null) {
+            return;
+        }
+        try {
+            analyticsVersionService.bump(expense);
+        } catch (Exception e) {
+            logger.warn("Failed to bump analytics versions for expense {}: {}", expense.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Move the pending-actions inboxes from the expense's old balances to its new ones
+     * (null after a delete).
+     */
+    private void updatePendingActions(BalanceContributions before, ExpenseDto after) {
+        if (pendingActionsService == null) {
+            return;
+        }
+        try {
+            pendingActionsService.apply(before, BalanceContributions.of(after));
+        } catch (Exception e) {
+            logger.warn("Failed to update pending actions for expense {}: {}",
+                    after != null ? after.getId() : null, e.getMessage());
+        }
+    }
+
+    /**
+     * Journal the balance movements of an expense change (Postgres only).
+     * The after state is null when the expense was deleted.
+     * Runs inside the write's transaction; failures propagate.
+     */
+    private void recordLedger(LedgerEntryType type, String expenseId, BalanceContributions before, ExpenseDto after) {
+        if (ledgerService == null) {
+            return;
+        }
+        ledgerService.record(type, expenseId, before, BalanceContributions.of(after));
+    }
+
+    /**
+     * Queue the change for the columnar analytics snapshots. Settling does not touch any
+     * snapshot column, so only creates and deletes are recorded.
+     */
+    private void updateExpenseColumns(ExpenseDto before, ExpenseDto after) {
+        if (expenseColumnsService == null) {
+            return;
+        }
+        try {
+            expenseColumnsService.apply(before, after);
+        } catch (Exception e) {
+            logger.warn("Failed to update expense columns for expense {}: {}",
+                    after != null ? after.getId() : before.getId(), e.getMessage());
+        }
+    }
+
     private void sendExpenseNotification(Expense expense, String creatorId, String creatorName) {
         logger.debug("Sending expense notification for expenseId={}, creatorId={}", expense.getId(), creatorId);
         for (Participant p : expense.getParticipants()) {
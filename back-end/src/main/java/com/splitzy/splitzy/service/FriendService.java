@@ -6,6 +6,7 @@ import com.splitzy.splitzy.dto.FriendRequestData;
 import com.splitzy.splitzy.model.FriendRequest;
 import com.splitzy.splitzy.model.FriendRequestStatus;
 import com.splitzy.splitzy.model.User;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
 import com.splitzy.splitzy.service.dao.FriendRequestDao;
 import com.splitzy.splitzy.service.dao.FriendRequestDto;
 import com.splitzy.splitzy.service.dao.UserDao;
@@ -42,6 +43,9 @@ public class FriendService {
     @Autowired
     private SqsEventPublisher sqsEventPublisher;
 
+    @Autowired(required = false)
+    private AnalyticsVersionService analyticsVersionService;
+
     public List<FriendDTO> getFriendDetails(String userId) {
         // 1) Load the main user
         UserDto user = userDao.findById(userId)
@@ -167,6 +171,7 @@ public class FriendService {
             receiver.getFriendIds().add(sender.getId());
             userDao.save(receiver);
         }
+        bumpAnalyticsVersions(sender.getId(), receiver.getId());
     }
 
     public void rejectFriendRequest(String requestId, String receiverId) {
@@ -218,6 +223,7 @@ public class FriendService {
 
         userDao.save(user1);
         userDao.save(user2);
+        bumpAnalyticsVersions(userId1, userId2);
 
         try {
             // Build and emit a Socket.IO event to the receiver's room (using their email)
@@ -246,4 +252,11 @@ public class FriendService {
         fr.setUpdatedAt(dto.getUpdatedAt());
         return fr;
     }
+
+    // Dashboard quick stats count friends; drop the users' analytics ETags
+    private void bumpAnalyticsVersions(String... userIds) {
+        if (analyticsVersionService != null) {
+            analyticsVersionService.bumpUsers(List.of(userIds));
+        }
+    }
 }
@@ -6,6 +6,7 @@ import com.splitzy.splitzy.dto.GroupMemberDTO;
 import com.splitzy.splitzy.model.Group;
 import com.splitzy.splitzy.model.GroupMember;
 import com.splitzy.splitzy.model.Notification;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
 import com.splitzy.splitzy.service.dao.GroupDao;
 import com.splitzy.splitzy.service.dao.GroupDto;
 import com.splitzy.splitzy.service.dao.UserDao;
@@ -14,6 +15,7 @@ import com.corundumstudio.socketio.SocketIOServer;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -31,6 +33,11 @@ public class GroupServiceImpl implements GroupService {
     private final UserDao userDao;
     private final NotificationService notificationService;
     private final SocketIOServer socketIOServer;
+    private final AnalyticsVersionService analyticsVersionService;
+
+    // Postgres profile only: group chat threads live in SQL
+    @Autowired(required = false)
+    private ChatService chatService;
 
     @Override
     public GroupDTO createGroup(GroupDTO groupDTO) {
@@ -53,6 +60,7 @@ public class GroupServiceImpl implements GroupService {
         // Save group via DAO
         GroupDto savedGroup = groupDao.save(groupDtoInternal);
         logger.info("Group saved with id: {} and name: '{}'", savedGroup.getId(), savedGroup.getGroupName());
+        syncGroupChat(savedGroup);
 
         // Update the creator's User document to add this group id.
         userDao.findById(groupDTO.getCreatorId()).ifPresent(user -> {
@@ -120,6 +128,14 @@ public class GroupServiceImpl implements GroupService {
             }
         });
         
+        // Dashboard quick stats count groups; drop every member's analytics ETags
+        List<String> memberIds = new ArrayList<>();
+        memberIds.add(groupDTO.getCreatorId());
+        if (groupDTO.getFriends() != null) {
+            groupDTO.getFriends().forEach(f -> memberIds.add(f.getId()));
+        }
+        analyticsVersionService.bumpUsers(memberIds);
+
         logger.info("Group creation completed for group id: {}", savedGroup.getId());
         
         // Update the return DTO with the saved id
@@ -144,4 +160,20 @@ public class GroupServiceImpl implements GroupService {
                 })
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Call after every write that changes a group's members: the group's chat thread takes the
+     * new participants and its cached membership is dropped on every instance.
+     */
+    private void syncGroupChat(GroupDto group) {
+        if (chatService == null) {
+            return;
+        }
+        try {
+            chatService.syncGroupThread(group);
+        } catch (Exception e) {
+            // The thread catches up the next time a member opens it
+            logger.warn("Failed to sync chat thread for group {}: {}", group.getId(), e.getMessage());
+        }
+    }
 }
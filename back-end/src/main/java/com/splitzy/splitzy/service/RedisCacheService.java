@@ -1,14 +1,26 @@
 package com.splitzy.splitzy.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.splitzy.splitzy.controller.AuthController;
 import com.splitzy.splitzy.model.RedisUser;
 import org.apache.commons.logging.Log;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -20,13 +32,17 @@ public class RedisCacheService {
     @Autowired
     private RedisTemplate<String, Object> redisCacheTemplate;
 
+    // Every Redis call goes through the breaker, so a Redis brownout fails fast instead of per-call timeouts
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
     /**
      * Save an object in Redis with a key and expiration time.
      */
     public void save(String key, Object value, long expirationInSeconds) {
         try {
             logger.info("Saving object in Redis. Key: {}, Value: {}", key, value);
-            redisCacheTemplate.opsForValue().set(key, value, expirationInSeconds, TimeUnit.SECONDS);
+            circuitBreaker.run(() -> redisCacheTemplate.opsForValue().set(key, value, expirationInSeconds, TimeUnit.SECONDS));
             logger.info("Object saved successfully in Redis. Key: {}", key);
         } catch (Exception e) {
             logger.error("Failed to save object in Redis. Key: {}, Value: {}, Error: {}", key, value, e.getMessage());
@@ -39,7 +55,7 @@ public class RedisCacheService {
      */
     public Object get(String key) {
         try {
-            Object value = redisCacheTemplate.opsForValue().get(key);
+            Object value = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(key));
             logger.info("Retrieved object from Redis. Key: {}, Value: {}", key, value);
             return value;
         } catch (Exception e) {
@@ -54,7 +70,7 @@ public class RedisCacheService {
     public void delete(String key) {
         try {
             logger.info("Deleting object from Redis. Key: {}", key);
-            redisCacheTemplate.delete(key);
+            circuitBreaker.execute(() -> redisCacheTemplate.delete(key));
             logger.info("Object deleted successfully from Redis. Key: {}", key);
         } catch (Exception e) {
             logger.error("Failed to delete object from Redis. Key: {}, Error: {}", key, e.getMessage());
@@ -63,33 +79,109 @@ public class RedisCacheService {
     }
 
     /**
-     * Get all keys stored in Redis.
+     * Retrieve a RedisUser object from Redis by key.
      */
-    public Set<String> getAllKeys() {
+    public RedisUser getRedisUser(String key) {
         try {
-            Set<String> keys = redisCacheTemplate.keys("*");
-            logger.info("Retrieved all keys from Redis. Keys: {}", keys);
-            return keys;
+            RedisUser redisUser = (RedisUser) circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(key));
+            logger.info("Retrieved RedisUser object from Redis. Key: {}, RedisUser: {}", key, redisUser);
+            return redisUser;
         } catch (Exception e) {
-            logger.error("Failed to retrieve keys from Redis. Error: {}", e.getMessage());
+            logger.error("Failed to retrieve RedisUser object from Redis. Key: {}, Error: {}", key, e.getMessage());
             throw e;
         }
     }
 
+    // ===========================================
+    // PENDING SIGNUPS
+    // ===========================================
+
+    private static final String SIGNUP_EMAIL_PREFIX = "signup:email:";
+    private static final String SIGNUP_TOKEN_PREFIX = "signup:token:";
+
+    /**
+     * Store an unverified signup under its email, plus a token -> email index,
+     * both expiring after the given time. Both keys are written in one MULTI, so there is
+     * never a token without its signup or the other way round.
+     */
+    public void savePendingSignup(RedisUser user, long expirationInSeconds) {
+        circuitBreaker.execute(() -> redisCacheTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public List<Object> execute(RedisOperations operations) throws DataAccessException {
+                operations.multi();
+                operations.opsForValue().set(SIGNUP_EMAIL_PREFIX + user.getEmail(), user, expirationInSeconds, TimeUnit.SECONDS);
+                operations.opsForValue().set(SIGNUP_TOKEN_PREFIX + user.getVerificationToken(), user.getEmail(),
+                        expirationInSeconds, TimeUnit.SECONDS);
+                return operations.exec();
+            }
+        }));
+        logger.info("Saved pending signup for email: {}", user.getEmail());
+    }
+
     /**
-     * Retrieve a RedisUser object from Redis by key.
+     * Signups were kept under the raw email as key before the email/token index existed.
+     * Move the ones still waiting for verification to the indexed keys with their remaining
+     * time, so their emailed links keep working. Safe to run on several instances at once.
      */
-    public RedisUser getRedisUser(String key) {
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyPendingSignups() {
         try {
-            RedisUser redisUser = (RedisUser) redisCacheTemplate.opsForValue().get(key);
-            logger.info("Retrieved RedisUser object from Redis. Key: {}, RedisUser: {}", key, redisUser);
-            return redisUser;
+            List<String> legacyKeys = new ArrayList<>();
+            try (Cursor<String> keys = redisCacheTemplate.scan(ScanOptions.scanOptions().match("*@*").count(500).build())) {
+                keys.forEachRemaining(key -> {
+                    if (!key.startsWith(SIGNUP_EMAIL_PREFIX) && !key.startsWith(SIGNUP_TOKEN_PREFIX)) {
+                        legacyKeys.add(key);
+                    }
+                });
+            }
+            int migrated = 0;
+            for (String key : legacyKeys) {
+                Object value = redisCacheTemplate.opsForValue().get(key);
+                Long ttl = redisCacheTemplate.getExpire(key, TimeUnit.SECONDS);
+                if (!(value instanceof RedisUser user) || ttl == null || ttl <= 0) {
+                    continue;
+                }
+                savePendingSignup(user, ttl);
+                redisCacheTemplate.delete(key);
+                migrated++;
+            }
+            if (migrated > 0) {
+                logger.info("Migrated {} pending signups to the email/token index", migrated);
+            }
         } catch (Exception e) {
-            logger.error("Failed to retrieve RedisUser object from Redis. Key: {}, Error: {}", key, e.getMessage());
-            throw e;
+            // Unmigrated signups expire within a day; those users can sign up again
+            logger.warn("Failed to migrate legacy pending signups: {}", e.getMessage());
         }
     }
 
+    public boolean hasPendingSignup(String email) {
+        return Boolean.TRUE.equals(circuitBreaker.execute(() -> redisCacheTemplate.hasKey(SIGNUP_EMAIL_PREFIX + email)));
+    }
+
+    /**
+     * Pending signup for a verification token, or null if the token is unknown or expired.
+     */
+    public RedisUser findPendingSignupByToken(String token) {
+        Object email = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(SIGNUP_TOKEN_PREFIX + token));
+        if (email == null) {
+            return null;
+        }
+        Object value = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(SIGNUP_EMAIL_PREFIX + email));
+        // A newer signup for the same email replaces the pending user; its old token is dead
+        if (value instanceof RedisUser user && token.equals(user.getVerificationToken())) {
+            return user;
+        }
+        return null;
+    }
+
+    public void deletePendingSignup(RedisUser user) {
+        circuitBreaker.execute(() -> redisCacheTemplate.delete(List.of(
+                SIGNUP_EMAIL_PREFIX + user.getEmail(),
+                SIGNUP_TOKEN_PREFIX + user.getVerificationToken())));
+        logger.info("Deleted pending signup for email: {}", user.getEmail());
+    }
+
     // ===========================================
     // ANALYTICS CACHING METHODS
     // ===========================================
@@ -97,6 +189,12 @@ public class RedisCacheService {
     private static final String ANALYTICS_PREFIX = "analytics:";
     private static final long ANALYTICS_DEFAULT_TTL = 300; // 5 minutes
 
+    // Short-lived per-node stand-in for the analytics cache while Redis is skipped
+    private final Cache<String, Object> localAnalytics = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofSeconds(60))
+            .build();
+
     /**
      * Cache analytics result.
      */
@@ -110,8 +208,15 @@ public class RedisCacheService {
     public void cacheAnalytics(String userId, String analyticsType, String filterKey, Object data, long ttlSeconds) {
         String key = buildAnalyticsKey(userId, analyticsType, filterKey);
         try {
-            redisCacheTemplate.opsForValue().set(key, data, ttlSeconds, TimeUnit.SECONDS);
-            logger.debug("Cached analytics data. Key: {}", key);
+            boolean stored = circuitBreaker.execute(() -> {
+                redisCacheTemplate.opsForValue().set(key, data, ttlSeconds, TimeUnit.SECONDS);
+                return true;
+            }, () -> false);
+            if (stored) {
+                logger.debug("Cached analytics data. Key: {}", key);
+            } else {
+                localAnalytics.put(key, data);
+            }
         } catch (Exception e) {
             logger.warn("Failed to cache analytics. Key: {}, Error: {}", key, e.getMessage());
             // Don't throw - caching failure shouldn't break the request
@@ -124,7 +229,8 @@ public class RedisCacheService {
     public Object getCachedAnalytics(String userId, String analyticsType, String filterKey) {
         String key = buildAnalyticsKey(userId, analyticsType, filterKey);
         try {
-            Object cached = redisCacheTemplate.opsForValue().get(key);
+            Object cached = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(key),
+                    () -> localAnalytics.getIfPresent(key));
             if (cached != null) {
                 logger.debug("Cache hit for analytics. Key: {}", key);
             }
@@ -140,10 +246,11 @@ public class RedisCacheService {
      */
     public void invalidateAnalyticsCache(String userId) {
         String pattern = ANALYTICS_PREFIX + userId + ":*";
+        evictLocalAnalytics(ANALYTICS_PREFIX + userId + ":");
         try {
-            Set<String> keys = redisCacheTemplate.keys(pattern);
+            Set<String> keys = circuitBreaker.execute(() -> redisCacheTemplate.keys(pattern));
             if (keys != null && !keys.isEmpty()) {
-                redisCacheTemplate.delete(keys);
+                circuitBreaker.execute(() -> redisCacheTemplate.delete(keys));
                 logger.info("Invalidated {} analytics cache entries for user {}", keys.size(), userId);
             }
         } catch (Exception e) {
@@ -156,10 +263,11 @@ public class RedisCacheService {
      */
     public void invalidateAnalyticsCache(String userId, String analyticsType) {
         String pattern = ANALYTICS_PREFIX + userId + ":" + analyticsType + ":*";
+        evictLocalAnalytics(ANALYTICS_PREFIX + userId + ":" + analyticsType);
         try {
-            Set<String> keys = redisCacheTemplate.keys(pattern);
+            Set<String> keys = circuitBreaker.execute(() -> redisCacheTemplate.keys(pattern));
             if (keys != null && !keys.isEmpty()) {
-                redisCacheTemplate.delete(keys);
+                circuitBreaker.execute(() -> redisCacheTemplate.delete(keys));
                 logger.info("Invalidated {} analytics cache entries for user {} type {}", keys.size(), userId, analyticsType);
             }
         } catch (Exception e) {
@@ -167,6 +275,10 @@ public class RedisCacheService {
         }
     }
 
+    private void evictLocalAnalytics(String keyPrefix) {
+        localAnalytics.asMap().keySet().removeIf(key -> key.startsWith(keyPrefix));
+    }
+
     /**
      * Build a cache key for analytics.
      */
@@ -183,7 +295,8 @@ public class RedisCacheService {
     public boolean hasAnalyticsCache(String userId, String analyticsType, String filterKey) {
         String key = buildAnalyticsKey(userId, analyticsType, filterKey);
         try {
-            return Boolean.TRUE.equals(redisCacheTemplate.hasKey(key));
+            return Boolean.TRUE.equals(circuitBreaker.execute(() -> redisCacheTemplate.hasKey(key),
+                    () -> localAnalytics.getIfPresent(key) != null));
         } catch (Exception e) {
             return false;
         }
@@ -0,0 +1,243 @@
+package com.splitzy.splitzy.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker shared by the Redis callers on the request path (rate limiting, caches).
+ *
+ * While closed, every call's outcome goes into a rolling window of one-second buckets; a call
+ * that fails or takes longer than redis.breaker.slow-call-ms counts as a failure. Once the window
+ * holds at least redis.breaker.min-calls calls and the failure rate reaches
+ * redis.breaker.failure-rate, the breaker opens and callers skip Redis at once, using their
+ * fallback instead of waiting on client timeouts. After redis.breaker.open-ms it lets a few
+ * probe calls through (half-open): if they all succeed it closes, otherwise it opens again.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final boolean enabled;
+    private final int windowSeconds;
+    private final int minCalls;
+    private final double failureRate;
+    private final long slowCallNanos;
+    private final long openMs;
+    private final int halfOpenProbes;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+    private final AtomicInteger probePermits = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    // Rolling window: bucket i counts the calls of epoch second seconds[i]
+    private final AtomicLongArray seconds;
+    private final AtomicLongArray calls;
+    private final AtomicLongArray failures;
+
+    private final Counter rejected;
+
+    // Wall clock in milliseconds; tests swap in a fake one
+    LongSupplier clock = System::currentTimeMillis;
+
+    public RedisCircuitBreaker(MeterRegistry meterRegistry,
+                               @Value("${redis.breaker.enabled:true}") boolean enabled,
+                               @Value("${redis.breaker.window-seconds:10}") int windowSeconds,
+                               @Value("${redis.breaker.min-calls:20}") int minCalls,
+                               @Value("${redis.breaker.failure-rate:0.5}") double failureRate,
+                               @Value("${redis.breaker.slow-call-ms:250}") long slowCallMs,
+                               @Value("${redis.breaker.open-ms:5000}") long openMs,
+                               @Value("${redis.breaker.half-open-probes:3}") int halfOpenProbes) {
+        this.enabled = enabled;
+        this.windowSeconds = windowSeconds;
+        this.minCalls = minCalls;
+        this.failureRate = failureRate;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openMs = openMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.seconds = new AtomicLongArray(windowSeconds);
+        this.calls = new AtomicLongArray(windowSeconds);
+        this.failures = new AtomicLongArray(windowSeconds);
+
+        Gauge.builder("redis.breaker.state", state, s -> s.get().ordinal())
+            .description("Redis circuit breaker state: 0 closed, 1 half-open, 2 open")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("redis.breaker.rejected")
+            .description("Redis calls skipped because the circuit breaker was open")
+            .register(meterRegistry);
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * Run a Redis call through the breaker. When the breaker is open or the call fails,
+     * the fallback's result is returned instead.
+     */
+    public <T> T execute(Supplier<T> action, Supplier<T> fallback) {
+        if (!allowRequest()) {
+            return fallback.get();
+        }
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            onFailure();
+            logger.warn("Redis call failed, using fallback: {}", e.getMessage());
+            return fallback.get();
+        }
+    }
+
+    /**
+     * Run a Redis call that has no fallback. Throws RedisConnectionFailureException right away
+     * while the breaker is open; failures of the call itself are recorded and rethrown.
+     */
+    public <T> T execute(Supplier<T> action) {
+        if (!allowRequest()) {
+            throw new RedisConnectionFailureException("Redis circuit breaker is open");
+        }
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            onSuccess(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            onFailure();
+            throw e;
+        }
+    }
+
+    public void run(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Whether a call may go to Redis now. Callers that do not use execute() must report the
+     * outcome of every permitted call with onSuccess or onFailure.
+     */
+    public boolean allowRequest() {
+        if (!enabled) {
+            return true;
+        }
+        State current = state.get();
+        if (current == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMs) {
+                rejected.increment();
+                return false;
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                probeSuccesses.set(0);
+                probePermits.set(halfOpenProbes);
+                logger.info("Redis circuit breaker half-open, probing");
+            }
+            current = state.get();
+            if (current == State.OPEN) {
+                rejected.increment();
+                return false;
+            }
+        }
+        if (current == State.HALF_OPEN && probePermits.getAndDecrement() <= 0) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public void onSuccess(long elapsedNanos) {
+        if (!enabled) {
+            return;
+        }
+        boolean slow = elapsedNanos > slowCallNanos;
+        if (state.get() == State.HALF_OPEN) {
+            if (slow) {
+                trip(State.HALF_OPEN);
+            } else if (probeSuccesses.incrementAndGet() >= halfOpenProbes) {
+                close();
+            }
+            return;
+        }
+        record(slow);
+    }
+
+    public void onFailure() {
+        if (!enabled) {
+            return;
+        }
+        if (state.get() == State.HALF_OPEN) {
+            trip(State.HALF_OPEN);
+            return;
+        }
+        record(true);
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    private void record(boolean failure) {
+        long second = clock.getAsLong() / 1000;
+        int i = (int) (second % windowSeconds);
+        long bucketSecond = seconds.get(i);
+        // First call of a new second recycles the bucket; a few counts may be lost in the race, which is fine here
+        if (bucketSecond != second && seconds.compareAndSet(i, bucketSecond, second)) {
+            calls.set(i, 0);
+            failures.set(i, 0);
+        }
+        calls.incrementAndGet(i);
+        if (!failure) {
+            return;
+        }
+        failures.incrementAndGet(i);
+
+        long totalCalls = 0;
+        long totalFailures = 0;
+        for (int b = 0; b < windowSeconds; b++) {
+            if (second - seconds.get(b) < windowSeconds) {
+                totalCalls += calls.get(b);
+                totalFailures += failures.get(b);
+            }
+        }
+        if (totalCalls >= minCalls && (double) totalFailures / totalCalls >= failureRate) {
+            trip(State.CLOSED);
+        }
+    }
+
+    private void trip(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = clock.getAsLong();
+            logger.warn("Redis circuit breaker opened (from {}), skipping Redis for {} ms", from, openMs);
+        }
+    }
+
+    private void close() {
+        for (int b = 0; b < windowSeconds; b++) {
+            calls.set(b, 0);
+            failures.set(b, 0);
+        }
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            logger.info("Redis circuit breaker closed");
+        }
+    }
+}
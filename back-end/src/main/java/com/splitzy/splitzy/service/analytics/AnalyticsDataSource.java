@@ -0,0 +1,54 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Storage access for analytics. Row lookups return store-neutral ExpenseDtos;
+ * aggregations are pushed down to the active store (SQL GROUP BY / Mongo aggregation).
+ *
+ * Every per-user query uses one definition of involvement: the user created the expense, paid
+ * for it or participates in it. Per expense, the user's share is the sum of their participant
+ * shares (0 when they only created or paid) and their positive net is paid minus share, floored
+ * at 0. Implementations must agree on this; AnalyticsDataSourceContractTest checks it.
+ */
+public interface AnalyticsDataSource {
+
+    /** Expenses where the user is creator, payer or participant. */
+    List<ExpenseDto> findExpensesForUser(String userId, Sort sort);
+
+    /** Expenses involving both users. */
+    List<ExpenseDto> findSharedExpenses(String userId, String friendId, Sort sort);
+
+    /** All expenses of a group. */
+    List<ExpenseDto> findGroupExpenses(String groupId, Sort sort);
+
+    /** Expenses of a group dated between startDate and endDate (inclusive). */
+    List<ExpenseDto> findGroupExpenses(String groupId, LocalDate startDate, LocalDate endDate, Sort sort);
+
+    /**
+     * The user's share, positive net and expense count per calendar month and category,
+     * over expenses the user is involved in, dated between startDate and endDate (inclusive).
+     */
+    List<MonthlySpending> aggregateMonthlySpending(String userId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * The user's share statistics per category over expenses the user is involved in,
+     * optionally restricted to one group (null for all). Uncategorized expenses come back
+     * under a null or empty category.
+     */
+    List<CategorySpending> aggregateCategorySpending(String userId, String groupId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * The largest expenses (by total amount) per category, at most perCategory each,
+     * over the same expenses as aggregateCategorySpending.
+     */
+    List<ExpenseDto> findTopExpensesPerCategory(String userId, String groupId, LocalDate startDate, LocalDate endDate,
+                                                int perCategory);
+
+    /** Totals, per-member and per-category sums over the group's whole history. */
+    GroupTotals aggregateGroup(String groupId);
+}
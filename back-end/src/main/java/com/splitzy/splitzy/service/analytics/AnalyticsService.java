@@ -1,27 +1,23 @@
 package com.splitzy.splitzy.service.analytics;
 
 import com.splitzy.splitzy.dto.analytics.*;
-import com.splitzy.splitzy.entity.ExpenseSql;
-import com.splitzy.splitzy.entity.ParticipantSql;
-import com.splitzy.splitzy.entity.PayerSql;
-import com.splitzy.splitzy.repository.sql.ExpenseSqlRepository;
 import com.splitzy.splitzy.service.FriendService;
 import com.splitzy.splitzy.service.GroupService;
 import com.splitzy.splitzy.service.RedisCacheService;
 import com.splitzy.splitzy.service.dao.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
-import java.time.temporal.WeekFields;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -29,11 +25,12 @@ import java.util.stream.Collectors;
  * Uses a modular approach for extensibility and maintainability.
  */
 @Service
-@Profile("postgres")
 public class AnalyticsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsService.class);
+
     @Autowired
-    private ExpenseSqlRepository expenseRepo;
+    private AnalyticsDataSource dataSource;
     
     @Autowired
     private ExpenseDao expenseDao;
@@ -56,6 +53,18 @@ public class AnalyticsService {
     @Autowired(required = false)
     private RedisCacheService cacheService;
 
+    @Autowired(required = false)
+    private TrendRollupService trendRollupService;
+
+    @Autowired(required = false)
+    private AnalyticsSketchService sketchService;
+
+    @Autowired(required = false)
+    private PendingActionsService pendingActionsService;
+
+    @Autowired(required = false)
+    private ExpenseColumnsService expenseColumnsService;
+
     // ===========================================
     // DASHBOARD SUMMARY
     // ===========================================
@@ -77,28 +86,84 @@ public class AnalyticsService {
         summary.setPeriodLabel(formatPeriodLabel(filter.getStartDate(), filter.getEndDate()));
 
         // Get all expenses for the user
-        List<ExpenseSql> allExpenses = expenseRepo.findAllByUserInvolvement(
+        List<ExpenseDto> allExpenses = dataSource.findExpensesForUser(
             userId, Sort.by(Sort.Direction.DESC, "date")
         );
 
         // Apply all filters (category, friend, group, settled)
-        List<ExpenseSql> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
+        List<ExpenseDto> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
 
         // Filter by date range
-        List<ExpenseSql> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
+        List<ExpenseDto> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
 
         // Calculate each section using filtered expenses
         summary.setBalance(calculateBalanceSummary(userId, filteredExpenses));
         summary.setSpending(calculateSpendingSummary(userId, periodExpenses, filter));
-        summary.setSettlements(calculateSettlementSummary(userId, filteredExpenses));
+        Map<String, Double> counterpartyBalances = hasScopeFilters(filter)
+            ? calculateCounterpartyBalances(userId, filteredExpenses)
+            : getPendingBalances(userId, () -> filteredExpenses);
+        summary.setSettlements(calculateSettlementSummary(counterpartyBalances));
         summary.setActivity(calculateActivityMetrics(userId, periodExpenses, filteredExpenses));
         summary.setQuickStats(calculateQuickStats(userId, filteredExpenses));
         summary.setTopCategories(calculateTopCategories(userId, periodExpenses, 5));
         summary.setRecentExpenses(getRecentExpenseSnapshots(userId, periodExpenses, 5));
-        summary.setPendingActions(calculatePendingActions(userId, filteredExpenses));
+        summary.setPendingActions(calculatePendingActions(counterpartyBalances));
+
+        return summary;
+    }
+    
+    /**
+     * Pending actions and settlement totals only, served from the pending-actions inbox
+     * when it is available so no expense is loaded.
+     */
+    public DashboardSummary getPendingActionsSummary(String userId) {
+        Map<String, Double> balances = getPendingBalances(userId,
+            () -> dataSource.findExpensesForUser(userId, Sort.by(Sort.Direction.DESC, "date")));
 
+        DashboardSummary summary = new DashboardSummary();
+        summary.setGeneratedAt(LocalDateTime.now());
+        summary.setSettlements(calculateSettlementSummary(balances));
+        summary.setPendingActions(calculatePendingActions(balances));
         return summary;
     }
+
+    /**
+     * Unfiltered counterparty balances from the inbox, building it from the user's expenses
+     * on a miss. Falls back to computing from expenses when Redis is unavailable.
+     */
+    private Map<String, Double> getPendingBalances(String userId, Supplier<List<ExpenseDto>> expenses) {
+        if (pendingActionsService == null) {
+            return calculateCounterpartyBalances(userId, expenses.get());
+        }
+        try {
+            Map<String, Double> balances = pendingActionsService.getBalances(userId);
+            if (balances != null) {
+                return balances;
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to read pending actions inbox for user {}: {}", userId, e.getMessage());
+            return calculateCounterpartyBalances(userId, expenses.get());
+        }
+
+        // Version first: a change applied after this read makes the rebuild skip storing
+        String version;
+        try {
+            version = pendingActionsService.rebuildVersion(userId);
+        } catch (Exception e) {
+            logger.warn("Failed to read pending actions version for user {}: {}", userId, e.getMessage());
+            return calculateCounterpartyBalances(userId, expenses.get());
+        }
+        Map<String, Double> balances = calculateCounterpartyBalances(userId, expenses.get());
+        if (version == null) {
+            return balances;
+        }
+        try {
+            pendingActionsService.rebuild(userId, version, balances);
+        } catch (Exception e) {
+            logger.warn("Failed to build pending actions inbox for user {}: {}", userId, e.getMessage());
+        }
+        return balances;
+    }
     
     // ===========================================
     // TREND ANALYTICS
@@ -116,29 +181,49 @@ public class AnalyticsService {
             filter.setEndDate(LocalDate.now());
         }
 
-        List<ExpenseSql> allExpenses = expenseRepo.findAllByUserInvolvement(
-            userId, Sort.by(Sort.Direction.ASC, "date")
-        );
-
-        // Apply all filters (category, friend, group, settled)
-        List<ExpenseSql> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
-
-        // Filter by date range
-        List<ExpenseSql> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
+        // Unscoped trends are served from the persisted per-period rollups; otherwise month-based
+        // trends without group/friend/settled filters are aggregated by the store. A columnar
+        // snapshot, when the user has one, also covers the group filter.
+        boolean useRollups = trendRollupService != null && !hasScopeFilters(filter);
+        ExpenseColumns columns = !useRollups && canAggregateTrends(filter, true) ? expenseColumns(userId) : null;
+        boolean useAggregates = !useRollups && canAggregateTrends(filter, columns != null);
+        String groupId = filter.getGroupId() == null || filter.getGroupId().isEmpty() ? null : filter.getGroupId();
 
         TrendData trendData = new TrendData();
         trendData.setPeriodType(filter.getGranularity().name());
-        
-        // Group expenses by period
-        Map<String, List<ExpenseSql>> groupedExpenses = groupByPeriod(periodExpenses, filter.getGranularity());
-        
-        List<TrendData.TrendPoint> dataPoints = new ArrayList<>();
+
+        List<ExpenseDto> allExpenses = null;
+        List<TrendData.TrendPoint> dataPoints;
+        if (useRollups) {
+            dataPoints = trendRollupService.getTrendPoints(
+                userId, filter.getGranularity(), filter.getStartDate(), filter.getEndDate());
+        } else if (useAggregates) {
+            dataPoints = aggregateTrendPoints(userId, columns, groupId, filter.getGranularity(), filter.getCategory(),
+                filter.getStartDate(), filter.getEndDate());
+        } else {
+            allExpenses = dataSource.findExpensesForUser(
+                userId, Sort.by(Sort.Direction.ASC, "date")
+            );
+
+            // Apply all filters (category, friend, group, settled)
+            List<ExpenseDto> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
+
+            // Filter by date range
+            List<ExpenseDto> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
+
+            // Group expenses by period
+            Map<String, List<ExpenseDto>> groupedExpenses = groupByPeriod(periodExpenses, filter.getGranularity());
+
+            dataPoints = new ArrayList<>();
+            for (Map.Entry<String, List<ExpenseDto>> entry : groupedExpenses.entrySet()) {
+                dataPoints.add(calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity()));
+            }
+        }
+
         double totalSpending = 0;
         double totalIncome = 0;
         
-        for (Map.Entry<String, List<ExpenseSql>> entry : groupedExpenses.entrySet()) {
-            TrendData.TrendPoint point = calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity());
-            dataPoints.add(point);
+        for (TrendData.TrendPoint point : dataPoints) {
             totalSpending += point.getSpending();
             totalIncome += point.getIncome();
         }
@@ -190,13 +275,20 @@ public class AnalyticsService {
         
         // Add comparison data if requested
         if (filter.isIncludeComparison() && filter.getComparisonStartDate() != null) {
-            List<ExpenseSql> compExpenses = filterByDateRange(allExpenses, 
-                filter.getComparisonStartDate(), filter.getComparisonEndDate());
-            Map<String, List<ExpenseSql>> compGrouped = groupByPeriod(compExpenses, filter.getGranularity());
-            
             List<TrendData.TrendPoint> compPoints = new ArrayList<>();
-            for (Map.Entry<String, List<ExpenseSql>> entry : compGrouped.entrySet()) {
-                compPoints.add(calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity()));
+            if (useRollups) {
+                compPoints.addAll(trendRollupService.getTrendPoints(userId, filter.getGranularity(),
+                    filter.getComparisonStartDate(), filter.getComparisonEndDate()));
+            } else if (useAggregates) {
+                compPoints.addAll(aggregateTrendPoints(userId, columns, groupId, filter.getGranularity(), null,
+                    filter.getComparisonStartDate(), filter.getComparisonEndDate()));
+            } else {
+                List<ExpenseDto> compExpenses = filterByDateRange(allExpenses, 
+                    filter.getComparisonStartDate(), filter.getComparisonEndDate());
+                Map<String, List<ExpenseDto>> compGrouped = groupByPeriod(compExpenses, filter.getGranularity());
+                for (Map.Entry<String, List<ExpenseDto>> entry : compGrouped.entrySet()) {
+                    compPoints.add(calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity()));
+                }
             }
             compPoints.sort(Comparator.comparing(TrendData.TrendPoint::getPeriodKey));
             
@@ -207,6 +299,64 @@ public class AnalyticsService {
         return trendData;
     }
     
+    /**
+     * Month-based trends can be built from the store's monthly aggregation as long as
+     * the only scope filter is a category (or a group, when scanning a columnar snapshot).
+     */
+    private boolean canAggregateTrends(AnalyticsFilter filter, boolean columnar) {
+        AnalyticsFilter.TimeGranularity granularity = filter.getGranularity();
+        boolean monthBased = granularity == AnalyticsFilter.TimeGranularity.MONTHLY
+            || granularity == AnalyticsFilter.TimeGranularity.QUARTERLY
+            || granularity == AnalyticsFilter.TimeGranularity.YEARLY;
+        return monthBased
+            && (columnar || filter.getGroupId() == null || filter.getGroupId().isEmpty())
+            && (filter.getFriendId() == null || filter.getFriendId().isEmpty())
+            && (filter.getSettledFilter() == null || filter.getSettledFilter().isEmpty());
+    }
+
+    /**
+     * Build trend points from per-month/category totals (columnar snapshot when given, else the
+     * store), rolling months up into quarters or years when needed.
+     */
+    private List<TrendData.TrendPoint> aggregateTrendPoints(String userId, ExpenseColumns columns, String groupId,
+            AnalyticsFilter.TimeGranularity granularity, String category, LocalDate start, LocalDate end) {
+        Map<String, TrendData.TrendPoint> points = new HashMap<>();
+        Map<String, Map<String, Double>> categoryAmounts = new HashMap<>();
+
+        List<MonthlySpending> rows = columns != null
+            ? columns.monthlySpending(groupId, start, end)
+            : dataSource.aggregateMonthlySpending(userId, start, end);
+        for (MonthlySpending row : rows) {
+            if (category != null && !category.isEmpty() && !category.equalsIgnoreCase(row.getCategory())) {
+                continue;
+            }
+            String key = TrendPeriods.keyOf(LocalDate.of(row.getYear(), row.getMonth(), 1), granularity);
+            TrendData.TrendPoint point = points.computeIfAbsent(key, k -> {
+                TrendData.TrendPoint p = new TrendData.TrendPoint();
+                p.setPeriodKey(k);
+                p.setLabel(formatPeriodKey(k, granularity));
+                return p;
+            });
+            point.setSpending(point.getSpending() + row.getSpending());
+            point.setIncome(point.getIncome() + row.getIncome());
+            point.setExpenseCount(point.getExpenseCount() + (int) row.getExpenseCount());
+            if (row.getCategory() != null) {
+                categoryAmounts.computeIfAbsent(key, k -> new HashMap<>())
+                    .merge(row.getCategory(), row.getSpending(), Double::sum);
+            }
+        }
+
+        for (TrendData.TrendPoint point : points.values()) {
+            point.setNetFlow(point.getIncome() - point.getSpending());
+            point.setAverageExpense(point.getExpenseCount() == 0 ? 0 : point.getSpending() / point.getExpenseCount());
+            point.setCategoryBreakdown(categoryAmounts.getOrDefault(point.getPeriodKey(), Map.of()).entrySet().stream()
+                .map(e -> new TrendData.CategoryAmount(e.getKey(), e.getValue()))
+                .collect(Collectors.toList()));
+        }
+
+        return new ArrayList<>(points.values());
+    }
+    
     // ===========================================
     // CATEGORY ANALYTICS
     // ===========================================
@@ -222,62 +372,113 @@ public class AnalyticsService {
             filter.setEndDate(LocalDate.now());
         }
 
-        List<ExpenseSql> allExpenses = expenseRepo.findAllByUserInvolvement(
-            userId, Sort.by(Sort.Direction.DESC, "date")
-        );
-
-        // Apply all filters (friend, group, settled - category is handled separately in this method)
-        List<ExpenseSql> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
+        // Sketches are kept per user and category only, so a group filter needs the exact path
+        if (filter.isApproximate() && sketchService != null
+                && (filter.getGroupId() == null || filter.getGroupId().isEmpty())) {
+            CategoryAnalytics approximate = getApproximateCategoryAnalytics(userId, filter);
+            if (approximate != null) {
+                return approximate;
+            }
+        }
 
-        List<ExpenseSql> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
-        
-        // Get comparison period expenses (previous equivalent period) - use filtered expenses
+        // Get comparison period (previous equivalent period)
         long daysDiff = ChronoUnit.DAYS.between(filter.getStartDate(), filter.getEndDate());
         LocalDate compStart = filter.getStartDate().minusDays(daysDiff + 1);
         LocalDate compEnd = filter.getStartDate().minusDays(1);
-        List<ExpenseSql> compExpenses = filterByDateRange(filteredExpenses, compStart, compEnd);
-        
+
+        List<CategorySpending> current;
+        Map<String, Double> compByCategory;
+        Map<String, List<ExpenseDto>> topByCategory;
+
+        if (canAggregateCategories(filter)) {
+            // Totals and top expenses are computed by the store (or scanned from the columnar
+            // snapshot); only a few rows per category come back
+            String groupId = filter.getGroupId() == null || filter.getGroupId().isEmpty() ? null : filter.getGroupId();
+            ExpenseColumns columns = expenseColumns(userId);
+            List<CategorySpending> previous;
+            List<ExpenseDto> topExpenses;
+            if (columns != null) {
+                current = columns.categorySpending(groupId, filter.getStartDate(), filter.getEndDate());
+                previous = columns.categorySpending(groupId, compStart, compEnd);
+                List<String> topIds = columns.topExpenseIdsPerCategory(groupId, filter.getStartDate(), filter.getEndDate(), 3);
+                topExpenses = topIds.isEmpty() ? new ArrayList<>() : expenseDao.findAllById(topIds);
+            } else {
+                current = dataSource.aggregateCategorySpending(userId, groupId, filter.getStartDate(), filter.getEndDate());
+                previous = dataSource.aggregateCategorySpending(userId, groupId, compStart, compEnd);
+                topExpenses = dataSource.findTopExpensesPerCategory(userId, groupId, filter.getStartDate(), filter.getEndDate(), 3);
+            }
+            compByCategory = previous.stream()
+                .filter(c -> c.getCategory() != null && !c.getCategory().isEmpty())
+                .collect(Collectors.toMap(CategorySpending::getCategory, CategorySpending::getTotal));
+            topByCategory = topExpenses.stream()
+                .collect(Collectors.groupingBy(ExpenseDto::getCategory));
+            if (filter.getCategory() != null && !filter.getCategory().isEmpty()) {
+                current = current.stream()
+                    .filter(c -> filter.getCategory().equalsIgnoreCase(c.getCategory()))
+                    .collect(Collectors.toList());
+            }
+        } else {
+            List<ExpenseDto> allExpenses = dataSource.findExpensesForUser(
+                userId, Sort.by(Sort.Direction.DESC, "date")
+            );
+
+            // Apply all filters (friend, group, settled - category is handled separately in this method)
+            List<ExpenseDto> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
+            List<ExpenseDto> periodExpenses = filterByDateRange(filteredExpenses, filter.getStartDate(), filter.getEndDate());
+            List<ExpenseDto> compExpenses = filterByDateRange(filteredExpenses, compStart, compEnd);
+
+            current = new ArrayList<>();
+            Map<String, List<ExpenseDto>> byCategory = periodExpenses.stream()
+                .collect(Collectors.groupingBy(e -> e.getCategory() != null ? e.getCategory() : ""));
+            for (Map.Entry<String, List<ExpenseDto>> entry : byCategory.entrySet()) {
+                DoubleSummaryStatistics stats = entry.getValue().stream()
+                    .mapToDouble(e -> getUserShare(userId, e))
+                    .summaryStatistics();
+                current.add(new CategorySpending(entry.getKey(), stats.getSum(), stats.getCount(),
+                    stats.getAverage(), stats.getMin(), stats.getMax()));
+            }
+
+            compByCategory = compExpenses.stream()
+                .filter(e -> e.getCategory() != null && !e.getCategory().isEmpty())
+                .collect(Collectors.groupingBy(
+                    ExpenseDto::getCategory,
+                    Collectors.summingDouble(e -> getUserShare(userId, e))
+                ));
+
+            topByCategory = new HashMap<>();
+            for (Map.Entry<String, List<ExpenseDto>> entry : byCategory.entrySet()) {
+                topByCategory.put(entry.getKey(), entry.getValue().stream()
+                    .sorted(Comparator.comparingDouble(ExpenseDto::getTotalAmount).reversed())
+                    .limit(3)
+                    .collect(Collectors.toList()));
+            }
+        }
+
         CategoryAnalytics analytics = new CategoryAnalytics();
-        
-        // Group by category
-        Map<String, List<ExpenseSql>> byCategory = periodExpenses.stream()
-            .filter(e -> e.getCategory() != null && !e.getCategory().isEmpty())
-            .collect(Collectors.groupingBy(ExpenseSql::getCategory));
-        
-        Map<String, Double> compByCategory = compExpenses.stream()
-            .filter(e -> e.getCategory() != null && !e.getCategory().isEmpty())
-            .collect(Collectors.groupingBy(
-                ExpenseSql::getCategory,
-                Collectors.summingDouble(e -> getUserShare(userId, e))
-            ));
-        
-        double totalSpending = periodExpenses.stream()
-            .mapToDouble(e -> getUserShare(userId, e))
-            .sum();
-        
+
+        // Uncategorized spending counts towards the total but gets no detail row
+        double totalSpending = current.stream().mapToDouble(CategorySpending::getTotal).sum();
+
         List<CategoryAnalytics.CategoryDetail> categories = new ArrayList<>();
         
-        for (Map.Entry<String, List<ExpenseSql>> entry : byCategory.entrySet()) {
+        for (CategorySpending row : current) {
+            if (row.getCategory() == null || row.getCategory().isEmpty()) {
+                continue;
+            }
             CategoryAnalytics.CategoryDetail detail = new CategoryAnalytics.CategoryDetail();
-            detail.setCategory(entry.getKey());
-            detail.setCategoryIcon(getCategoryIcon(entry.getKey()));
+            detail.setCategory(row.getCategory());
+            detail.setCategoryIcon(getCategoryIcon(row.getCategory()));
             
-            double amount = entry.getValue().stream()
-                .mapToDouble(e -> getUserShare(userId, e))
-                .sum();
+            double amount = row.getTotal();
             detail.setTotalAmount(amount);
             detail.setPercentage(totalSpending > 0 ? (amount / totalSpending) * 100 : 0);
-            detail.setExpenseCount(entry.getValue().size());
-            detail.setAverageAmount(entry.getValue().isEmpty() ? 0 : amount / entry.getValue().size());
-            
-            DoubleSummaryStatistics stats = entry.getValue().stream()
-                .mapToDouble(e -> getUserShare(userId, e))
-                .summaryStatistics();
-            detail.setMinAmount(stats.getMin());
-            detail.setMaxAmount(stats.getMax());
+            detail.setExpenseCount((int) row.getExpenseCount());
+            detail.setAverageAmount(row.getExpenseCount() == 0 ? 0 : amount / row.getExpenseCount());
+            detail.setMinAmount(row.getMin());
+            detail.setMaxAmount(row.getMax());
             
             // Comparison with previous period
-            double prevAmount = compByCategory.getOrDefault(entry.getKey(), 0.0);
+            double prevAmount = compByCategory.getOrDefault(row.getCategory(), 0.0);
             detail.setPreviousPeriodAmount(prevAmount);
             if (prevAmount > 0) {
                 double change = ((amount - prevAmount) / prevAmount) * 100;
@@ -289,8 +490,9 @@ public class AnalyticsService {
             }
             
             // Top 3 expenses in category
-            List<DashboardSummary.ExpenseSnapshot> topExpenses = entry.getValue().stream()
-                .sorted(Comparator.comparingDouble(ExpenseSql::getTotalAmount).reversed())
+            List<DashboardSummary.ExpenseSnapshot> topExpenses = topByCategory.getOrDefault(row.getCategory(), List.of())
+                .stream()
+                .sorted(Comparator.comparingDouble(ExpenseDto::getTotalAmount).reversed())
                 .limit(3)
                 .map(e -> toExpenseSnapshot(userId, e))
                 .collect(Collectors.toList());
@@ -342,12 +544,12 @@ public class AnalyticsService {
      * Get detailed balance analytics.
      */
     public BalanceAnalytics getBalanceAnalytics(String userId, AnalyticsFilter filter) {
-        List<ExpenseSql> allExpenses = expenseRepo.findAllByUserInvolvement(
+        List<ExpenseDto> allExpenses = dataSource.findExpensesForUser(
             userId, Sort.by(Sort.Direction.DESC, "date")
         );
 
         // Apply all filters (category, friend, group, settled)
-        List<ExpenseSql> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
+        List<ExpenseDto> filteredExpenses = applyAllFilters(allExpenses, userId, filter);
 
         BalanceAnalytics analytics = new BalanceAnalytics();
 
@@ -357,15 +559,15 @@ public class AnalyticsService {
         Map<String, Double> friendTotalShared = new HashMap<>();
         Map<String, LocalDateTime> friendLastActivity = new HashMap<>();
 
-        for (ExpenseSql expense : filteredExpenses) {
+        for (ExpenseDto expense : filteredExpenses) {
             // Get all other participants
             Set<String> otherUsers = new HashSet<>();
-            for (ParticipantSql p : expense.getParticipants()) {
+            for (ExpenseDto.ParticipantDto p : expense.getParticipants()) {
                 if (!p.getUserId().equals(userId)) {
                     otherUsers.add(p.getUserId());
                 }
             }
-            for (PayerSql p : expense.getPayers()) {
+            for (ExpenseDto.PayerDto p : expense.getPayers()) {
                 if (!p.getUserId().equals(userId)) {
                     otherUsers.add(p.getUserId());
                 }
@@ -466,11 +668,11 @@ public class AnalyticsService {
         }
         
         // Get shared expenses
-        List<ExpenseSql> sharedExpenses = expenseRepo.findAllByBothUserInvolvement(
+        List<ExpenseDto> sharedExpenses = dataSource.findSharedExpenses(
             userId, friendId, Sort.by(Sort.Direction.DESC, "date")
         );
         
-        List<ExpenseSql> periodExpenses = filterByDateRange(sharedExpenses, filter.getStartDate(), filter.getEndDate());
+        List<ExpenseDto> periodExpenses = filterByDateRange(sharedExpenses, filter.getStartDate(), filter.getEndDate());
         
         FriendAnalytics analytics = new FriendAnalytics();
         
@@ -491,7 +693,7 @@ public class AnalyticsService {
         double totalShared = 0;
         Map<String, Integer> categoryCounts = new HashMap<>();
         
-        for (ExpenseSql expense : sharedExpenses) {
+        for (ExpenseDto expense : sharedExpenses) {
             currentBalance += getUserNet(userId, expense);
             totalShared += expense.getTotalAmount();
             if (expense.getCategory() != null) {
@@ -518,9 +720,9 @@ public class AnalyticsService {
         
         // Spending trend
         filter.setGranularity(AnalyticsFilter.TimeGranularity.MONTHLY);
-        Map<String, List<ExpenseSql>> grouped = groupByPeriod(periodExpenses, filter.getGranularity());
+        Map<String, List<ExpenseDto>> grouped = groupByPeriod(periodExpenses, filter.getGranularity());
         List<TrendData.TrendPoint> trend = new ArrayList<>();
-        for (Map.Entry<String, List<ExpenseSql>> entry : grouped.entrySet()) {
+        for (Map.Entry<String, List<ExpenseDto>> entry : grouped.entrySet()) {
             trend.add(calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity()));
         }
         trend.sort(Comparator.comparing(TrendData.TrendPoint::getPeriodKey));
@@ -549,13 +751,20 @@ public class AnalyticsService {
         if (filter.getEndDate() == null) {
             filter.setEndDate(LocalDate.now());
         }
+
+        if (filter.isApproximate() && sketchService != null) {
+            GroupAnalytics approximate = getApproximateGroupAnalytics(groupId, filter);
+            if (approximate != null) {
+                return approximate;
+            }
+        }
         
-        List<ExpenseSql> groupExpenses = expenseRepo.findAllByGroupId(
-            groupId, Sort.by(Sort.Direction.DESC, "date")
+        // Whole-history totals are aggregated by the store; only the selected period is loaded as rows
+        GroupTotals totals = dataSource.aggregateGroup(groupId);
+        List<ExpenseDto> periodExpenses = dataSource.findGroupExpenses(
+            groupId, filter.getStartDate(), filter.getEndDate(), Sort.by(Sort.Direction.DESC, "date")
         );
         
-        List<ExpenseSql> periodExpenses = filterByDateRange(groupExpenses, filter.getStartDate(), filter.getEndDate());
-        
         GroupAnalytics analytics = new GroupAnalytics();
         
         // Group profile
@@ -572,47 +781,22 @@ public class AnalyticsService {
         // Financials
         GroupAnalytics.GroupFinancials financials = new GroupAnalytics.GroupFinancials();
         
-        double totalSpending = groupExpenses.stream().mapToDouble(ExpenseSql::getTotalAmount).sum();
-        double yourContribution = 0;
-        double yourShare = 0;
-        Map<String, Integer> categoryCounts = new HashMap<>();
-        Map<String, Double> categoryAmounts = new HashMap<>();
-        
-        for (ExpenseSql expense : groupExpenses) {
-            // Your contribution (what you paid)
-            for (PayerSql payer : expense.getPayers()) {
-                if (payer.getUserId().equals(userId)) {
-                    yourContribution += payer.getPaidAmount();
-                }
-            }
-            // Your share
-            for (ParticipantSql p : expense.getParticipants()) {
-                if (p.getUserId().equals(userId)) {
-                    yourShare += p.getShare();
-                }
-            }
-            
-            if (expense.getCategory() != null) {
-                categoryCounts.merge(expense.getCategory(), 1, Integer::sum);
-                categoryAmounts.merge(expense.getCategory(), expense.getTotalAmount(), Double::sum);
-            }
-        }
+        double totalSpending = totals.getTotalAmount();
+        double yourContribution = totals.getPaidByMember().getOrDefault(userId, 0.0);
+        double yourShare = totals.getShareByMember().getOrDefault(userId, 0.0);
         
         financials.setTotalSpending(totalSpending);
-        financials.setExpenseCount(groupExpenses.size());
-        financials.setAverageExpense(groupExpenses.isEmpty() ? 0 : totalSpending / groupExpenses.size());
+        financials.setExpenseCount((int) totals.getExpenseCount());
+        financials.setAverageExpense(totals.getExpenseCount() == 0 ? 0 : totalSpending / totals.getExpenseCount());
         financials.setYourContribution(yourContribution);
         financials.setYourShare(yourShare);
         financials.setYourBalance(yourContribution - yourShare);
         financials.setBalanceDirection(yourContribution > yourShare ? "OWED_TO_YOU" : 
             yourContribution < yourShare ? "YOU_OWE" : "SETTLED");
-        
-        if (!groupExpenses.isEmpty()) {
-            financials.setLastActivity(groupExpenses.get(0).getCreatedAt());
-        }
+        financials.setLastActivity(totals.getLastActivity());
         
         // Top category
-        categoryAmounts.entrySet().stream()
+        totals.getCategoryAmounts().entrySet().stream()
             .max(Map.Entry.comparingByValue())
             .ifPresent(e -> {
                 financials.setTopCategory(e.getKey());
@@ -626,71 +810,41 @@ public class AnalyticsService {
         analytics.setFinancials(financials);
         
         // Member contributions
-        Map<String, GroupAnalytics.MemberContribution> memberMap = new HashMap<>();
-        
-        for (ExpenseSql expense : groupExpenses) {
-            // Track payers
-            for (PayerSql payer : expense.getPayers()) {
-                memberMap.computeIfAbsent(payer.getUserId(), id -> {
-                    GroupAnalytics.MemberContribution mc = new GroupAnalytics.MemberContribution();
-                    mc.setMemberId(id);
-                    userDao.findById(id).ifPresent(u -> {
-                        mc.setMemberName(u.getName());
-                        mc.setMemberAvatar(u.getAvatarUrl());
-                    });
-                    return mc;
-                });
-                GroupAnalytics.MemberContribution mc = memberMap.get(payer.getUserId());
-                mc.setTotalPaid(mc.getTotalPaid() + payer.getPaidAmount());
-            }
-            
-            // Track participants
-            for (ParticipantSql p : expense.getParticipants()) {
-                memberMap.computeIfAbsent(p.getUserId(), id -> {
-                    GroupAnalytics.MemberContribution mc = new GroupAnalytics.MemberContribution();
-                    mc.setMemberId(id);
-                    userDao.findById(id).ifPresent(u -> {
-                        mc.setMemberName(u.getName());
-                        mc.setMemberAvatar(u.getAvatarUrl());
-                    });
-                    return mc;
-                });
-                GroupAnalytics.MemberContribution mc = memberMap.get(p.getUserId());
-                mc.setTotalShare(mc.getTotalShare() + p.getShare());
-            }
-            
-            // Track creator
-            if (expense.getCreatorId() != null) {
-                memberMap.computeIfAbsent(expense.getCreatorId(), id -> {
-                    GroupAnalytics.MemberContribution mc = new GroupAnalytics.MemberContribution();
-                    mc.setMemberId(id);
-                    userDao.findById(id).ifPresent(u -> {
-                        mc.setMemberName(u.getName());
-                        mc.setMemberAvatar(u.getAvatarUrl());
-                    });
-                    return mc;
-                });
-                memberMap.get(expense.getCreatorId()).setExpensesCreated(
-                    memberMap.get(expense.getCreatorId()).getExpensesCreated() + 1
-                );
+        Set<String> memberIds = new HashSet<>();
+        memberIds.addAll(totals.getPaidByMember().keySet());
+        memberIds.addAll(totals.getShareByMember().keySet());
+        memberIds.addAll(totals.getCreatedByMember().keySet());
+        memberIds.remove(null);
+        
+        // One batch lookup for every member's name and avatar
+        Map<String, UserDto> members = userDao.findAllById(memberIds).stream()
+            .collect(Collectors.toMap(UserDto::getId, u -> u, (a, b) -> a));
+
+        List<GroupAnalytics.MemberContribution> contributions = new ArrayList<>();
+        for (String memberId : memberIds) {
+            GroupAnalytics.MemberContribution mc = new GroupAnalytics.MemberContribution();
+            mc.setMemberId(memberId);
+            UserDto member = members.get(memberId);
+            if (member != null) {
+                mc.setMemberName(member.getName());
+                mc.setMemberAvatar(member.getAvatarUrl());
             }
-        }
-        
-        // Finalize member contributions
-        List<GroupAnalytics.MemberContribution> contributions = new ArrayList<>(memberMap.values());
-        for (GroupAnalytics.MemberContribution mc : contributions) {
+            mc.setTotalPaid(totals.getPaidByMember().getOrDefault(memberId, 0.0));
+            mc.setTotalShare(totals.getShareByMember().getOrDefault(memberId, 0.0));
+            mc.setExpensesCreated(totals.getCreatedByMember().getOrDefault(memberId, 0L).intValue());
             mc.setBalance(mc.getTotalPaid() - mc.getTotalShare());
             mc.setBalanceDirection(mc.getBalance() > 0 ? "OWED_TO_THEM" : mc.getBalance() < 0 ? "THEY_OWE" : "SETTLED");
             mc.setContributionPercentage(totalSpending > 0 ? (mc.getTotalPaid() / totalSpending) * 100 : 0);
+            contributions.add(mc);
         }
         contributions.sort(Comparator.comparingDouble(GroupAnalytics.MemberContribution::getTotalPaid).reversed());
         analytics.setMemberContributions(contributions);
         
         // Spending trend
         filter.setGranularity(AnalyticsFilter.TimeGranularity.MONTHLY);
-        Map<String, List<ExpenseSql>> grouped = groupByPeriod(periodExpenses, filter.getGranularity());
+        Map<String, List<ExpenseDto>> grouped = groupByPeriod(periodExpenses, filter.getGranularity());
         List<TrendData.TrendPoint> trend = new ArrayList<>();
-        for (Map.Entry<String, List<ExpenseSql>> entry : grouped.entrySet()) {
+        for (Map.Entry<String, List<ExpenseDto>> entry : grouped.entrySet()) {
             trend.add(calculateTrendPoint(userId, entry.getKey(), entry.getValue(), filter.getGranularity()));
         }
         trend.sort(Comparator.comparing(TrendData.TrendPoint::getPeriodKey));
@@ -705,11 +859,127 @@ public class AnalyticsService {
         return analytics;
     }
 
+    // ===========================================
+    // APPROXIMATE ANALYTICS
+    // ===========================================
+
+    /**
+     * Category analytics answered from per-month sketches (no expense scan).
+     * Period comparison and top expenses are not available in this mode.
+     * Null when the sketches are unavailable; the exact path answers instead.
+     */
+    private CategoryAnalytics getApproximateCategoryAnalytics(String userId, AnalyticsFilter filter) {
+        Map<String, ApproximateStats> statsByCategory =
+            sketchService.categoryStats(userId, filter.getStartDate(), filter.getEndDate());
+        if (statsByCategory == null) {
+            return null;
+        }
+
+        double totalSpending = statsByCategory.values().stream().mapToDouble(ApproximateStats::getTotal).sum();
+
+        List<CategoryAnalytics.CategoryDetail> categories = new ArrayList<>();
+        for (Map.Entry<String, ApproximateStats> entry : statsByCategory.entrySet()) {
+            ApproximateStats stats = entry.getValue();
+            CategoryAnalytics.CategoryDetail detail = new CategoryAnalytics.CategoryDetail();
+            detail.setCategory(entry.getKey());
+            detail.setCategoryIcon(getCategoryIcon(entry.getKey()));
+            detail.setTotalAmount(stats.getTotal());
+            detail.setPercentage(totalSpending > 0 ? (stats.getTotal() / totalSpending) * 100 : 0);
+            detail.setExpenseCount((int) stats.getCount());
+            detail.setAverageAmount(stats.getCount() == 0 ? 0 : stats.getTotal() / stats.getCount());
+            detail.setMinAmount(stats.getMinAmount());
+            detail.setMaxAmount(stats.getMaxAmount());
+            detail.setApproximate(stats);
+            categories.add(detail);
+        }
+        categories.sort(Comparator.comparingDouble(CategoryAnalytics.CategoryDetail::getTotalAmount).reversed());
+
+        CategoryAnalytics analytics = new CategoryAnalytics();
+        analytics.setCategories(categories);
+
+        CategoryAnalytics.CategorySummary summary = new CategoryAnalytics.CategorySummary();
+        summary.setTotalCategories(categories.size());
+        if (!categories.isEmpty()) {
+            summary.setTopCategory(categories.get(0).getCategory());
+            summary.setTopCategoryAmount(categories.get(0).getTotalAmount());
+            categories.stream()
+                .max(Comparator.comparingInt(CategoryAnalytics.CategoryDetail::getExpenseCount))
+                .ifPresent(c -> {
+                    summary.setMostFrequentCategory(c.getCategory());
+                    summary.setMostFrequentCount(c.getExpenseCount());
+                });
+        }
+        analytics.setSummary(summary);
+
+        return analytics;
+    }
+
+    /**
+     * Group analytics answered from per-month sketches (no expense scan).
+     * Member contributions, trend and recent expenses are left empty in this mode.
+     * Null when the sketches are unavailable; the exact path answers instead.
+     */
+    private GroupAnalytics getApproximateGroupAnalytics(String groupId, AnalyticsFilter filter) {
+        ApproximateStats stats = sketchService.groupStats(groupId, filter.getStartDate(), filter.getEndDate());
+        if (stats == null) {
+            return null;
+        }
+        GroupAnalytics analytics = new GroupAnalytics();
+
+        GroupAnalytics.GroupProfile profile = new GroupAnalytics.GroupProfile();
+        profile.setGroupId(groupId);
+        groupDao.findById(groupId).ifPresent(group -> {
+            profile.setName(group.getGroupName());
+            profile.setMemberCount(group.getFriends() != null ? group.getFriends().size() + 1 : 1);
+            profile.setCreatedAt(group.getCreatedAt());
+            profile.setCreatorName(group.getCreatorName());
+        });
+        analytics.setGroup(profile);
+
+        GroupAnalytics.GroupFinancials financials = new GroupAnalytics.GroupFinancials();
+        financials.setTotalSpending(stats.getTotal());
+        financials.setExpenseCount((int) stats.getCount());
+        financials.setAverageExpense(stats.getCount() == 0 ? 0 : stats.getTotal() / stats.getCount());
+        if (profile.getMemberCount() > 0) {
+            financials.setAveragePerMember(stats.getTotal() / profile.getMemberCount());
+        }
+        analytics.setFinancials(financials);
+        analytics.setApproximate(stats);
+
+        return analytics;
+    }
+
     // ===========================================
     // HELPER METHODS
     // ===========================================
     
-    private List<ExpenseSql> filterByDateRange(List<ExpenseSql> expenses, LocalDate start, LocalDate end) {
+    /**
+     * Whether the filter narrows the expense set beyond a date range.
+     */
+    private boolean hasScopeFilters(AnalyticsFilter filter) {
+        return (filter.getCategory() != null && !filter.getCategory().isEmpty())
+            || (filter.getGroupId() != null && !filter.getGroupId().isEmpty())
+            || (filter.getFriendId() != null && !filter.getFriendId().isEmpty())
+            || (filter.getSettledFilter() != null && !filter.getSettledFilter().isEmpty());
+    }
+
+    /**
+     * Category analytics can be aggregated by the store unless a friend or settled filter
+     * needs the full expense documents.
+     */
+    private boolean canAggregateCategories(AnalyticsFilter filter) {
+        return (filter.getFriendId() == null || filter.getFriendId().isEmpty())
+            && (filter.getSettledFilter() == null || filter.getSettledFilter().isEmpty());
+    }
+
+    /**
+     * The user's columnar snapshot, or null when there is none (disabled, light user, Redis down).
+     */
+    private ExpenseColumns expenseColumns(String userId) {
+        return expenseColumnsService != null ? expenseColumnsService.get(userId) : null;
+    }
+
+    private List<ExpenseDto> filterByDateRange(List<ExpenseDto> expenses, LocalDate start, LocalDate end) {
         return expenses.stream()
             .filter(e -> e.getDate() != null)
             .filter(e -> !e.getDate().isBefore(start) && !e.getDate().isAfter(end))
@@ -720,8 +990,8 @@ public class AnalyticsService {
      * Apply all filter criteria to a list of expenses.
      * This is the main filtering method that applies category, friend, group, and settled filters.
      */
-    private List<ExpenseSql> applyAllFilters(List<ExpenseSql> expenses, String userId, AnalyticsFilter filter) {
-        List<ExpenseSql> result = new ArrayList<>(expenses);
+    private List<ExpenseDto> applyAllFilters(List<ExpenseDto> expenses, String userId, AnalyticsFilter filter) {
+        List<ExpenseDto> result = new ArrayList<>(expenses);
 
         // Apply category filter
         if (filter.getCategory() != null && !filter.getCategory().isEmpty()) {
@@ -759,7 +1029,7 @@ public class AnalyticsService {
             if ("settled".equals(settledFilter)) {
                 // Show only fully settled expenses
                 result = result.stream()
-                    .filter(ExpenseSql::isSettled)
+                    .filter(ExpenseDto::isSettled)
                     .collect(Collectors.toList());
             } else if ("unsettled".equals(settledFilter)) {
                 // Show only unsettled expenses
@@ -772,48 +1042,13 @@ public class AnalyticsService {
         return result;
     }
     
-    private Map<String, List<ExpenseSql>> groupByPeriod(List<ExpenseSql> expenses, AnalyticsFilter.TimeGranularity granularity) {
-        DateTimeFormatter formatter;
-        
-        switch (granularity) {
-            case DAILY:
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                break;
-            case WEEKLY:
-                return expenses.stream()
-                    .filter(e -> e.getDate() != null)
-                    .collect(Collectors.groupingBy(e -> {
-                        LocalDate date = e.getDate();
-                        WeekFields weekFields = WeekFields.of(DayOfWeek.MONDAY, 1);
-                        int week = date.get(weekFields.weekOfWeekBasedYear());
-                        int year = date.get(weekFields.weekBasedYear());
-                        return String.format("%d-W%02d", year, week);
-                    }));
-            case MONTHLY:
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM");
-                break;
-            case QUARTERLY:
-                return expenses.stream()
-                    .filter(e -> e.getDate() != null)
-                    .collect(Collectors.groupingBy(e -> {
-                        LocalDate date = e.getDate();
-                        int quarter = (date.getMonthValue() - 1) / 3 + 1;
-                        return String.format("%d-Q%d", date.getYear(), quarter);
-                    }));
-            case YEARLY:
-                formatter = DateTimeFormatter.ofPattern("yyyy");
-                break;
-            default:
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM");
-        }
-        
-        final DateTimeFormatter finalFormatter = formatter;
+    private Map<String, List<ExpenseDto>> groupByPeriod(List<ExpenseDto> expenses, AnalyticsFilter.TimeGranularity granularity) {
         return expenses.stream()
             .filter(e -> e.getDate() != null)
-            .collect(Collectors.groupingBy(e -> e.getDate().format(finalFormatter)));
+            .collect(Collectors.groupingBy(e -> TrendPeriods.keyOf(e.getDate(), granularity)));
     }
     
-    private TrendData.TrendPoint calculateTrendPoint(String userId, String periodKey, List<ExpenseSql> expenses, 
+    private TrendData.TrendPoint calculateTrendPoint(String userId, String periodKey, List<ExpenseDto> expenses, 
             AnalyticsFilter.TimeGranularity granularity) {
         TrendData.TrendPoint point = new TrendData.TrendPoint();
         point.setPeriodKey(periodKey);
@@ -822,7 +1057,7 @@ public class AnalyticsService {
         double spending = 0;
         double income = 0;
         
-        for (ExpenseSql expense : expenses) {
+        for (ExpenseDto expense : expenses) {
             double share = getUserShare(userId, expense);
             double paid = getUserPaid(userId, expense);
             double net = paid - share;
@@ -843,7 +1078,7 @@ public class AnalyticsService {
         Map<String, Double> categoryMap = expenses.stream()
             .filter(e -> e.getCategory() != null)
             .collect(Collectors.groupingBy(
-                ExpenseSql::getCategory,
+                ExpenseDto::getCategory,
                 Collectors.summingDouble(e -> getUserShare(userId, e))
             ));
         
@@ -856,33 +1091,7 @@ public class AnalyticsService {
     }
     
     private String formatPeriodKey(String periodKey, AnalyticsFilter.TimeGranularity granularity) {
-        try {
-            switch (granularity) {
-                case DAILY:
-                    LocalDate date = LocalDate.parse(periodKey);
-                    return date.format(DateTimeFormatter.ofPattern("MMM d"));
-                case WEEKLY:
-                    // Parse year and week from format "2025-W44" and get the Monday of that week
-                    String[] weekParts = periodKey.split("-W");
-                    int year = Integer.parseInt(weekParts[0]);
-                    int weekNum = Integer.parseInt(weekParts[1]);
-                    LocalDate weekStart = LocalDate.ofYearDay(year, 1)
-                        .with(WeekFields.ISO.weekOfWeekBasedYear(), weekNum)
-                        .with(WeekFields.ISO.dayOfWeek(), 1);
-                    return weekStart.format(DateTimeFormatter.ofPattern("MMM d"));
-                case MONTHLY:
-                    String[] parts = periodKey.split("-");
-                    return java.time.Month.of(Integer.parseInt(parts[1])).name().substring(0, 3) + " " + parts[0];
-                case QUARTERLY:
-                    return periodKey.replace("-", " ");
-                case YEARLY:
-                    return periodKey;
-                default:
-                    return periodKey;
-            }
-        } catch (Exception e) {
-            return periodKey;
-        }
+        return TrendPeriods.label(periodKey, granularity);
     }
     
     private String formatPeriodLabel(LocalDate start, LocalDate end) {
@@ -893,21 +1102,21 @@ public class AnalyticsService {
                end.format(DateTimeFormatter.ofPattern("MMM d, yyyy"));
     }
     
-    private double getUserShare(String userId, ExpenseSql expense) {
+    private double getUserShare(String userId, ExpenseDto expense) {
         return expense.getParticipants().stream()
             .filter(p -> p.getUserId().equals(userId))
-            .mapToDouble(ParticipantSql::getShare)
+            .mapToDouble(ExpenseDto.ParticipantDto::getShare)
             .sum();
     }
     
-    private double getUserPaid(String userId, ExpenseSql expense) {
+    private double getUserPaid(String userId, ExpenseDto expense) {
         return expense.getPayers().stream()
             .filter(p -> p.getUserId().equals(userId))
-            .mapToDouble(PayerSql::getPaidAmount)
+            .mapToDouble(ExpenseDto.PayerDto::getPaidAmount)
             .sum();
     }
     
-    private double getUserNet(String userId, ExpenseSql expense) {
+    private double getUserNet(String userId, ExpenseDto expense) {
         return getUserPaid(userId, expense) - getUserShare(userId, expense);
     }
 
@@ -915,46 +1124,16 @@ public class AnalyticsService {
      * Get the EFFECTIVE net for a user in an expense, accounting for settlements.
      * This returns the actual outstanding balance after subtracting settled amounts.
      */
-    private double getEffectiveUserNet(String userId, ExpenseSql expense) {
-        // If the whole expense is settled, no balance
-        if (expense.isSettled()) {
-            return 0;
-        }
-
-        double rawNet = getUserNet(userId, expense);
-
-        // Find user's participant record to check their settlement status
-        ParticipantSql myParticipant = expense.getParticipants().stream()
-            .filter(p -> p.getUserId().equals(userId))
-            .findFirst()
-            .orElse(null);
-
-        if (myParticipant != null) {
-            // If user's part is fully settled, their balance is 0
-            if (myParticipant.isFullySettled()) {
-                return 0;
-            }
-
-            // If user owes money (rawNet < 0), reduce by settled amount
-            if (rawNet < 0) {
-                double amountOwed = Math.abs(rawNet);
-                double settledAmount = myParticipant.getSettledAmount();
-                double effectiveOwed = Math.max(0, amountOwed - settledAmount);
-                return -effectiveOwed; // Return as negative (still owes)
-            }
-        }
-
-        // If user is owed money (rawNet > 0), return as-is
-        // (Other participants settling doesn't directly reduce what's owed to this user in this model)
-        return rawNet;
+    private double getEffectiveUserNet(String userId, ExpenseDto expense) {
+        return BalanceContributions.effectiveNet(userId, expense);
     }
 
-    private DashboardSummary.BalanceSummary calculateBalanceSummary(String userId, List<ExpenseSql> expenses) {
+    private DashboardSummary.BalanceSummary calculateBalanceSummary(String userId, List<ExpenseDto> expenses) {
         DashboardSummary.BalanceSummary summary = new DashboardSummary.BalanceSummary();
 
         Map<String, Double> personBalances = new HashMap<>();
 
-        for (ExpenseSql expense : expenses) {
+        for (ExpenseDto expense : expenses) {
             // Use effective net that accounts for settlements
             double userNet = getEffectiveUserNet(userId, expense);
             if (Math.abs(userNet) < 0.01) continue; // Skip if effectively settled
@@ -1019,7 +1198,7 @@ public class AnalyticsService {
         return summary;
     }
     
-    private DashboardSummary.SpendingSummary calculateSpendingSummary(String userId, List<ExpenseSql> expenses, AnalyticsFilter filter) {
+    private DashboardSummary.SpendingSummary calculateSpendingSummary(String userId, List<ExpenseDto> expenses, AnalyticsFilter filter) {
         DashboardSummary.SpendingSummary summary = new DashboardSummary.SpendingSummary();
         
         double totalSpent = expenses.stream()
@@ -1037,28 +1216,19 @@ public class AnalyticsService {
         return summary;
     }
     
-    private DashboardSummary.SettlementSummary calculateSettlementSummary(String userId, List<ExpenseSql> expenses) {
-        DashboardSummary.SettlementSummary summary = new DashboardSummary.SettlementSummary();
-
+    /**
+     * Outstanding balance with each counterparty, negative when the user owes them.
+     */
+    private Map<String, Double> calculateCounterpartyBalances(String userId, List<ExpenseDto> expenses) {
         Map<String, Double> balances = new HashMap<>();
-        for (ExpenseSql expense : expenses) {
-            // Use effective net that accounts for settlements
-            double userNet = getEffectiveUserNet(userId, expense);
-            if (Math.abs(userNet) < 0.01) continue;
-            
-            Set<String> others = new HashSet<>();
-            expense.getParticipants().forEach(p -> {
-                if (!p.getUserId().equals(userId)) others.add(p.getUserId());
-            });
-            expense.getPayers().forEach(p -> {
-                if (!p.getUserId().equals(userId)) others.add(p.getUserId());
-            });
-            
-            if (!others.isEmpty()) {
-                double perPerson = userNet / others.size();
-                others.forEach(id -> balances.merge(id, perPerson, Double::sum));
-            }
+        for (ExpenseDto expense : expenses) {
+            BalanceContributions.forUser(userId, expense).forEach((id, amount) -> balances.merge(id, amount, Double::sum));
         }
+        return balances;
+    }
+
+    private DashboardSummary.SettlementSummary calculateSettlementSummary(Map<String, Double> balances) {
+        DashboardSummary.SettlementSummary summary = new DashboardSummary.SettlementSummary();
         
         int pending = 0;
         double pendingAmount = 0;
@@ -1076,7 +1246,7 @@ public class AnalyticsService {
         return summary;
     }
     
-    private DashboardSummary.ActivityMetrics calculateActivityMetrics(String userId, List<ExpenseSql> periodExpenses, List<ExpenseSql> allExpenses) {
+    private DashboardSummary.ActivityMetrics calculateActivityMetrics(String userId, List<ExpenseDto> periodExpenses, List<ExpenseDto> allExpenses) {
         DashboardSummary.ActivityMetrics metrics = new DashboardSummary.ActivityMetrics();
         
         metrics.setExpensesCreated((int) periodExpenses.stream()
@@ -1087,12 +1257,12 @@ public class AnalyticsService {
         
         Set<String> activeGroups = periodExpenses.stream()
             .filter(e -> e.getGroupId() != null)
-            .map(ExpenseSql::getGroupId)
+            .map(ExpenseDto::getGroupId)
             .collect(Collectors.toSet());
         metrics.setGroupsActive(activeGroups.size());
         
         Set<String> friends = new HashSet<>();
-        for (ExpenseSql expense : periodExpenses) {
+        for (ExpenseDto expense : periodExpenses) {
             expense.getParticipants().forEach(p -> {
                 if (!p.getUserId().equals(userId)) friends.add(p.getUserId());
             });
@@ -1109,7 +1279,7 @@ public class AnalyticsService {
         return metrics;
     }
     
-    private DashboardSummary.QuickStats calculateQuickStats(String userId, List<ExpenseSql> allExpenses) {
+    private DashboardSummary.QuickStats calculateQuickStats(String userId, List<ExpenseDto> allExpenses) {
         DashboardSummary.QuickStats stats = new DashboardSummary.QuickStats();
         
         // Count friends (from user's friendIds set)
@@ -1131,11 +1301,11 @@ public class AnalyticsService {
         return stats;
     }
     
-    private List<DashboardSummary.CategoryBreakdown> calculateTopCategories(String userId, List<ExpenseSql> expenses, int limit) {
+    private List<DashboardSummary.CategoryBreakdown> calculateTopCategories(String userId, List<ExpenseDto> expenses, int limit) {
         Map<String, Double> categoryAmounts = new HashMap<>();
         Map<String, Integer> categoryCounts = new HashMap<>();
         
-        for (ExpenseSql expense : expenses) {
+        for (ExpenseDto expense : expenses) {
             String category = expense.getCategory() != null ? expense.getCategory() : "Other";
             double share = getUserShare(userId, expense);
             categoryAmounts.merge(category, share, Double::sum);
@@ -1158,15 +1328,15 @@ public class AnalyticsService {
             .collect(Collectors.toList());
     }
     
-    private List<DashboardSummary.ExpenseSnapshot> getRecentExpenseSnapshots(String userId, List<ExpenseSql> expenses, int limit) {
+    private List<DashboardSummary.ExpenseSnapshot> getRecentExpenseSnapshots(String userId, List<ExpenseDto> expenses, int limit) {
         return expenses.stream()
-            .sorted(Comparator.comparing(ExpenseSql::getDate).reversed())
+            .sorted(Comparator.comparing(ExpenseDto::getDate).reversed())
             .limit(limit)
             .map(e -> toExpenseSnapshot(userId, e))
             .collect(Collectors.toList());
     }
     
-    private DashboardSummary.ExpenseSnapshot toExpenseSnapshot(String userId, ExpenseSql expense) {
+    private DashboardSummary.ExpenseSnapshot toExpenseSnapshot(String userId, ExpenseDto expense) {
         DashboardSummary.ExpenseSnapshot snapshot = new DashboardSummary.ExpenseSnapshot();
         snapshot.setId(expense.getId());
         snapshot.setDescription(expense.getDescription());
@@ -1179,56 +1349,36 @@ public class AnalyticsService {
         return snapshot;
     }
     
-    private List<DashboardSummary.PendingAction> calculatePendingActions(String userId, List<ExpenseSql> expenses) {
+    private List<DashboardSummary.PendingAction> calculatePendingActions(Map<String, Double> personBalances) {
         List<DashboardSummary.PendingAction> actions = new ArrayList<>();
 
-        // Calculate per-person balances using effective net (accounting for settlements)
-        Map<String, Double> personBalances = new HashMap<>();
-        for (ExpenseSql expense : expenses) {
-            double userNet = getEffectiveUserNet(userId, expense);
-            if (Math.abs(userNet) < 0.01) continue;
+        // Create pending actions for the 5 largest debts (most negative balance first)
+        List<Map.Entry<String, Double>> debts = personBalances.entrySet().stream()
+            .filter(entry -> entry.getValue() < -0.01) // You owe money
+            .sorted(Map.Entry.comparingByValue())
+            .limit(5)
+            .collect(Collectors.toList());
+        for (Map.Entry<String, Double> entry : debts) {
+            DashboardSummary.PendingAction action = new DashboardSummary.PendingAction();
+            action.setType("SETTLE_UP");
+            action.setAmount(Math.abs(entry.getValue()));
+            action.setReferenceId(entry.getKey());
             
-            Set<String> others = new HashSet<>();
-            expense.getParticipants().forEach(p -> {
-                if (!p.getUserId().equals(userId)) others.add(p.getUserId());
-            });
-            expense.getPayers().forEach(p -> {
-                if (!p.getUserId().equals(userId)) others.add(p.getUserId());
+            userDao.findById(entry.getKey()).ifPresent(u -> {
+                action.setCounterparty(u.getName());
+                action.setDescription("You owe " + u.getName() + " $" + String.format("%.2f", Math.abs(entry.getValue())));
             });
             
-            if (!others.isEmpty()) {
-                double perPerson = userNet / others.size();
-                others.forEach(id -> personBalances.merge(id, perPerson, Double::sum));
-            }
+            actions.add(action);
         }
         
-        // Create pending actions for debts
-        for (Map.Entry<String, Double> entry : personBalances.entrySet()) {
-            if (entry.getValue() < -0.01) { // You owe money
-                DashboardSummary.PendingAction action = new DashboardSummary.PendingAction();
-                action.setType("SETTLE_UP");
-                action.setAmount(Math.abs(entry.getValue()));
-                action.setReferenceId(entry.getKey());
-                
-                userDao.findById(entry.getKey()).ifPresent(u -> {
-                    action.setCounterparty(u.getName());
-                    action.setDescription("You owe " + u.getName() + " $" + String.format("%.2f", Math.abs(entry.getValue())));
-                });
-                
-                actions.add(action);
-            }
-        }
-        
-        // Sort by amount descending
-        actions.sort(Comparator.comparingDouble(DashboardSummary.PendingAction::getAmount).reversed());
-        
-        return actions.stream().limit(5).collect(Collectors.toList());
+        return actions;
     }
     
-    private List<BalanceAnalytics.GroupBalance> calculateGroupBalances(String userId, List<ExpenseSql> allExpenses) {
+    private List<BalanceAnalytics.GroupBalance> calculateGroupBalances(String userId, List<ExpenseDto> allExpenses) {
         Map<String, BalanceAnalytics.GroupBalance> groupMap = new HashMap<>();
         
-        for (ExpenseSql expense : allExpenses) {
+        for (ExpenseDto expense : allExpenses) {
             if (expense.getGroupId() == null) continue;
             
             String groupId = expense.getGroupId();
@@ -0,0 +1,333 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.dto.analytics.ApproximateStats;
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import com.splitzy.splitzy.util.RedisLocks;
+import com.tdunning.math.stats.MergingDigest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/**
+ * Mergeable per-month sketches for approximate analytics, kept in Redis.
+ *
+ * For every group and every (user, category) we keep, per month:
+ *   - a HyperLogLog of the users involved (distinct participants)
+ *   - a t-digest of amounts (median / p90 / p99, exact min and max)
+ *   - a running sum
+ *
+ * Writes only append to a buffer list, so recording an expense is a single pipelined round trip.
+ * Buffers are folded into the stored digest on read. A date range is answered by merging the
+ * monthly sketches it covers, so the range is widened to whole months.
+ *
+ * t-digests and HyperLogLogs cannot forget values, so a delete takes the expense out of the sum
+ * and the count exactly and is tallied per sketch; responses report that tally as the number of
+ * removed expenses still inside the percentiles, min/max and distinct participants.
+ *
+ * Redis calls go through the circuit breaker: while it is open, writes are skipped (like a failed
+ * write, the sketches then miss that expense) and reads return null so callers answer exactly.
+ */
+@Service
+public class AnalyticsSketchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsSketchService.class);
+
+    private static final String PREFIX = "sketch:";
+    private static final double COMPRESSION = 100;
+    private static final Duration RETENTION = Duration.ofDays(800);
+    private static final Duration COMPACT_LOCK_TTL = Duration.ofSeconds(5);
+
+    private final StringRedisTemplate redis;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public AnalyticsSketchService(StringRedisTemplate redis, RedisCircuitBreaker circuitBreaker) {
+        this.redis = redis;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Add a newly created expense to its group and per-user category sketches.
+     */
+    public void record(ExpenseDto expense) {
+        if (expense == null || expense.getDate() == null) {
+            return;
+        }
+        YearMonth month = YearMonth.from(expense.getDate());
+
+        Set<String> involved = new HashSet<>();
+        expense.getPayers().forEach(p -> involved.add(p.getUserId()));
+        expense.getParticipants().forEach(p -> involved.add(p.getUserId()));
+        involved.remove(null);
+        String category = expense.getCategory();
+        boolean hasCategory = category != null && !category.isEmpty();
+
+        circuitBreaker.execute(() -> redis.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (expense.getGroupId() != null && !involved.isEmpty()) {
+                append(conn, groupBase(expense.getGroupId(), month), expense.getTotalAmount(), involved);
+            }
+            if (hasCategory) {
+                for (ExpenseDto.ParticipantDto p : expense.getParticipants()) {
+                    if (p.getUserId() == null) continue;
+                    append(conn, categoryBase(p.getUserId(), category, month), p.getShare(), involved);
+                    conn.sAdd(categoriesKey(p.getUserId()), category);
+                    conn.expire(categoriesKey(p.getUserId()), RETENTION.getSeconds());
+                }
+            }
+            return null;
+        }), () -> null);
+    }
+
+    /**
+     * Take a deleted expense out of its sketches' sums and counts. Its amount stays in the
+     * digest and its participants in the HyperLogLog; the removal is tallied so responses
+     * can report how many such expenses the approximate figures still include.
+     */
+    public void remove(ExpenseDto expense) {
+        if (expense == null || expense.getDate() == null) {
+            return;
+        }
+        YearMonth month = YearMonth.from(expense.getDate());
+        boolean hasParticipants = expense.getPayers().stream().anyMatch(p -> p.getUserId() != null)
+                || expense.getParticipants().stream().anyMatch(p -> p.getUserId() != null);
+        String category = expense.getCategory();
+        boolean hasCategory = category != null && !category.isEmpty();
+
+        circuitBreaker.execute(() -> redis.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (expense.getGroupId() != null && hasParticipants) {
+                retract(conn, groupBase(expense.getGroupId(), month), expense.getTotalAmount());
+            }
+            if (hasCategory) {
+                for (ExpenseDto.ParticipantDto p : expense.getParticipants()) {
+                    if (p.getUserId() == null) continue;
+                    retract(conn, categoryBase(p.getUserId(), category, month), p.getShare());
+                }
+            }
+            return null;
+        }), () -> null);
+    }
+
+    /**
+     * Approximate stats for a group's expenses (total amounts) between two dates,
+     * or null when Redis is unavailable.
+     */
+    public ApproximateStats groupStats(String groupId, LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            return new ApproximateStats();
+        }
+        List<String> bases = new ArrayList<>();
+        for (YearMonth m : months(start, end)) {
+            bases.add(groupBase(groupId, m));
+        }
+        Map<String, ApproximateStats> stats = loadStats(Map.of(groupId, bases));
+        return stats != null ? stats.get(groupId) : null;
+    }
+
+    /**
+     * Approximate stats of the user's shares per category between two dates,
+     * or null when Redis is unavailable.
+     */
+    public Map<String, ApproximateStats> categoryStats(String userId, LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            return new HashMap<>();
+        }
+        Set<String> categories = circuitBreaker.execute(
+                () -> redis.opsForSet().members(categoriesKey(userId)), () -> null);
+        if (categories == null) {
+            return null;
+        }
+        if (categories.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, List<String>> basesByCategory = new HashMap<>();
+        List<YearMonth> months = months(start, end);
+        for (String category : categories) {
+            List<String> bases = new ArrayList<>();
+            for (YearMonth m : months) {
+                bases.add(categoryBase(userId, category, m));
+            }
+            basesByCategory.put(category, bases);
+        }
+        Map<String, ApproximateStats> result = loadStats(basesByCategory);
+        if (result == null) {
+            return null;
+        }
+        result.values().removeIf(s -> s.getCount() == 0);
+        return result;
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    private void append(StringRedisConnection conn, String base, double amount, Set<String> involved) {
+        long ttl = RETENTION.getSeconds();
+        conn.rPush(base + ":buf", Double.toString(amount));
+        conn.incrBy(base + ":sum", amount);
+        conn.pfAdd(base + ":hll", involved.toArray(new String[0]));
+        conn.expire(base + ":buf", ttl);
+        conn.expire(base + ":sum", ttl);
+        conn.expire(base + ":hll", ttl);
+    }
+
+    private void retract(StringRedisConnection conn, String base, double amount) {
+        long ttl = RETENTION.getSeconds();
+        conn.incrBy(base + ":sum", -amount);
+        conn.incr(base + ":del");
+        conn.expire(base + ":sum", ttl);
+        conn.expire(base + ":del", ttl);
+    }
+
+    /**
+     * Reads every sketch in one pipeline, folds pending buffers and merges months per name.
+     * Null when Redis is unavailable.
+     */
+    private Map<String, ApproximateStats> loadStats(Map<String, List<String>> basesByName) {
+        List<String> names = new ArrayList<>(basesByName.keySet());
+        List<Object> raw = circuitBreaker.execute(() -> redis.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String name : names) {
+                for (String base : basesByName.get(name)) {
+                    conn.get(base + ":td");
+                    conn.lRange(base + ":buf", 0, -1);
+                    conn.get(base + ":sum");
+                    conn.get(base + ":del");
+                }
+                conn.pfCount(basesByName.get(name).stream().map(b -> b + ":hll").toArray(String[]::new));
+            }
+            return null;
+        }), () -> null);
+        if (raw == null) {
+            return null;
+        }
+
+        Map<String, ApproximateStats> result = new HashMap<>();
+        int i = 0;
+        for (String name : names) {
+            MergingDigest merged = new MergingDigest(COMPRESSION);
+            double total = 0;
+            long removed = 0;
+            for (String base : basesByName.get(name)) {
+                MergingDigest digest = decode((String) raw.get(i++));
+                @SuppressWarnings("unchecked")
+                List<String> pending = (List<String>) raw.get(i++);
+                Object sum = raw.get(i++);
+                Object deleted = raw.get(i++);
+
+                if (pending != null && !pending.isEmpty()) {
+                    MergingDigest stored = digest;
+                    digest = circuitBreaker.execute(() -> compact(base, stored, pending), () -> fold(stored, pending));
+                }
+                if (digest != null) {
+                    merged.add(digest);
+                }
+                if (sum != null) {
+                    total += Double.parseDouble(sum.toString());
+                }
+                if (deleted != null) {
+                    removed += Long.parseLong(deleted.toString());
+                }
+            }
+            Long distinct = (Long) raw.get(i++);
+
+            ApproximateStats stats = new ApproximateStats();
+            stats.setCount(Math.max(0, merged.size() - removed));
+            stats.setRemovedCount(Math.min(removed, merged.size()));
+            stats.setTotal(total);
+            stats.setDistinctParticipants(distinct != null ? distinct : 0);
+            if (stats.getCount() > 0) {
+                stats.setMinAmount(merged.getMin());
+                stats.setMaxAmount(merged.getMax());
+                stats.setMedian(merged.quantile(0.5));
+                stats.setP90(merged.quantile(0.9));
+                stats.setP99(merged.quantile(0.99));
+            }
+            result.put(name, stats);
+        }
+        return result;
+    }
+
+    /**
+     * Fold buffered amounts into the stored digest. Only one reader compacts a sketch at a time;
+     * the others merge the buffer in memory and leave storage untouched.
+     */
+    private MergingDigest compact(String base, MergingDigest digest, List<String> pending) {
+        String lockKey = base + ":lock";
+        String token = RedisLocks.tryAcquire(redis, lockKey, COMPACT_LOCK_TTL);
+        if (token == null) {
+            return fold(digest, pending);
+        }
+        try {
+            // Re-read under the lock so we never fold the same entries twice
+            MergingDigest current = decode(redis.opsForValue().get(base + ":td"));
+            List<String> buffered = redis.opsForList().range(base + ":buf", 0, -1);
+            if (buffered == null || buffered.isEmpty()) {
+                return current;
+            }
+            MergingDigest folded = fold(current, buffered);
+            redis.opsForValue().set(base + ":td", encode(folded), RETENTION);
+            redis.opsForList().trim(base + ":buf", buffered.size(), -1);
+            return folded;
+        } catch (Exception e) {
+            logger.warn("Failed to compact sketch {}: {}", base, e.getMessage());
+            return fold(digest, pending);
+        } finally {
+            RedisLocks.release(redis, lockKey, token);
+        }
+    }
+
+    private MergingDigest fold(MergingDigest digest, List<String> values) {
+        MergingDigest result = new MergingDigest(COMPRESSION);
+        if (digest != null) {
+            result.add(digest);
+        }
+        for (String v : values) {
+            result.add(Double.parseDouble(v));
+        }
+        return result;
+    }
+
+    private String encode(MergingDigest digest) {
+        ByteBuffer buf = ByteBuffer.allocate(digest.smallByteSize());
+        digest.asSmallBytes(buf);
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    private MergingDigest decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return MergingDigest.fromBytes(ByteBuffer.wrap(Base64.getDecoder().decode(value)));
+    }
+
+    private List<YearMonth> months(LocalDate start, LocalDate end) {
+        List<YearMonth> months = new ArrayList<>();
+        for (YearMonth m = YearMonth.from(start); !m.isAfter(YearMonth.from(end)); m = m.plusMonths(1)) {
+            months.add(m);
+        }
+        return months;
+    }
+
+    private String groupBase(String groupId, YearMonth month) {
+        return PREFIX + "group:" + groupId + ":" + month;
+    }
+
+    private String categoryBase(String userId, String category, YearMonth month) {
+        return PREFIX + "user:" + userId + ":cat:" + category + ":" + month;
+    }
+
+    private String categoriesKey(String userId) {
+        return PREFIX + "user:" + userId + ":cats";
+    }
+}
@@ -0,0 +1,121 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Per-user analytics data version, kept in Redis.
+ *
+ * Every write that can change a user's analytics (expense create, settle, delete; friends,
+ * groups and names shown on the dashboard) increments the version of each involved user.
+ * Analytics responses derive their ETag from it, so a dashboard poll can be answered with 304
+ * without loading any expense.
+ *
+ * Versions are seeded with the current time instead of starting at zero, so losing the
+ * Redis data can never bring back a version a client has already seen. They expire
+ * analytics.version.ttl-seconds after the last bump, which bounds how long a bump lost to a
+ * Redis outage can keep serving stale 304s.
+ */
+@Service
+public class AnalyticsVersionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsVersionService.class);
+
+    private static final String PREFIX = "analytics:version:";
+
+    private final StringRedisTemplate redis;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final long ttlSeconds;
+
+    public AnalyticsVersionService(StringRedisTemplate redis,
+                                   RedisCircuitBreaker circuitBreaker,
+                                   @Value("${analytics.version.ttl-seconds:3600}") long ttlSeconds) {
+        this.redis = redis;
+        this.circuitBreaker = circuitBreaker;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * Current version for the user, or null when Redis is unavailable
+     * (callers should then skip conditional handling).
+     */
+    public String currentVersion(String userId) {
+        return circuitBreaker.execute(() -> {
+            String key = PREFIX + userId;
+            String version = redis.opsForValue().get(key);
+            if (version == null) {
+                redis.opsForValue().setIfAbsent(key, seed(), Duration.ofSeconds(ttlSeconds));
+                version = redis.opsForValue().get(key);
+            }
+            return version;
+        }, () -> null);
+    }
+
+    /**
+     * Bump the version of every user involved in the expense.
+     */
+    public void bump(ExpenseDto expense) {
+        if (expense == null) {
+            return;
+        }
+        Set<String> userIds = new HashSet<>();
+        userIds.add(expense.getCreatorId());
+        expense.getPayers().forEach(p -> userIds.add(p.getUserId()));
+        expense.getParticipants().forEach(p -> userIds.add(p.getUserId()));
+        bumpUsers(userIds);
+    }
+
+    /**
+     * Bump the versions of the given users. Best effort, never throws: when the bump fails the
+     * versions are deleted so the next read seeds a fresh one, and when that fails too they
+     * expire within the TTL.
+     */
+    public void bumpUsers(Collection<String> userIds) {
+        List<String> keys = userIds.stream().filter(Objects::nonNull).distinct().map(id -> PREFIX + id).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        boolean bumped = circuitBreaker.execute(() -> {
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                String seed = seed();
+                for (String key : keys) {
+                    conn.set(key, seed, Expiration.seconds(ttlSeconds), SetOption.SET_IF_ABSENT);
+                    conn.incr(key);
+                    conn.expire(key, ttlSeconds);
+                }
+                return null;
+            });
+            return true;
+        }, () -> false);
+        if (bumped) {
+            return;
+        }
+        try {
+            circuitBreaker.execute(() -> redis.delete(keys));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to bump or delete analytics versions {}, they expire within {} s: {}",
+                    keys, ttlSeconds, e.getMessage());
+        }
+    }
+
+    private String seed() {
+        return Long.toString(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,142 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+
+import java.util.*;
+
+/**
+ * How one expense moves each pair of users' balance. Every participant owes every other payer
+ * their share times that payer's fraction of the amount paid; the two directions of a pair are
+ * netted, and the debtor's settlements on the expense reduce what is left. Amounts are from the
+ * user's side, negative when the user owes the counterparty, so the user's entry with a
+ * counterparty is always the negation of the counterparty's entry with the user.
+ */
+public final class BalanceContributions {
+
+    private static final double EPSILON = 1e-9;
+
+    private static final BalanceContributions NONE = new BalanceContributions(Map.of());
+
+    private final Map<String, Map<String, Double>> byUser;
+
+    private BalanceContributions(Map<String, Map<String, Double>> byUser) {
+        this.byUser = byUser;
+    }
+
+    public static BalanceContributions none() {
+        return NONE;
+    }
+
+    /**
+     * Contributions of the expense in its current state, for every pair of payers and participants.
+     */
+    public static BalanceContributions of(ExpenseDto expense) {
+        if (expense == null || expense.isSettled()) {
+            return NONE;
+        }
+        Map<String, Double> paid = new HashMap<>();
+        expense.getPayers().forEach(p -> {
+            if (p.getUserId() != null) paid.merge(p.getUserId(), p.getPaidAmount(), Double::sum);
+        });
+        Map<String, Double> shares = new HashMap<>();
+        expense.getParticipants().forEach(p -> {
+            if (p.getUserId() != null) shares.merge(p.getUserId(), p.getShare(), Double::sum);
+        });
+        double totalPaid = paid.values().stream().mapToDouble(Double::doubleValue).sum();
+        if (totalPaid < EPSILON) {
+            return NONE;
+        }
+
+        // Gross debts: participant -> payer -> share * payer's fraction of the amount paid
+        Map<String, Map<String, Double>> owes = new HashMap<>();
+        shares.forEach((debtor, share) -> paid.forEach((payer, amount) -> {
+            if (!debtor.equals(payer)) {
+                owes.computeIfAbsent(debtor, k -> new HashMap<>()).merge(payer, share * amount / totalPaid, Double::sum);
+            }
+        }));
+
+        Set<String> users = new TreeSet<>(paid.keySet());
+        users.addAll(shares.keySet());
+        List<String> ordered = new ArrayList<>(users);
+        Map<String, Map<String, Double>> byUser = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            for (int j = i + 1; j < ordered.size(); j++) {
+                String a = ordered.get(i);
+                String b = ordered.get(j);
+                double aOwesB = owed(owes, a, b) - owed(owes, b, a);
+                if (Math.abs(aOwesB) < EPSILON) continue;
+                String debtor = aOwesB > 0 ? a : b;
+                String creditor = aOwesB > 0 ? b : a;
+                double outstanding = Math.abs(aOwesB) * outstandingFraction(debtor, expense, paid, shares);
+                if (outstanding < EPSILON) continue;
+                byUser.computeIfAbsent(debtor, k -> new HashMap<>()).merge(creditor, -outstanding, Double::sum);
+                byUser.computeIfAbsent(creditor, k -> new HashMap<>()).merge(debtor, outstanding, Double::sum);
+            }
+        }
+        return byUser.isEmpty() ? NONE : new BalanceContributions(byUser);
+    }
+
+    /**
+     * User id -> (counterparty id -> amount).
+     */
+    public Map<String, Map<String, Double>> byUser() {
+        return byUser;
+    }
+
+    /**
+     * Per user and counterparty, how much these contributions differ from an earlier state
+     * of the same expense. Pairs that did not change are left out.
+     */
+    public Map<String, Map<String, Double>> minus(BalanceContributions before) {
+        Map<String, Map<String, Double>> deltas = new HashMap<>();
+        byUser.forEach((userId, balances) -> balances.forEach((counterparty, amount) ->
+            deltas.computeIfAbsent(userId, k -> new HashMap<>()).merge(counterparty, amount, Double::sum)));
+        before.byUser.forEach((userId, balances) -> balances.forEach((counterparty, amount) ->
+            deltas.computeIfAbsent(userId, k -> new HashMap<>()).merge(counterparty, -amount, Double::sum)));
+        deltas.values().forEach(d -> d.values().removeIf(amount -> Math.abs(amount) < 1e-9));
+        deltas.values().removeIf(Map::isEmpty);
+        return deltas;
+    }
+
+    /**
+     * The expense's contribution to the user's balance with each other person on it.
+     */
+    static Map<String, Double> forUser(String userId, ExpenseDto expense) {
+        return of(expense).byUser.getOrDefault(userId, Map.of());
+    }
+
+    /**
+     * The user's outstanding net on the expense after settlements: the sum of their pair
+     * balances, so what a debtor has settled is taken off what their creditors are owed too.
+     */
+    static double effectiveNet(String userId, ExpenseDto expense) {
+        return forUser(userId, expense).values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    private static double owed(Map<String, Map<String, Double>> owes, String debtor, String creditor) {
+        return owes.getOrDefault(debtor, Map.of()).getOrDefault(creditor, 0.0);
+    }
+
+    /**
+     * Part of a debtor's debts still open: none once their part is fully settled, otherwise what
+     * they have not yet settled of what they owe on the expense.
+     */
+    private static double outstandingFraction(String debtor, ExpenseDto expense,
+                                              Map<String, Double> paid, Map<String, Double> shares) {
+        ExpenseDto.ParticipantDto participant = expense.getParticipants().stream()
+            .filter(p -> debtor.equals(p.getUserId()))
+            .findFirst()
+            .orElse(null);
+        if (participant == null) {
+            return 1;
+        }
+        if (participant.isFullySettled()) {
+            return 0;
+        }
+        double owedNet = shares.getOrDefault(debtor, 0.0) - paid.getOrDefault(debtor, 0.0);
+        if (owedNet < 0.01) {
+            return 1;
+        }
+        return Math.max(0, 1 - participant.getSettledAmount() / owedNet);
+    }
+}
@@ -0,0 +1,30 @@
+package com.splitzy.splitzy.service.analytics;
+
+/**
+ * One row of a store-side category aggregation: a user's share statistics for one category.
+ */
+public class CategorySpending {
+
+    private final String category;
+    private final double total;         // Sum of the user's shares
+    private final long expenseCount;
+    private final double average;
+    private final double min;
+    private final double max;
+
+    public CategorySpending(String category, double total, long expenseCount, double average, double min, double max) {
+        this.category = category;
+        this.total = total;
+        this.expenseCount = expenseCount;
+        this.average = average;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getCategory() { return category; }
+    public double getTotal() { return total; }
+    public long getExpenseCount() { return expenseCount; }
+    public double getAverage() { return average; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+}
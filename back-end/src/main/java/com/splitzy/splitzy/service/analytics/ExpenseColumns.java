@@ -0,0 +1,414 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Column-oriented copy of the expenses one user is involved in, holding only what the
+ * aggregate analytics need: one primitive array per field plus dictionaries for categories
+ * and groups. Scanning it replaces loading and mapping the full expense rows.
+ *
+ * Instances are immutable. Changes are expressed as deltas (see {@link #putDelta} and
+ * {@link #removeDelta}) and folded in with {@link #apply}; folding the same delta twice is harmless.
+ */
+public final class ExpenseColumns {
+
+    private static final byte FORMAT = 1;
+    private static final byte PARTICIPANT = 1;
+    private static final short NONE = -1;
+
+    private final int size;
+    private final String[] ids;
+    private final int[] epochDay;
+    private final double[] amount;
+    private final double[] share;
+    private final double[] paid;
+    private final short[] category;
+    private final short[] group;
+    private final byte[] flags;
+    private final String[] categories;
+    private final String[] groups;
+
+    private ExpenseColumns(int size, String[] ids, int[] epochDay, double[] amount, double[] share, double[] paid,
+                           short[] category, short[] group, byte[] flags, String[] categories, String[] groups) {
+        this.size = size;
+        this.ids = ids;
+        this.epochDay = epochDay;
+        this.amount = amount;
+        this.share = share;
+        this.paid = paid;
+        this.category = category;
+        this.group = group;
+        this.flags = flags;
+        this.categories = categories;
+        this.groups = groups;
+    }
+
+    /**
+     * Snapshot of the given expenses from the user's point of view.
+     */
+    public static ExpenseColumns of(String userId, Collection<ExpenseDto> expenses) {
+        Builder builder = new Builder(expenses.size());
+        for (ExpenseDto expense : expenses) {
+            builder.put(userId, expense);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ===========================================
+    // DELTAS
+    // ===========================================
+
+    /**
+     * Delta adding (or replacing) the user's row for an expense.
+     */
+    public static String putDelta(String userId, ExpenseDto expense) {
+        return "+" + of(userId, List.of(expense)).encode();
+    }
+
+    /**
+     * Delta removing the row of a deleted expense.
+     */
+    public static String removeDelta(String expenseId) {
+        return "-" + expenseId;
+    }
+
+    /**
+     * A new snapshot with the deltas folded in, in order.
+     */
+    public ExpenseColumns apply(List<String> deltas) {
+        Builder builder = new Builder(size + deltas.size());
+        builder.putAll(this);
+        for (String delta : deltas) {
+            if (delta.startsWith("+")) {
+                builder.putAll(decode(delta.substring(1)));
+            } else if (delta.startsWith("-")) {
+                builder.remove(delta.substring(1));
+            }
+        }
+        return builder.build();
+    }
+
+    // ===========================================
+    // SCANS
+    // ===========================================
+
+    /**
+     * Same rows as AnalyticsDataSource.aggregateMonthlySpending, optionally restricted to one group.
+     */
+    public List<MonthlySpending> monthlySpending(String groupId, LocalDate startDate, LocalDate endDate) {
+        // Month ordinal (year * 12 + month - 1) and category index packed into one long key
+        Map<Long, double[]> totals = new HashMap<>();
+        forEachRow(groupId, startDate, endDate, i -> {
+            LocalDate date = LocalDate.ofEpochDay(epochDay[i]);
+            long key = ((long) (date.getYear() * 12 + date.getMonthValue() - 1) << 16) | (category[i] & 0xFFFF);
+            double[] t = totals.computeIfAbsent(key, k -> new double[3]);
+            double net = paid[i] - share[i];
+            t[0] += share[i];
+            t[1] += net > 0 ? net : 0;
+            t[2]++;
+        });
+
+        List<MonthlySpending> rows = new ArrayList<>(totals.size());
+        totals.forEach((key, t) -> {
+            int month = (int) (key >> 16);
+            rows.add(new MonthlySpending(month / 12, month % 12 + 1, categoryName((short) (key & 0xFFFF)),
+                t[0], t[1], (long) t[2]));
+        });
+        return rows;
+    }
+
+    /**
+     * Same rows as AnalyticsDataSource.aggregateCategorySpending.
+     */
+    public List<CategorySpending> categorySpending(String groupId, LocalDate startDate, LocalDate endDate) {
+        Map<Short, DoubleSummaryStatistics> stats = new HashMap<>();
+        forEachRow(groupId, startDate, endDate, i ->
+            stats.computeIfAbsent(category[i], c -> new DoubleSummaryStatistics()).accept(share[i]));
+
+        List<CategorySpending> rows = new ArrayList<>(stats.size());
+        stats.forEach((c, s) -> rows.add(new CategorySpending(categoryName(c), s.getSum(), s.getCount(),
+            s.getAverage(), s.getMin(), s.getMax())));
+        return rows;
+    }
+
+    /**
+     * Ids of the largest expenses (by total amount) per category, at most perCategory each,
+     * over the same rows as categorySpending. Uncategorized expenses are left out.
+     */
+    public List<String> topExpenseIdsPerCategory(String groupId, LocalDate startDate, LocalDate endDate, int perCategory) {
+        Map<Short, PriorityQueue<Integer>> top = new HashMap<>();
+        forEachRow(groupId, startDate, endDate, i -> {
+            if (category[i] == NONE) return;
+            PriorityQueue<Integer> heap = top.computeIfAbsent(category[i],
+                c -> new PriorityQueue<>(Comparator.comparingDouble(r -> amount[r])));
+            heap.add(i);
+            if (heap.size() > perCategory) {
+                heap.poll();
+            }
+        });
+
+        List<String> result = new ArrayList<>();
+        top.values().forEach(heap -> heap.forEach(i -> result.add(ids[i])));
+        return result;
+    }
+
+    private void forEachRow(String groupId, LocalDate startDate, LocalDate endDate, RowVisitor visitor) {
+        int from = (int) startDate.toEpochDay();
+        int to = (int) endDate.toEpochDay();
+        short groupIndex = groupIndex(groupId);
+        if (groupIndex == NONE && groupId != null) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            if (epochDay[i] < from || epochDay[i] > to || (flags[i] & PARTICIPANT) == 0) continue;
+            if (groupId != null && group[i] != groupIndex) continue;
+            visitor.visit(i);
+        }
+    }
+
+    private interface RowVisitor {
+        void visit(int row);
+    }
+
+    private short groupIndex(String groupId) {
+        if (groupId == null) {
+            return NONE;
+        }
+        for (short g = 0; g < groups.length; g++) {
+            if (groups[g].equals(groupId)) {
+                return g;
+            }
+        }
+        return NONE;
+    }
+
+    private String categoryName(short index) {
+        return index == NONE ? null : categories[index];
+    }
+
+    // ===========================================
+    // ENCODING
+    // ===========================================
+
+    /**
+     * Deflated binary form, Base64 encoded so it can be kept in a Redis string.
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(FORMAT);
+            writeStrings(out, categories, categories.length);
+            writeStrings(out, groups, groups.length);
+            writeStrings(out, ids, size);
+            for (int i = 0; i < size; i++) out.writeInt(epochDay[i]);
+            for (int i = 0; i < size; i++) out.writeDouble(amount[i]);
+            for (int i = 0; i < size; i++) out.writeDouble(share[i]);
+            for (int i = 0; i < size; i++) out.writeDouble(paid[i]);
+            for (int i = 0; i < size; i++) out.writeShort(category[i]);
+            for (int i = 0; i < size; i++) out.writeShort(group[i]);
+            out.write(flags, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    public static ExpenseColumns decode(String value) {
+        byte[] raw = Base64.getDecoder().decode(value);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(raw)))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unsupported expense columns format " + format);
+            }
+            String[] categories = readStrings(in);
+            String[] groups = readStrings(in);
+            String[] ids = readStrings(in);
+            int size = ids.length;
+            int[] epochDay = new int[size];
+            double[] amount = new double[size];
+            double[] share = new double[size];
+            double[] paid = new double[size];
+            short[] category = new short[size];
+            short[] group = new short[size];
+            byte[] flags = new byte[size];
+            for (int i = 0; i < size; i++) epochDay[i] = in.readInt();
+            for (int i = 0; i < size; i++) amount[i] = in.readDouble();
+            for (int i = 0; i < size; i++) share[i] = in.readDouble();
+            for (int i = 0; i < size; i++) paid[i] = in.readDouble();
+            for (int i = 0; i < size; i++) category[i] = in.readShort();
+            for (int i = 0; i < size; i++) group[i] = in.readShort();
+            in.readFully(flags);
+            return new ExpenseColumns(size, ids, epochDay, amount, share, paid, category, group, flags, categories, groups);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values, int count) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeUTF(values[i]);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+
+    // ===========================================
+    // BUILDER
+    // ===========================================
+
+    /**
+     * Accumulates rows keyed by expense id; a later put for the same id replaces the earlier row.
+     */
+    private static final class Builder {
+
+        private final Map<String, Integer> rowById = new HashMap<>();
+        private final Map<String, Short> categoryIndex = new LinkedHashMap<>();
+        private final Map<String, Short> groupIndex = new LinkedHashMap<>();
+        private final BitSet removed = new BitSet();
+        private int size;
+        private String[] ids;
+        private int[] epochDay;
+        private double[] amount;
+        private double[] share;
+        private double[] paid;
+        private short[] category;
+        private short[] group;
+        private byte[] flags;
+
+        Builder(int capacity) {
+            int c = Math.max(capacity, 16);
+            ids = new String[c];
+            epochDay = new int[c];
+            amount = new double[c];
+            share = new double[c];
+            paid = new double[c];
+            category = new short[c];
+            group = new short[c];
+            flags = new byte[c];
+        }
+
+        void put(String userId, ExpenseDto expense) {
+            if (expense.getId() == null || expense.getDate() == null) {
+                return;
+            }
+            double userShare = 0;
+            boolean participant = false;
+            for (ExpenseDto.ParticipantDto p : expense.getParticipants()) {
+                if (userId.equals(p.getUserId())) {
+                    userShare += p.getShare();
+                    participant = true;
+                }
+            }
+            double userPaid = 0;
+            for (ExpenseDto.PayerDto p : expense.getPayers()) {
+                if (userId.equals(p.getUserId())) {
+                    userPaid += p.getPaidAmount();
+                }
+            }
+            add(expense.getId(), (int) expense.getDate().toEpochDay(), expense.getTotalAmount(), userShare, userPaid,
+                expense.getCategory(), expense.getGroupId(), participant ? PARTICIPANT : 0);
+        }
+
+        void putAll(ExpenseColumns columns) {
+            for (int i = 0; i < columns.size; i++) {
+                add(columns.ids[i], columns.epochDay[i], columns.amount[i], columns.share[i], columns.paid[i],
+                    columns.categoryName(columns.category[i]),
+                    columns.group[i] == NONE ? null : columns.groups[columns.group[i]], columns.flags[i]);
+            }
+        }
+
+        void remove(String id) {
+            Integer row = rowById.remove(id);
+            if (row != null) {
+                removed.set(row);
+            }
+        }
+
+        private void add(String id, int day, double total, double userShare, double userPaid,
+                         String categoryName, String groupId, byte rowFlags) {
+            remove(id);
+            if (size == ids.length) {
+                grow();
+            }
+            ids[size] = id;
+            epochDay[size] = day;
+            amount[size] = total;
+            share[size] = userShare;
+            paid[size] = userPaid;
+            category[size] = categoryName == null ? NONE : indexOf(categoryIndex, categoryName);
+            group[size] = groupId == null ? NONE : indexOf(groupIndex, groupId);
+            flags[size] = rowFlags;
+            rowById.put(id, size);
+            size++;
+        }
+
+        private short indexOf(Map<String, Short> dictionary, String value) {
+            Short index = dictionary.get(value);
+            if (index == null) {
+                if (dictionary.size() >= Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct values for a column dictionary");
+                }
+                index = (short) dictionary.size();
+                dictionary.put(value, index);
+            }
+            return index;
+        }
+
+        private void grow() {
+            int c = ids.length * 2;
+            ids = Arrays.copyOf(ids, c);
+            epochDay = Arrays.copyOf(epochDay, c);
+            amount = Arrays.copyOf(amount, c);
+            share = Arrays.copyOf(share, c);
+            paid = Arrays.copyOf(paid, c);
+            category = Arrays.copyOf(category, c);
+            group = Arrays.copyOf(group, c);
+            flags = Arrays.copyOf(flags, c);
+        }
+
+        ExpenseColumns build() {
+            int n = size - removed.cardinality();
+            String[] outIds = new String[n];
+            int[] outDay = new int[n];
+            double[] outAmount = new double[n];
+            double[] outShare = new double[n];
+            double[] outPaid = new double[n];
+            short[] outCategory = new short[n];
+            short[] outGroup = new short[n];
+            byte[] outFlags = new byte[n];
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                if (removed.get(i)) continue;
+                outIds[j] = ids[i];
+                outDay[j] = epochDay[i];
+                outAmount[j] = amount[i];
+                outShare[j] = share[i];
+                outPaid[j] = paid[i];
+                outCategory[j] = category[i];
+                outGroup[j] = group[i];
+                outFlags[j] = flags[i];
+                j++;
+            }
+            return new ExpenseColumns(n, outIds, outDay, outAmount, outShare, outPaid, outCategory, outGroup,
+                outFlags, categoryIndex.keySet().toArray(new String[0]), groupIndex.keySet().toArray(new String[0]));
+        }
+    }
+}
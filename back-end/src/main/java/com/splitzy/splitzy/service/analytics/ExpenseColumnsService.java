@@ -0,0 +1,262 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.splitzy.splitzy.util.RedisLocks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Per-user columnar expense snapshots ({@link ExpenseColumns}) for heavy users, kept in Redis.
+ *
+ * A snapshot is built from the user's expenses on first use, but only kept for users with at
+ * least analytics.columnar.min-expenses expenses; everyone else is remembered as cold for a
+ * while and keeps using the store aggregations. Writes append a delta to each involved user's
+ * buffer list; reads fold pending deltas in and compact the stored snapshot, the same way the
+ * analytics sketches are maintained.
+ *
+ * Deltas carry a per-user sequence number and a snapshot records the last sequence it covers
+ * (read before its expenses were loaded). Deltas are buffered even while no snapshot exists, so
+ * a change during a build is folded in afterwards, and deltas a snapshot already covers are
+ * dropped instead of being folded over it.
+ *
+ * Redis calls go through the circuit breaker. While it is open, reads return null so callers use
+ * the store, and deltas are skipped, which like a failed push leaves snapshots missing the change
+ * until they expire.
+ *
+ * Off unless analytics.columnar.enabled=true.
+ */
+@Service
+public class ExpenseColumnsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpenseColumnsService.class);
+
+    private static final String PREFIX = "analytics:columns:";
+    private static final Duration SNAPSHOT_TTL = Duration.ofDays(7);
+    private static final Duration COLD_TTL = Duration.ofHours(6);
+    private static final Duration COMPACT_LOCK_TTL = Duration.ofSeconds(5);
+
+    private static final RedisScript<Long> PUSH =
+        RedisScript.of(new ClassPathResource("redis/columns_push.lua"), Long.class);
+    private static final RedisScript<Long> INSTALL =
+        RedisScript.of(new ClassPathResource("redis/columns_install.lua"), Long.class);
+
+    @Value("${analytics.columnar.enabled:false}")
+    private boolean enabled;
+
+    @Value("${analytics.columnar.min-expenses:1000}")
+    private int minExpenses;
+
+    private final StringRedisTemplate redis;
+    private final AnalyticsDataSource dataSource;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public ExpenseColumnsService(StringRedisTemplate redis, AnalyticsDataSource dataSource,
+                                 RedisCircuitBreaker circuitBreaker) {
+        this.redis = redis;
+        this.dataSource = dataSource;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * The user's snapshot, building it on a miss. Null when disabled, when the user has too
+     * few expenses to benefit, or when Redis is unavailable; callers then use the store.
+     */
+    public ExpenseColumns get(String userId) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            String base = PREFIX + userId;
+            List<Object> raw = circuitBreaker.execute(() -> redis.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.get(base);
+                conn.lRange(base + ":buf", 0, -1);
+                conn.exists(base + ":cold");
+                return null;
+            }), () -> null);
+            if (raw == null) {
+                return null;
+            }
+            Stamped stored = Stamped.parse((String) raw.get(0));
+            @SuppressWarnings("unchecked")
+            List<String> buffered = (List<String>) raw.get(1);
+
+            if (stored == null) {
+                return Boolean.TRUE.equals(raw.get(2)) ? null : build(userId);
+            }
+            ExpenseColumns columns = ExpenseColumns.decode(stored.value());
+            List<Stamped> pending = newerThan(stored.seq(), buffered);
+            if (pending.isEmpty()) {
+                return columns;
+            }
+            return circuitBreaker.execute(() -> compact(base, columns, pending), () -> columns.apply(deltas(pending)));
+        } catch (Exception e) {
+            logger.warn("Failed to load expense columns for user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Queue the change of an expense for every involved user that is not cold.
+     * before is the expense as it was (null on create), after as it is now (null on delete).
+     */
+    public void apply(ExpenseDto before, ExpenseDto after) {
+        if (!enabled) {
+            return;
+        }
+        Set<String> userIds = new LinkedHashSet<>();
+        collectUsers(before, userIds);
+        collectUsers(after, userIds);
+        userIds.remove(null);
+        String expenseId = after != null ? after.getId() : before.getId();
+        String ttl = String.valueOf(SNAPSHOT_TTL.getSeconds());
+
+        for (String userId : userIds) {
+            String base = PREFIX + userId;
+            // A user dropped from the expense loses the row; everyone else gets the new version
+            boolean involved = after != null && involves(after, userId);
+            String delta = involved ? ExpenseColumns.putDelta(userId, after) : ExpenseColumns.removeDelta(expenseId);
+            circuitBreaker.execute(
+                () -> redis.execute(PUSH, List.of(base + ":seq", base + ":buf", base + ":cold"), ttl, delta), () -> 0L);
+        }
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    /**
+     * A snapshot or delta with the sequence number it was stamped with ("seq|value").
+     */
+    private record Stamped(long seq, String value) {
+
+        static Stamped parse(String raw) {
+            if (raw == null) {
+                return null;
+            }
+            int bar = raw.indexOf('|');
+            if (bar <= 0) {
+                // Written before sequencing; not trusted
+                return null;
+            }
+            try {
+                return new Stamped(Long.parseLong(raw.substring(0, bar)), raw.substring(bar + 1));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private ExpenseColumns build(String userId) {
+        String base = PREFIX + userId;
+        // Read before loading: deltas up to here are reflected in the load, later ones are
+        // folded in afterwards (folding a change the load already saw is harmless)
+        // Without it the snapshot could not be stored; get() falls back to the store
+        String seq = circuitBreaker.execute(() -> redis.opsForValue().get(base + ":seq"));
+        List<ExpenseDto> expenses = dataSource.findExpensesForUser(userId, Sort.by(Sort.Direction.ASC, "date"));
+        if (expenses.size() < minExpenses) {
+            circuitBreaker.execute(() -> {
+                redis.opsForValue().set(base + ":cold", "1", COLD_TTL);
+                return null;
+            }, () -> null);
+            return null;
+        }
+        long start = System.nanoTime();
+        ExpenseColumns columns = ExpenseColumns.of(userId, expenses);
+        String encoded = columns.encode();
+        long covered = seq != null ? Long.parseLong(seq) : 0;
+        circuitBreaker.execute(() -> install(base, covered, encoded), () -> false);
+        logger.info("Built expense columns for user {}: {} rows, {} chars in {} ms",
+            userId, columns.size(), encoded.length(), (System.nanoTime() - start) / 1_000_000);
+        return columns;
+    }
+
+    /**
+     * Fold buffered deltas into the stored snapshot. Only one reader compacts at a time;
+     * the others fold the buffer in memory and leave storage untouched.
+     */
+    private ExpenseColumns compact(String base, ExpenseColumns columns, List<Stamped> pending) {
+        String lockKey = base + ":lock";
+        String token = RedisLocks.tryAcquire(redis, lockKey, COMPACT_LOCK_TTL);
+        if (token == null) {
+            return columns.apply(deltas(pending));
+        }
+        try {
+            // Re-read under the lock so a concurrent compaction is not folded twice into storage
+            Stamped stored = Stamped.parse(redis.opsForValue().get(base));
+            if (stored == null) {
+                return columns.apply(deltas(pending));
+            }
+            List<Stamped> buffered = newerThan(stored.seq(), redis.opsForList().range(base + ":buf", 0, -1));
+            ExpenseColumns current = ExpenseColumns.decode(stored.value());
+            if (buffered.isEmpty()) {
+                return current;
+            }
+            ExpenseColumns folded = current.apply(deltas(buffered));
+            install(base, buffered.get(buffered.size() - 1).seq(), folded.encode());
+            return folded;
+        } catch (Exception e) {
+            logger.warn("Failed to compact expense columns {}: {}", base, e.getMessage());
+            return columns.apply(deltas(pending));
+        } finally {
+            RedisLocks.release(redis, lockKey, token);
+        }
+    }
+
+    /**
+     * Store a snapshot covering the deltas up to seq and drop those from the buffer, unless
+     * a snapshot covering as much is already stored. Returns whether it was stored.
+     */
+    private boolean install(String base, long seq, String encoded) {
+        Long installed = redis.execute(INSTALL, List.of(base, base + ":buf", base + ":seq"),
+            String.valueOf(seq), encoded, String.valueOf(SNAPSHOT_TTL.getSeconds()));
+        return installed != null && installed > 0;
+    }
+
+    private List<Stamped> newerThan(long seq, List<String> buffered) {
+        List<Stamped> newer = new ArrayList<>();
+        if (buffered == null) {
+            return newer;
+        }
+        for (String raw : buffered) {
+            Stamped delta = Stamped.parse(raw);
+            if (delta != null && delta.seq() > seq) {
+                newer.add(delta);
+            }
+        }
+        return newer;
+    }
+
+    private List<String> deltas(List<Stamped> stamped) {
+        List<String> deltas = new ArrayList<>(stamped.size());
+        stamped.forEach(d -> deltas.add(d.value()));
+        return deltas;
+    }
+
+    private void collectUsers(ExpenseDto expense, Set<String> userIds) {
+        if (expense == null) {
+            return;
+        }
+        userIds.add(expense.getCreatorId());
+        expense.getPayers().forEach(p -> userIds.add(p.getUserId()));
+        expense.getParticipants().forEach(p -> userIds.add(p.getUserId()));
+    }
+
+    private boolean involves(ExpenseDto expense, String userId) {
+        return userId.equals(expense.getCreatorId())
+            || expense.getPayers().stream().anyMatch(p -> userId.equals(p.getUserId()))
+            || expense.getParticipants().stream().anyMatch(p -> userId.equals(p.getUserId()));
+    }
+}
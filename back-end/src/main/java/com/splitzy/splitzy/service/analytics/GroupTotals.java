@@ -0,0 +1,40 @@
+package com.splitzy.splitzy.service.analytics;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Store-side aggregation of a group's whole expense history.
+ */
+public class GroupTotals {
+
+    private double totalAmount;
+    private long expenseCount;
+    private LocalDateTime lastActivity;
+    private Map<String, Double> paidByMember = new HashMap<>();
+    private Map<String, Double> shareByMember = new HashMap<>();
+    private Map<String, Long> createdByMember = new HashMap<>();
+    private Map<String, Double> categoryAmounts = new HashMap<>();
+
+    public double getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+
+    public long getExpenseCount() { return expenseCount; }
+    public void setExpenseCount(long expenseCount) { this.expenseCount = expenseCount; }
+
+    public LocalDateTime getLastActivity() { return lastActivity; }
+    public void setLastActivity(LocalDateTime lastActivity) { this.lastActivity = lastActivity; }
+
+    public Map<String, Double> getPaidByMember() { return paidByMember; }
+    public void setPaidByMember(Map<String, Double> paidByMember) { this.paidByMember = paidByMember; }
+
+    public Map<String, Double> getShareByMember() { return shareByMember; }
+    public void setShareByMember(Map<String, Double> shareByMember) { this.shareByMember = shareByMember; }
+
+    public Map<String, Long> getCreatedByMember() { return createdByMember; }
+    public void setCreatedByMember(Map<String, Long> createdByMember) { this.createdByMember = createdByMember; }
+
+    public Map<String, Double> getCategoryAmounts() { return categoryAmounts; }
+    public void setCategoryAmounts(Map<String, Double> categoryAmounts) { this.categoryAmounts = categoryAmounts; }
+}
@@ -0,0 +1,229 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.bson.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+/**
+ * MongoDB implementation of AnalyticsDataSource.
+ */
+@Repository
+@Profile("!postgres")
+public class MongoAnalyticsDataSource implements AnalyticsDataSource {
+
+    private static final String COLLECTION = "expenses";
+
+    private final ExpenseDao expenseDao;
+    private final MongoTemplate mongoTemplate;
+
+    public MongoAnalyticsDataSource(ExpenseDao expenseDao, MongoTemplate mongoTemplate) {
+        this.expenseDao = expenseDao;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<ExpenseDto> findExpensesForUser(String userId, Sort sort) {
+        return expenseDao.findAllByUserInvolvement(userId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findSharedExpenses(String userId, String friendId, Sort sort) {
+        return expenseDao.findAllByBothUserInvolvement(userId, friendId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findGroupExpenses(String groupId, Sort sort) {
+        return expenseDao.findAllByGroupId(groupId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findGroupExpenses(String groupId, LocalDate startDate, LocalDate endDate, Sort sort) {
+        return expenseDao.findAllByGroupIdAndDateRange(groupId, startDate, endDate, sort);
+    }
+
+    @Override
+    public List<MonthlySpending> aggregateMonthlySpending(String userId, LocalDate startDate, LocalDate endDate) {
+        // LocalDate is stored as midnight in the server zone, so extract year/month in that zone too
+        DateOperators.Timezone zone = DateOperators.Timezone.valueOf(ZoneId.systemDefault().getId());
+
+        Aggregation aggregation = newAggregation(
+                match(involvementCriteria(userId, null, startDate, endDate)),
+                addUserAmounts(userId),
+                addIncome(),
+                project("category", "share", "income")
+                        .and(DateOperators.Year.yearOf("date").withTimezone(zone)).as("periodYear")
+                        .and(DateOperators.Month.monthOf("date").withTimezone(zone)).as("periodMonth"),
+                group("periodYear", "periodMonth", "category")
+                        .sum("share").as("spending")
+                        .sum("income").as("income")
+                        .count().as("expenseCount")
+        );
+
+        return mongoTemplate.aggregate(aggregation, COLLECTION, Document.class).getMappedResults().stream()
+                .map(this::toMonthlySpending)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CategorySpending> aggregateCategorySpending(String userId, String groupId,
+                                                            LocalDate startDate, LocalDate endDate) {
+        Aggregation aggregation = newAggregation(
+                match(involvementCriteria(userId, groupId, startDate, endDate)),
+                addUserAmounts(userId),
+                group("category")
+                        .sum("share").as("total")
+                        .count().as("expenseCount")
+                        .avg("share").as("average")
+                        .min("share").as("minShare")
+                        .max("share").as("maxShare")
+        );
+
+        return mongoTemplate.aggregate(aggregation, COLLECTION, Document.class).getMappedResults().stream()
+                .map(doc -> new CategorySpending(
+                        (String) doc.get("_id"),
+                        toDouble(doc.get("total")),
+                        toLong(doc.get("expenseCount")),
+                        toDouble(doc.get("average")),
+                        toDouble(doc.get("minShare")),
+                        toDouble(doc.get("maxShare"))))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ExpenseDto> findTopExpensesPerCategory(String userId, String groupId, LocalDate startDate,
+                                                       LocalDate endDate, int perCategory) {
+        Aggregation aggregation = newAggregation(
+                match(involvementCriteria(userId, groupId, startDate, endDate)
+                        .and("category").nin(null, "")),
+                sort(Sort.Direction.DESC, "totalAmount"),
+                group("category").push("_id").as("ids"),
+                project().and("ids").slice(perCategory).as("ids")
+        );
+
+        List<String> ids = new ArrayList<>();
+        for (Document doc : mongoTemplate.aggregate(aggregation, COLLECTION, Document.class).getMappedResults()) {
+            List<?> categoryIds = doc.get("ids", List.class);
+            if (categoryIds != null) {
+                categoryIds.forEach(id -> ids.add(id.toString()));
+            }
+        }
+        return ids.isEmpty() ? new ArrayList<>() : expenseDao.findAllById(ids);
+    }
+
+    @Override
+    public GroupTotals aggregateGroup(String groupId) {
+        Criteria inGroup = Criteria.where("groupId").is(groupId);
+        GroupTotals totals = new GroupTotals();
+
+        Document summary = mongoTemplate.aggregate(newAggregation(
+                match(inGroup),
+                group()
+                        .sum("totalAmount").as("amount")
+                        .count().as("expenseCount")
+                        .max("createdAt").as("lastActivity")
+        ), COLLECTION, Document.class).getUniqueMappedResult();
+        if (summary != null) {
+            totals.setTotalAmount(toDouble(summary.get("amount")));
+            totals.setExpenseCount(toLong(summary.get("expenseCount")));
+            Date lastActivity = summary.getDate("lastActivity");
+            if (lastActivity != null) {
+                totals.setLastActivity(LocalDateTime.ofInstant(lastActivity.toInstant(), ZoneId.systemDefault()));
+            }
+        }
+
+        breakdown(match(inGroup), unwind("payers"), group("payers.userId").sum("payers.paidAmount").as("amount"))
+                .forEach(doc -> totals.getPaidByMember().put((String) doc.get("_id"), toDouble(doc.get("amount"))));
+        breakdown(match(inGroup), unwind("participants"), group("participants.userId").sum("participants.share").as("amount"))
+                .forEach(doc -> totals.getShareByMember().put((String) doc.get("_id"), toDouble(doc.get("amount"))));
+        breakdown(match(Criteria.where("groupId").is(groupId).and("creatorId").ne(null)), group("creatorId").count().as("expenseCount"))
+                .forEach(doc -> totals.getCreatedByMember().put((String) doc.get("_id"), toLong(doc.get("expenseCount"))));
+        breakdown(match(Criteria.where("groupId").is(groupId).and("category").ne(null)),
+                group("category").sum("totalAmount").as("amount"))
+                .forEach(doc -> totals.getCategoryAmounts().put((String) doc.get("_id"), toDouble(doc.get("amount"))));
+        return totals;
+    }
+
+    private List<Document> breakdown(AggregationOperation... operations) {
+        return mongoTemplate.aggregate(newAggregation(operations), COLLECTION, Document.class).getMappedResults();
+    }
+
+    /**
+     * Expenses the user created, paid for or participates in, dated in the range and optionally in one group.
+     */
+    private Criteria involvementCriteria(String userId, String groupId, LocalDate startDate, LocalDate endDate) {
+        Criteria criteria = new Criteria().orOperator(
+                        Criteria.where("creatorId").is(userId),
+                        Criteria.where("payers.userId").is(userId),
+                        Criteria.where("participants.userId").is(userId))
+                .and("date").gte(startDate).lte(endDate);
+        if (groupId != null) {
+            criteria = criteria.and("groupId").is(groupId);
+        }
+        return criteria;
+    }
+
+    /**
+     * Adds the user's summed participant share and payment of each expense as share and paid (0 when absent).
+     */
+    private AggregationOperation addUserAmounts(String userId) {
+        return context -> new Document("$addFields", new Document()
+                .append("share", sumForUser("participants", "share", userId))
+                .append("paid", sumForUser("payers", "paidAmount", userId)));
+    }
+
+    /**
+     * Adds income: the user's positive net (paid minus share, floored at 0). Needs addUserAmounts first.
+     */
+    private AggregationOperation addIncome() {
+        return context -> new Document("$addFields", new Document("income",
+                new Document("$max", List.of(new Document("$subtract", List.of("$paid", "$share")), 0))));
+    }
+
+    private Document sumForUser(String array, String field, String userId) {
+        Document mine = new Document("$filter", new Document("input", "$" + array)
+                .append("as", "entry")
+                .append("cond", new Document("$eq", List.of("$$entry.userId", userId))));
+        return new Document("$sum", new Document("$map", new Document("input", mine)
+                .append("as", "entry")
+                .append("in", "$$entry." + field)));
+    }
+
+    private MonthlySpending toMonthlySpending(Document doc) {
+        // Multi-field group keys come back under _id
+        Document id = doc.get("_id", Document.class);
+        Document keys = id != null ? id : doc;
+        return new MonthlySpending(
+                ((Number) keys.get("periodYear")).intValue(),
+                ((Number) keys.get("periodMonth")).intValue(),
+                keys.getString("category"),
+                toDouble(doc.get("spending")),
+                toDouble(doc.get("income")),
+                toLong(doc.get("expenseCount")));
+    }
+
+    private double toDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
@@ -0,0 +1,30 @@
+package com.splitzy.splitzy.service.analytics;
+
+/**
+ * One row of a store-side spending aggregation: a user's totals for one calendar month and category.
+ */
+public class MonthlySpending {
+
+    private final int year;
+    private final int month;
+    private final String category;
+    private final double spending;      // Sum of the user's shares
+    private final double income;        // Sum of the user's positive nets
+    private final long expenseCount;
+
+    public MonthlySpending(int year, int month, String category, double spending, double income, long expenseCount) {
+        this.year = year;
+        this.month = month;
+        this.category = category;
+        this.spending = spending;
+        this.income = income;
+        this.expenseCount = expenseCount;
+    }
+
+    public int getYear() { return year; }
+    public int getMonth() { return month; }
+    public String getCategory() { return category; }
+    public double getSpending() { return spending; }
+    public double getIncome() { return income; }
+    public long getExpenseCount() { return expenseCount; }
+}
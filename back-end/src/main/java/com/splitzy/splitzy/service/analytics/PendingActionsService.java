@@ -0,0 +1,149 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Per-user pending-actions inbox, kept in Redis.
+ *
+ * A sorted set per user holds the outstanding balance with each counterparty (score, negative
+ * when the user owes). Expense writes apply the difference of the expense's contributions before
+ * and after the change with ZINCRBY, so reading the inbox never touches expenses and is bounded
+ * by the number of counterparties, not the user's history.
+ *
+ * The set is built lazily from a full computation on first read and is only updated while its
+ * ready marker exists. Every change bumps a per-user version, and a rebuild only installs its
+ * balances if the version is still the one read before computing them, so a change that landed
+ * meanwhile (and was skipped for lack of the marker) is never lost. The marker expires so any
+ * remaining drift heals itself.
+ *
+ * Every Redis call goes through the circuit breaker. While it is open, reads report the inbox as
+ * unavailable (callers compute from expenses) and changes are skipped; a skipped change leaves the
+ * inbox stale until its marker expires, the same as a change lost to a failed call.
+ */
+@Service
+public class PendingActionsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingActionsService.class);
+
+    private static final String PREFIX = "pending:";
+    private static final Duration READY_TTL = Duration.ofHours(12);
+
+    private static final RedisScript<Long> APPLY =
+        RedisScript.of(new ClassPathResource("redis/pending_apply.lua"), Long.class);
+    private static final RedisScript<Long> REBUILD =
+        RedisScript.of(new ClassPathResource("redis/pending_rebuild.lua"), Long.class);
+
+    private final StringRedisTemplate redis;
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public PendingActionsService(StringRedisTemplate redis, RedisCircuitBreaker circuitBreaker) {
+        this.redis = redis;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Outstanding balance per counterparty, most owed-by-the-user first,
+     * or null when the inbox has not been built for this user or Redis is unavailable.
+     */
+    public LinkedHashMap<String, Double> getBalances(String userId) {
+        return circuitBreaker.execute(() -> readBalances(userId), () -> null);
+    }
+
+    /**
+     * The inbox version to pass to rebuild. Read it before loading the expenses the balances
+     * are computed from. Null when Redis is unavailable; there is nothing to rebuild then.
+     */
+    public String rebuildVersion(String userId) {
+        return circuitBreaker.execute(() -> {
+            String version = redis.opsForValue().get(versionKey(userId));
+            return version != null ? version : "0";
+        }, () -> null);
+    }
+
+    /**
+     * Replace the user's inbox with fully computed balances, unless a change landed since
+     * the version was read. Returns whether the inbox was built.
+     */
+    public boolean rebuild(String userId, String version, Map<String, Double> balances) {
+        List<String> args = new ArrayList<>();
+        args.add(version);
+        args.add(Long.toString(READY_TTL.getSeconds()));
+        balances.forEach((counterparty, balance) -> {
+            if (Math.abs(balance) >= 0.01) {
+                args.add(Double.toString(balance));
+                args.add(counterparty);
+            }
+        });
+        Long built = circuitBreaker.execute(() -> redis.execute(REBUILD, keys(userId), args.toArray()), () -> 0L);
+        if (built == null || built == 0) {
+            logger.debug("Pending actions inbox for user {} changed while rebuilding, not stored", userId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Apply an expense change to the inboxes of every user it involves.
+     */
+    public void apply(BalanceContributions before, BalanceContributions after) {
+        Map<String, Map<String, Double>> deltas = after.minus(before);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // Users without a built inbox only get their version bumped and pick the change up when it is built
+        String ttl = Long.toString(READY_TTL.getSeconds());
+        deltas.forEach((userId, changes) -> {
+            List<String> args = new ArrayList<>();
+            args.add(ttl);
+            changes.forEach((counterparty, delta) -> {
+                args.add(Double.toString(delta));
+                args.add(counterparty);
+            });
+            circuitBreaker.execute(() -> redis.execute(APPLY, keys(userId), args.toArray()), () -> null);
+        });
+        logger.debug("Applied pending balance changes for {} users", deltas.size());
+    }
+
+    private LinkedHashMap<String, Double> readBalances(String userId) {
+        if (!Boolean.TRUE.equals(redis.hasKey(readyKey(userId)))) {
+            return null;
+        }
+        Set<ZSetOperations.TypedTuple<String>> entries = redis.opsForZSet().rangeWithScores(balancesKey(userId), 0, -1);
+        LinkedHashMap<String, Double> balances = new LinkedHashMap<>();
+        if (entries != null) {
+            for (ZSetOperations.TypedTuple<String> entry : entries) {
+                if (entry.getValue() != null && entry.getScore() != null) {
+                    balances.put(entry.getValue(), entry.getScore());
+                }
+            }
+        }
+        return balances;
+    }
+
+    private List<String> keys(String userId) {
+        return List.of(versionKey(userId), readyKey(userId), balancesKey(userId));
+    }
+
+    private String balancesKey(String userId) {
+        return PREFIX + userId + ":balances";
+    }
+
+    private String readyKey(String userId) {
+        return PREFIX + userId + ":ready";
+    }
+
+    private String versionKey(String userId) {
+        return PREFIX + userId + ":version";
+    }
+}
@@ -0,0 +1,109 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.repository.sql.ExpenseSqlRepository;
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * PostgreSQL implementation of AnalyticsDataSource.
+ */
+@Repository
+@Profile("postgres")
+@Transactional(readOnly = true)
+public class PostgresAnalyticsDataSource implements AnalyticsDataSource {
+
+    private final ExpenseDao expenseDao;
+    private final ExpenseSqlRepository expenseRepo;
+
+    public PostgresAnalyticsDataSource(ExpenseDao expenseDao, ExpenseSqlRepository expenseRepo) {
+        this.expenseDao = expenseDao;
+        this.expenseRepo = expenseRepo;
+    }
+
+    @Override
+    public List<ExpenseDto> findExpensesForUser(String userId, Sort sort) {
+        return expenseDao.findAllByUserInvolvement(userId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findSharedExpenses(String userId, String friendId, Sort sort) {
+        return expenseDao.findAllByBothUserInvolvement(userId, friendId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findGroupExpenses(String groupId, Sort sort) {
+        return expenseDao.findAllByGroupId(groupId, sort);
+    }
+
+    @Override
+    public List<ExpenseDto> findGroupExpenses(String groupId, LocalDate startDate, LocalDate endDate, Sort sort) {
+        return expenseDao.findAllByGroupIdAndDateRange(groupId, startDate, endDate, sort);
+    }
+
+    @Override
+    public List<MonthlySpending> aggregateMonthlySpending(String userId, LocalDate startDate, LocalDate endDate) {
+        return expenseRepo.sumSharesByMonthAndCategory(userId, null, startDate, endDate).stream()
+                .map(row -> new MonthlySpending(
+                        row.getPeriodYear(),
+                        row.getPeriodMonth(),
+                        row.getCategory(),
+                        row.getSpending() != null ? row.getSpending() : 0,
+                        row.getIncome() != null ? row.getIncome() : 0,
+                        row.getExpenseCount() != null ? row.getExpenseCount() : 0))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CategorySpending> aggregateCategorySpending(String userId, String groupId,
+                                                            LocalDate startDate, LocalDate endDate) {
+        return expenseRepo.sumSharesByCategory(userId, groupId, startDate, endDate).stream()
+                .map(row -> new CategorySpending(
+                        row.getCategory(),
+                        valueOf(row.getTotal()),
+                        row.getExpenseCount() != null ? row.getExpenseCount() : 0,
+                        valueOf(row.getAverage()),
+                        valueOf(row.getMinShare()),
+                        valueOf(row.getMaxShare())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ExpenseDto> findTopExpensesPerCategory(String userId, String groupId, LocalDate startDate,
+                                                       LocalDate endDate, int perCategory) {
+        List<String> ids = expenseRepo.findTopExpenseIdsPerCategory(userId, groupId, startDate, endDate, perCategory);
+        return ids.isEmpty() ? new ArrayList<>() : expenseDao.findAllById(ids);
+    }
+
+    @Override
+    public GroupTotals aggregateGroup(String groupId) {
+        GroupTotals totals = new GroupTotals();
+        ExpenseSqlRepository.GroupSummary summary = expenseRepo.summarizeGroup(groupId);
+        if (summary != null) {
+            totals.setTotalAmount(valueOf(summary.getAmount()));
+            totals.setExpenseCount(summary.getExpenseCount() != null ? summary.getExpenseCount() : 0);
+            totals.setLastActivity(summary.getLastActivity());
+        }
+        expenseRepo.sumPaidByMember(groupId)
+                .forEach(row -> totals.getPaidByMember().put(row.getName(), valueOf(row.getAmount())));
+        expenseRepo.sumSharesByMember(groupId)
+                .forEach(row -> totals.getShareByMember().put(row.getName(), valueOf(row.getAmount())));
+        expenseRepo.countCreatedByMember(groupId)
+                .forEach(row -> totals.getCreatedByMember().put(row.getName(), row.getExpenseCount()));
+        expenseRepo.sumByCategoryForGroup(groupId)
+                .forEach(row -> totals.getCategoryAmounts().put(row.getName(), valueOf(row.getAmount())));
+        return totals;
+    }
+
+    private double valueOf(Double value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.dto.analytics.AnalyticsFilter.TimeGranularity;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.time.temporal.WeekFields;
+
+/**
+ * Period bucketing shared by the live trend computation and the persisted trend rollups,
+ * so both always agree on which period an expense date falls into.
+ */
+final class TrendPeriods {
+
+    private static final WeekFields WEEK_FIELDS = WeekFields.of(DayOfWeek.MONDAY, 1);
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final DateTimeFormatter YEAR_FORMAT = DateTimeFormatter.ofPattern("yyyy");
+
+    private TrendPeriods() {}
+
+    /**
+     * Period key for a date, e.g. 2025-03-14, 2025-W11, 2025-03, 2025-Q1 or 2025.
+     */
+    static String keyOf(LocalDate date, TimeGranularity granularity) {
+        switch (granularity) {
+            case DAILY:
+                return date.format(DAY_FORMAT);
+            case WEEKLY:
+                int week = date.get(WEEK_FIELDS.weekOfWeekBasedYear());
+                int weekYear = date.get(WEEK_FIELDS.weekBasedYear());
+                return String.format("%d-W%02d", weekYear, week);
+            case QUARTERLY:
+                int quarter = (date.getMonthValue() - 1) / 3 + 1;
+                return String.format("%d-Q%d", date.getYear(), quarter);
+            case YEARLY:
+                return date.format(YEAR_FORMAT);
+            case MONTHLY:
+            default:
+                return date.format(MONTH_FORMAT);
+        }
+    }
+
+    /**
+     * First day of the period containing the date.
+     */
+    static LocalDate startOf(LocalDate date, TimeGranularity granularity) {
+        switch (granularity) {
+            case DAILY:
+                return date;
+            case WEEKLY:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case QUARTERLY:
+                int firstMonth = ((date.getMonthValue() - 1) / 3) * 3 + 1;
+                return LocalDate.of(date.getYear(), firstMonth, 1);
+            case YEARLY:
+                return date.withDayOfYear(1);
+            case MONTHLY:
+            default:
+                return date.withDayOfMonth(1);
+        }
+    }
+
+    /**
+     * Last day of the period containing the date.
+     */
+    static LocalDate endOf(LocalDate date, TimeGranularity granularity) {
+        LocalDate start = startOf(date, granularity);
+        switch (granularity) {
+            case DAILY:
+                return start;
+            case WEEKLY:
+                return start.plusDays(6);
+            case QUARTERLY:
+                return start.plusMonths(3).minusDays(1);
+            case YEARLY:
+                return start.plusYears(1).minusDays(1);
+            case MONTHLY:
+            default:
+                return start.plusMonths(1).minusDays(1);
+        }
+    }
+
+    /**
+     * Human readable label for a period key.
+     */
+    static String label(String periodKey, TimeGranularity granularity) {
+        try {
+            switch (granularity) {
+                case DAILY:
+                    LocalDate date = LocalDate.parse(periodKey);
+                    return date.format(DateTimeFormatter.ofPattern("MMM d"));
+                case WEEKLY:
+                    // Parse year and week from format "2025-W44" and get the Monday of that week
+                    String[] weekParts = periodKey.split("-W");
+                    int year = Integer.parseInt(weekParts[0]);
+                    int weekNum = Integer.parseInt(weekParts[1]);
+                    LocalDate weekStart = LocalDate.ofYearDay(year, 1)
+                        .with(WeekFields.ISO.weekOfWeekBasedYear(), weekNum)
+                        .with(WeekFields.ISO.dayOfWeek(), 1);
+                    return weekStart.format(DateTimeFormatter.ofPattern("MMM d"));
+                case MONTHLY:
+                    String[] parts = periodKey.split("-");
+                    return java.time.Month.of(Integer.parseInt(parts[1])).name().substring(0, 3) + " " + parts[0];
+                case QUARTERLY:
+                    return periodKey.replace("-", " ");
+                case YEARLY:
+                    return periodKey;
+                default:
+                    return periodKey;
+            }
+        } catch (Exception e) {
+            return periodKey;
+        }
+    }
+}
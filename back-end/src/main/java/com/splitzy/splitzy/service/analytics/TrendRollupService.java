@@ -0,0 +1,232 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.dto.analytics.AnalyticsFilter.TimeGranularity;
+import com.splitzy.splitzy.dto.analytics.TrendData;
+import com.splitzy.splitzy.entity.ExpenseSql;
+import com.splitzy.splitzy.entity.ParticipantSql;
+import com.splitzy.splitzy.entity.PayerSql;
+import com.splitzy.splitzy.entity.TrendPointSql;
+import com.splitzy.splitzy.repository.sql.ExpenseSqlRepository;
+import com.splitzy.splitzy.repository.sql.TrendPointSqlRepository;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains per-period trend points (user, granularity, periodKey) so trend queries only
+ * recompute the periods that changed since they were last read.
+ *
+ * Writes just flag the affected periods as dirty, inserting dirty rows for periods never stored;
+ * the next read recomputes dirty or missing periods with a single ranged query and persists them. Periods only partially covered by the
+ * requested range are computed on the fly and never stored.
+ */
+@Service
+@Profile("postgres")
+public class TrendRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendRollupService.class);
+
+    private final TrendPointSqlRepository trendPointRepo;
+    private final ExpenseSqlRepository expenseRepo;
+
+    public TrendRollupService(TrendPointSqlRepository trendPointRepo, ExpenseSqlRepository expenseRepo) {
+        this.trendPointRepo = trendPointRepo;
+        this.expenseRepo = expenseRepo;
+    }
+
+    /**
+     * Flag the periods containing this expense as stale for every involved user.
+     */
+    @Transactional
+    public void markDirty(ExpenseDto expense) {
+        if (expense == null || expense.getDate() == null) {
+            return;
+        }
+        Set<String> userIds = new HashSet<>();
+        if (expense.getCreatorId() != null) {
+            userIds.add(expense.getCreatorId());
+        }
+        expense.getPayers().forEach(p -> userIds.add(p.getUserId()));
+        expense.getParticipants().forEach(p -> userIds.add(p.getUserId()));
+        userIds.remove(null);
+        if (userIds.isEmpty()) {
+            return;
+        }
+        // Upsert rather than update: a reader that missed this expense must not store the period clean
+        for (String userId : userIds) {
+            for (TimeGranularity granularity : TimeGranularity.values()) {
+                LocalDate date = expense.getDate();
+                trendPointRepo.upsertDirty(UUID.randomUUID().toString(), userId, granularity.name(),
+                        TrendPeriods.keyOf(date, granularity),
+                        TrendPeriods.startOf(date, granularity), TrendPeriods.endOf(date, granularity));
+            }
+        }
+        logger.debug("Marked trend points dirty for {} users of expense {}", userIds.size(), expense.getId());
+    }
+
+    /**
+     * Trend points for the user between start and end (inclusive), oldest first.
+     * Only periods that contain at least one expense are returned.
+     */
+    public List<TrendData.TrendPoint> getTrendPoints(String userId, TimeGranularity granularity,
+                                                     LocalDate start, LocalDate end) {
+        if (start == null || end == null || end.isBefore(start)) {
+            return new ArrayList<>();
+        }
+
+        // Split the range into whole periods (served from storage) and clipped edge periods
+        List<LocalDate[]> wholePeriods = new ArrayList<>();
+        List<LocalDate[]> edgePeriods = new ArrayList<>();
+        for (LocalDate cursor = TrendPeriods.startOf(start, granularity); !cursor.isAfter(end);
+             cursor = TrendPeriods.endOf(cursor, granularity).plusDays(1)) {
+            LocalDate periodEnd = TrendPeriods.endOf(cursor, granularity);
+            if (!cursor.isBefore(start) && !periodEnd.isAfter(end)) {
+                wholePeriods.add(new LocalDate[]{cursor, periodEnd});
+            } else {
+                edgePeriods.add(new LocalDate[]{cursor.isBefore(start) ? start : cursor,
+                                                periodEnd.isAfter(end) ? end : periodEnd});
+            }
+        }
+
+        Map<String, TrendPointSql> stored = new HashMap<>();
+        if (!wholePeriods.isEmpty()) {
+            trendPointRepo.findByUserIdAndGranularityAndPeriodStartBetween(userId, granularity.name(),
+                    wholePeriods.get(0)[0], wholePeriods.get(wholePeriods.size() - 1)[0])
+                .forEach(tp -> stored.put(tp.getPeriodKey(), tp));
+        }
+
+        // Everything we have to compute from raw expenses: stale whole periods plus the edges
+        List<LocalDate[]> toCompute = new ArrayList<>(edgePeriods);
+        for (LocalDate[] period : wholePeriods) {
+            TrendPointSql tp = stored.get(TrendPeriods.keyOf(period[0], granularity));
+            if (tp == null || tp.isDirty()) {
+                toCompute.add(period);
+            }
+        }
+
+        Map<String, TrendPointSql> computed = new HashMap<>();
+        if (!toCompute.isEmpty()) {
+            LocalDate from = toCompute.stream().map(p -> p[0]).min(Comparator.naturalOrder()).get();
+            LocalDate to = toCompute.stream().map(p -> p[1]).max(Comparator.naturalOrder()).get();
+            List<ExpenseSql> expenses = expenseRepo.findAllByUserInvolvementAndDateRange(
+                userId, from, to, Sort.by(Sort.Direction.ASC, "date"));
+            computed = recompute(userId, granularity, toCompute, expenses, stored);
+        }
+
+        // Persist recomputed whole periods; edge periods stay transient
+        List<TrendPointSql> toSave = new ArrayList<>();
+        for (LocalDate[] period : wholePeriods) {
+            TrendPointSql tp = computed.get(TrendPeriods.keyOf(period[0], granularity));
+            if (tp != null) {
+                toSave.add(tp);
+            }
+        }
+        if (!toSave.isEmpty()) {
+            try {
+                trendPointRepo.saveAll(toSave);
+            } catch (ObjectOptimisticLockingFailureException | DataIntegrityViolationException e) {
+                // A write landed while we were recomputing (flagged or inserted a row); the rows stay dirty for the next read
+                logger.debug("Trend points for user {} changed during recompute, skipping save", userId);
+            }
+        }
+
+        List<TrendData.TrendPoint> points = new ArrayList<>();
+        for (LocalDate[] period : wholePeriods) {
+            String key = TrendPeriods.keyOf(period[0], granularity);
+            points.add(toTrendPoint(computed.getOrDefault(key, stored.get(key)), granularity));
+        }
+        for (LocalDate[] period : edgePeriods) {
+            points.add(toTrendPoint(computed.get(TrendPeriods.keyOf(period[0], granularity)), granularity));
+        }
+
+        return points.stream()
+            .filter(p -> p != null && p.getExpenseCount() > 0)
+            .sorted(Comparator.comparing(TrendData.TrendPoint::getPeriodKey))
+            .collect(Collectors.toList());
+    }
+
+    private Map<String, TrendPointSql> recompute(String userId, TimeGranularity granularity,
+                                                 List<LocalDate[]> periods, List<ExpenseSql> expenses,
+                                                 Map<String, TrendPointSql> stored) {
+        Map<String, TrendPointSql> result = new HashMap<>();
+        Map<String, LocalDate[]> bounds = new HashMap<>();
+        for (LocalDate[] period : periods) {
+            String key = TrendPeriods.keyOf(period[0], granularity);
+            bounds.put(key, period);
+            TrendPointSql tp = stored.getOrDefault(key, new TrendPointSql());
+            tp.setUserId(userId);
+            tp.setGranularity(granularity.name());
+            tp.setPeriodKey(key);
+            tp.setPeriodStart(TrendPeriods.startOf(period[0], granularity));
+            tp.setPeriodEnd(TrendPeriods.endOf(period[0], granularity));
+            tp.setSpending(0);
+            tp.setIncome(0);
+            tp.setExpenseCount(0);
+            tp.setCategoryAmounts(new HashMap<>());
+            tp.setDirty(false);
+            tp.setUpdatedAt(LocalDateTime.now());
+            result.put(key, tp);
+        }
+
+        for (ExpenseSql expense : expenses) {
+            if (expense.getDate() == null) continue;
+            String key = TrendPeriods.keyOf(expense.getDate(), granularity);
+            TrendPointSql tp = result.get(key);
+            if (tp == null) continue;
+            // Edge periods are clipped to the requested range
+            LocalDate[] range = bounds.get(key);
+            if (expense.getDate().isBefore(range[0]) || expense.getDate().isAfter(range[1])) {
+                continue;
+            }
+
+            double share = expense.getParticipants().stream()
+                .filter(p -> p.getUserId().equals(userId))
+                .mapToDouble(ParticipantSql::getShare)
+                .sum();
+            double paid = expense.getPayers().stream()
+                .filter(p -> p.getUserId().equals(userId))
+                .mapToDouble(PayerSql::getPaidAmount)
+                .sum();
+            double net = paid - share;
+
+            tp.setSpending(tp.getSpending() + share);
+            if (net > 0) {
+                tp.setIncome(tp.getIncome() + net);
+            }
+            tp.setExpenseCount(tp.getExpenseCount() + 1);
+            if (expense.getCategory() != null) {
+                tp.getCategoryAmounts().merge(expense.getCategory(), share, Double::sum);
+            }
+        }
+        return result;
+    }
+
+    private TrendData.TrendPoint toTrendPoint(TrendPointSql tp, TimeGranularity granularity) {
+        if (tp == null) {
+            return null;
+        }
+        TrendData.TrendPoint point = new TrendData.TrendPoint();
+        point.setPeriodKey(tp.getPeriodKey());
+        point.setLabel(TrendPeriods.label(tp.getPeriodKey(), granularity));
+        point.setSpending(tp.getSpending());
+        point.setIncome(tp.getIncome());
+        point.setNetFlow(tp.getIncome() - tp.getSpending());
+        point.setExpenseCount(tp.getExpenseCount());
+        point.setAverageExpense(tp.getExpenseCount() == 0 ? 0 : tp.getSpending() / tp.getExpenseCount());
+        point.setCategoryBreakdown(tp.getCategoryAmounts().entrySet().stream()
+            .map(e -> new TrendData.CategoryAmount(e.getKey(), e.getValue()))
+            .collect(Collectors.toList()));
+        return point;
+    }
+}
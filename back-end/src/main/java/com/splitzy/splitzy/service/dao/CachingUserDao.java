@@ -0,0 +1,387 @@
+package com.splitzy.splitzy.service.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caching decorator for the active UserDao implementation.
+ *
+ * Lookups by id and email go through an in-process Caffeine cache (L1) and then Redis (L2)
+ * before reaching the store. The email entries only map to an id, so a user is cached once.
+ * Every write evicts the user from both levels and broadcasts the id on a Redis channel so
+ * the other instances drop their L1 copy too.
+ *
+ * A reader that loaded a user before a write must not put the old copy back after the write's
+ * eviction. In Redis the eviction leaves a short-lived tombstone and copies are only added with
+ * SET NX, so they can't replace it; locally a generation counter bumped by every eviction makes
+ * such a reader skip the put.
+ *
+ * While the Redis circuit breaker is open the L2 is skipped and lookups fall through to the store.
+ *
+ * Only a {@link CachedUser} projection is cached, without the password hash or verification token:
+ * cached lookups return users with those unset (see findByEmailWithCredentials), and save fills
+ * them back in from the store so a cached user can be modified and saved as before.
+ */
+@Repository
+@Primary
+public class CachingUserDao implements UserDao, MessageListener {
+
+    /** Qualifier of the store-backed implementations this class wraps. */
+    public static final String STORE = "userDaoStore";
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingUserDao.class);
+
+    private static final String ID_PREFIX = "users:id:";
+    private static final String EMAIL_PREFIX = "users:email:";
+    private static final String TOMBSTONE = "evicted";
+    /** Channel carrying the id of every user that was written, for cluster-wide invalidation. */
+    public static final String INVALIDATION_CHANNEL = "users:invalidate";
+
+    private final UserDao delegate;
+    private final RedisTemplate<String, Object> redisCacheTemplate;
+    private final StringRedisTemplate redis;
+    private final Cache<String, CachedUser> byId;
+    private final Cache<String, String> idByEmail;
+    private final Duration redisTtl;
+    private final Duration tombstoneTtl;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * What is cached of a user: everything but the credentials.
+     */
+    public record CachedUser(String id, String name, String email, boolean verified, String avatarUrl,
+                             Set<String> friendIds, Set<String> groupIds) {
+
+        static CachedUser of(UserDto user) {
+            return new CachedUser(user.getId(), user.getName(), user.getEmail(), user.isVerified(), user.getAvatarUrl(),
+                    // Plain HashSets: the Redis serializer records the concrete class to read back
+                    user.getFriendIds() != null ? new HashSet<>(user.getFriendIds()) : new HashSet<>(),
+                    user.getGroupIds() != null ? new HashSet<>(user.getGroupIds()) : new HashSet<>());
+        }
+
+        UserDto toDto() {
+            return new UserDto(id, name, email, null, null, verified, avatarUrl,
+                    friendIds != null ? new HashSet<>(friendIds) : null,
+                    groupIds != null ? new HashSet<>(groupIds) : null);
+        }
+    }
+
+    public CachingUserDao(@Qualifier(STORE) UserDao delegate,
+                          RedisTemplate<String, Object> redisCacheTemplate,
+                          StringRedisTemplate redis,
+                          RedisMessageListenerContainer listenerContainer,
+                          RedisCircuitBreaker circuitBreaker,
+                          @Value("${users.cache.local-size:10000}") long localSize,
+                          @Value("${users.cache.local-ttl-seconds:60}") long localTtlSeconds,
+                          @Value("${users.cache.redis-ttl-seconds:600}") long redisTtlSeconds,
+                          @Value("${users.cache.tombstone-seconds:10}") long tombstoneSeconds) {
+        this.delegate = delegate;
+        this.redisCacheTemplate = redisCacheTemplate;
+        this.redis = redis;
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+        this.idByEmail = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .build();
+        this.redisTtl = Duration.ofSeconds(redisTtlSeconds);
+        this.tombstoneTtl = Duration.ofSeconds(tombstoneSeconds);
+        this.circuitBreaker = circuitBreaker;
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    // ===========================================
+    // CACHED LOOKUPS
+    // ===========================================
+
+    @Override
+    public Optional<UserDto> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        CachedUser local = byId.getIfPresent(id);
+        if (local != null) {
+            return Optional.of(local.toDto());
+        }
+        long loadGeneration = generation.get();
+        CachedUser shared = readRedis(id);
+        if (shared != null) {
+            putLocal(shared, loadGeneration);
+            return Optional.of(shared.toDto());
+        }
+        return delegate.findById(id).map(user -> cache(user, loadGeneration));
+    }
+
+    @Override
+    public Optional<UserDto> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        String id = idByEmail.getIfPresent(email);
+        if (id == null) {
+            id = readRedisEmail(email);
+        }
+        if (id != null) {
+            // The mapping can outlive an email change; only trust it if the user still has this email
+            Optional<UserDto> user = findById(id);
+            if (user.isPresent() && email.equals(user.get().getEmail())) {
+                idByEmail.put(email, id);
+                return user;
+            }
+        }
+        long loadGeneration = generation.get();
+        return delegate.findByEmail(email).map(user -> cache(user, loadGeneration));
+    }
+
+    @Override
+    public Optional<UserDto> findByEmailWithCredentials(String email) {
+        return delegate.findByEmailWithCredentials(email);
+    }
+
+    @Override
+    public List<UserDto> findAllById(Iterable<String> ids) {
+        List<UserDto> result = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            CachedUser local = id != null ? byId.getIfPresent(id) : null;
+            if (local != null) {
+                result.add(local.toDto());
+            } else if (id != null) {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long loadGeneration = generation.get();
+        List<String> stillMissing = new ArrayList<>();
+        List<Object> shared = multiReadRedis(missing);
+        for (int i = 0; i < missing.size(); i++) {
+            Object value = shared != null ? shared.get(i) : null;
+            if (value instanceof CachedUser user) {
+                putLocal(user, loadGeneration);
+                result.add(user.toDto());
+            } else {
+                stillMissing.add(missing.get(i));
+            }
+        }
+        if (!stillMissing.isEmpty()) {
+            for (UserDto user : delegate.findAllById(stillMissing)) {
+                result.add(cache(user, loadGeneration));
+            }
+        }
+        return result;
+    }
+
+    // ===========================================
+    // WRITES (evict after the store write)
+    // ===========================================
+
+    @Override
+    public UserDto save(UserDto user) {
+        CachedUser previous = user.getId() != null ? byId.getIfPresent(user.getId()) : null;
+        if (user.getId() != null && user.getPassword() == null && user.getVerificationToken() == null) {
+            // Came from a cached lookup: keep the stored credentials instead of clearing them
+            delegate.findById(user.getId()).ifPresent(stored -> {
+                user.setPassword(stored.getPassword());
+                user.setVerificationToken(stored.getVerificationToken());
+            });
+        }
+        UserDto saved = delegate.save(user);
+        evict(saved.getId(), user.getEmail(), saved.getEmail(), previous != null ? previous.email() : null);
+        return saved;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        CachedUser previous = byId.getIfPresent(id);
+        delegate.deleteById(id);
+        evict(id, previous != null ? previous.email() : null);
+    }
+
+    @Override
+    public void updateAvatar(String userId, String avatarUrl) {
+        delegate.updateAvatar(userId, avatarUrl);
+        evict(userId);
+    }
+
+    @Override
+    public void updateFriendIds(String userId, Set<String> friendIds) {
+        delegate.updateFriendIds(userId, friendIds);
+        evict(userId);
+    }
+
+    // ===========================================
+    // PASS-THROUGH
+    // ===========================================
+
+    @Override
+    public Optional<UserDto> findByVerificationToken(String verificationToken) {
+        return delegate.findByVerificationToken(verificationToken);
+    }
+
+    @Override
+    public List<UserDto> findByNameRegex(String regex) {
+        return delegate.findByNameRegex(regex);
+    }
+
+    @Override
+    public List<UserDto> findByEmailRegex(String regex) {
+        return delegate.findByEmailRegex(regex);
+    }
+
+    @Override
+    public List<UserDto> findFriendsByRegex(Set<String> friendIds, String regex) {
+        return delegate.findFriendsByRegex(friendIds, regex);
+    }
+
+    @Override
+    public List<UserDto> searchByNameOrEmail(String query, int limit) {
+        return delegate.searchByNameOrEmail(query, limit);
+    }
+
+    @Override
+    public List<UserSummary> findAllSummaries() {
+        return delegate.findAllSummaries();
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return delegate.existsByEmail(email);
+    }
+
+    // ===========================================
+    // INVALIDATION
+    // ===========================================
+
+    /**
+     * Another instance (or this one) changed a user: drop the local copy and its email mappings.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void evict(String userId, String... emails) {
+        if (userId == null) {
+            return;
+        }
+        evictLocal(userId);
+        // Invalidation always tries Redis, breaker or not: a skipped delete would leave a stale copy
+        try {
+            // The tombstone keeps a reader that loaded before the write from caching its copy
+            redisCacheTemplate.opsForValue().set(ID_PREFIX + userId, TOMBSTONE, tombstoneTtl);
+            List<String> emailKeys = new ArrayList<>();
+            for (String email : emails) {
+                if (email != null) {
+                    emailKeys.add(EMAIL_PREFIX + email);
+                }
+            }
+            if (!emailKeys.isEmpty()) {
+                redisCacheTemplate.delete(emailKeys);
+            }
+            redis.convertAndSend(INVALIDATION_CHANNEL, userId);
+        } catch (Exception e) {
+            // Stale Redis copies expire with the TTL; other instances with their local TTL
+            logger.warn("Failed to invalidate cached user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void evictLocal(String userId) {
+        generation.incrementAndGet();
+        byId.invalidate(userId);
+        idByEmail.asMap().values().removeIf(userId::equals);
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    /**
+     * Cache a user loaded from the store and return it as callers see cached users. Skipped
+     * locally when an eviction happened since loadGeneration was read, and in Redis while the
+     * eviction's tombstone (or any other copy) is there.
+     */
+    private UserDto cache(UserDto user, long loadGeneration) {
+        CachedUser stored = CachedUser.of(user);
+        if (stored.id() == null) {
+            return stored.toDto();
+        }
+        putLocal(stored, loadGeneration);
+        try {
+            circuitBreaker.execute(() -> {
+                redisCacheTemplate.opsForValue().setIfAbsent(ID_PREFIX + stored.id(), stored, redisTtl);
+                if (stored.email() != null) {
+                    redisCacheTemplate.opsForValue().set(EMAIL_PREFIX + stored.email(), stored.id(), redisTtl);
+                }
+                return null;
+            }, () -> null);
+        } catch (Exception e) {
+            logger.warn("Failed to cache user {} in Redis: {}", stored.id(), e.getMessage());
+        }
+        return stored.toDto();
+    }
+
+    private void putLocal(CachedUser user, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+        byId.put(user.id(), user);
+        if (user.email() != null) {
+            idByEmail.put(user.email(), user.id());
+        }
+    }
+
+    private CachedUser readRedis(String id) {
+        try {
+            Object value = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(ID_PREFIX + id), () -> null);
+            return value instanceof CachedUser user ? user : null;
+        } catch (Exception e) {
+            logger.warn("Failed to read cached user {} from Redis: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    private String readRedisEmail(String email) {
+        try {
+            Object value = circuitBreaker.execute(() -> redisCacheTemplate.opsForValue().get(EMAIL_PREFIX + email), () -> null);
+            return value instanceof String id ? id : null;
+        } catch (Exception e) {
+            logger.warn("Failed to read cached user email mapping from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private List<Object> multiReadRedis(List<String> ids) {
+        try {
+            return circuitBreaker.execute(
+                    () -> redisCacheTemplate.opsForValue().multiGet(ids.stream().map(id -> ID_PREFIX + id).toList()),
+                    () -> null);
+        } catch (Exception e) {
+            logger.warn("Failed to read cached users from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.splitzy.splitzy.service.dao;
 
 import org.springframework.data.domain.Sort;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +23,10 @@ public interface ExpenseDao {
     
     List<ExpenseDto> findAllByGroupId(String groupId, Sort sort);
     
+    List<ExpenseDto> findAllByGroupIdAndDateRange(String groupId, LocalDate startDate, LocalDate endDate, Sort sort);
+    
+    List<ExpenseDto> findAllById(Collection<String> ids);
+    
     List<ExpenseDto> findAllByBothUserInvolvement(String userId, String friendId, Sort sort);
     
     ExpenseDto save(ExpenseDto expense);
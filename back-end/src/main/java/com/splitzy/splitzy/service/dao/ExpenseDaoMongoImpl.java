@@ -9,6 +9,8 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -66,6 +68,20 @@ public class ExpenseDaoMongoImpl implements ExpenseDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<ExpenseDto> findAllByGroupIdAndDateRange(String groupId, LocalDate startDate, LocalDate endDate, Sort sort) {
+        return expenseRepository.findAllByGroupIdAndDateRange(groupId, startDate, endDate, sort).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ExpenseDto> findAllById(Collection<String> ids) {
+        return expenseRepository.findAllById(ids).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<ExpenseDto> findAllByBothUserInvolvement(String userId, String friendId, Sort sort) {
         return expenseRepository.findAllByBothUserInvolvement(userId, friendId, sort).stream()
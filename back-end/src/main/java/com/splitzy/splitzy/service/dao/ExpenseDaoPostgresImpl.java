@@ -10,6 +10,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -68,6 +70,20 @@ public class ExpenseDaoPostgresImpl implements ExpenseDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<ExpenseDto> findAllByGroupIdAndDateRange(String groupId, LocalDate startDate, LocalDate endDate, Sort sort) {
+        return expenseSqlRepository.findAllByGroupIdAndDateRange(groupId, startDate, endDate, sort).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<ExpenseDto> findAllById(Collection<String> ids) {
+        return expenseSqlRepository.findAllById(ids).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<ExpenseDto> findAllByBothUserInvolvement(String userId, String friendId, Sort sort) {
         return expenseSqlRepository.findAllByBothUserInvolvement(userId, friendId, sort).stream()
@@ -13,6 +13,14 @@ public interface UserDao {
     Optional<UserDto> findById(String id);
     
     Optional<UserDto> findByEmail(String email);
+
+    /**
+     * User by email including the password hash and verification token, which cached lookups
+     * leave out. For authentication and password checks.
+     */
+    default Optional<UserDto> findByEmailWithCredentials(String email) {
+        return findByEmail(email);
+    }
     
     Optional<UserDto> findByVerificationToken(String verificationToken);
     
@@ -21,8 +29,17 @@ public interface UserDao {
     List<UserDto> findByEmailRegex(String regex);
     
     List<UserDto> findFriendsByRegex(Set<String> friendIds, String regex);
+
+    /**
+     * Users whose name or email contains the query (case-insensitive, no pattern syntax),
+     * best matches first: exact, then prefix, then shorter names. At most limit results.
+     */
+    List<UserDto> searchByNameOrEmail(String query, int limit);
     
     List<UserDto> findAllById(Iterable<String> ids);
+
+    /** Id, name and email of every user, loading nothing else; for full rebuilds of in-memory indexes. */
+    List<UserSummary> findAllSummaries();
     
     UserDto save(UserDto user);
     
@@ -2,12 +2,16 @@ package com.splitzy.splitzy.service.dao;
 
 import com.splitzy.splitzy.model.User;
 import com.splitzy.splitzy.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Repository;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -15,6 +19,7 @@ import java.util.stream.StreamSupport;
  * MongoDB implementation of UserDao.
  */
 @Repository
+@Qualifier(CachingUserDao.STORE)
 @Profile("!postgres")
 public class UserDaoMongoImpl implements UserDao {
 
@@ -60,6 +65,31 @@ public class UserDaoMongoImpl implements UserDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<UserDto> searchByNameOrEmail(String query, int limit) {
+        String term = query.trim();
+        if (term.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String lower = term.toLowerCase();
+        return userRepository.searchByNameOrEmail(Pattern.quote(term), PageRequest.of(0, limit)).stream()
+                .map(this::toDto)
+                .sorted(Comparator.comparingInt((UserDto u) -> rank(u, lower))
+                        .thenComparingInt(u -> u.getName() != null ? u.getName().length() : Integer.MAX_VALUE))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 0 = exact name/email match, 1 = prefix match, 2 = anything else.
+     */
+    private int rank(UserDto user, String lower) {
+        String name = user.getName() != null ? user.getName().toLowerCase() : "";
+        String email = user.getEmail() != null ? user.getEmail().toLowerCase() : "";
+        if (name.equals(lower) || email.equals(lower)) return 0;
+        if (name.startsWith(lower) || email.startsWith(lower)) return 1;
+        return 2;
+    }
+
     @Override
     public List<UserDto> findAllById(Iterable<String> ids) {
         return StreamSupport.stream(userRepository.findAllById(ids).spliterator(), false)
@@ -67,6 +97,13 @@ public class UserDaoMongoImpl implements UserDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<UserSummary> findAllSummaries() {
+        return userRepository.findAllSummaries().stream()
+                .map(u -> new UserSummary(u.getId(), u.getName(), u.getEmail()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public UserDto save(UserDto userDto) {
         User user = toEntity(userDto);
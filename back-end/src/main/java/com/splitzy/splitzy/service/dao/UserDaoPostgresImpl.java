@@ -2,6 +2,7 @@ package com.splitzy.splitzy.service.dao;
 
 import com.splitzy.splitzy.entity.UserSql;
 import com.splitzy.splitzy.repository.sql.UserSqlRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
@@ -15,6 +16,7 @@ import java.util.stream.StreamSupport;
  * PostgreSQL implementation of UserDao.
  */
 @Repository
+@Qualifier(CachingUserDao.STORE)
 @Profile("postgres")
 public class UserDaoPostgresImpl implements UserDao {
 
@@ -36,18 +38,14 @@ public class UserDaoPostgresImpl implements UserDao {
 
     @Override
     public Optional<UserDto> findByVerificationToken(String verificationToken) {
-        // PostgreSQL doesn't have a direct query for this - use stream filter
-        return userSqlRepository.findAll().stream()
-                .filter(u -> verificationToken != null && verificationToken.equals(u.getVerificationToken()))
-                .findFirst()
-                .map(this::toDto);
+        return userSqlRepository.findByVerificationToken(verificationToken).map(this::toDto);
     }
 
     @Override
     public List<UserDto> findByNameRegex(String regex) {
         // For PostgreSQL, extract the search term from regex like "(?i).*rah.*"
         String pattern = extractSearchTerm(regex);
-        return userSqlRepository.findAll().stream()
+        return userSqlRepository.findByNameOrEmailLike("%" + escapeLike(pattern) + "%").stream()
                 .filter(u -> u.getName() != null && u.getName().toLowerCase().contains(pattern))
                 .map(this::toDto)
                 .collect(Collectors.toList());
@@ -56,12 +54,24 @@ public class UserDaoPostgresImpl implements UserDao {
     @Override
     public List<UserDto> findByEmailRegex(String regex) {
         String pattern = extractSearchTerm(regex);
-        return userSqlRepository.findAll().stream()
+        return userSqlRepository.findByNameOrEmailLike("%" + escapeLike(pattern) + "%").stream()
                 .filter(u -> u.getEmail() != null && u.getEmail().toLowerCase().contains(pattern))
                 .map(this::toDto)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<UserDto> searchByNameOrEmail(String query, int limit) {
+        String term = query.trim();
+        if (term.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String escaped = escapeLike(term);
+        return userSqlRepository.searchByNameOrEmail(term, "%" + escaped + "%", escaped + "%", limit).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<UserDto> findFriendsByRegex(Set<String> friendIds, String regex) {
         String pattern = extractSearchTerm(regex);
@@ -72,6 +82,13 @@ public class UserDaoPostgresImpl implements UserDao {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Escape LIKE wildcards so user input only matches literally (escape character is backslash).
+     */
+    private String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     /**
      * Extract the actual search term from a regex pattern like "(?i).*searchterm.*"
      */
@@ -91,9 +108,20 @@ public class UserDaoPostgresImpl implements UserDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<UserSummary> findAllSummaries() {
+        return userSqlRepository.findAllSummaries().stream()
+                .map(u -> new UserSummary(u.getId(), u.getName(), u.getEmail()))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public UserDto save(UserDto userDto) {
         UserSql user = toEntity(userDto);
+        if (user.getId() != null && userDto.getVerificationToken() == null) {
+            // Loaded users never carry the raw token; keep the stored hash instead of clearing it
+            userSqlRepository.findVerificationTokenHashById(user.getId()).ifPresent(user::setVerificationTokenHash);
+        }
         UserSql saved = userSqlRepository.save(user);
         return toDto(saved);
     }
@@ -0,0 +1,6 @@
+package com.splitzy.splitzy.service.dao;
+
+/**
+ * Id, name and email of a user, without the rest of the record.
+ */
+public record UserSummary(String id, String name, String email) {}
@@ -0,0 +1,156 @@
+package com.splitzy.splitzy.service.ledger;
+
+import com.splitzy.splitzy.entity.LedgerCheckpointSql;
+import com.splitzy.splitzy.entity.LedgerEntrySql;
+import com.splitzy.splitzy.model.LedgerEntryType;
+import com.splitzy.splitzy.repository.sql.LedgerCheckpointSqlRepository;
+import com.splitzy.splitzy.repository.sql.LedgerEntrySqlRepository;
+import com.splitzy.splitzy.service.analytics.BalanceContributions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Append-only balance journal with periodic checkpoints, for point-in-time balance queries.
+ *
+ * Every expense change appends one entry per (user, counterparty) pair whose balance moved,
+ * holding the difference between the expense's contributions before and after the change, in
+ * the same transaction as the expense write. A background job finds the pairs with
+ * CHECKPOINT_INTERVAL entries past their last checkpoint and stores the running balance, so an
+ * as-of query reads one checkpoint plus the entries after it.
+ */
+@Service
+@Profile("postgres")
+public class LedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LedgerService.class);
+
+    private static final int CHECKPOINT_INTERVAL = 50;
+    private static final int CHECKPOINT_BATCH = 500;
+    // Checkpoints only cover entries this old, so a transaction still in flight can't commit
+    // an entry behind one
+    private static final Duration CHECKPOINT_LAG = Duration.ofMinutes(1);
+
+    private final LedgerEntrySqlRepository entryRepo;
+    private final LedgerCheckpointSqlRepository checkpointRepo;
+
+    private final boolean checkpointsEnabled;
+
+    public LedgerService(LedgerEntrySqlRepository entryRepo,
+                         LedgerCheckpointSqlRepository checkpointRepo,
+                         @Value("${ledger.checkpoint.enabled:true}") boolean checkpointsEnabled) {
+        this.entryRepo = entryRepo;
+        this.checkpointRepo = checkpointRepo;
+        this.checkpointsEnabled = checkpointsEnabled;
+    }
+
+    /**
+     * Journal the balance movements caused by one expense change. Joins the caller's
+     * transaction, so the entries commit or roll back with the expense.
+     */
+    @Transactional
+    public void record(LedgerEntryType type, String expenseId,
+                       BalanceContributions before, BalanceContributions after) {
+        Map<String, Map<String, Double>> deltas = after.minus(before);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntrySql> entries = new ArrayList<>();
+        deltas.forEach((userId, balances) -> balances.forEach((counterpartyId, amount) -> {
+            LedgerEntrySql entry = new LedgerEntrySql();
+            entry.setUserId(userId);
+            entry.setCounterpartyId(counterpartyId);
+            entry.setExpenseId(expenseId);
+            entry.setType(type);
+            entry.setAmount(amount);
+            entry.setOccurredAt(now);
+            entries.add(entry);
+        }));
+        entryRepo.saveAll(entries);
+    }
+
+    /**
+     * Checkpoint every pair that has CHECKPOINT_INTERVAL entries past its last checkpoint,
+     * found with one aggregate query. Checkpoints only cover entries older than CHECKPOINT_LAG.
+     * Two instances running at once write the same checkpoint twice, which reads the same.
+     */
+    @Scheduled(initialDelayString = "${ledger.checkpoint.initial-delay-ms:60000}",
+               fixedDelayString = "${ledger.checkpoint.interval-ms:60000}")
+    @Transactional
+    public void checkpointDuePairs() {
+        if (!checkpointsEnabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntrySqlRepository.DuePair> due = entryRepo.findPairsDueForCheckpoint(
+            now.minus(CHECKPOINT_LAG), CHECKPOINT_INTERVAL, PageRequest.of(0, CHECKPOINT_BATCH));
+        for (LedgerEntrySqlRepository.DuePair pair : due) {
+            checkpoint(pair, now);
+        }
+        if (!due.isEmpty()) {
+            logger.debug("Stored {} ledger checkpoints", due.size());
+        }
+    }
+
+    /**
+     * The user's balance with the counterparty at the given time (negative when the user owed).
+     */
+    @Transactional(readOnly = true)
+    public double balanceAsOf(String userId, String counterpartyId, LocalDateTime asOf) {
+        LedgerCheckpointSql checkpoint = checkpointRepo
+            .findTopByUserIdAndCounterpartyIdAndAsOfLessThanEqualOrderByLastEntryIdDesc(userId, counterpartyId, asOf);
+        double base = checkpoint != null ? checkpoint.getBalance() : 0;
+        long afterId = checkpoint != null ? checkpoint.getLastEntryId() : 0;
+        return base + entryRepo.sumAfter(userId, counterpartyId, afterId, asOf);
+    }
+
+    /**
+     * The user's non-zero balances with every counterparty at the given time.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Double> balancesAsOf(String userId, LocalDateTime asOf) {
+        Map<String, Double> balances = new HashMap<>();
+        for (LedgerCheckpointSql checkpoint : checkpointRepo.findLatestPerCounterparty(userId, asOf)) {
+            balances.put(checkpoint.getCounterpartyId(), checkpoint.getBalance());
+        }
+        for (LedgerEntrySqlRepository.CounterpartyAmount row : entryRepo.sumSinceCheckpoints(userId, asOf)) {
+            if (row.getAmount() != null) {
+                balances.merge(row.getCounterpartyId(), row.getAmount(), Double::sum);
+            }
+        }
+        balances.values().removeIf(balance -> Math.abs(balance) < 0.01);
+        return balances;
+    }
+
+    private void checkpoint(LedgerEntrySqlRepository.DuePair pair, LocalDateTime now) {
+        String userId = pair.getUserId();
+        String counterpartyId = pair.getCounterpartyId();
+        LedgerCheckpointSql last = checkpointRepo.findTopByUserIdAndCounterpartyIdOrderByLastEntryIdDesc(userId, counterpartyId);
+        long lastEntryId = last != null ? last.getLastEntryId() : 0;
+        if (pair.getLastEntryId() <= lastEntryId) {
+            return;
+        }
+
+        LedgerCheckpointSql checkpoint = new LedgerCheckpointSql();
+        checkpoint.setUserId(userId);
+        checkpoint.setCounterpartyId(counterpartyId);
+        checkpoint.setLastEntryId(pair.getLastEntryId());
+        checkpoint.setAsOf(pair.getLastOccurredAt());
+        checkpoint.setBalance((last != null ? last.getBalance() : 0)
+            + entryRepo.sumBetween(userId, counterpartyId, lastEntryId, pair.getLastEntryId()));
+        checkpoint.setCreatedAt(now);
+        checkpointRepo.save(checkpoint);
+        logger.debug("Ledger checkpoint for {} / {} at entry {}", userId, counterpartyId, pair.getLastEntryId());
+    }
+}
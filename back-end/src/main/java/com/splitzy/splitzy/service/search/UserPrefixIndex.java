@@ -0,0 +1,232 @@
+package com.splitzy.splitzy.service.search;
+
+import com.splitzy.splitzy.service.dao.CachingUserDao;
+import com.splitzy.splitzy.service.dao.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory prefix index for search-as-you-type over user names and emails.
+ *
+ * The base index is an immutable sorted array of normalized tokens (each name word, the full
+ * name, the email and its local part) pointing at users; a prefix query is a binary search
+ * followed by a short forward scan. It is rebuilt from the store (ids, names and emails only)
+ * on a fixed delay. Between rebuilds, users written anywhere in the cluster (announced on the
+ * user invalidation channel) are reloaded from the store into a small overlay that shadows their
+ * base entries; the store, not the user cache, so a copy re-cached just before the write can't
+ * come back.
+ *
+ * Matching is by token prefix, unlike the store search it replaces, which matches anywhere in the
+ * name or email: "ann" finds "Anna Smith" and "Jo Annson" but not "Joanna". Off unless
+ * search.prefix-index.enabled=true.
+ */
+@Service
+public class UserPrefixIndex implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPrefixIndex.class);
+
+    // How many candidates a query ranks before cutting to the requested size
+    private static final int CANDIDATE_FACTOR = 8;
+
+    /** Indexed view of a user. */
+    public record Entry(String id, String name, String email) {}
+
+    @Value("${search.prefix-index.enabled:false}")
+    private boolean enabled;
+
+    private final UserDao userDao;
+
+    private volatile Snapshot snapshot;
+
+    // Users changed since the last rebuild; empty = deleted
+    private final Map<String, Optional<Entry>> overlay = new ConcurrentHashMap<>();
+
+    public UserPrefixIndex(@Qualifier(CachingUserDao.STORE) UserDao userDao,
+                           RedisMessageListenerContainer listenerContainer) {
+        this.userDao = userDao;
+        listenerContainer.addMessageListener(this, new ChannelTopic(CachingUserDao.INVALIDATION_CHANNEL));
+    }
+
+    public boolean isReady() {
+        return enabled && snapshot != null;
+    }
+
+    /**
+     * Up to limit users with a name or email token starting with the query, best first:
+     * exact token match, then name prefix, then shorter names. Empty when the index is not built yet.
+     */
+    public List<Entry> suggest(String query, int limit) {
+        Snapshot base = snapshot;
+        String prefix = normalize(query);
+        if (!enabled || base == null || prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int maxCandidates = limit * CANDIDATE_FACTOR;
+
+        Map<String, Entry> candidates = new LinkedHashMap<>();
+        for (int i = base.lowerBound(prefix); i < base.tokens.length && candidates.size() < maxCandidates; i++) {
+            if (!base.tokens[i].startsWith(prefix)) break;
+            Entry entry = base.users[base.userIndex[i]];
+            // Changed users are answered from the overlay only
+            if (!overlay.containsKey(entry.id())) {
+                candidates.putIfAbsent(entry.id(), entry);
+            }
+        }
+        overlay.values().forEach(changed -> changed
+            .filter(e -> tokens(e).stream().anyMatch(t -> t.startsWith(prefix)))
+            .ifPresent(e -> candidates.putIfAbsent(e.id(), e)));
+
+        return candidates.values().stream()
+            .sorted(Comparator.comparingInt((Entry e) -> rank(e, prefix))
+                .thenComparingInt(e -> e.name() != null ? e.name().length() : Integer.MAX_VALUE)
+                .thenComparing(Entry::id))
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * Full rebuild from the store. Overlay entries that arrive while loading are kept.
+     */
+    @Scheduled(initialDelayString = "${search.prefix-index.initial-delay-ms:10000}",
+               fixedDelayString = "${search.prefix-index.rebuild-ms:900000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, Optional<Entry>> pending = new HashMap<>(overlay);
+        try {
+            List<Entry> entries = userDao.findAllSummaries().stream()
+                .map(u -> new Entry(u.id(), u.name(), u.email()))
+                .toList();
+            snapshot = Snapshot.build(entries);
+            // Changes already reflected in the load leave the overlay, unless they changed again meanwhile
+            pending.forEach(overlay::remove);
+            logger.info("Rebuilt user prefix index: {} users, {} tokens in {} ms",
+                entries.size(), snapshot.tokens.length, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("Failed to rebuild user prefix index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A user was written somewhere in the cluster: reload it into the overlay.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (!enabled) {
+            return;
+        }
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Optional<Entry> entry = userDao.findById(userId).map(u -> new Entry(u.getId(), u.getName(), u.getEmail()));
+            overlay.put(userId, entry);
+        } catch (Exception e) {
+            logger.warn("Failed to refresh user {} in prefix index: {}", userId, e.getMessage());
+        }
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    private static int rank(Entry entry, String prefix) {
+        if (tokens(entry).contains(prefix)) return 0;
+        if (entry.name() != null && normalize(entry.name()).startsWith(prefix)) return 1;
+        return 2;
+    }
+
+    static Set<String> tokens(Entry entry) {
+        Set<String> tokens = new HashSet<>();
+        if (entry.name() != null) {
+            String name = normalize(entry.name());
+            if (!name.isEmpty()) {
+                tokens.add(name);
+                for (String word : name.split(" ")) {
+                    tokens.add(word);
+                }
+            }
+        }
+        if (entry.email() != null) {
+            String email = normalize(entry.email());
+            if (!email.isEmpty()) {
+                tokens.add(email);
+                int at = email.indexOf('@');
+                if (at > 0) {
+                    tokens.add(email.substring(0, at));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Immutable sorted token array; userIndex[i] is the position in users of tokens[i]'s owner.
+     */
+    private static final class Snapshot {
+
+        private final String[] tokens;
+        private final int[] userIndex;
+        private final Entry[] users;
+
+        private Snapshot(String[] tokens, int[] userIndex, Entry[] users) {
+            this.tokens = tokens;
+            this.userIndex = userIndex;
+            this.users = users;
+        }
+
+        static Snapshot build(List<Entry> entries) {
+            Entry[] users = entries.toArray(new Entry[0]);
+            List<String> tokenList = new ArrayList<>();
+            List<Integer> owners = new ArrayList<>();
+            for (int u = 0; u < users.length; u++) {
+                for (String token : tokens(users[u])) {
+                    tokenList.add(token);
+                    owners.add(u);
+                }
+            }
+            Integer[] order = new Integer[tokenList.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparing(tokenList::get));
+
+            String[] tokens = new String[order.length];
+            int[] userIndex = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                tokens[i] = tokenList.get(order[i]);
+                userIndex[i] = owners.get(order[i]);
+            }
+            return new Snapshot(tokens, userIndex, users);
+        }
+
+        /** First position whose token is >= prefix. */
+        int lowerBound(String prefix) {
+            int lo = 0;
+            int hi = tokens.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (tokens[mid].compareTo(prefix) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.splitzy.splitzy.service.statement;
+
+import com.splitzy.splitzy.dto.analytics.AnalyticsFilter.TimeGranularity;
+import com.splitzy.splitzy.dto.analytics.TrendData;
+import com.splitzy.splitzy.entity.MonthlyStatementSql;
+import com.splitzy.splitzy.entity.StatementJobCheckpointSql;
+import com.splitzy.splitzy.entity.UserSql;
+import com.splitzy.splitzy.repository.sql.MonthlyStatementSqlRepository;
+import com.splitzy.splitzy.repository.sql.StatementJobCheckpointSqlRepository;
+import com.splitzy.splitzy.repository.sql.UserSqlRepository;
+import com.splitzy.splitzy.service.EmailService;
+import com.splitzy.splitzy.service.analytics.TrendRollupService;
+import com.splitzy.splitzy.util.RedisLocks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Monthly statement batch job (Postgres only).
+ *
+ * Walks all users in id order in chunks. Each chunk is rendered in parallel on a dedicated
+ * fork-join pool from the persisted monthly trend rollups, then the statements are queued
+ * (status QUEUED) and the chunk's last user id is checkpointed. A user whose statement fails
+ * to render gets a FAILED row instead, so the failure is not mistaken for "no expenses".
+ * A rerun for the same period resumes after the checkpoint, skips users that already have a
+ * statement and retries the FAILED ones; the period is only completed once none are left.
+ */
+@Service
+@Profile("postgres")
+public class MonthlyStatementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyStatementService.class);
+
+    private static final String LOCK_PREFIX = "statements:lock:";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(30);
+    private static final DateTimeFormatter PERIOD_LABEL = DateTimeFormatter.ofPattern("MMMM yyyy");
+
+    @Value("${statements.monthly.enabled:false}")
+    private boolean enabled;
+
+    @Value("${statements.monthly.chunk-size:500}")
+    private int chunkSize;
+
+    // 0 = one worker per available processor
+    @Value("${statements.monthly.parallelism:0}")
+    private int parallelism;
+
+    private final UserSqlRepository userRepo;
+    private final MonthlyStatementSqlRepository statementRepo;
+    private final StatementJobCheckpointSqlRepository checkpointRepo;
+    private final TrendRollupService trendRollupService;
+    private final EmailService emailService;
+    private final StringRedisTemplate redis;
+
+    public MonthlyStatementService(UserSqlRepository userRepo,
+                                   MonthlyStatementSqlRepository statementRepo,
+                                   StatementJobCheckpointSqlRepository checkpointRepo,
+                                   TrendRollupService trendRollupService,
+                                   EmailService emailService,
+                                   StringRedisTemplate redis) {
+        this.userRepo = userRepo;
+        this.statementRepo = statementRepo;
+        this.checkpointRepo = checkpointRepo;
+        this.trendRollupService = trendRollupService;
+        this.emailService = emailService;
+        this.redis = redis;
+    }
+
+    /**
+     * Statements for the month that just ended. Disabled unless statements.monthly.enabled=true.
+     */
+    @Scheduled(cron = "${statements.monthly.cron:0 0 3 1 * *}")
+    public void generatePreviousMonth() {
+        if (!enabled) {
+            return;
+        }
+        generate(YearMonth.now().minusMonths(1));
+    }
+
+    /**
+     * Generate (or resume generating) the statements for a period. Only one instance runs a
+     * given period at a time.
+     */
+    public void generate(YearMonth period) {
+        String periodKey = period.toString();
+        String lockKey = LOCK_PREFIX + periodKey;
+        String lockToken = RedisLocks.tryAcquire(redis, lockKey, LOCK_TTL);
+        if (lockToken == null) {
+            logger.info("Statement job for {} is already running elsewhere, skipping", periodKey);
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            StatementJobCheckpointSql checkpoint = checkpointRepo.findById(periodKey).orElseGet(() -> {
+                StatementJobCheckpointSql cp = new StatementJobCheckpointSql();
+                cp.setPeriod(periodKey);
+                cp.setStartedAt(LocalDateTime.now());
+                return cp;
+            });
+            if (checkpoint.isCompleted()) {
+                logger.info("Statements for {} were already generated", periodKey);
+                return;
+            }
+            if (checkpoint.getLastUserId() != null) {
+                logger.info("Resuming statements for {} after user {} ({} users done)",
+                    periodKey, checkpoint.getLastUserId(), checkpoint.getProcessedUsers());
+            }
+
+            long runStart = System.nanoTime();
+            long runUsers = 0;
+            while (true) {
+                String afterId = checkpoint.getLastUserId() != null ? checkpoint.getLastUserId() : "";
+                List<String> userIds = userRepo.findIdsAfter(afterId, PageRequest.of(0, chunkSize));
+                if (userIds.isEmpty()) {
+                    break;
+                }
+                long chunkStart = System.nanoTime();
+
+                // Users that got a statement (or a FAILED row, retried at the end) in an earlier,
+                // interrupted run of this chunk
+                Set<String> done = new HashSet<>(statementRepo.findUserIdsWithStatement(periodKey, userIds));
+                List<String> pending = userIds.stream().filter(id -> !done.contains(id)).collect(Collectors.toList());
+                List<UserSql> users = pending.isEmpty() ? List.of() : userRepo.findAllById(pending);
+
+                List<MonthlyStatementSql> statements = buildStatements(pool, users, period);
+                statementRepo.saveAll(statements);
+                long queued = countQueued(statements);
+
+                checkpoint.setLastUserId(userIds.get(userIds.size() - 1));
+                checkpoint.setProcessedUsers(checkpoint.getProcessedUsers() + userIds.size());
+                checkpoint.setQueuedStatements(checkpoint.getQueuedStatements() + queued);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpointRepo.save(checkpoint);
+                if (!RedisLocks.extend(redis, lockKey, lockToken, LOCK_TTL)) {
+                    // The lock expired and another instance may have taken the period over
+                    logger.warn("Statement job for {} lost its lock; it will resume from the last checkpoint", periodKey);
+                    return;
+                }
+
+                runUsers += userIds.size();
+                logger.info("Statements {}: {} users, {} queued, {} failed in chunk ({} users/sec)",
+                    periodKey, userIds.size(), queued, statements.size() - queued,
+                    String.format("%.1f", usersPerSecond(userIds.size(), chunkStart)));
+            }
+
+            long failed = retryFailed(pool, period, checkpoint);
+            if (failed > 0) {
+                logger.warn("Statements {}: {} users still failed; rerun the period to retry them", periodKey, failed);
+                return;
+            }
+
+            checkpoint.setCompleted(true);
+            checkpoint.setUpdatedAt(LocalDateTime.now());
+            checkpointRepo.save(checkpoint);
+            logger.info("Statements {} complete: {} users this run, {} total, {} queued ({} users/sec)",
+                periodKey, runUsers, checkpoint.getProcessedUsers(), checkpoint.getQueuedStatements(),
+                String.format("%.1f", usersPerSecond(runUsers, runStart)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Statement job for {} interrupted; it will resume from the last checkpoint", periodKey);
+        } catch (ExecutionException e) {
+            logger.error("Statement job for {} failed; it will resume from the last checkpoint", periodKey, e.getCause());
+        } finally {
+            pool.shutdown();
+            RedisLocks.release(redis, lockKey, lockToken);
+        }
+    }
+
+    /**
+     * Render the FAILED statements of the period again, replacing the rows that now succeed.
+     * Returns how many are still failing.
+     */
+    private long retryFailed(ForkJoinPool pool, YearMonth period, StatementJobCheckpointSql checkpoint)
+            throws InterruptedException, ExecutionException {
+        String periodKey = period.toString();
+        List<MonthlyStatementSql> failed = statementRepo.findByPeriodAndStatus(periodKey, MonthlyStatementSql.Status.FAILED);
+        if (failed.isEmpty()) {
+            return 0;
+        }
+        Map<String, String> rowIds = failed.stream()
+            .collect(Collectors.toMap(MonthlyStatementSql::getUserId, MonthlyStatementSql::getId));
+        List<UserSql> users = userRepo.findAllById(rowIds.keySet());
+
+        List<MonthlyStatementSql> retried = buildStatements(pool, users, period);
+        List<MonthlyStatementSql> recovered = new ArrayList<>();
+        Set<String> rendered = new HashSet<>();
+        for (MonthlyStatementSql statement : retried) {
+            rendered.add(statement.getUserId());
+            if (statement.getStatus() == MonthlyStatementSql.Status.QUEUED) {
+                statement.setId(rowIds.get(statement.getUserId()));
+                recovered.add(statement);
+            }
+        }
+        statementRepo.saveAll(recovered);
+        // Users that no longer have expenses (or no longer exist) have nothing to send
+        rowIds.forEach((userId, rowId) -> {
+            if (!rendered.contains(userId)) {
+                statementRepo.deleteById(rowId);
+            }
+        });
+
+        checkpoint.setQueuedStatements(checkpoint.getQueuedStatements() + recovered.size());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepo.save(checkpoint);
+        logger.info("Statements {}: retried {} failed users, {} recovered", periodKey, failed.size(), recovered.size());
+        return retried.size() - recovered.size();
+    }
+
+    private List<MonthlyStatementSql> buildStatements(ForkJoinPool pool, List<UserSql> users, YearMonth period)
+            throws InterruptedException, ExecutionException {
+        return pool.submit(() -> users.parallelStream()
+                .map(user -> buildStatement(user, period))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()))
+            .get();
+    }
+
+    private long countQueued(List<MonthlyStatementSql> statements) {
+        return statements.stream().filter(s -> s.getStatus() == MonthlyStatementSql.Status.QUEUED).count();
+    }
+
+    /**
+     * Statement for one user, null when they had no expenses in the period, or a FAILED row
+     * when it could not be rendered.
+     */
+    private MonthlyStatementSql buildStatement(UserSql user, YearMonth period) {
+        try {
+            List<TrendData.TrendPoint> points = trendRollupService.getTrendPoints(
+                user.getId(), TimeGranularity.MONTHLY, period.atDay(1), period.atEndOfMonth());
+            if (points.isEmpty()) {
+                return null;
+            }
+            TrendData.TrendPoint point = points.get(0);
+            Map<String, Double> categories = point.getCategoryBreakdown().stream()
+                .collect(Collectors.toMap(TrendData.CategoryAmount::getCategory, TrendData.CategoryAmount::getAmount, Double::sum));
+
+            MonthlyStatementSql statement = new MonthlyStatementSql();
+            statement.setUserId(user.getId());
+            statement.setPeriod(period.toString());
+            statement.setEmail(user.getEmail());
+            statement.setSpending(point.getSpending());
+            statement.setIncome(point.getIncome());
+            statement.setExpenseCount(point.getExpenseCount());
+            statement.setHtml(emailService.buildMonthlyStatementTemplate(user.getName(), period.format(PERIOD_LABEL),
+                point.getSpending(), point.getIncome(), point.getExpenseCount(), categories));
+            statement.setStatus(MonthlyStatementSql.Status.QUEUED);
+            statement.setCreatedAt(LocalDateTime.now());
+            return statement;
+        } catch (Exception e) {
+            logger.warn("Failed to build {} statement for user {}: {}", period, user.getId(), e.getMessage());
+            MonthlyStatementSql failed = new MonthlyStatementSql();
+            failed.setUserId(user.getId());
+            failed.setPeriod(period.toString());
+            failed.setEmail(user.getEmail());
+            failed.setStatus(MonthlyStatementSql.Status.FAILED);
+            failed.setCreatedAt(LocalDateTime.now());
+            return failed;
+        }
+    }
+
+    private double usersPerSecond(long users, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds > 0 ? users / seconds : users;
+    }
+}
@@ -1,5 +1,10 @@
 package com.splitzy.splitzy.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -8,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Date;
 
 @Component
@@ -19,12 +25,43 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private long expiration; // e.g., 36000000 (10 hours in ms)
 
+    @Value("${jwt.claims-cache.size:10000}")
+    private long claimsCacheSize;
+
     private SecretKey SECRET_KEY;
 
+    // Parsers are immutable and thread-safe, so one is built at startup and shared
+    private JwtParser parser;
+
+    // Verified claims by token hash; an entry is dropped when its token expires
+    private Cache<String, Claims> claimsCache;
+
     @PostConstruct
     public void init() {
         // Convert the string to a key once at startup
         SECRET_KEY = Keys.hmacShaKeyFor(secretString.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parser()
+                .verifyWith(SECRET_KEY)
+                .build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return Duration.ofMillis(Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis())).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, claims, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     public String generateToken(String username) {
@@ -36,27 +73,34 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * Verified claims of the token, parsed at most once per token while it is valid.
+     * Throws if the signature is invalid or the token has expired.
+     */
+    public Claims parseClaims(String token) {
+        String key = TokenHashes.sha256(token);
+        Claims cached = claimsCache.getIfPresent(key);
+        if (cached != null && !isExpired(cached)) {
+            return cached;
+        }
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        // Tokens without an expiry are verified every time instead of being cached forever
+        if (claims.getExpiration() != null) {
+            claimsCache.put(key, claims);
+        }
+        return claims;
+    }
+
     public String extractUsername(String token) {
-        return Jwts.parser()
-                .verifyWith(SECRET_KEY)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public boolean validateToken(String token, String username) {
-        String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        Claims claims = parseClaims(token);
+        return claims.getSubject() != null && claims.getSubject().equals(username) && !isExpired(claims);
     }
 
-    private boolean isTokenExpired(String token) {
-        Date expirationDate = Jwts.parser()
-                .verifyWith(SECRET_KEY)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getExpiration();
-        return expirationDate.before(new Date());
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration() != null && claims.getExpiration().before(new Date());
     }
 }
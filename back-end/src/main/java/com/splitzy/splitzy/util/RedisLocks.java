@@ -0,0 +1,48 @@
+package com.splitzy.splitzy.util;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Short-lived Redis locks (SET NX with a TTL) owned by a random token.
+ * Release and extend compare the token first, so a holder whose lock expired
+ * never deletes or prolongs the lock another instance acquired since.
+ */
+public final class RedisLocks {
+
+    private static final RedisScript<Long> RELEASE =
+        RedisScript.of(new ClassPathResource("redis/release_lock.lua"), Long.class);
+    private static final RedisScript<Long> EXTEND =
+        RedisScript.of(new ClassPathResource("redis/extend_lock.lua"), Long.class);
+
+    private RedisLocks() {}
+
+    /**
+     * Acquire the lock, returning the owner token, or null when someone else holds it.
+     */
+    public static String tryAcquire(StringRedisTemplate redis, String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        return Boolean.TRUE.equals(redis.opsForValue().setIfAbsent(key, token, ttl)) ? token : null;
+    }
+
+    /**
+     * Release the lock if it is still held with this token.
+     */
+    public static boolean release(StringRedisTemplate redis, String key, String token) {
+        Long released = redis.execute(RELEASE, List.of(key), token);
+        return released != null && released > 0;
+    }
+
+    /**
+     * Reset the lock's TTL if it is still held with this token. False means the lock was lost.
+     */
+    public static boolean extend(StringRedisTemplate redis, String key, String token, Duration ttl) {
+        Long extended = redis.execute(EXTEND, List.of(key), token, Long.toString(ttl.toMillis()));
+        return extended != null && extended > 0;
+    }
+}
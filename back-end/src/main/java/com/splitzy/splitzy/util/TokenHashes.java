@@ -0,0 +1,26 @@
+package com.splitzy.splitzy.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashing for tokens that are used as lookup keys, so the raw token is never stored.
+ */
+public final class TokenHashes {
+
+    private TokenHashes() {}
+
+    /**
+     * Lowercase hex SHA-256 of the token's UTF-8 bytes.
+     */
+    public static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
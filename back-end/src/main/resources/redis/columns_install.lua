@@ -0,0 +1,35 @@
+-- Store a user's columnar snapshot covering every delta up to a sequence number.
+--
+-- KEYS[1]  snapshot
+-- KEYS[2]  delta buffer list
+-- KEYS[3]  delta sequence
+-- ARGV[1]  sequence the snapshot covers
+-- ARGV[2]  encoded snapshot
+-- ARGV[3]  TTL in seconds
+--
+-- Returns 1 when stored, 0 when the stored snapshot already covers as much (a concurrent build
+-- or compaction got there first). Buffered deltas covered by the snapshot are dropped, and the
+-- sequence is kept alive at least as long as the snapshot so it never restarts below it.
+
+local seq = tonumber(ARGV[1])
+local stored = redis.call('GET', KEYS[1])
+if stored then
+    local storedSeq = tonumber(string.match(stored, '^(%d+)|'))
+    if storedSeq and storedSeq >= seq then
+        return 0
+    end
+end
+local ttl = tonumber(ARGV[3])
+redis.call('SET', KEYS[1], seq .. '|' .. ARGV[2], 'EX', ttl)
+redis.call('EXPIRE', KEYS[3], ttl)
+-- Unstamped entries predate sequencing and are dropped too
+local head = redis.call('LINDEX', KEYS[2], 0)
+while head do
+    local headSeq = tonumber(string.match(head, '^(%d+)|'))
+    if headSeq and headSeq > seq then
+        break
+    end
+    redis.call('LPOP', KEYS[2])
+    head = redis.call('LINDEX', KEYS[2], 0)
+end
+return 1
@@ -0,0 +1,22 @@
+-- Queue one expense delta for a user's columnar snapshot.
+--
+-- KEYS[1]  delta sequence
+-- KEYS[2]  delta buffer list
+-- KEYS[3]  cold marker
+-- ARGV[1]  TTL of the sequence and buffer in seconds
+-- ARGV[2]  delta
+--
+-- Deltas are buffered whether or not a snapshot exists, so a change that lands while a snapshot
+-- is being built is not lost. Each is stamped "<seq>|<delta>"; the snapshot records the sequence
+-- it covers, and older deltas are discarded instead of folded in. Cold users have no snapshot
+-- coming, so nothing is queued for them.
+
+if redis.call('EXISTS', KEYS[3]) == 1 then
+    return 0
+end
+local ttl = tonumber(ARGV[1])
+local seq = redis.call('INCR', KEYS[1])
+redis.call('EXPIRE', KEYS[1], ttl)
+redis.call('RPUSH', KEYS[2], seq .. '|' .. ARGV[2])
+redis.call('EXPIRE', KEYS[2], ttl)
+return seq
@@ -0,0 +1,12 @@
+-- Extend a lock's TTL only if it is still held by the caller.
+--
+-- KEYS[1]  lock key
+-- ARGV[1]  token the caller stored when acquiring the lock
+-- ARGV[2]  new TTL in milliseconds
+--
+-- Returns 1 when the lock was extended, 0 when it had expired or belongs to someone else
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+end
+return 0
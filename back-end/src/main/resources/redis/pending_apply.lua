@@ -0,0 +1,20 @@
+-- Apply one expense change to a user's pending-actions inbox.
+--
+-- KEYS[1]  inbox version (bumped by every change, checked by rebuilds)
+-- KEYS[2]  ready marker
+-- KEYS[3]  balances sorted set
+-- ARGV[1]  TTL of the version in seconds
+-- ARGV[2..] pairs of (delta, counterparty)
+--
+-- The version is bumped and the marker checked atomically, so a rebuild that computed its
+-- balances before this change can never install them after the change was skipped.
+
+redis.call('INCR', KEYS[1])
+redis.call('EXPIRE', KEYS[1], tonumber(ARGV[1]))
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    return 0
+end
+for i = 2, #ARGV, 2 do
+    redis.call('ZINCRBY', KEYS[3], ARGV[i], ARGV[i + 1])
+end
+return 1
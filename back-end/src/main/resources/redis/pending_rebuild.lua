@@ -0,0 +1,23 @@
+-- Replace a user's pending-actions inbox with fully computed balances.
+--
+-- KEYS[1]  inbox version
+-- KEYS[2]  ready marker
+-- KEYS[3]  balances sorted set
+-- ARGV[1]  version read before the balances were computed
+-- ARGV[2]  TTL of the inbox in seconds
+-- ARGV[3..] pairs of (balance, counterparty)
+--
+-- Returns 1 when installed, 0 when a change landed since ARGV[1] was read (the balances may
+-- miss it, so the next read rebuilds again).
+
+if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] then
+    return 0
+end
+local ttl = tonumber(ARGV[2])
+redis.call('DEL', KEYS[3])
+for i = 3, #ARGV, 2 do
+    redis.call('ZADD', KEYS[3], ARGV[i], ARGV[i + 1])
+end
+redis.call('EXPIRE', KEYS[3], ttl)
+redis.call('SET', KEYS[2], '1', 'EX', ttl)
+return 1
@@ -0,0 +1,11 @@
+-- Release a lock only if it is still held by the caller.
+--
+-- KEYS[1]  lock key
+-- ARGV[1]  token the caller stored when acquiring the lock
+--
+-- Returns 1 when the lock was released, 0 when it had expired or belongs to someone else
+
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
@@ -0,0 +1,55 @@
+-- Token bucket rate limit check, evaluated atomically in one round trip.
+--
+-- KEYS[1]  bucket hash (fields: tokens, ts)
+-- ARGV[1]  capacity (tokens)
+-- ARGV[2]  refill window in ms (a full bucket refills over this period)
+-- ARGV[3]  tokens requested
+-- ARGV[4]  1 to grant fewer tokens than requested when that is all the bucket has (leases), else 0
+--
+-- Returns { tokens granted, remaining tokens, ms until the bucket is full, ms until the request (or, partial, one token) would fit }
+
+local key = KEYS[1]
+local capacity = tonumber(ARGV[1])
+local window_ms = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3])
+local partial = ARGV[4] == '1'
+
+-- Redis clock, so every node sees the same time
+local t = redis.call('TIME')
+local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)
+
+local rate = capacity / window_ms
+local state = redis.call('HMGET', key, 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+    tokens = capacity
+    ts = now
+end
+if now > ts then
+    tokens = math.min(capacity, tokens + (now - ts) * rate)
+    ts = now
+end
+
+local granted = 0
+if tokens >= cost then
+    granted = cost
+elseif partial and tokens >= 1 then
+    granted = math.floor(tokens)
+end
+tokens = tokens - granted
+
+local retry_ms = 0
+if granted == 0 then
+    local wanted = cost
+    if partial then
+        wanted = 1
+    end
+    retry_ms = math.ceil((wanted - tokens) / rate)
+end
+
+redis.call('HSET', key, 'tokens', tokens, 'ts', ts)
+-- An untouched bucket is full again after one window, which is the same as no bucket
+redis.call('PEXPIRE', key, window_ms)
+
+return { granted, math.floor(tokens), math.ceil((capacity - tokens) / rate), retry_ms }
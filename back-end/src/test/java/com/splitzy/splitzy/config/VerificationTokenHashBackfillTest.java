@@ -0,0 +1,122 @@
+package com.splitzy.splitzy.config;
+
+import com.splitzy.splitzy.util.TokenHashes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the backfill against an in-memory users table, following its queries.
+ */
+class VerificationTokenHashBackfillTest {
+
+    // id -> {verification_token, verification_token_hash}
+    private final SortedMap<String, String[]> users = new TreeMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private boolean hasRawColumn = true;
+    private Runnable afterSelect = () -> {};
+
+    private JdbcTemplate jdbcTemplate;
+    private VerificationTokenHashBackfill backfill;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(contains("information_schema"), eq(Boolean.class)))
+            .thenAnswer(inv -> hasRawColumn);
+        when(jdbcTemplate.queryForList(contains("SELECT id, verification_token"), any(Object[].class))).thenAnswer(inv -> {
+            Object[] args = (Object[]) inv.getRawArguments()[1];
+            List<Map<String, Object>> rows = new ArrayList<>();
+            users.tailMap((String) args[0]).forEach((id, row) -> {
+                if (row[0] != null && !id.equals(args[0]) && rows.size() < (Integer) args[1]) {
+                    rows.add(Map.of("id", id, "verification_token", row[0]));
+                }
+            });
+            afterSelect.run();
+            return rows;
+        });
+        when(jdbcTemplate.batchUpdate(contains("UPDATE users"), anyList())).thenAnswer(inv -> {
+            List<Object[]> updates = inv.getArgument(1);
+            batchSizes.add(updates.size());
+            int[] counts = new int[updates.size()];
+            for (int i = 0; i < updates.size(); i++) {
+                Object[] u = updates.get(i);
+                String[] row = users.get((String) u[1]);
+                if (row != null && u[2].equals(row[0])) {
+                    row[0] = null;
+                    row[1] = (String) u[0];
+                    counts[i] = 1;
+                }
+            }
+            return counts;
+        });
+
+        backfill = new VerificationTokenHashBackfill(jdbcTemplate);
+    }
+
+    @Test
+    void hashesAndClearsEveryRawTokenInBatches() {
+        for (int i = 0; i < 1200; i++) {
+            users.put(String.format("u%04d", i), new String[] {"token-" + i, null});
+        }
+        users.put("verified", new String[] {null, null});
+
+        backfill.run(null);
+
+        assertEquals(List.of(500, 500, 200), batchSizes);
+        users.forEach((id, row) -> assertNull(row[0], id));
+        assertEquals(TokenHashes.sha256("token-7"), users.get("u0007")[1]);
+        assertNull(users.get("verified")[1]);
+    }
+
+    @Test
+    void rowRewrittenDuringTheBatchIsLeftForTheNextRun() {
+        users.put("a", new String[] {"old", null});
+        users.put("b", new String[] {"token-b", null});
+        // An instance on the previous version writes a new raw token between the select and the update
+        afterSelect = () -> {
+            if (users.get("a")[0] != null) {
+                users.get("a")[0] = "new";
+            }
+        };
+
+        backfill.run(null);
+
+        assertEquals("new", users.get("a")[0]);
+        assertNull(users.get("a")[1]);
+        assertEquals(TokenHashes.sha256("token-b"), users.get("b")[1]);
+
+        afterSelect = () -> {};
+        backfill.run(null);
+
+        assertNull(users.get("a")[0]);
+        assertEquals(TokenHashes.sha256("new"), users.get("a")[1]);
+    }
+
+    @Test
+    void nothingToDoOnceTheRawColumnIsGone() {
+        hasRawColumn = false;
+
+        backfill.run(null);
+
+        verify(jdbcTemplate, never()).queryForList(anyString(), any(Object[].class));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void failuresAreLoggedNotThrown() {
+        users.put("a", new String[] {"token-a", null});
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+            .thenThrow(new DataAccessResourceFailureException("connection reset"));
+
+        assertDoesNotThrow(() -> backfill.run(null));
+        assertEquals("token-a", users.get("a")[0]);
+    }
+}
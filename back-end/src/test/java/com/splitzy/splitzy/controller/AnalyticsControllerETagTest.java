@@ -0,0 +1,102 @@
+package com.splitzy.splitzy.controller;
+
+import com.splitzy.splitzy.dto.analytics.DashboardSummary;
+import com.splitzy.splitzy.security.AuthenticatedUser;
+import com.splitzy.splitzy.service.analytics.AnalyticsService;
+import com.splitzy.splitzy.service.analytics.AnalyticsVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AnalyticsControllerETagTest {
+
+    private final Authentication auth = new AuthenticatedUser.Token(new AuthenticatedUser("u1", "u1@example.com"));
+
+    private AnalyticsService analyticsService;
+    private AnalyticsVersionService versions;
+    private AnalyticsController controller;
+
+    @BeforeEach
+    void setUp() {
+        analyticsService = mock(AnalyticsService.class);
+        DashboardSummary summary = new DashboardSummary();
+        summary.setSettlements(new DashboardSummary.SettlementSummary());
+        when(analyticsService.getPendingActionsSummary("u1")).thenReturn(summary);
+        versions = mock(AnalyticsVersionService.class);
+        when(versions.currentVersion("u1")).thenReturn("100");
+
+        controller = new AnalyticsController();
+        ReflectionTestUtils.setField(controller, "analyticsService", analyticsService);
+        ReflectionTestUtils.setField(controller, "analyticsVersionService", versions);
+    }
+
+    @Test
+    void matchingIfNoneMatchIsAnswered304WithoutComputing() {
+        ResponseEntity<?> first = controller.getPendingActions(auth, request(null));
+        String etag = first.getHeaders().getETag();
+
+        assertEquals(200, first.getStatusCode().value());
+        assertNotNull(etag);
+        assertNotNull(first.getBody());
+
+        ResponseEntity<?> second = controller.getPendingActions(auth, request(etag));
+        assertEquals(304, second.getStatusCode().value());
+        assertEquals(etag, second.getHeaders().getETag());
+        assertNull(second.getBody());
+        verify(analyticsService, times(1)).getPendingActionsSummary("u1");
+    }
+
+    @Test
+    void bumpedVersionChangesTheETag() {
+        String etag = controller.getPendingActions(auth, request(null)).getHeaders().getETag();
+
+        when(versions.currentVersion("u1")).thenReturn("101");
+        ResponseEntity<?> response = controller.getPendingActions(auth, request(etag));
+
+        assertEquals(200, response.getStatusCode().value());
+        assertNotEquals(etag, response.getHeaders().getETag());
+        verify(analyticsService, times(2)).getPendingActionsSummary("u1");
+    }
+
+    @Test
+    void endpointsDoNotShareETags() {
+        String pending = controller.getPendingActions(auth, request(null)).getHeaders().getETag();
+        DashboardSummary dashboard = new DashboardSummary();
+        dashboard.setBalance(new DashboardSummary.BalanceSummary());
+        dashboard.setQuickStats(new DashboardSummary.QuickStats());
+        when(analyticsService.getDashboardSummary(eq("u1"), any())).thenReturn(dashboard);
+
+        ResponseEntity<?> quickStats = controller.getQuickStats(auth, request(pending));
+
+        assertEquals(200, quickStats.getStatusCode().value());
+        assertNotEquals(pending, quickStats.getHeaders().getETag());
+    }
+
+    @Test
+    void withoutAVersionEveryRequestIsComputed() {
+        when(versions.currentVersion("u1")).thenReturn(null);
+
+        ResponseEntity<?> first = controller.getPendingActions(auth, request(null));
+        ResponseEntity<?> second = controller.getPendingActions(auth, request("\"anything\""));
+
+        assertNull(first.getHeaders().getETag());
+        assertEquals(200, second.getStatusCode().value());
+        verify(analyticsService, times(2)).getPendingActionsSummary("u1");
+    }
+
+    private ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/analytics/pending-actions");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,85 @@
+package com.splitzy.splitzy.filter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdControllerTest {
+
+    private static final double RECOVER_RATIO = 0.6;
+
+    @Test
+    void classifiesLoadWithHysteresis() {
+        assertEquals(AimdController.Load.OVERLOADED, AimdController.classify(1.0, RECOVER_RATIO));
+        assertEquals(AimdController.Load.NORMAL, AimdController.classify(0.8, RECOVER_RATIO));
+        assertEquals(AimdController.Load.HEALTHY, AimdController.classify(0.6, RECOVER_RATIO));
+    }
+
+    @Test
+    void decreasesMultiplicativelyDownToTheFloor() {
+        AimdController controller = new AimdController(0.5, 0.1, 0.2);
+
+        assertEquals(0.5, controller.update(AimdController.Load.OVERLOADED), 1e-9);
+        assertEquals(0.25, controller.update(AimdController.Load.OVERLOADED), 1e-9);
+        assertEquals(0.2, controller.update(AimdController.Load.OVERLOADED), 1e-9);
+        assertEquals(0.2, controller.update(AimdController.Load.OVERLOADED), 1e-9);
+        assertEquals(6, controller.scale(30));
+    }
+
+    @Test
+    void recoversAdditivelyAndHoldsInBetween() {
+        AimdController controller = new AimdController(0.5, 0.1, 0.2);
+        controller.update(AimdController.Load.OVERLOADED);
+
+        assertEquals(0.5, controller.update(AimdController.Load.NORMAL), 1e-9);
+        assertEquals(0.6, controller.update(AimdController.Load.HEALTHY), 1e-9);
+        for (int i = 0; i < 10; i++) {
+            controller.update(AimdController.Load.HEALTHY);
+        }
+        assertEquals(1.0, controller.factor(), 1e-9);
+        assertEquals(30, controller.scale(30));
+    }
+
+    @Test
+    void neverScalesBelowOneRequest() {
+        AimdController controller = new AimdController(0.5, 0.1, 0.2);
+        controller.update(AimdController.Load.OVERLOADED);
+        controller.update(AimdController.Load.OVERLOADED);
+
+        assertEquals(1, controller.scale(3));
+    }
+
+    /**
+     * Server whose p99 latency grows with the admitted rate past its capacity. The limiter should
+     * settle where latency stays around the threshold instead of staying overloaded.
+     */
+    @Test
+    void convergesBelowOverloadInSimulation() {
+        AimdController controller = new AimdController(0.5, 0.1, 0.2);
+        int offered = 100;          // requests per tick the clients try to send
+        int serverCapacity = 50;    // requests per tick the server handles within the latency threshold
+
+        int overloadedTicks = 0;
+        for (int tick = 0; tick < 200; tick++) {
+            int admitted = controller.scale(offered);
+            double load = (double) admitted / serverCapacity;
+            AimdController.Load state = AimdController.classify(load, RECOVER_RATIO);
+            if (tick >= 100 && state == AimdController.Load.OVERLOADED) {
+                overloadedTicks++;
+            }
+            controller.update(state);
+        }
+
+        // Once settled the limiter only touches the threshold occasionally
+        assertTrue(overloadedTicks < 20, "overloaded in " + overloadedTicks + " of the last 100 ticks");
+        assertTrue(controller.scale(offered) <= serverCapacity);
+        assertTrue(controller.factor() >= 0.2);
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdController(1.0, 0.1, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> new AimdController(0.5, 0, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> new AimdController(0.5, 0.1, 0));
+    }
+}
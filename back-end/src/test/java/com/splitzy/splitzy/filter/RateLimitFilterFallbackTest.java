@@ -0,0 +1,93 @@
+package com.splitzy.splitzy.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * While Redis fails and the circuit breaker is open, the filter keeps limiting with the
+ * node-local bucket instead of failing open or waiting on Redis.
+ */
+class RateLimitFilterFallbackTest {
+
+    // The /auth/login policy
+    private static final int LOGIN_CAPACITY = 10;
+
+    private StringRedisTemplate redis;
+    private RedisCircuitBreaker breaker;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+            .thenThrow(new RedisConnectionFailureException("connection refused"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // Opens on the first failure and stays open for the whole test
+        breaker = new RedisCircuitBreaker(registry, true, 10, 1, 0.5, 250, 60_000, 1);
+        filter = new RateLimitFilter(redis, new ObjectMapper(), registry, new AdaptiveRateLimiter(registry), breaker);
+        ReflectionTestUtils.setField(filter, "policyCacheSize", 100L);
+        filter.initPolicies();
+    }
+
+    @Test
+    void limitsLocallyWhileTheBreakerIsOpen() throws Exception {
+        for (int i = 0; i < LOGIN_CAPACITY; i++) {
+            assertEquals(200, login().getStatus(), "request " + i);
+        }
+        MockHttpServletResponse limited = login();
+
+        assertEquals(429, limited.getStatus());
+        assertNotNull(limited.getHeader("Retry-After"));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+        // Only the call that tripped the breaker reached Redis
+        verify(redis, times(1)).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void localBucketsAreKeptPerClient() throws Exception {
+        for (int i = 0; i <= LOGIN_CAPACITY; i++) {
+            login();
+        }
+
+        MockHttpServletRequest other = new MockHttpServletRequest("POST", "/auth/login");
+        other.setRemoteAddr("10.0.0.2");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(other, response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+        assertEquals(String.valueOf(LOGIN_CAPACITY - 1), response.getHeader("X-RateLimit-Remaining"));
+    }
+
+    @Test
+    void skippedPathsNeverTouchRedis() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, new MockFilterChain());
+
+        assertEquals(200, response.getStatus());
+        verifyNoInteractions(redis);
+        assertNull(response.getHeader("X-RateLimit-Remaining"));
+    }
+
+    private MockHttpServletResponse login() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,132 @@
+package com.splitzy.splitzy.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPolicyMatcherTest {
+
+    private static final List<String> SKIP_PATHS = List.of("/actuator/health", "/actuator/info", "/favicon.ico", "/static/");
+
+    /**
+     * Every configured prefix, the prefix extended in a few ways, and the prefix cut short,
+     * resolve to the same policy as the regex matching the trie replaced.
+     */
+    @Test
+    void resolvesEveryDefaultPrefixLikeTheAnchoredRegexes() {
+        List<RateLimitFilter.Policy> policies = RateLimitFilter.defaultPolicies();
+        RateLimitPolicyMatcher matcher = new RateLimitPolicyMatcher(SKIP_PATHS, policies, 1000);
+
+        List<String> uris = new ArrayList<>();
+        for (RateLimitFilter.Policy policy : policies) {
+            String prefix = policy.prefix();
+            uris.add(prefix);
+            uris.add(prefix + "/123");
+            uris.add(prefix + "x");
+            uris.add(prefix + "?q=1");
+            if (!prefix.isEmpty()) {
+                uris.add(prefix.substring(0, prefix.length() - 1));
+            }
+        }
+        for (String skip : SKIP_PATHS) {
+            uris.add(skip);
+            uris.add(skip + "x");
+            uris.add(skip.substring(0, skip.length() - 1));
+        }
+        uris.addAll(List.of("", "/", "/unknown", "/actuator/metrics", "/AUTH/login", "//auth/login", "/api/auth/login"));
+
+        for (String uri : uris) {
+            assertSame(regexMatch(SKIP_PATHS, policies, uri), matcher.match(uri), uri);
+        }
+    }
+
+    @Test
+    void overlappingPrefixesKeepFirstMatchWins() {
+        List<RateLimitFilter.Policy> policies = RateLimitFilter.defaultPolicies();
+        RateLimitPolicyMatcher matcher = new RateLimitPolicyMatcher(SKIP_PATHS, policies, 1000);
+
+        // A longer prefix listed first wins over the shorter one listed after it
+        assertEquals("expense-create", matcher.match("/expenses/create").name());
+        assertEquals("expenses", matcher.match("/expenses/creat").name());
+        assertEquals("friend-request", matcher.match("/home/friends/requests/42").name());
+        assertEquals("friends", matcher.match("/home/friends").name());
+        assertEquals("notif-count", matcher.match("/notifications/unread-count").name());
+        assertEquals("analytics-trends", matcher.match("/analytics/trends/monthly").name());
+        assertEquals("analytics", matcher.match("/analytics/export").name());
+
+        // A shorter prefix listed first shadows the longer one listed after it
+        List<RateLimitFilter.Policy> shortFirst = List.of(
+            policy("/chat", "chat"),
+            policy("/chat/messages", "chat-messages"),
+            policy("", "default"));
+        RateLimitPolicyMatcher shadowed = new RateLimitPolicyMatcher(List.of(), shortFirst, 1000);
+        for (String uri : List.of("/chat", "/chat/messages", "/chat/messages/1", "/chatter", "/cha")) {
+            assertSame(regexMatch(List.of(), shortFirst, uri), shadowed.match(uri), uri);
+        }
+        assertEquals("chat", shadowed.match("/chat/messages/1").name());
+
+        // The same prefix twice: the first one wins
+        List<RateLimitFilter.Policy> duplicated = List.of(
+            policy("/groups", "first"),
+            policy("/groups", "second"),
+            policy("", "default"));
+        assertEquals("first", new RateLimitPolicyMatcher(List.of(), duplicated, 1000).match("/groups/1").name());
+    }
+
+    @Test
+    void skipPrefixesRankBeforeEveryPolicy() {
+        List<RateLimitFilter.Policy> policies = List.of(
+            policy("/static/private", "private"),
+            policy("/stat", "stat"),
+            policy("", "default"));
+        RateLimitPolicyMatcher matcher = new RateLimitPolicyMatcher(SKIP_PATHS, policies, 1000);
+
+        for (String uri : List.of("/static/private/a", "/static/", "/static", "/stat", "/favicon.ico", "/favicon")) {
+            assertSame(regexMatch(SKIP_PATHS, policies, uri), matcher.match(uri), uri);
+        }
+        assertNull(matcher.match("/static/private/a"));
+        assertEquals("stat", matcher.match("/static").name());
+    }
+
+    @Test
+    void unmatchedPathsFallToTheCatchAll() {
+        RateLimitPolicyMatcher matcher = new RateLimitPolicyMatcher(SKIP_PATHS, RateLimitFilter.defaultPolicies(), 1000);
+
+        for (String uri : List.of("", "/", "/unknown", "/au", "/actuator/metrics", "/Expenses")) {
+            assertEquals("default", matcher.match(uri).name(), uri);
+        }
+    }
+
+    @Test
+    void requiresACatchAllLast() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new RateLimitPolicyMatcher(List.of(), List.of(policy("/auth", "auth")), 1000));
+        assertThrows(IllegalArgumentException.class,
+            () -> new RateLimitPolicyMatcher(List.of(), List.of(), 1000));
+    }
+
+    /**
+     * The matching the trie replaced: skip paths by startsWith, then the first policy whose
+     * "^prefix" regex is found in the URI.
+     */
+    private RateLimitFilter.Policy regexMatch(List<String> skipPaths, List<RateLimitFilter.Policy> policies, String uri) {
+        if (skipPaths.stream().anyMatch(uri::startsWith)) {
+            return null;
+        }
+        for (RateLimitFilter.Policy policy : policies) {
+            if (Pattern.compile("^" + Pattern.quote(policy.prefix())).matcher(uri).find()) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    private RateLimitFilter.Policy policy(String prefix, String name) {
+        return new RateLimitFilter.Policy(prefix, 10, Duration.ofMinutes(1), name);
+    }
+}
@@ -0,0 +1,121 @@
+package com.splitzy.splitzy.repository.sql;
+
+import com.splitzy.splitzy.entity.ChatMessageSql;
+import com.splitzy.splitzy.entity.ChatReadStateSql;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("postgres")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ChatMessageSqlRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Autowired
+    private ChatMessageSqlRepository messageRepo;
+
+    @Autowired
+    private ChatReadStateSqlRepository readRepo;
+
+    @Test
+    void unreadCountsOnlyMessagesAfterTheUsersLastRead() {
+        for (int i = 0; i < 5; i++) {
+            message("read-thread", T0.plusMinutes(i));
+            message("never-read", T0.plusMinutes(i));
+            message("caught-up", T0.plusMinutes(i));
+        }
+        message("other-user", T0);
+        read("read-thread", "u1", T0.plusMinutes(2));
+        read("caught-up", "u1", T0.plusMinutes(10));
+        // Someone else's read state does not count for u1
+        read("never-read", "u2", T0.plusMinutes(10));
+
+        Map<String, Long> unread = messageRepo
+            .countUnreadByThread("u1", List.of("read-thread", "never-read", "caught-up")).stream()
+            .collect(Collectors.toMap(ChatMessageSqlRepository.ThreadUnreadCount::getThreadId,
+                ChatMessageSqlRepository.ThreadUnreadCount::getUnread));
+
+        // Messages at exactly lastReadAt were read; threads with nothing unread are absent
+        assertEquals(Map.of("read-thread", 2L, "never-read", 5L), unread);
+    }
+
+    @Test
+    void seekPagesNeitherSkipNorRepeatAcrossEqualTimestamps() {
+        message("t1", T0.minusMinutes(1));
+        for (int i = 0; i < 4; i++) {
+            message("t1", T0);
+        }
+        message("t1", T0.plusMinutes(1));
+        message("other", T0);
+        List<ChatMessageSql> expected = messageRepo.findByThreadIdOrderByCreatedAtDescIdDesc("t1", PageRequest.of(0, 100));
+        assertEquals(6, expected.size());
+
+        List<ChatMessageSql> seen = new ArrayList<>(expected.subList(0, 2));
+        while (true) {
+            ChatMessageSql cursor = seen.get(seen.size() - 1);
+            List<ChatMessageSql> page = messageRepo.findBefore("t1", cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, 2));
+            if (page.isEmpty()) {
+                break;
+            }
+            seen.addAll(page);
+            // A message arriving while paging back does not shift the older pages
+            message("t1", T0.plusMinutes(5));
+        }
+
+        assertEquals(ids(expected), ids(seen));
+    }
+
+    @Test
+    void afterReturnsTheNextNewerMessagesOldestFirst() {
+        for (int i = 0; i < 3; i++) {
+            message("t1", T0);
+        }
+        message("t1", T0.plusMinutes(1));
+        List<ChatMessageSql> ascending = new ArrayList<>(
+            messageRepo.findByThreadIdOrderByCreatedAtDescIdDesc("t1", PageRequest.of(0, 100)));
+        Collections.reverse(ascending);
+        ChatMessageSql oldest = ascending.get(0);
+
+        List<ChatMessageSql> newer = messageRepo.findAfter("t1", oldest.getCreatedAt(), oldest.getId(), PageRequest.of(0, 2));
+
+        assertEquals(ids(ascending.subList(1, 3)), ids(newer));
+        assertTrue(newer.stream().map(ChatMessageSql::getCreatedAt).allMatch(T0::equals));
+        assertEquals(ids(ascending.subList(1, 4)),
+            ids(messageRepo.findAfter("t1", oldest.getCreatedAt(), oldest.getId(), PageRequest.of(0, 10))));
+    }
+
+    private static List<String> ids(List<ChatMessageSql> messages) {
+        return messages.stream().map(ChatMessageSql::getId).toList();
+    }
+
+    private ChatMessageSql message(String threadId, LocalDateTime createdAt) {
+        ChatMessageSql message = new ChatMessageSql();
+        message.setThreadId(threadId);
+        message.setSenderId("sender");
+        message.setContent("hello");
+        message.setCreatedAt(createdAt);
+        return messageRepo.save(message);
+    }
+
+    private void read(String threadId, String userId, LocalDateTime at) {
+        ChatReadStateSql state = new ChatReadStateSql();
+        state.setThreadId(threadId);
+        state.setUserId(userId);
+        state.setLastReadAt(at);
+        readRepo.save(state);
+    }
+}
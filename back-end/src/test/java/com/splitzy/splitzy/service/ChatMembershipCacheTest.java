@@ -0,0 +1,122 @@
+package com.splitzy.splitzy.service;
+
+import com.splitzy.splitzy.entity.ChatThreadSql;
+import com.splitzy.splitzy.repository.sql.ChatThreadSqlRepository;
+import com.splitzy.splitzy.service.dao.CachingUserDao;
+import com.splitzy.splitzy.service.dao.UserDao;
+import com.splitzy.splitzy.service.dao.UserDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatMembershipCacheTest {
+
+    private final Map<String, ChatThreadSql> threads = new HashMap<>();
+
+    private ChatThreadSqlRepository threadRepo;
+    private StringRedisTemplate redis;
+    private RedisCircuitBreaker breaker;
+    private ChatMembershipCache cache;
+
+    @BeforeEach
+    void setUp() {
+        threadRepo = mock(ChatThreadSqlRepository.class);
+        when(threadRepo.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(threads.get(inv.<String>getArgument(0))));
+        UserDao userDao = mock(UserDao.class);
+        when(userDao.findAllById(anyCollection())).thenAnswer(inv -> inv.<Collection<String>>getArgument(0).stream()
+            .map(id -> user(id, "Name " + id)).toList());
+
+        redis = mock(StringRedisTemplate.class);
+        when(redis.convertAndSend(anyString(), anyString())).thenReturn(1L);
+        breaker = new RedisCircuitBreaker(new SimpleMeterRegistry(), true, 10, 1, 0.5, 60_000, 60_000, 1);
+        cache = new ChatMembershipCache(threadRepo, userDao, redis, mock(RedisMessageListenerContainer.class), breaker,
+            100, 600);
+
+        thread("t1", "u1", "u2");
+        thread("t2", "u3");
+    }
+
+    @Test
+    void evictReloadsTheNewParticipantsAndBroadcasts() {
+        assertTrue(cache.get("t1").orElseThrow().contains("u2"));
+        thread("t1", "u1", "u3");
+
+        // Cached until evicted
+        assertTrue(cache.get("t1").orElseThrow().contains("u2"));
+        cache.evict("t1");
+
+        ChatMembershipCache.Membership membership = cache.get("t1").orElseThrow();
+        assertFalse(membership.contains("u2"));
+        assertEquals("Name u3", membership.nameOf("u3"));
+        verify(redis).convertAndSend(ChatMembershipCache.INVALIDATION_CHANNEL, "t1");
+        verify(threadRepo, times(2)).findById("t1");
+    }
+
+    @Test
+    void evictWithTheBreakerOpenStillDropsTheLocalEntry() {
+        cache.get("t1");
+        while (breaker.state() != RedisCircuitBreaker.State.OPEN) {
+            breaker.onFailure();
+        }
+        thread("t1", "u1");
+
+        assertDoesNotThrow(() -> cache.evict("t1"));
+
+        assertFalse(cache.get("t1").orElseThrow().contains("u2"));
+        verify(redis, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void broadcastFromAnotherInstanceDropsOnlyThatThread() {
+        cache.get("t1");
+        cache.get("t2");
+
+        cache.onMessage(message(ChatMembershipCache.INVALIDATION_CHANNEL, "t1"), null);
+        cache.get("t1");
+        cache.get("t2");
+
+        verify(threadRepo, times(2)).findById("t1");
+        verify(threadRepo, times(1)).findById("t2");
+    }
+
+    @Test
+    void userChangeDropsTheThreadsThatEmbedThem() {
+        cache.get("t1");
+        cache.get("t2");
+
+        cache.onMessage(message(CachingUserDao.INVALIDATION_CHANNEL, "u2"), null);
+        cache.get("t1");
+        cache.get("t2");
+
+        verify(threadRepo, times(2)).findById("t1");
+        verify(threadRepo, times(1)).findById("t2");
+    }
+
+    private void thread(String id, String... participants) {
+        ChatThreadSql thread = new ChatThreadSql();
+        thread.setId(id);
+        thread.setParticipantIds(new HashSet<>(List.of(participants)));
+        threads.put(id, thread);
+    }
+
+    private static UserDto user(String id, String name) {
+        UserDto user = new UserDto();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(id + "@example.com");
+        return user;
+    }
+
+    private static DefaultMessage message(String channel, String body) {
+        return new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
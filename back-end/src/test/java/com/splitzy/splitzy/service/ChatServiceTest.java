@@ -0,0 +1,187 @@
+package com.splitzy.splitzy.service;
+
+import com.corundumstudio.socketio.SocketIOServer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.splitzy.splitzy.entity.ChatMessageSql;
+import com.splitzy.splitzy.entity.ChatThreadSql;
+import com.splitzy.splitzy.model.ChatType;
+import com.splitzy.splitzy.repository.sql.ChatMessageSqlRepository;
+import com.splitzy.splitzy.repository.sql.ChatReadStateSqlRepository;
+import com.splitzy.splitzy.repository.sql.ChatThreadSqlRepository;
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.GroupDao;
+import com.splitzy.splitzy.service.dao.GroupDto;
+import com.splitzy.splitzy.service.dao.UserDao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ChatServiceTest {
+
+    private ChatThreadSqlRepository threadRepo;
+    private ChatMessageSqlRepository messageRepo;
+    private ChatMembershipCache membershipCache;
+    private GroupDao groupDao;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        threadRepo = mock(ChatThreadSqlRepository.class);
+        messageRepo = mock(ChatMessageSqlRepository.class);
+        membershipCache = mock(ChatMembershipCache.class);
+        groupDao = mock(GroupDao.class);
+        chatService = new ChatService(threadRepo, messageRepo, mock(ChatReadStateSqlRepository.class),
+            mock(UserDao.class), groupDao, mock(ExpenseDao.class), mock(SocketIOServer.class),
+            new ObjectMapper(), mock(SqsEventPublisher.class), membershipCache);
+    }
+
+    @Test
+    void threadSummariesTakeUnreadCountsFromOneAggregate() {
+        ChatThreadSql busy = thread("t1", "u1", "u2");
+        ChatThreadSql quiet = thread("t2", "u1", "u3");
+        when(threadRepo.findWithParticipantsByParticipantId("u1")).thenReturn(List.of(busy, quiet));
+        when(messageRepo.countUnreadByThread(eq("u1"), anyCollection())).thenReturn(List.of(unread("t1", 350)));
+
+        List<Map<String, Object>> summaries = chatService.getThreadSummaries("u1");
+
+        assertEquals(2, summaries.size());
+        // Exact, not capped at a page of messages
+        assertEquals(350, summaries.get(0).get("unread"));
+        // Absent from the aggregate: nothing unread
+        assertEquals(0, summaries.get(1).get("unread"));
+        verify(messageRepo, times(1)).countUnreadByThread("u1", List.of("t1", "t2"));
+        verifyNoMoreInteractions(messageRepo);
+    }
+
+    @Test
+    void noThreadsMeansNoAggregateQuery() {
+        when(threadRepo.findWithParticipantsByParticipantId("u1")).thenReturn(List.of());
+
+        assertTrue(chatService.getThreadSummaries("u1").isEmpty());
+        verifyNoInteractions(messageRepo);
+    }
+
+    @Test
+    void beforeSeeksFromTheCursorMessage() {
+        member("t1", "u1");
+        ChatMessageSql cursor = message("m5", "t1");
+        when(messageRepo.findById("m5")).thenReturn(Optional.of(cursor));
+        List<ChatMessageSql> older = List.of(message("m4", "t1"), message("m3", "t1"));
+        when(messageRepo.findBefore("t1", cursor.getCreatedAt(), "m5", PageRequest.of(0, 2))).thenReturn(older);
+
+        assertEquals(older, chatService.getMessages("t1", "u1", 7, 2, "m5", null));
+        verify(messageRepo, never()).findByThreadIdOrderByCreatedAtDescIdDesc(anyString(), any());
+    }
+
+    @Test
+    void afterIsReturnedNewestFirstLikeEveryPage() {
+        member("t1", "u1");
+        ChatMessageSql cursor = message("m1", "t1");
+        when(messageRepo.findById("m1")).thenReturn(Optional.of(cursor));
+        ChatMessageSql m2 = message("m2", "t1");
+        ChatMessageSql m3 = message("m3", "t1");
+        when(messageRepo.findAfter("t1", cursor.getCreatedAt(), "m1", PageRequest.of(0, 2))).thenReturn(List.of(m2, m3));
+
+        assertEquals(List.of(m3, m2), chatService.getMessages("t1", "u1", 0, 2, null, "m1"));
+    }
+
+    @Test
+    void cursorFromAnotherThreadOrBothCursorsAreRejected() {
+        member("t1", "u1");
+        when(messageRepo.findById("elsewhere")).thenReturn(Optional.of(message("elsewhere", "t2")));
+        when(messageRepo.findById("m1")).thenReturn(Optional.of(message("m1", "t1")));
+
+        assertThrows(IllegalArgumentException.class, () -> chatService.getMessages("t1", "u1", 0, 20, "elsewhere", null));
+        assertThrows(IllegalArgumentException.class, () -> chatService.getMessages("t1", "u1", 0, 20, "missing", null));
+        assertThrows(IllegalArgumentException.class, () -> chatService.getMessages("t1", "u1", 0, 20, "m1", "m1"));
+        verify(messageRepo, never()).findBefore(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    void withoutACursorTheOffsetPageIsKept() {
+        member("t1", "u1");
+
+        chatService.getMessages("t1", "u1", 3, 20);
+
+        verify(messageRepo).findByThreadIdOrderByCreatedAtDescIdDesc("t1", PageRequest.of(3, 20));
+    }
+
+    @Test
+    void groupMembershipChangeUpdatesTheThreadAndEvictsItsMembership() {
+        ChatThreadSql thread = thread("t1", "creator", "u1", "u2");
+        when(threadRepo.findByGroupId("g1")).thenReturn(List.of(thread));
+        when(threadRepo.save(thread)).thenReturn(thread);
+
+        // u2 left, u3 joined
+        chatService.syncGroupThread(group("g1", "creator", "u1", "u3"));
+
+        assertEquals(Set.of("creator", "u1", "u3"), thread.getParticipantIds());
+        verify(threadRepo).save(thread);
+        verify(membershipCache).evict("t1");
+    }
+
+    @Test
+    void unchangedGroupLeavesTheThreadAndCacheAlone() {
+        when(threadRepo.findByGroupId("g1")).thenReturn(List.of(thread("t1", "creator", "u1")));
+        GroupDto group = group("g1", "creator", "u1");
+        when(groupDao.findById("g1")).thenReturn(Optional.of(group));
+
+        chatService.syncGroupThread(group);
+        assertEquals("t1", chatService.createOrGetGroupThread("u1", "g1").getId());
+
+        verify(threadRepo, never()).save(any());
+        verifyNoInteractions(membershipCache);
+    }
+
+    private void member(String threadId, String userId) {
+        when(membershipCache.get(threadId)).thenReturn(Optional.of(new ChatMembershipCache.Membership(threadId,
+            Map.of(userId, new ChatMembershipCache.Member(userId, "Name", userId + "@example.com")))));
+    }
+
+    private static ChatMessageSql message(String id, String threadId) {
+        ChatMessageSql message = new ChatMessageSql();
+        message.setId(id);
+        message.setThreadId(threadId);
+        // Equal timestamps: the id breaks the tie
+        message.setCreatedAt(LocalDateTime.of(2024, 3, 1, 12, 0));
+        return message;
+    }
+
+    private static ChatThreadSql thread(String id, String... participants) {
+        ChatThreadSql thread = new ChatThreadSql();
+        thread.setId(id);
+        thread.setType(ChatType.P2P);
+        thread.setParticipantIds(new HashSet<>(List.of(participants)));
+        return thread;
+    }
+
+    private static GroupDto group(String id, String creatorId, String... memberIds) {
+        GroupDto group = new GroupDto();
+        group.setId(id);
+        group.setCreatorId(creatorId);
+        for (String memberId : memberIds) {
+            group.getFriends().add(new GroupDto.GroupMemberDto(memberId, memberId, memberId + "@example.com"));
+        }
+        return group;
+    }
+
+    private static ChatMessageSqlRepository.ThreadUnreadCount unread(String threadId, long count) {
+        return new ChatMessageSqlRepository.ThreadUnreadCount() {
+            @Override
+            public String getThreadId() {
+                return threadId;
+            }
+
+            @Override
+            public Long getUnread() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.splitzy.splitzy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisCircuitBreakerTest {
+
+    private static final int WINDOW_SECONDS = 10;
+    private static final int MIN_CALLS = 4;
+    private static final long SLOW_CALL_MS = 250;
+    private static final long OPEN_MS = 5000;
+    private static final int HALF_OPEN_PROBES = 2;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private RedisCircuitBreaker breaker(boolean enabled) {
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(new SimpleMeterRegistry(), enabled,
+            WINDOW_SECONDS, MIN_CALLS, 0.5, SLOW_CALL_MS, OPEN_MS, HALF_OPEN_PROBES);
+        breaker.clock = now::get;
+        return breaker;
+    }
+
+    private RedisCircuitBreaker openBreaker() {
+        RedisCircuitBreaker breaker = breaker(true);
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+
+    @Test
+    void staysClosedUntilTheWindowHoldsMinCalls() {
+        RedisCircuitBreaker breaker = breaker(true);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void staysClosedBelowTheFailureRate() {
+        RedisCircuitBreaker breaker = breaker(true);
+        for (int i = 0; i < 3; i++) {
+            breaker.onSuccess(0);
+        }
+        breaker.onFailure();
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        RedisCircuitBreaker breaker = breaker(true);
+        long slow = TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_MS + 1);
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onSuccess(slow);
+        breaker.onSuccess(slow);
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void forgetsCallsOlderThanTheWindow() {
+        RedisCircuitBreaker breaker = breaker(true);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(WINDOW_SECONDS));
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onFailure();
+
+        // With the old failures it would be 4 of 7
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void openBreakerUsesTheFallbackWithoutCallingRedis() {
+        RedisCircuitBreaker breaker = openBreaker();
+        AtomicBoolean called = new AtomicBoolean();
+
+        assertFalse(breaker.allowRequest());
+        assertEquals("fallback", breaker.execute(() -> {
+            called.set(true);
+            return "redis";
+        }, () -> "fallback"));
+        assertThrows(RedisConnectionFailureException.class, () -> breaker.execute(() -> {
+            called.set(true);
+            return "redis";
+        }));
+        assertFalse(called.get());
+    }
+
+    @Test
+    void halfOpensAfterOpenMsAndClosesWhenEveryProbeSucceeds() {
+        RedisCircuitBreaker breaker = openBreaker();
+
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+
+        now.addAndGet(1);
+        assertTrue(breaker.allowRequest());
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(breaker.allowRequest());
+        // Only halfOpenProbes calls are let through while probing
+        assertFalse(breaker.allowRequest());
+
+        breaker.onSuccess(0);
+        assertEquals(RedisCircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess(0);
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowRequest());
+
+        // The window starts empty again: a single failure does not reopen it
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void failedOrSlowProbeReopensForAnotherOpenMs() {
+        RedisCircuitBreaker breaker = openBreaker();
+        now.addAndGet(OPEN_MS);
+        assertTrue(breaker.allowRequest());
+
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+        now.addAndGet(OPEN_MS - 1);
+        assertFalse(breaker.allowRequest());
+
+        now.addAndGet(1);
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_MS + 1));
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    void executeRecordsFailuresAndRethrows() {
+        RedisCircuitBreaker breaker = breaker(true);
+        for (int i = 0; i < MIN_CALLS; i++) {
+            assertEquals("fallback", breaker.execute(() -> {
+                throw new IllegalStateException("down");
+            }, () -> "fallback"));
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+
+        RedisCircuitBreaker other = breaker(true);
+        assertThrows(IllegalStateException.class, () -> other.execute(() -> {
+            throw new IllegalStateException("down");
+        }));
+    }
+
+    @Test
+    void disabledBreakerNeverOpens() {
+        RedisCircuitBreaker breaker = breaker(false);
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure();
+        }
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.allowRequest());
+    }
+}
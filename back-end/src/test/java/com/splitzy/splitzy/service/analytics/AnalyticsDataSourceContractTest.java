@@ -0,0 +1,163 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs one fixture against each AnalyticsDataSource, so the stores agree on which expenses
+ * involve a user (creator, payer or participant) and on the user's share and positive net.
+ * User ids are random per run and the fixture is deleted afterwards, so a shared database is fine.
+ */
+abstract class AnalyticsDataSourceContractTest {
+
+    private static final LocalDate START = LocalDate.of(2025, 1, 1);
+    private static final LocalDate END = LocalDate.of(2025, 2, 28);
+
+    private final String user = "user-" + UUID.randomUUID();
+    private final String friend = "friend-" + UUID.randomUUID();
+    private final String other = "other-" + UUID.randomUUID();
+    private final String group = "group-" + UUID.randomUUID();
+
+    private final Map<String, String> ids = new HashMap<>();
+
+    protected abstract ExpenseDao expenseDao();
+
+    protected abstract AnalyticsDataSource dataSource();
+
+    @BeforeEach
+    void saveFixture() {
+        // Participant with a share, paid nothing
+        save("dinner", "Food", 90, LocalDate.of(2025, 1, 10), group, friend,
+             Map.of(friend, 90.0), Map.of(user, 30.0, friend, 30.0, other, 30.0));
+        // Created and paid for a friend only: share 0, positive net 60
+        save("gift", "Food", 60, LocalDate.of(2025, 1, 20), null, user,
+             Map.of(user, 60.0), Map.of(friend, 60.0));
+        // Paid part and owes more than paid: share 50, no positive net
+        save("train", "Travel", 100, LocalDate.of(2025, 2, 5), null, friend,
+             Map.of(user, 40.0, friend, 60.0), Map.of(user, 50.0, friend, 50.0));
+        // Only the creator: share 0
+        save("taxi", "Travel", 80, LocalDate.of(2025, 2, 6), null, user,
+             Map.of(friend, 80.0), Map.of(friend, 80.0));
+        // Not involved
+        save("lunch", "Food", 40, LocalDate.of(2025, 1, 15), group, friend,
+             Map.of(friend, 40.0), Map.of(friend, 20.0, other, 20.0));
+        // Involved but outside the range
+        save("snacks", "Food", 20, LocalDate.of(2025, 3, 1), null, other,
+             Map.of(other, 20.0), Map.of(user, 20.0));
+    }
+
+    @AfterEach
+    void deleteFixture() {
+        ids.values().forEach(id -> expenseDao().deleteById(id));
+    }
+
+    @Test
+    void findsExpensesTheUserCreatedPaidOrParticipatesIn() {
+        Set<String> found = dataSource().findExpensesForUser(user, Sort.by("date")).stream()
+            .map(ExpenseDto::getId)
+            .collect(Collectors.toSet());
+
+        assertEquals(idsOf("dinner", "gift", "train", "taxi", "snacks"), found);
+    }
+
+    @Test
+    void aggregatesMonthlySpendingOverInvolvedExpenses() {
+        Map<String, MonthlySpending> rows = dataSource().aggregateMonthlySpending(user, START, END).stream()
+            .collect(Collectors.toMap(r -> r.getYear() + "-" + r.getMonth() + ":" + r.getCategory(), r -> r));
+
+        assertEquals(Set.of("2025-1:Food", "2025-2:Travel"), rows.keySet());
+        MonthlySpending food = rows.get("2025-1:Food");
+        assertEquals(30, food.getSpending(), 1e-9);
+        assertEquals(60, food.getIncome(), 1e-9);
+        assertEquals(2, food.getExpenseCount());
+        MonthlySpending travel = rows.get("2025-2:Travel");
+        assertEquals(50, travel.getSpending(), 1e-9);
+        assertEquals(0, travel.getIncome(), 1e-9);
+        assertEquals(2, travel.getExpenseCount());
+    }
+
+    @Test
+    void aggregatesCategorySpendingOverInvolvedExpenses() {
+        Map<String, CategorySpending> rows = byCategory(dataSource().aggregateCategorySpending(user, null, START, END));
+
+        assertEquals(Set.of("Food", "Travel"), rows.keySet());
+        assertCategory(rows.get("Food"), 30, 2, 15, 0, 30);
+        assertCategory(rows.get("Travel"), 50, 2, 25, 0, 50);
+    }
+
+    @Test
+    void restrictsCategorySpendingToTheGroup() {
+        Map<String, CategorySpending> rows = byCategory(dataSource().aggregateCategorySpending(user, group, START, END));
+
+        assertEquals(Set.of("Food"), rows.keySet());
+        assertCategory(rows.get("Food"), 30, 1, 30, 30, 30);
+    }
+
+    @Test
+    void findsTopExpensesPerCategoryOverInvolvedExpenses() {
+        Set<String> top = dataSource().findTopExpensesPerCategory(user, null, START, END, 1).stream()
+            .map(ExpenseDto::getId)
+            .collect(Collectors.toSet());
+
+        assertEquals(idsOf("dinner", "train"), top);
+    }
+
+    // ===========================================
+    // HELPERS
+    // ===========================================
+
+    private void save(String description, String category, double amount, LocalDate date, String groupId,
+                      String creatorId, Map<String, Double> paid, Map<String, Double> shares) {
+        ExpenseDto expense = new ExpenseDto();
+        expense.setDescription(description);
+        expense.setCategory(category);
+        expense.setTotalAmount(amount);
+        expense.setDate(date);
+        expense.setGroupId(groupId);
+        expense.setCreatorId(creatorId);
+        expense.setCreatedAt(LocalDateTime.now());
+        expense.setUpdatedAt(LocalDateTime.now());
+        paid.forEach((userId, paidAmount) -> {
+            ExpenseDto.PayerDto payer = new ExpenseDto.PayerDto();
+            payer.setUserId(userId);
+            payer.setPaidAmount(paidAmount);
+            expense.getPayers().add(payer);
+        });
+        shares.forEach((userId, share) -> {
+            ExpenseDto.ParticipantDto participant = new ExpenseDto.ParticipantDto();
+            participant.setUserId(userId);
+            participant.setShare(share);
+            participant.setPaid(paid.getOrDefault(userId, 0.0));
+            participant.setNet(participant.getPaid() - share);
+            expense.getParticipants().add(participant);
+        });
+        ids.put(description, expenseDao().save(expense).getId());
+    }
+
+    private Set<String> idsOf(String... descriptions) {
+        return Arrays.stream(descriptions).map(ids::get).collect(Collectors.toSet());
+    }
+
+    private Map<String, CategorySpending> byCategory(List<CategorySpending> rows) {
+        return rows.stream().collect(Collectors.toMap(CategorySpending::getCategory, r -> r));
+    }
+
+    private void assertCategory(CategorySpending row, double total, long count, double average, double min, double max) {
+        assertEquals(total, row.getTotal(), 1e-9);
+        assertEquals(count, row.getExpenseCount());
+        assertEquals(average, row.getAverage(), 1e-9);
+        assertEquals(min, row.getMin(), 1e-9);
+        assertEquals(max, row.getMax(), 1e-9);
+    }
+}
@@ -0,0 +1,124 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BalanceContributionsTest {
+
+    /**
+     * 90 paid by A (60) and B (30), split evenly between A, B and C.
+     */
+    private ExpenseDto multiPayerExpense() {
+        ExpenseDto expense = new ExpenseDto();
+        expense.getPayers().add(payer("A", 60));
+        expense.getPayers().add(payer("B", 30));
+        expense.getParticipants().add(participant("A", 30, 60));
+        expense.getParticipants().add(participant("B", 30, 30));
+        expense.getParticipants().add(participant("C", 30, 0));
+        return expense;
+    }
+
+    @Test
+    void splitsDebtsByEachPayersFractionOfTheAmountPaid() {
+        Map<String, Map<String, Double>> byUser = BalanceContributions.of(multiPayerExpense()).byUser();
+
+        // C owes 30: 2/3 to A, 1/3 to B. A owes B 10 and B owes A 20, netted to B owing A 10.
+        assertEquals(-20, byUser.get("C").get("A"), 1e-9);
+        assertEquals(-10, byUser.get("C").get("B"), 1e-9);
+        assertEquals(-10, byUser.get("B").get("A"), 1e-9);
+        assertEquals(10, byUser.get("B").get("C"), 1e-9);
+        assertEquals(10, byUser.get("A").get("B"), 1e-9);
+        assertEquals(20, byUser.get("A").get("C"), 1e-9);
+        assertAntisymmetric(byUser);
+    }
+
+    @Test
+    void pairBalancesAddUpToEachUsersNet() {
+        ExpenseDto expense = multiPayerExpense();
+
+        assertEquals(30, BalanceContributions.effectiveNet("A", expense), 1e-9);
+        assertEquals(0, BalanceContributions.effectiveNet("B", expense), 1e-9);
+        assertEquals(-30, BalanceContributions.effectiveNet("C", expense), 1e-9);
+    }
+
+    @Test
+    void partialSettlementReducesTheDebtorsPairsOnBothSides() {
+        ExpenseDto expense = multiPayerExpense();
+        BalanceContributions before = BalanceContributions.of(expense);
+        expense.getParticipants().get(2).setSettledAmount(15);
+
+        BalanceContributions after = BalanceContributions.of(expense);
+        Map<String, Map<String, Double>> byUser = after.byUser();
+        assertEquals(-10, byUser.get("C").get("A"), 1e-9);
+        assertEquals(-5, byUser.get("C").get("B"), 1e-9);
+        assertEquals(-10, byUser.get("B").get("A"), 1e-9);
+        assertEquals(20, BalanceContributions.effectiveNet("A", expense), 1e-9);
+        assertAntisymmetric(byUser);
+
+        // The ledger delta of the settlement only moves C's pairs
+        Map<String, Map<String, Double>> deltas = after.minus(before);
+        assertEquals(Map.of("A", 10.0, "B", 5.0), deltas.get("C"));
+        assertEquals(Map.of("C", -10.0), deltas.get("A"));
+        assertEquals(Map.of("C", -5.0), deltas.get("B"));
+        assertAntisymmetric(deltas);
+    }
+
+    @Test
+    void settledParticipantsAndExpensesContributeNothing() {
+        ExpenseDto expense = multiPayerExpense();
+        expense.getParticipants().get(2).setFullySettled(true);
+
+        Map<String, Map<String, Double>> byUser = BalanceContributions.of(expense).byUser();
+        assertNull(byUser.get("C"));
+        assertEquals(Map.of("A", -10.0), byUser.get("B"));
+        assertEquals(Map.of("B", 10.0), byUser.get("A"));
+
+        BalanceContributions before = BalanceContributions.of(expense);
+        expense.setSettled(true);
+        BalanceContributions after = BalanceContributions.of(expense);
+        assertTrue(after.byUser().isEmpty());
+        // Settling the whole expense reverses whatever was still open
+        assertEquals(Map.of("A", Map.of("B", -10.0), "B", Map.of("A", 10.0)), after.minus(before));
+    }
+
+    @Test
+    void payerWhoIsNotAParticipantIsOwedTheWholeAmount() {
+        ExpenseDto expense = new ExpenseDto();
+        expense.getPayers().add(payer("A", 40));
+        expense.getParticipants().add(participant("B", 20, 0));
+        expense.getParticipants().add(participant("C", 20, 0));
+
+        Map<String, Map<String, Double>> byUser = BalanceContributions.of(expense).byUser();
+        assertEquals(Map.of("B", 20.0, "C", 20.0), byUser.get("A"));
+        assertFalse(byUser.get("B").containsKey("C"));
+        assertAntisymmetric(byUser);
+    }
+
+    private void assertAntisymmetric(Map<String, Map<String, Double>> byUser) {
+        byUser.forEach((user, balances) -> balances.forEach((counterparty, amount) -> {
+            Double reverse = byUser.getOrDefault(counterparty, Map.of()).get(user);
+            assertNotNull(reverse, counterparty + " has no entry for " + user);
+            assertEquals(-amount, reverse, 1e-9);
+        }));
+    }
+
+    private ExpenseDto.PayerDto payer(String userId, double paid) {
+        ExpenseDto.PayerDto payer = new ExpenseDto.PayerDto();
+        payer.setUserId(userId);
+        payer.setPaidAmount(paid);
+        return payer;
+    }
+
+    private ExpenseDto.ParticipantDto participant(String userId, double share, double paid) {
+        ExpenseDto.ParticipantDto participant = new ExpenseDto.ParticipantDto();
+        participant.setUserId(userId);
+        participant.setShare(share);
+        participant.setPaid(paid);
+        participant.setNet(paid - share);
+        return participant;
+    }
+}
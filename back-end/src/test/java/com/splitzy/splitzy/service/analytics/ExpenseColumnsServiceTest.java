@@ -0,0 +1,273 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import com.splitzy.splitzy.util.RedisLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.*;
+
+import static com.splitzy.splitzy.service.analytics.ExpenseColumnsTest.assertSameScans;
+import static com.splitzy.splitzy.service.analytics.ExpenseColumnsTest.expense;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the service against an in-memory stand-in for columns_push.lua, columns_install.lua and
+ * release_lock.lua, following the scripts line by line.
+ */
+class ExpenseColumnsServiceTest {
+
+    private static final String BASE = "analytics:columns:A";
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, List<String>> lists = new HashMap<>();
+    // The store's current expenses; the data source answers from it
+    private final List<ExpenseDto> store = new ArrayList<>();
+
+    private AnalyticsDataSource dataSource;
+    private RedisCircuitBreaker breaker;
+    private ExpenseColumnsService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        ListOperations<String, String> listOps = mock(ListOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.opsForList()).thenReturn(listOps);
+        when(values.get(anyString())).thenAnswer(inv -> strings.get(inv.<String>getArgument(0)));
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+            .thenAnswer(inv -> strings.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        doAnswer(inv -> strings.put(inv.getArgument(0), inv.getArgument(1)))
+            .when(values).set(anyString(), anyString(), any(Duration.class));
+        when(listOps.range(anyString(), eq(0L), eq(-1L)))
+            .thenAnswer(inv -> new ArrayList<>(lists.getOrDefault(inv.<String>getArgument(0), List.of())));
+
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(inv -> {
+            List<Object> results = new ArrayList<>();
+            StringRedisConnection conn = mock(StringRedisConnection.class);
+            when(conn.get(anyString())).thenAnswer(c -> {
+                results.add(strings.get(c.<String>getArgument(0)));
+                return null;
+            });
+            when(conn.lRange(anyString(), eq(0L), eq(-1L))).thenAnswer(c -> {
+                results.add(new ArrayList<>(lists.getOrDefault(c.<String>getArgument(0), List.of())));
+                return null;
+            });
+            when(conn.exists(anyString())).thenAnswer(c -> {
+                results.add(strings.containsKey(c.<String>getArgument(0)));
+                return null;
+            });
+            inv.<RedisCallback<Object>>getArgument(0).doInRedis(conn);
+            return results;
+        });
+
+        RedisScript<Long> push = (RedisScript<Long>) ReflectionTestUtils.getField(ExpenseColumnsService.class, "PUSH");
+        RedisScript<Long> install = (RedisScript<Long>) ReflectionTestUtils.getField(ExpenseColumnsService.class, "INSTALL");
+        RedisScript<Long> release = (RedisScript<Long>) ReflectionTestUtils.getField(RedisLocks.class, "RELEASE");
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            RedisScript<?> script = inv.getArgument(0);
+            List<String> keys = inv.getArgument(1);
+            Object[] args = (Object[]) inv.getRawArguments()[2];
+            if (script == push) {
+                return push(keys, args);
+            }
+            if (script == install) {
+                return install(keys, args);
+            }
+            if (script == release) {
+                return args[0].equals(strings.get(keys.get(0))) && strings.remove(keys.get(0)) != null ? 1L : 0L;
+            }
+            throw new IllegalArgumentException("Unknown script");
+        });
+
+        dataSource = mock(AnalyticsDataSource.class);
+        when(dataSource.findExpensesForUser(eq("A"), any(Sort.class))).thenAnswer(inv -> new ArrayList<>(store));
+
+        breaker = new RedisCircuitBreaker(new SimpleMeterRegistry(), true, 10, 1, 0.5, 60_000, 60_000, 1);
+        service = new ExpenseColumnsService(redis, dataSource, breaker);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "minExpenses", 2);
+    }
+
+    @Test
+    void changeDuringABuildIsFoldedInAndCompacted() {
+        save(null, expense("e1", "2024-01-10", "Food", null, 30, "A", "B"));
+        save(null, expense("e2", "2024-01-11", "Food", null, 20, "B", "A"));
+        ExpenseDto e3 = expense("e3", "2024-01-12", "Rent", null, 90, "A", "B");
+        // The store is read first, then e3 lands before the snapshot is installed
+        when(dataSource.findExpensesForUser(eq("A"), any(Sort.class))).thenAnswer(inv -> {
+            List<ExpenseDto> loaded = new ArrayList<>(store);
+            save(null, e3);
+            return loaded;
+        });
+
+        assertEquals(2, service.get("A").size());
+        assertTrue(strings.get(BASE).startsWith("2|"));
+        assertEquals(1, lists.get(BASE + ":buf").size());
+
+        ExpenseColumns next = service.get("A");
+
+        assertSameScans(ExpenseColumns.of("A", store), next);
+        // Compaction stored e3 and emptied the buffer
+        assertTrue(strings.get(BASE).startsWith("3|"));
+        assertTrue(lists.get(BASE + ":buf").isEmpty());
+        assertFalse(strings.containsKey(BASE + ":lock"));
+        assertEquals(3, service.get("A").size());
+        verify(dataSource, times(1)).findExpensesForUser(eq("A"), any(Sort.class));
+    }
+
+    @Test
+    void deltasTheSnapshotCoversAreNotFoldedOverIt() {
+        ExpenseDto e1 = expense("e1", "2024-01-10", "Food", null, 30, "A", "B");
+        ExpenseDto e2 = expense("e2", "2024-01-11", "Food", null, 20, "A", "B");
+        ExpenseColumns snapshot = ExpenseColumns.of("A", List.of(e1, e2));
+        strings.put(BASE + ":seq", "3");
+        strings.put(BASE, "2|" + snapshot.encode());
+        lists.put(BASE + ":buf", new ArrayList<>(List.of(
+            "1|" + ExpenseColumns.removeDelta("e1"),
+            "2|" + ExpenseColumns.removeDelta("e2"),
+            "3|" + ExpenseColumns.putDelta("A", expense("e3", "2024-01-12", "Food", null, 10, "A", "B")))));
+
+        ExpenseColumns columns = service.get("A");
+
+        assertEquals(3, columns.size());
+        assertTrue(strings.get(BASE).startsWith("3|"));
+        assertTrue(lists.get(BASE + ":buf").isEmpty());
+        verifyNoInteractions(dataSource);
+    }
+
+    @Test
+    void staleBuildDoesNotReplaceANewerSnapshot() {
+        save(null, expense("e1", "2024-01-10", "Food", null, 30, "A", "B"));
+        save(null, expense("e2", "2024-01-11", "Food", null, 20, "B", "A"));
+        ExpenseDto e3 = expense("e3", "2024-01-12", "Rent", null, 90, "A", "B");
+        // While the first build loads, e3 lands and a second reader builds and installs first
+        when(dataSource.findExpensesForUser(eq("A"), any(Sort.class))).thenAnswer(inv -> {
+            List<ExpenseDto> loaded = new ArrayList<>(store);
+            if (!store.contains(e3)) {
+                save(null, e3);
+                assertEquals(3, service.get("A").size());
+            }
+            return loaded;
+        });
+
+        assertEquals(2, service.get("A").size());
+
+        assertTrue(strings.get(BASE).startsWith("3|"));
+        assertTrue(lists.get(BASE + ":buf").isEmpty());
+        assertSameScans(ExpenseColumns.of("A", store), service.get("A"));
+        verify(dataSource, times(2)).findExpensesForUser(eq("A"), any(Sort.class));
+    }
+
+    @Test
+    void removedParticipantGetsARemoveDelta() {
+        ExpenseDto before = expense("e1", "2024-01-10", "Food", null, 30, "B", "A");
+        ExpenseDto after = expense("e1", "2024-01-10", "Food", null, 30, "B", "C");
+        save(null, expense("e0", "2024-01-09", "Food", null, 10, "A", "B"));
+        save(null, before);
+        assertEquals(2, service.get("A").size());
+
+        save(before, after);
+
+        assertEquals(List.of("3|" + ExpenseColumns.removeDelta("e1")), lists.get(BASE + ":buf"));
+        assertEquals(1, service.get("A").size());
+    }
+
+    @Test
+    void coldUserIsNotBuiltOrBufferedAgain() {
+        save(null, expense("e1", "2024-01-10", "Food", null, 30, "A", "B"));
+        lists.clear();
+
+        assertNull(service.get("A"));
+        assertTrue(strings.containsKey(BASE + ":cold"));
+
+        save(null, expense("e2", "2024-01-11", "Food", null, 20, "A", "B"));
+        assertNull(service.get("A"));
+
+        assertFalse(lists.containsKey(BASE + ":buf"));
+        verify(dataSource, times(1)).findExpensesForUser(eq("A"), any(Sort.class));
+    }
+
+    @Test
+    void disabledServiceLeavesRedisAlone() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        save(null, expense("e1", "2024-01-10", "Food", null, 30, "A", "B"));
+
+        assertNull(service.get("A"));
+        assertTrue(strings.isEmpty());
+        assertTrue(lists.isEmpty());
+        verifyNoInteractions(dataSource);
+    }
+
+    @Test
+    void openBreakerFallsBackToTheStoreWithoutLoading() {
+        save(null, expense("e1", "2024-01-10", "Food", null, 30, "A", "B"));
+        save(null, expense("e2", "2024-01-11", "Food", null, 20, "B", "A"));
+        while (breaker.state() != RedisCircuitBreaker.State.OPEN) {
+            breaker.onFailure();
+        }
+
+        assertNull(service.get("A"));
+        save(null, expense("e3", "2024-01-12", "Food", null, 10, "A", "B"));
+
+        assertEquals(2, lists.get(BASE + ":buf").size());
+        verifyNoInteractions(dataSource);
+    }
+
+    /**
+     * Write an expense to the store and queue its deltas, as ExpenseService does.
+     */
+    private void save(ExpenseDto before, ExpenseDto after) {
+        if (before != null) {
+            store.remove(before);
+        }
+        store.add(after);
+        service.apply(before, after);
+    }
+
+    // columns_push.lua
+    private Long push(List<String> keys, Object[] args) {
+        if (strings.containsKey(keys.get(2))) {
+            return 0L;
+        }
+        long seq = Long.parseLong(strings.merge(keys.get(0), "1", (v, one) -> Long.toString(Long.parseLong(v) + 1)));
+        lists.computeIfAbsent(keys.get(1), k -> new ArrayList<>()).add(seq + "|" + args[1]);
+        return seq;
+    }
+
+    // columns_install.lua
+    private Long install(List<String> keys, Object[] args) {
+        long seq = Long.parseLong((String) args[0]);
+        String stored = strings.get(keys.get(0));
+        if (stored != null && Long.parseLong(stored.substring(0, stored.indexOf('|'))) >= seq) {
+            return 0L;
+        }
+        strings.put(keys.get(0), seq + "|" + args[1]);
+        List<String> buffer = lists.getOrDefault(keys.get(1), new ArrayList<>());
+        while (!buffer.isEmpty()) {
+            String head = buffer.get(0);
+            int bar = head.indexOf('|');
+            if (bar > 0 && head.substring(0, bar).chars().allMatch(Character::isDigit)
+                && Long.parseLong(head.substring(0, bar)) > seq) {
+                break;
+            }
+            buffer.remove(0);
+        }
+        return 1L;
+    }
+}
@@ -0,0 +1,143 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpenseColumnsTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2024, 12, 31);
+
+    @Test
+    void encodeRoundTripKeepsEveryScan() {
+        List<ExpenseDto> expenses = List.of(
+            expense("e1", "2024-01-10", "Food", "g1", 30, "A", "B"),
+            expense("e2", "2024-01-20", "Food", null, 12, "B", "A"),
+            expense("e3", "2024-02-05", null, "g1", 50, "A", "C"),
+            // A is only the payer here: kept as a row but never scanned
+            expense("e4", "2024-02-06", "Travel", null, 80, "A", "B", "C"));
+        expenses.get(3).getParticipants().removeIf(p -> p.getUserId().equals("A"));
+        ExpenseColumns columns = ExpenseColumns.of("A", expenses);
+
+        ExpenseColumns decoded = ExpenseColumns.decode(columns.encode());
+
+        assertEquals(4, decoded.size());
+        assertSameScans(columns, decoded);
+        assertEquals(2, decoded.categorySpending(null, FROM, TO).size());
+        // e3 is uncategorized
+        assertEquals(List.of("e1"), decoded.topExpenseIdsPerCategory("g1", FROM, TO, 5));
+    }
+
+    @Test
+    void appliedDeltasMatchAFreshSnapshot() {
+        ExpenseDto e1 = expense("e1", "2024-01-10", "Food", "g1", 30, "A", "B");
+        ExpenseDto e2 = expense("e2", "2024-03-01", "Rent", null, 900, "B", "A");
+        ExpenseDto e3 = expense("e3", "2024-03-02", "Food", "g2", 40, "A", "C");
+        ExpenseColumns columns = ExpenseColumns.of("A", List.of(e1, e2));
+
+        ExpenseDto e1Edited = expense("e1", "2024-02-10", "Travel", "g1", 60, "A", "B");
+        ExpenseColumns applied = columns.apply(List.of(
+            ExpenseColumns.putDelta("A", e3),
+            ExpenseColumns.putDelta("A", e1Edited),
+            ExpenseColumns.removeDelta("e2")));
+
+        assertEquals(2, applied.size());
+        assertSameScans(ExpenseColumns.of("A", List.of(e1Edited, e3)), applied);
+        // The snapshot itself is left untouched
+        assertEquals(2, columns.size());
+        assertSameScans(ExpenseColumns.of("A", List.of(e1, e2)), columns);
+    }
+
+    @Test
+    void foldingTheSameDeltasTwiceIsHarmless() {
+        ExpenseColumns columns = ExpenseColumns.of("A", List.of(expense("e1", "2024-01-10", "Food", null, 30, "A", "B")));
+        List<String> deltas = List.of(
+            ExpenseColumns.putDelta("A", expense("e2", "2024-01-11", "Food", null, 10, "A", "B")),
+            ExpenseColumns.removeDelta("e1"),
+            ExpenseColumns.removeDelta("missing"));
+
+        ExpenseColumns once = columns.apply(deltas);
+        ExpenseColumns twice = once.apply(deltas);
+
+        assertEquals(1, twice.size());
+        assertSameScans(once, twice);
+    }
+
+    @Test
+    void scansFollowTheUsersShareAndNet() {
+        ExpenseColumns columns = ExpenseColumns.of("A", List.of(
+            expense("e1", "2024-01-10", "Food", null, 30, "A", "B"),
+            expense("e2", "2024-01-20", "Food", null, 12, "B", "A"),
+            expense("e3", "2025-01-01", "Food", null, 99, "A", "B")));
+
+        List<MonthlySpending> monthly = columns.monthlySpending(null, FROM, TO);
+
+        assertEquals(1, monthly.size());
+        MonthlySpending january = monthly.get(0);
+        assertEquals(2024, january.getYear());
+        assertEquals(1, january.getMonth());
+        assertEquals("Food", january.getCategory());
+        assertEquals(21.0, january.getSpending(), 1e-9);
+        // Only e1 leaves A with a positive net (paid 30, share 15)
+        assertEquals(15.0, january.getIncome(), 1e-9);
+        assertEquals(2, january.getExpenseCount());
+        assertTrue(columns.monthlySpending("unknown-group", FROM, TO).isEmpty());
+    }
+
+    static void assertSameScans(ExpenseColumns expected, ExpenseColumns actual) {
+        for (String group : Arrays.asList(null, "g1", "g2")) {
+            assertEquals(monthlyRows(expected.monthlySpending(group, FROM, TO)),
+                monthlyRows(actual.monthlySpending(group, FROM, TO)));
+            assertEquals(categoryRows(expected.categorySpending(group, FROM, TO)),
+                categoryRows(actual.categorySpending(group, FROM, TO)));
+            assertEquals(new HashSet<>(expected.topExpenseIdsPerCategory(group, FROM, TO, 2)),
+                new HashSet<>(actual.topExpenseIdsPerCategory(group, FROM, TO, 2)));
+        }
+    }
+
+    private static Set<String> monthlyRows(List<MonthlySpending> rows) {
+        Set<String> out = new HashSet<>();
+        rows.forEach(r -> out.add(r.getYear() + "-" + r.getMonth() + " " + r.getCategory() + " "
+            + r.getSpending() + " " + r.getIncome() + " " + r.getExpenseCount()));
+        return out;
+    }
+
+    private static Set<String> categoryRows(List<CategorySpending> rows) {
+        Set<String> out = new HashSet<>();
+        rows.forEach(r -> out.add(r.getCategory() + " " + r.getTotal() + " " + r.getExpenseCount()
+            + " " + r.getMin() + " " + r.getMax()));
+        return out;
+    }
+
+    /**
+     * An expense paid in full by payer and split equally between payer and others.
+     */
+    static ExpenseDto expense(String id, String date, String category, String groupId, double amount,
+                              String payer, String... others) {
+        ExpenseDto expense = new ExpenseDto();
+        expense.setId(id);
+        expense.setDate(LocalDate.parse(date));
+        expense.setCategory(category);
+        expense.setGroupId(groupId);
+        expense.setTotalAmount(amount);
+        expense.setCreatorId(payer);
+        ExpenseDto.PayerDto payerDto = new ExpenseDto.PayerDto();
+        payerDto.setUserId(payer);
+        payerDto.setPaidAmount(amount);
+        expense.getPayers().add(payerDto);
+        List<String> participants = new ArrayList<>(List.of(others));
+        participants.add(0, payer);
+        for (String userId : participants) {
+            ExpenseDto.ParticipantDto participant = new ExpenseDto.ParticipantDto();
+            participant.setUserId(userId);
+            participant.setShare(amount / participants.size());
+            expense.getParticipants().add(participant);
+        }
+        return expense;
+    }
+}
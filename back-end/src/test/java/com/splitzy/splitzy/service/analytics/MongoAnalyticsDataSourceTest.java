@@ -0,0 +1,28 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.ExpenseDaoMongoImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+
+@DataMongoTest
+@Import({ExpenseDaoMongoImpl.class, MongoAnalyticsDataSource.class})
+class MongoAnalyticsDataSourceTest extends AnalyticsDataSourceContractTest {
+
+    @Autowired
+    private ExpenseDao expenseDao;
+
+    @Autowired
+    private MongoAnalyticsDataSource dataSource;
+
+    @Override
+    protected ExpenseDao expenseDao() {
+        return expenseDao;
+    }
+
+    @Override
+    protected AnalyticsDataSource dataSource() {
+        return dataSource;
+    }
+}
@@ -0,0 +1,167 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the service against an in-memory stand-in for pending_apply.lua and pending_rebuild.lua,
+ * following the scripts line by line.
+ */
+class PendingActionsServiceTest {
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<String, Map<String, Double>> zsets = new HashMap<>();
+
+    private RedisCircuitBreaker breaker;
+    private PendingActionsService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        ZSetOperations<String, String> zsetOps = mock(ZSetOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(redis.opsForZSet()).thenReturn(zsetOps);
+        when(values.get(anyString())).thenAnswer(inv -> strings.get(inv.<String>getArgument(0)));
+        when(redis.hasKey(anyString())).thenAnswer(inv -> strings.containsKey(inv.<String>getArgument(0)));
+        when(zsetOps.rangeWithScores(anyString(), eq(0L), eq(-1L))).thenAnswer(inv -> {
+            Set<ZSetOperations.TypedTuple<String>> tuples = new LinkedHashSet<>();
+            zsets.getOrDefault(inv.<String>getArgument(0), Map.of()).entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .forEach(e -> tuples.add(new DefaultTypedTuple<>(e.getKey(), e.getValue())));
+            return tuples;
+        });
+
+        RedisScript<Long> apply = (RedisScript<Long>) ReflectionTestUtils.getField(PendingActionsService.class, "APPLY");
+        RedisScript<Long> rebuild = (RedisScript<Long>) ReflectionTestUtils.getField(PendingActionsService.class, "REBUILD");
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            RedisScript<?> script = inv.getArgument(0);
+            List<String> keys = inv.getArgument(1);
+            Object[] args = (Object[]) inv.getRawArguments()[2];
+            if (script == apply) {
+                return apply(keys, args);
+            }
+            if (script == rebuild) {
+                return rebuild(keys, args);
+            }
+            throw new IllegalArgumentException("Unknown script");
+        });
+
+        breaker = new RedisCircuitBreaker(new SimpleMeterRegistry(), true, 10, 1, 0.5, 60_000, 60_000, 1);
+        service = new PendingActionsService(redis, breaker);
+    }
+
+    @Test
+    void changeAppliedWhileRebuildingMakesTheRebuildSkipStoring() {
+        String version = service.rebuildVersion("A");
+        Map<String, Double> computed = Map.of("B", 20.0);
+
+        // An expense lands after the version was read; A's inbox is not built yet, so it is skipped
+        service.apply(BalanceContributions.of(null), BalanceContributions.of(expense("A", "B", 10)));
+
+        assertFalse(service.rebuild("A", version, computed));
+        assertNull(service.getBalances("A"));
+
+        // The next read starts over with the new version and installs
+        String retried = service.rebuildVersion("A");
+        assertNotEquals(version, retried);
+        assertTrue(service.rebuild("A", retried, Map.of("B", 30.0)));
+        assertEquals(Map.of("B", 30.0), service.getBalances("A"));
+    }
+
+    @Test
+    void changesAfterTheRebuildAreAppliedIncrementally() {
+        assertTrue(service.rebuild("A", service.rebuildVersion("A"), Map.of("B", 20.0, "C", 0.001)));
+        assertEquals(Map.of("B", 20.0), service.getBalances("A"));
+
+        service.apply(BalanceContributions.of(null), BalanceContributions.of(expense("A", "C", 12)));
+
+        // A paid 12 split with C: C owes A 6
+        assertEquals(Map.of("B", 20.0, "C", 6.0), service.getBalances("A"));
+        // C has no inbox yet: only the version moved
+        assertNull(service.getBalances("C"));
+        assertEquals("1", service.rebuildVersion("C"));
+    }
+
+    @Test
+    void unbuiltInboxStartsAtVersionZero() {
+        assertEquals("0", service.rebuildVersion("A"));
+        assertTrue(service.rebuild("A", "0", Map.of()));
+        assertEquals(Map.of(), service.getBalances("A"));
+    }
+
+    @Test
+    void openBreakerReportsTheInboxUnavailableAndSkipsChanges() {
+        assertTrue(service.rebuild("A", service.rebuildVersion("A"), Map.of("B", 20.0)));
+        while (breaker.state() != RedisCircuitBreaker.State.OPEN) {
+            breaker.onFailure();
+        }
+
+        assertNull(service.getBalances("A"));
+        assertNull(service.rebuildVersion("A"));
+        assertFalse(service.rebuild("A", "0", Map.of()));
+        service.apply(BalanceContributions.of(null), BalanceContributions.of(expense("A", "B", 10)));
+
+        assertEquals(Map.of("B", 20.0), zsets.get("pending:A:balances"));
+        assertNull(strings.get("pending:A:version"));
+    }
+
+    // pending_apply.lua
+    private Long apply(List<String> keys, Object[] args) {
+        strings.merge(keys.get(0), "1", (v, one) -> Long.toString(Long.parseLong(v) + 1));
+        if (!strings.containsKey(keys.get(1))) {
+            return 0L;
+        }
+        Map<String, Double> zset = zsets.computeIfAbsent(keys.get(2), k -> new HashMap<>());
+        for (int i = 1; i < args.length; i += 2) {
+            zset.merge((String) args[i + 1], Double.parseDouble((String) args[i]), Double::sum);
+        }
+        return 1L;
+    }
+
+    // pending_rebuild.lua
+    private Long rebuild(List<String> keys, Object[] args) {
+        if (!strings.getOrDefault(keys.get(0), "0").equals(args[0])) {
+            return 0L;
+        }
+        Map<String, Double> zset = new HashMap<>();
+        for (int i = 2; i < args.length; i += 2) {
+            zset.put((String) args[i + 1], Double.parseDouble((String) args[i]));
+        }
+        zsets.put(keys.get(2), zset);
+        strings.put(keys.get(1), "1");
+        return 1L;
+    }
+
+    private ExpenseDto expense(String payer, String other, double amount) {
+        ExpenseDto expense = new ExpenseDto();
+        ExpenseDto.PayerDto payerDto = new ExpenseDto.PayerDto();
+        payerDto.setUserId(payer);
+        payerDto.setPaidAmount(amount);
+        expense.getPayers().add(payerDto);
+        for (String userId : List.of(payer, other)) {
+            ExpenseDto.ParticipantDto participant = new ExpenseDto.ParticipantDto();
+            participant.setUserId(userId);
+            participant.setShare(amount / 2);
+            participant.setPaid(userId.equals(payer) ? amount : 0);
+            participant.setNet(participant.getPaid() - participant.getShare());
+            expense.getParticipants().add(participant);
+        }
+        return expense;
+    }
+}
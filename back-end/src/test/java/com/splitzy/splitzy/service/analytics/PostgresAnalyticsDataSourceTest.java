@@ -0,0 +1,32 @@
+package com.splitzy.splitzy.service.analytics;
+
+import com.splitzy.splitzy.service.dao.ExpenseDao;
+import com.splitzy.splitzy.service.dao.ExpenseDaoPostgresImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+@DataJpaTest
+@ActiveProfiles("postgres")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ExpenseDaoPostgresImpl.class, PostgresAnalyticsDataSource.class})
+class PostgresAnalyticsDataSourceTest extends AnalyticsDataSourceContractTest {
+
+    @Autowired
+    private ExpenseDao expenseDao;
+
+    @Autowired
+    private PostgresAnalyticsDataSource dataSource;
+
+    @Override
+    protected ExpenseDao expenseDao() {
+        return expenseDao;
+    }
+
+    @Override
+    protected AnalyticsDataSource dataSource() {
+        return dataSource;
+    }
+}
@@ -0,0 +1,183 @@
+package com.splitzy.splitzy.service.dao;
+
+import com.splitzy.splitzy.service.RedisCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the decorator against an in-memory store and an in-memory Redis, interleaving a write
+ * into a lookup's store read to check a stale copy is never cached.
+ */
+class CachingUserDaoTest {
+
+    private final Map<String, UserDto> stored = new HashMap<>();
+    private final Map<String, Object> shared = new HashMap<>();
+
+    private UserDao store;
+    private StringRedisTemplate redis;
+    private ValueOperations<String, Object> values;
+    private RedisCircuitBreaker breaker;
+    private CachingUserDao dao;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        store = mock(UserDao.class);
+        when(store.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(copy(stored.get(inv.<String>getArgument(0)))));
+        when(store.save(any(UserDto.class))).thenAnswer(inv -> {
+            UserDto user = inv.getArgument(0);
+            stored.put(user.getId(), copy(user));
+            return user;
+        });
+
+        RedisTemplate<String, Object> cacheTemplate = mock(RedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(cacheTemplate.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(inv -> shared.get(inv.<String>getArgument(0)));
+        when(values.multiGet(anyCollection())).thenAnswer(inv -> {
+            List<Object> found = new ArrayList<>();
+            inv.<Collection<String>>getArgument(0).forEach(key -> found.add(shared.get(key)));
+            return found;
+        });
+        doAnswer(inv -> shared.put(inv.getArgument(0), inv.getArgument(1)))
+            .when(values).set(anyString(), any(), any(Duration.class));
+        when(values.setIfAbsent(anyString(), any(), any(Duration.class)))
+            .thenAnswer(inv -> shared.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        when(cacheTemplate.delete(anyCollection())).thenAnswer(inv -> {
+            inv.<Collection<String>>getArgument(0).forEach(shared::remove);
+            return 1L;
+        });
+
+        redis = mock(StringRedisTemplate.class);
+        breaker = new RedisCircuitBreaker(new SimpleMeterRegistry(), true, 10, 1, 0.5, 60_000, 60_000, 1);
+        dao = new CachingUserDao(store, cacheTemplate, redis, mock(RedisMessageListenerContainer.class), breaker,
+            100, 60, 600, 10);
+
+        stored.put("u1", user("u1", "Ann", "ann@example.com"));
+    }
+
+    @Test
+    void lookupsAreServedFromTheCachesWithoutCredentials() {
+        UserDto first = dao.findById("u1").orElseThrow();
+        UserDto second = dao.findById("u1").orElseThrow();
+        UserDto byEmail = dao.findByEmail("ann@example.com").orElseThrow();
+
+        assertEquals("Ann", second.getName());
+        assertEquals("u1", byEmail.getId());
+        assertNull(first.getPassword());
+        assertInstanceOf(CachingUserDao.CachedUser.class, shared.get("users:id:u1"));
+        assertEquals("u1", shared.get("users:email:ann@example.com"));
+        verify(store, times(1)).findById("u1");
+        verify(store, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void savingACachedUserKeepsTheStoredCredentials() {
+        UserDto cached = dao.findById("u1").orElseThrow();
+        cached.setName("Annie");
+
+        dao.save(cached);
+
+        assertEquals("Annie", stored.get("u1").getName());
+        assertEquals("hash", stored.get("u1").getPassword());
+        assertEquals("Annie", dao.findById("u1").orElseThrow().getName());
+    }
+
+    @Test
+    void writeLeavesATombstoneAndBroadcastsTheId() {
+        dao.findById("u1");
+
+        dao.save(user("u1", "Annie", "annie@example.com"));
+
+        assertEquals("evicted", shared.get("users:id:u1"));
+        assertFalse(shared.containsKey("users:email:ann@example.com"));
+        verify(redis).convertAndSend(CachingUserDao.INVALIDATION_CHANNEL, "u1");
+        // The tombstone is not a user: the lookup reaches the store but cannot replace it
+        assertEquals("Annie", dao.findById("u1").orElseThrow().getName());
+        assertEquals("evicted", shared.get("users:id:u1"));
+    }
+
+    @Test
+    void readerThatLoadedBeforeAWriteDoesNotCacheItsCopy() {
+        AtomicBoolean raced = new AtomicBoolean();
+        when(store.findById("u1")).thenAnswer(inv -> {
+            Optional<UserDto> loaded = Optional.of(copy(stored.get("u1")));
+            if (raced.compareAndSet(false, true)) {
+                // Another request renames the user after this read, before the copy is cached
+                dao.save(user("u1", "Annie", "ann@example.com"));
+            }
+            return loaded;
+        });
+
+        assertEquals("Ann", dao.findById("u1").orElseThrow().getName());
+
+        // Neither level holds the old copy: the next lookup sees the write
+        assertEquals("evicted", shared.get("users:id:u1"));
+        assertEquals("Annie", dao.findById("u1").orElseThrow().getName());
+    }
+
+    @Test
+    void invalidationMessageDropsTheLocalCopy() {
+        dao.findById("u1");
+        shared.put("users:id:u1", CachingUserDao.CachedUser.of(user("u1", "Annie", "ann@example.com")));
+
+        assertEquals("Ann", dao.findById("u1").orElseThrow().getName());
+        dao.onMessage(new DefaultMessage(CachingUserDao.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+            "u1".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals("Annie", dao.findById("u1").orElseThrow().getName());
+        verify(store, times(1)).findById("u1");
+    }
+
+    @Test
+    void openBreakerSkipsRedisReadsButNotInvalidation() {
+        // Trip the breaker
+        breaker.onFailure();
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+
+        assertEquals("Ann", dao.findById("u1").orElseThrow().getName());
+        verify(values, never()).get(anyString());
+        assertFalse(shared.containsKey("users:id:u1"));
+
+        dao.save(user("u1", "Annie", "ann@example.com"));
+        assertEquals("evicted", shared.get("users:id:u1"));
+    }
+
+    private static UserDto user(String id, String name, String email) {
+        UserDto user = new UserDto();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(email);
+        user.setPassword("hash");
+        user.setVerified(true);
+        return user;
+    }
+
+    private static UserDto copy(UserDto user) {
+        if (user == null) {
+            return null;
+        }
+        UserDto copy = new UserDto();
+        copy.setId(user.getId());
+        copy.setName(user.getName());
+        copy.setEmail(user.getEmail());
+        copy.setPassword(user.getPassword());
+        copy.setVerificationToken(user.getVerificationToken());
+        copy.setVerified(user.isVerified());
+        return copy;
+    }
+}
@@ -0,0 +1,76 @@
+package com.splitzy.splitzy.service.dao;
+
+import com.splitzy.splitzy.entity.UserSql;
+import com.splitzy.splitzy.repository.sql.UserSqlRepository;
+import com.splitzy.splitzy.util.TokenHashes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Verification tokens are only ever stored and looked up by their SHA-256 hash.
+ */
+class UserDaoPostgresImplTest {
+
+    private UserSqlRepository repository;
+    private UserDaoPostgresImpl dao;
+
+    @BeforeEach
+    void setUp() {
+        // The default findByVerificationToken runs for real and hashes the token
+        repository = mock(UserSqlRepository.class, CALLS_REAL_METHODS);
+        doAnswer(inv -> inv.getArgument(0)).when(repository).save(any(UserSql.class));
+        dao = new UserDaoPostgresImpl(repository);
+    }
+
+    @Test
+    void lookupGoesThroughTheHashOfThePresentedToken() {
+        UserSql stored = new UserSql();
+        stored.setId("u1");
+        stored.setVerificationToken("token");
+        doReturn(Optional.of(stored)).when(repository).findByVerificationTokenHash(TokenHashes.sha256("token"));
+
+        assertEquals("u1", dao.findByVerificationToken("token").orElseThrow().getId());
+        assertTrue(dao.findByVerificationToken("other").isEmpty());
+        assertTrue(dao.findByVerificationToken(null).isEmpty());
+        verify(repository, never()).findByVerificationTokenHash("token");
+        verify(repository, never()).findByVerificationTokenHash(null);
+    }
+
+    @Test
+    void newTokenIsStoredOnlyAsItsHash() {
+        UserDto user = new UserDto();
+        user.setId("u1");
+        user.setVerificationToken("token");
+
+        dao.save(user);
+
+        UserSql saved = captureSaved();
+        assertEquals(TokenHashes.sha256("token"), saved.getVerificationTokenHash());
+        verify(repository, never()).findVerificationTokenHashById(anyString());
+    }
+
+    @Test
+    void savingALoadedUserKeepsTheStoredHash() {
+        String hash = TokenHashes.sha256("token");
+        doReturn(Optional.of(hash)).when(repository).findVerificationTokenHashById("u1");
+        UserDto loaded = new UserDto();
+        loaded.setId("u1");
+        loaded.setName("Renamed");
+
+        dao.save(loaded);
+
+        assertEquals(hash, captureSaved().getVerificationTokenHash());
+    }
+
+    private UserSql captureSaved() {
+        ArgumentCaptor<UserSql> saved = ArgumentCaptor.forClass(UserSql.class);
+        verify(repository).save(saved.capture());
+        return saved.getValue();
+    }
+}
@@ -0,0 +1,262 @@
+package com.splitzy.splitzy.service.ledger;
+
+import com.splitzy.splitzy.entity.LedgerCheckpointSql;
+import com.splitzy.splitzy.entity.LedgerEntrySql;
+import com.splitzy.splitzy.model.LedgerEntryType;
+import com.splitzy.splitzy.repository.sql.LedgerCheckpointSqlRepository;
+import com.splitzy.splitzy.repository.sql.LedgerEntrySqlRepository;
+import com.splitzy.splitzy.service.analytics.BalanceContributions;
+import com.splitzy.splitzy.service.dao.ExpenseDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the ledger against in-memory repositories that follow the JPQL of their queries.
+ */
+class LedgerServiceTest {
+
+    private static final int CHECKPOINT_INTERVAL = 50;
+
+    private final List<LedgerEntrySql> entries = new ArrayList<>();
+    private final List<LedgerCheckpointSql> checkpoints = new ArrayList<>();
+    private final LocalDateTime start = LocalDateTime.now().minusDays(2);
+
+    private LedgerService ledger;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        LedgerEntrySqlRepository entryRepo = mock(LedgerEntrySqlRepository.class);
+        LedgerCheckpointSqlRepository checkpointRepo = mock(LedgerCheckpointSqlRepository.class);
+
+        when(entryRepo.saveAll(anyList())).thenAnswer(inv -> {
+            for (LedgerEntrySql entry : (List<LedgerEntrySql>) inv.getArgument(0)) {
+                entry.setId((long) entries.size() + 1);
+                entries.add(entry);
+            }
+            return inv.getArgument(0);
+        });
+        when(entryRepo.sumAfter(anyString(), anyString(), anyLong(), any())).thenAnswer(inv -> sum(
+            pair(inv.getArgument(0), inv.getArgument(1))
+                .and(e -> e.getId() > inv.<Long>getArgument(2))
+                .and(e -> !e.getOccurredAt().isAfter(inv.getArgument(3)))));
+        when(entryRepo.sumBetween(anyString(), anyString(), anyLong(), anyLong())).thenAnswer(inv -> sum(
+            pair(inv.getArgument(0), inv.getArgument(1))
+                .and(e -> e.getId() > inv.<Long>getArgument(2) && e.getId() <= inv.<Long>getArgument(3))));
+        when(entryRepo.sumSinceCheckpoints(anyString(), any())).thenAnswer(inv -> {
+            String userId = inv.getArgument(0);
+            LocalDateTime asOf = inv.getArgument(1);
+            Map<String, Double> sums = new HashMap<>();
+            entries.stream()
+                .filter(e -> e.getUserId().equals(userId) && !e.getOccurredAt().isAfter(asOf))
+                .filter(e -> e.getId() > latestCheckpointId(userId, e.getCounterpartyId(), asOf))
+                .forEach(e -> sums.merge(e.getCounterpartyId(), e.getAmount(), Double::sum));
+            return sums.entrySet().stream().map(e -> amount(e.getKey(), e.getValue())).toList();
+        });
+        when(entryRepo.findPairsDueForCheckpoint(any(), anyLong(), any())).thenAnswer(inv -> {
+            LocalDateTime upTo = inv.getArgument(0);
+            long minEntries = inv.getArgument(1);
+            Map<List<String>, List<LedgerEntrySql>> byPair = entries.stream()
+                .filter(e -> !e.getOccurredAt().isAfter(upTo))
+                .filter(e -> e.getId() > latestCheckpointId(e.getUserId(), e.getCounterpartyId(), LocalDateTime.MAX))
+                .collect(Collectors.groupingBy(e -> List.of(e.getUserId(), e.getCounterpartyId())));
+            List<LedgerEntrySqlRepository.DuePair> due = new ArrayList<>();
+            byPair.forEach((pair, pairEntries) -> {
+                if (pairEntries.size() >= minEntries) {
+                    due.add(duePair(pair.get(0), pair.get(1),
+                        pairEntries.stream().map(LedgerEntrySql::getId).max(Long::compare).orElseThrow(),
+                        pairEntries.stream().map(LedgerEntrySql::getOccurredAt).max(Comparator.naturalOrder()).orElseThrow()));
+                }
+            });
+            return due;
+        });
+
+        when(checkpointRepo.save(any())).thenAnswer(inv -> {
+            checkpoints.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(checkpointRepo.findTopByUserIdAndCounterpartyIdOrderByLastEntryIdDesc(anyString(), anyString()))
+            .thenAnswer(inv -> latestCheckpoint(inv.getArgument(0), inv.getArgument(1), LocalDateTime.MAX));
+        when(checkpointRepo.findTopByUserIdAndCounterpartyIdAndAsOfLessThanEqualOrderByLastEntryIdDesc(anyString(), anyString(), any()))
+            .thenAnswer(inv -> latestCheckpoint(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)));
+        when(checkpointRepo.findLatestPerCounterparty(anyString(), any())).thenAnswer(inv -> checkpoints.stream()
+            .filter(c -> c.getUserId().equals(inv.getArgument(0)))
+            .map(c -> latestCheckpoint(c.getUserId(), c.getCounterpartyId(), inv.getArgument(1)))
+            .filter(Objects::nonNull)
+            .distinct()
+            .toList());
+
+        ledger = new LedgerService(entryRepo, checkpointRepo, true);
+    }
+
+    @Test
+    void recordsOneEntryPerSideOfEveryPairThatMoved() {
+        BalanceContributions before = BalanceContributions.of(expense("A", 30, "B", "C"));
+        ledger.record(LedgerEntryType.EXPENSE_CREATED, "e1", BalanceContributions.of(null), before);
+
+        // A paid 30 for three: B and C each owe A 10
+        assertEquals(4, entries.size());
+        assertEquals(-10, total("B", "A"), 1e-9);
+        assertEquals(10, total("A", "B"), 1e-9);
+
+        // Deleting the expense reverses it; recording an unchanged expense writes nothing
+        ledger.record(LedgerEntryType.EXPENSE_DELETED, "e1", before, BalanceContributions.of(null));
+        ledger.record(LedgerEntryType.SETTLED_PARTIAL, "e1", before, before);
+        assertEquals(8, entries.size());
+        assertEquals(0, total("B", "A"), 1e-9);
+    }
+
+    @Test
+    void checkpointsPairsWithEnoughEntriesPastTheLag() {
+        recordExpenses(CHECKPOINT_INTERVAL - 1);
+        ledger.checkpointDuePairs();
+        assertTrue(checkpoints.isEmpty());
+
+        // The 50th entry is still within the lag, so nothing is due yet
+        recordExpenses(1);
+        entries.subList(entries.size() - 2, entries.size()).forEach(e -> e.setOccurredAt(LocalDateTime.now()));
+        ledger.checkpointDuePairs();
+        assertTrue(checkpoints.isEmpty());
+
+        entries.subList(entries.size() - 2, entries.size()).forEach(e -> e.setOccurredAt(start.plusHours(1)));
+        ledger.checkpointDuePairs();
+        assertEquals(2, checkpoints.size());
+        LedgerCheckpointSql owed = latestCheckpoint("A", "B", LocalDateTime.MAX);
+        assertEquals(lastEntryId("A", "B"), owed.getLastEntryId());
+        assertEquals(total("A", "B"), owed.getBalance(), 1e-9);
+
+        // Running again without new entries stores nothing
+        ledger.checkpointDuePairs();
+        assertEquals(2, checkpoints.size());
+    }
+
+    @Test
+    void nextCheckpointBuildsOnThePreviousOne() {
+        recordExpenses(CHECKPOINT_INTERVAL);
+        ledger.checkpointDuePairs();
+        recordExpenses(CHECKPOINT_INTERVAL);
+        ledger.checkpointDuePairs();
+
+        assertEquals(4, checkpoints.size());
+        assertEquals(total("A", "B"), latestCheckpoint("A", "B", LocalDateTime.MAX).getBalance(), 1e-9);
+        assertEquals(total("B", "A"), latestCheckpoint("B", "A", LocalDateTime.MAX).getBalance(), 1e-9);
+    }
+
+    @Test
+    void asOfQueriesReplayFromTheLatestCheckpointBeforeThem() {
+        recordExpenses(CHECKPOINT_INTERVAL + 20);
+        ledger.checkpointDuePairs();
+        recordExpenses(10);
+        assertFalse(checkpoints.isEmpty());
+
+        // Before, on and after the checkpoint, and past every entry
+        for (int minutes : List.of(0, 10, CHECKPOINT_INTERVAL + 19, CHECKPOINT_INTERVAL + 25, 10_000)) {
+            LocalDateTime asOf = start.plusMinutes(minutes);
+            assertEquals(replay("A", "B", asOf), ledger.balanceAsOf("A", "B", asOf), 1e-9, "A/B at " + minutes);
+            assertEquals(replay("B", "A", asOf), ledger.balanceAsOf("B", "A", asOf), 1e-9, "B/A at " + minutes);
+
+            Map<String, Double> balances = ledger.balancesAsOf("A", asOf);
+            if (Math.abs(replay("A", "B", asOf)) < 0.01) {
+                assertFalse(balances.containsKey("B"));
+            } else {
+                assertEquals(replay("A", "B", asOf), balances.get("B"), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void disabledCheckpointsNeverRun() {
+        LedgerEntrySqlRepository entryRepo = mock(LedgerEntrySqlRepository.class);
+        LedgerService disabled = new LedgerService(entryRepo, mock(LedgerCheckpointSqlRepository.class), false);
+
+        disabled.checkpointDuePairs();
+        verifyNoInteractions(entryRepo);
+    }
+
+    // B pays i for B and A, one expense a minute from start
+    private void recordExpenses(int count) {
+        for (int i = 0; i < count; i++) {
+            int minute = entries.size() / 2;
+            ledger.record(LedgerEntryType.EXPENSE_CREATED, "e" + minute, BalanceContributions.of(null),
+                BalanceContributions.of(expense("B", 2 * (minute + 1), "A")));
+            entries.subList(entries.size() - 2, entries.size()).forEach(e -> e.setOccurredAt(start.plusMinutes(minute)));
+        }
+    }
+
+    private double replay(String userId, String counterpartyId, LocalDateTime asOf) {
+        return sum(pair(userId, counterpartyId).and(e -> !e.getOccurredAt().isAfter(asOf)));
+    }
+
+    private double total(String userId, String counterpartyId) {
+        return sum(pair(userId, counterpartyId));
+    }
+
+    private Predicate<LedgerEntrySql> pair(String userId, String counterpartyId) {
+        return e -> e.getUserId().equals(userId) && e.getCounterpartyId().equals(counterpartyId);
+    }
+
+    private long lastEntryId(String userId, String counterpartyId) {
+        return entries.stream().filter(pair(userId, counterpartyId)).mapToLong(LedgerEntrySql::getId).max().orElseThrow();
+    }
+
+    private double sum(Predicate<LedgerEntrySql> filter) {
+        return entries.stream().filter(filter).mapToDouble(LedgerEntrySql::getAmount).sum();
+    }
+
+    private LedgerCheckpointSql latestCheckpoint(String userId, String counterpartyId, LocalDateTime asOf) {
+        return checkpoints.stream()
+            .filter(c -> c.getUserId().equals(userId) && c.getCounterpartyId().equals(counterpartyId))
+            .filter(c -> !c.getAsOf().isAfter(asOf))
+            .max(Comparator.comparing(LedgerCheckpointSql::getLastEntryId))
+            .orElse(null);
+    }
+
+    private long latestCheckpointId(String userId, String counterpartyId, LocalDateTime asOf) {
+        LedgerCheckpointSql checkpoint = latestCheckpoint(userId, counterpartyId, asOf);
+        return checkpoint != null ? checkpoint.getLastEntryId() : 0;
+    }
+
+    private ExpenseDto expense(String payer, double amount, String... others) {
+        ExpenseDto expense = new ExpenseDto();
+        ExpenseDto.PayerDto payerDto = new ExpenseDto.PayerDto();
+        payerDto.setUserId(payer);
+        payerDto.setPaidAmount(amount);
+        expense.getPayers().add(payerDto);
+        List<String> participants = new ArrayList<>(List.of(others));
+        participants.add(payer);
+        for (String userId : participants) {
+            ExpenseDto.ParticipantDto participant = new ExpenseDto.ParticipantDto();
+            participant.setUserId(userId);
+            participant.setShare(amount / participants.size());
+            participant.setPaid(userId.equals(payer) ? amount : 0);
+            participant.setNet(participant.getPaid() - participant.getShare());
+            expense.getParticipants().add(participant);
+        }
+        return expense;
+    }
+
+    private static LedgerEntrySqlRepository.DuePair duePair(String userId, String counterpartyId,
+                                                           Long lastEntryId, LocalDateTime lastOccurredAt) {
+        return new LedgerEntrySqlRepository.DuePair() {
+            public String getUserId() { return userId; }
+            public String getCounterpartyId() { return counterpartyId; }
+            public Long getLastEntryId() { return lastEntryId; }
+            public LocalDateTime getLastOccurredAt() { return lastOccurredAt; }
+        };
+    }
+
+    private static LedgerEntrySqlRepository.CounterpartyAmount amount(String counterpartyId, Double amount) {
+        return new LedgerEntrySqlRepository.CounterpartyAmount() {
+            public String getCounterpartyId() { return counterpartyId; }
+            public Double getAmount() { return amount; }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package com.splitzy.splitzy.service.search;
+
+import com.splitzy.splitzy.service.dao.UserDao;
+import com.splitzy.splitzy.service.dao.UserDto;
+import com.splitzy.splitzy.service.dao.UserSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserPrefixIndexTest {
+
+    private UserDao userDao;
+    private UserPrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        userDao = mock(UserDao.class);
+        when(userDao.findAllSummaries()).thenReturn(List.of(
+            new UserSummary("1", "Anna Smith", "anna@example.com"),
+            new UserSummary("2", "Jo Annson", "jo@example.com"),
+            new UserSummary("3", "Joanna Lee", "lee@example.com"),
+            new UserSummary("4", "Ann", "ann.b@example.com")));
+        index = new UserPrefixIndex(userDao, mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+    }
+
+    @Test
+    void matchesPrefixesOfNameWordsAndEmails() {
+        assertEquals(Set.of("1", "2", "4"), ids(index.suggest("ann", 10)));
+        assertEquals(Set.of("3"), ids(index.suggest("lee@", 10)));
+        assertEquals(Set.of("1"), ids(index.suggest("anna smi", 10)));
+        assertEquals(Set.of("2"), ids(index.suggest("  JO  ann", 10)));
+    }
+
+    /**
+     * The store search matches anywhere in the name or email; the index only matches token
+     * prefixes, so infixes are not found.
+     */
+    @Test
+    void doesNotMatchInfixes() {
+        assertFalse(ids(index.suggest("anna", 10)).contains("3"));
+        assertTrue(index.suggest("mith", 10).isEmpty());
+        assertTrue(index.suggest("example", 10).isEmpty());
+    }
+
+    @Test
+    void ranksExactTokensThenNamePrefixesThenShorterNames() {
+        List<String> ranked = index.suggest("ann", 10).stream().map(UserPrefixIndex.Entry::id).toList();
+
+        // "Ann" is an exact token, "Anna Smith" a name prefix, "Jo Annson" only a word prefix
+        assertEquals(List.of("4", "1", "2"), ranked);
+        assertEquals(List.of("4"), index.suggest("ann", 1).stream().map(UserPrefixIndex.Entry::id).toList());
+    }
+
+    @Test
+    void changedUsersAreReloadedFromTheStore() {
+        when(userDao.findById("1")).thenReturn(Optional.of(user("1", "Hannah Smith", "hannah@example.com")));
+        when(userDao.findById("2")).thenReturn(Optional.empty());
+
+        index.onMessage(new DefaultMessage("users:invalidate".getBytes(StandardCharsets.UTF_8),
+            "1".getBytes(StandardCharsets.UTF_8)), null);
+        index.onMessage(new DefaultMessage("users:invalidate".getBytes(StandardCharsets.UTF_8),
+            "2".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(Set.of("4"), ids(index.suggest("ann", 10)));
+        assertEquals(Set.of("1"), ids(index.suggest("hann", 10)));
+    }
+
+    @Test
+    void disabledIndexIsNeverReady() {
+        UserPrefixIndex disabled = new UserPrefixIndex(userDao, mock(RedisMessageListenerContainer.class));
+        disabled.rebuild();
+
+        assertFalse(disabled.isReady());
+        assertTrue(disabled.suggest("ann", 10).isEmpty());
+    }
+
+    private Set<String> ids(List<UserPrefixIndex.Entry> entries) {
+        return entries.stream().map(UserPrefixIndex.Entry::id).collect(Collectors.toSet());
+    }
+
+    private UserDto user(String id, String name, String email) {
+        UserDto user = new UserDto();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(email);
+        return user;
+    }
+}